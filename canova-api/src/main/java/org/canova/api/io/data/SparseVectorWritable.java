@@ -0,0 +1,190 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+package org.canova.api.io.data;
+
+
+import org.canova.api.io.WritableUtils;
+import org.canova.api.writable.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writable for a sparse vector of doubles: the vector size plus
+ * (index, value) pairs for the non zero entries, sorted by index.
+ *
+ * Record writers for sparse formats (SVMLight, LibSvm) write the entries
+ * of a SparseVectorWritable in place of that many dense columns, so a
+ * wide vector never has to be expanded into one writable per column.
+ */
+public class SparseVectorWritable implements Writable {
+
+    private int size = 0;
+    private int[] indices = new int[0];
+    private double[] values = new double[0];
+
+    public SparseVectorWritable() {
+
+    }
+
+    /**
+     * @param size the size of the (dense) vector
+     * @param indices the indices of the entries, in any order, no duplicates
+     * @param values the values of the entries
+     * @param numEntries the number of entries used from indices and values
+     */
+    public SparseVectorWritable(int size, int[] indices, double[] values, int numEntries) {
+        set(size, indices, values, numEntries);
+    }
+
+    /**
+     * Set the vector; the entries are copied and sorted by index
+     * @param size the size of the (dense) vector
+     * @param indices the indices of the entries, in any order, no duplicates
+     * @param values the values of the entries
+     * @param numEntries the number of entries used from indices and values
+     */
+    public void set(int size, int[] indices, double[] values, int numEntries) {
+        this.size = size;
+        this.indices = Arrays.copyOf(indices, numEntries);
+        this.values = Arrays.copyOf(values, numEntries);
+
+        boolean sorted = true;
+        for(int i = 1; i < numEntries && sorted; i++)
+            sorted = this.indices[i - 1] < this.indices[i];
+        if(sorted)
+            return;
+
+        // sort (index, position) pairs packed in longs, then reorder the values to match
+        long[] order = new long[numEntries];
+        for(int i = 0; i < numEntries; i++)
+            order[i] = ((long) indices[i] << 32) | i;
+        Arrays.sort(order);
+        for(int i = 0; i < numEntries; i++) {
+            this.indices[i] = (int) (order[i] >>> 32);
+            this.values[i] = values[(int) order[i]];
+        }
+    }
+
+    /** The size of the (dense) vector */
+    public int size() { return size; }
+
+    /** The number of (non zero) entries */
+    public int numEntries() { return indices.length; }
+
+    /** The index of the i-th entry; entries are sorted by index */
+    public int getIndex(int i) { return indices[i]; }
+
+    /** The value of the i-th entry */
+    public double getValue(int i) { return values[i]; }
+
+    /**
+     * The value at a position of the (dense) vector
+     * @param index the position
+     * @return the value, 0 if there is no entry for the position
+     */
+    public double get(int index) {
+        int i = Arrays.binarySearch(indices, index);
+        return i >= 0 ? values[i] : 0.0;
+    }
+
+    /** The dense vector */
+    public double[] toArray() {
+        double[] ret = new double[size];
+        for(int i = 0; i < indices.length; i++)
+            ret[indices[i]] = values[i];
+        return ret;
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        size = WritableUtils.readVInt(in);
+        int numEntries = WritableUtils.readVInt(in);
+        indices = new int[numEntries];
+        values = new double[numEntries];
+        // indices are written as deltas, which are small for dense-ish vectors
+        int index = 0;
+        for(int i = 0; i < numEntries; i++) {
+            index += WritableUtils.readVInt(in);
+            indices[i] = index;
+            values[i] = in.readDouble();
+        }
+    }
+
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVInt(out, size);
+        WritableUtils.writeVInt(out, indices.length);
+        int last = 0;
+        for(int i = 0; i < indices.length; i++) {
+            WritableUtils.writeVInt(out, indices[i] - last);
+            last = indices[i];
+            out.writeDouble(values[i]);
+        }
+    }
+
+    /**
+     * Returns true iff <code>o</code> is a SparseVectorWritable with the same size and entries.
+     */
+    public boolean equals(Object o) {
+        if (!(o instanceof SparseVectorWritable)) {
+            return false;
+        }
+        SparseVectorWritable other = (SparseVectorWritable)o;
+        return size == other.size && Arrays.equals(indices, other.indices) && Arrays.equals(values, other.values);
+    }
+
+    public int hashCode() {
+        return 31 * (31 * size + Arrays.hashCode(indices)) + Arrays.hashCode(values);
+    }
+
+    /**
+     * The entries as space separated index:value pairs (zero based indices)
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < indices.length; i++) {
+            if(i > 0)
+                sb.append(' ');
+            sb.append(indices[i]).append(':').append(values[i]);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public double toDouble(){
+        throw new UnsupportedOperationException("A sparse vector is not a single value");
+    }
+
+    @Override
+    public float toFloat(){
+        throw new UnsupportedOperationException("A sparse vector is not a single value");
+    }
+
+    @Override
+    public int toInt(){
+        throw new UnsupportedOperationException("A sparse vector is not a single value");
+    }
+
+    @Override
+    public long toLong(){
+        throw new UnsupportedOperationException("A sparse vector is not a single value");
+    }
+}
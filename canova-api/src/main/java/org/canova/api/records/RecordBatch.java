@@ -0,0 +1,461 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records;
+
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.FloatWritable;
+import org.canova.api.io.data.IntWritable;
+import org.canova.api.io.data.LongWritable;
+import org.canova.api.io.data.Text;
+import org.canova.api.writable.Writable;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A batch of records stored by column in primitive arrays,
+ * instead of one {@link Writable} per value.
+ *
+ * Each column holds doubles, ints or raw (utf-8) bytes, plus a validity mask
+ * that tells which rows actually have a value in that column.
+ * The type of a column is decided by the first value written to it;
+ * an int column that gets a double is promoted to doubles.
+ *
+ * A batch can be {@link #clear()}ed and refilled, which reuses all of its arrays.
+ */
+public class RecordBatch implements Serializable {
+
+    public enum ColumnType {
+        DOUBLE, INT, BYTES
+    }
+
+    private final int capacity;
+    private int numRows = 0;
+    private int numColumns = 0;
+    // columns beyond numColumns are kept around for reuse after clear()
+    private final List<Column> columns = new ArrayList<>();
+
+    /**
+     * @param capacity the maximum number of rows in the batch
+     */
+    public RecordBatch(int capacity) {
+        if(capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Removes all rows and columns, keeping the allocated arrays
+     */
+    public void clear() {
+        numRows = 0;
+        numColumns = 0;
+    }
+
+    /**
+     * Add an empty row (no valid values)
+     * @return the index of the new row
+     */
+    public int addRow() {
+        if(isFull())
+            throw new IllegalStateException("Batch is full (" + capacity + " rows)");
+        for(int i = 0; i < numColumns; i++)
+            columns.get(i).valid[numRows] = false;
+        return numRows++;
+    }
+
+    /**
+     * Add a row holding the values of a record: {@link IntWritable}s as ints, other numbers as doubles
+     * and anything else as strings. Numbers in a column that already holds bytes are stored as strings.
+     * @param record the record
+     * @return the index of the new row
+     */
+    public int addRecord(Collection<Writable> record) {
+        int row = addRow();
+        int column = 0;
+        for(Writable w : record) {
+            boolean bytesColumn = column < numColumns && columns.get(column).type == ColumnType.BYTES;
+            if(w instanceof Text) {
+                Text t = (Text) w;
+                setBytes(row, column, t.getBytes(), 0, t.getLength());
+            }
+            else if(w instanceof IntWritable && !bytesColumn) {
+                setInt(row, column, ((IntWritable) w).get());
+            }
+            else if((w instanceof DoubleWritable || w instanceof FloatWritable || w instanceof LongWritable) && !bytesColumn) {
+                setDouble(row, column, w.toDouble());
+            }
+            else {
+                setString(row, column, w.toString());
+            }
+            column++;
+        }
+        return row;
+    }
+
+    public boolean isFull() {
+        return numRows == capacity;
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numColumns() {
+        return numColumns;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public void setDouble(int row, int column, double value) {
+        Column c = columnForWrite(row, column);
+        if(c.type == null) {
+            c.type = ColumnType.DOUBLE;
+            c.doubles = c.doubles == null ? new double[capacity] : c.doubles;
+        }
+        else if(c.type == ColumnType.INT) {
+            c.promote(capacity);
+        }
+        else if(c.type == ColumnType.BYTES) {
+            throw new IllegalStateException("Column " + column + " holds bytes, not numbers");
+        }
+        c.doubles[row] = value;
+        c.valid[row] = true;
+    }
+
+    /**
+     * Set consecutive columns of a row from a block of doubles
+     * @param row the row
+     * @param column the first column to set
+     * @param values holds the values
+     * @param offset where in values they start
+     * @param length the number of values
+     */
+    public void setDoubles(int row, int column, double[] values, int offset, int length) {
+        if(length <= 0)
+            return;
+        // makes sure all the columns exist up front
+        columnForWrite(row, column + length - 1);
+        for(int i = 0; i < length; i++) {
+            Column c = columns.get(column + i);
+            if(c.type != ColumnType.DOUBLE) {
+                setDouble(row, column + i, values[offset + i]);
+                continue;
+            }
+            c.doubles[row] = values[offset + i];
+            c.valid[row] = true;
+        }
+    }
+
+    public void setInt(int row, int column, int value) {
+        Column c = columnForWrite(row, column);
+        if(c.type == null) {
+            c.type = ColumnType.INT;
+            c.ints = c.ints == null ? new int[capacity] : c.ints;
+        }
+        else if(c.type == ColumnType.BYTES) {
+            throw new IllegalStateException("Column " + column + " holds bytes, not numbers");
+        }
+
+        if(c.type == ColumnType.DOUBLE)
+            c.doubles[row] = value;
+        else
+            c.ints[row] = value;
+        c.valid[row] = true;
+    }
+
+    /**
+     * Set a byte value (copied into the column)
+     */
+    public void setBytes(int row, int column, byte[] bytes, int offset, int length) {
+        Column c = bytesColumnForWrite(row, column);
+        c.ensureBytes(length);
+        System.arraycopy(bytes, offset, c.bytes, c.bytesUsed, length);
+        c.offsets[row] = c.bytesUsed;
+        c.lengths[row] = length;
+        c.bytesUsed += length;
+        c.valid[row] = true;
+    }
+
+    /**
+     * Set a string value, stored as utf-8
+     */
+    public void setString(int row, int column, String value) {
+        setString(row, column, value, 0, value.length());
+    }
+
+    /**
+     * Set part of a string as the value, stored as utf-8 without
+     * creating an intermediate substring
+     * @param start the index of the first char
+     * @param end the index after the last char
+     */
+    public void setString(int row, int column, CharSequence value, int start, int end) {
+        Column c = bytesColumnForWrite(row, column);
+        // worst case is 3 bytes per char
+        c.ensureBytes(3 * (end - start));
+        int pos = c.bytesUsed;
+        byte[] b = c.bytes;
+        for(int i = start; i < end; i++) {
+            char ch = value.charAt(i);
+            if(ch < 0x80) {
+                b[pos++] = (byte) ch;
+            }
+            else if(ch < 0x800) {
+                b[pos++] = (byte) (0xC0 | (ch >> 6));
+                b[pos++] = (byte) (0x80 | (ch & 0x3F));
+            }
+            else if(Character.isHighSurrogate(ch) && i + 1 < end && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(ch, value.charAt(++i));
+                b[pos++] = (byte) (0xF0 | (cp >> 18));
+                b[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                b[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                b[pos++] = (byte) (0x80 | (cp & 0x3F));
+            }
+            else if(Character.isSurrogate(ch)) {
+                // unpaired surrogate, same replacement String.getBytes uses
+                b[pos++] = (byte) '?';
+            }
+            else {
+                b[pos++] = (byte) (0xE0 | (ch >> 12));
+                b[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                b[pos++] = (byte) (0x80 | (ch & 0x3F));
+            }
+        }
+        c.offsets[row] = c.bytesUsed;
+        c.lengths[row] = pos - c.bytesUsed;
+        c.bytesUsed = pos;
+        c.valid[row] = true;
+    }
+
+    /**
+     * Mark the value as missing
+     */
+    public void setNull(int row, int column) {
+        columnForWrite(row, column).valid[row] = false;
+    }
+
+    /**
+     * @return the type of the column, or null if nothing was written to it
+     */
+    public ColumnType getColumnType(int column) {
+        return column(column).type;
+    }
+
+    public boolean isValid(int row, int column) {
+        checkRow(row);
+        return column(column).valid[row];
+    }
+
+    /**
+     * Get a value as a double; byte values are parsed
+     */
+    public double getDouble(int row, int column) {
+        Column c = validColumn(row, column);
+        switch(c.type) {
+            case DOUBLE: return c.doubles[row];
+            case INT: return c.ints[row];
+            default: return Double.parseDouble(getString(row, column));
+        }
+    }
+
+    /**
+     * Get a value as an int; doubles are truncated, byte values are parsed
+     */
+    public int getInt(int row, int column) {
+        Column c = validColumn(row, column);
+        switch(c.type) {
+            case DOUBLE: return (int) c.doubles[row];
+            case INT: return c.ints[row];
+            default: return Integer.parseInt(getString(row, column));
+        }
+    }
+
+    public String getString(int row, int column) {
+        Column c = validColumn(row, column);
+        switch(c.type) {
+            case DOUBLE: return String.valueOf(c.doubles[row]);
+            case INT: return String.valueOf(c.ints[row]);
+            default: return new String(c.bytes, c.offsets[row], c.lengths[row], StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * The backing array of a {@link ColumnType#DOUBLE} column.
+     * Only the first {@link #numRows()} entries are meaningful, and only where {@link #getValidity(int)} is set.
+     */
+    public double[] getDoubleColumn(int column) {
+        return typedColumn(column, ColumnType.DOUBLE).doubles;
+    }
+
+    /**
+     * The backing array of a {@link ColumnType#INT} column
+     */
+    public int[] getIntColumn(int column) {
+        return typedColumn(column, ColumnType.INT).ints;
+    }
+
+    /**
+     * The backing array of a {@link ColumnType#BYTES} column;
+     * the value of a row starts at {@link #getOffsets(int)} and is {@link #getLengths(int)} long
+     */
+    public byte[] getBytesColumn(int column) {
+        return typedColumn(column, ColumnType.BYTES).bytes;
+    }
+
+    public int[] getOffsets(int column) {
+        return typedColumn(column, ColumnType.BYTES).offsets;
+    }
+
+    public int[] getLengths(int column) {
+        return typedColumn(column, ColumnType.BYTES).lengths;
+    }
+
+    /**
+     * The validity mask of a column: true where a row has a value
+     */
+    public boolean[] getValidity(int column) {
+        return column(column).valid;
+    }
+
+    /**
+     * Convert a row back to the writables {@link org.canova.api.records.reader.RecordReader#next()} would have returned.
+     * Trailing missing values are dropped, missing values before that become empty {@link Text}.
+     * @param row the row
+     * @return the record
+     */
+    public Collection<Writable> getRecord(int row) {
+        checkRow(row);
+        int last = numColumns - 1;
+        while(last >= 0 && !columns.get(last).valid[row])
+            last--;
+
+        List<Writable> ret = new ArrayList<>(last + 1);
+        for(int i = 0; i <= last; i++) {
+            Column c = columns.get(i);
+            if(!c.valid[row])
+                ret.add(new Text(""));
+            else if(c.type == ColumnType.DOUBLE)
+                ret.add(new DoubleWritable(c.doubles[row]));
+            else if(c.type == ColumnType.INT)
+                ret.add(new IntWritable(c.ints[row]));
+            else {
+                Text t = new Text();
+                t.set(c.bytes, c.offsets[row], c.lengths[row]);
+                ret.add(t);
+            }
+        }
+        return ret;
+    }
+
+    private void checkRow(int row) {
+        if(row < 0 || row >= numRows)
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + numRows);
+    }
+
+    private Column column(int column) {
+        if(column < 0 || column >= numColumns)
+            throw new IndexOutOfBoundsException("Column " + column + " out of " + numColumns);
+        return columns.get(column);
+    }
+
+    private Column validColumn(int row, int column) {
+        checkRow(row);
+        Column c = column(column);
+        if(!c.valid[row])
+            throw new IllegalStateException("No value at row " + row + ", column " + column);
+        return c;
+    }
+
+    private Column typedColumn(int column, ColumnType type) {
+        Column c = column(column);
+        if(c.type != type)
+            throw new IllegalStateException("Column " + column + " is " + c.type + ", not " + type);
+        return c;
+    }
+
+    private Column columnForWrite(int row, int column) {
+        checkRow(row);
+        while(numColumns <= column) {
+            if(columns.size() == numColumns)
+                columns.add(new Column(capacity));
+            columns.get(numColumns++).reset();
+        }
+        return columns.get(column);
+    }
+
+    private Column bytesColumnForWrite(int row, int column) {
+        Column c = columnForWrite(row, column);
+        if(c.type == null) {
+            c.type = ColumnType.BYTES;
+            if(c.offsets == null) {
+                c.bytes = new byte[16 * capacity];
+                c.offsets = new int[capacity];
+                c.lengths = new int[capacity];
+            }
+        }
+        else if(c.type != ColumnType.BYTES) {
+            throw new IllegalStateException("Column " + column + " holds numbers, not bytes");
+        }
+        return c;
+    }
+
+    private static class Column implements Serializable {
+        private ColumnType type;
+        private final boolean[] valid;
+        private double[] doubles;
+        private int[] ints;
+        private byte[] bytes;
+        private int[] offsets;
+        private int[] lengths;
+        private int bytesUsed;
+
+        private Column(int capacity) {
+            valid = new boolean[capacity];
+        }
+
+        private void reset() {
+            type = null;
+            bytesUsed = 0;
+            Arrays.fill(valid, false);
+        }
+
+        private void promote(int capacity) {
+            if(doubles == null)
+                doubles = new double[capacity];
+            for(int i = 0; i < capacity; i++)
+                doubles[i] = ints[i];
+            type = ColumnType.DOUBLE;
+        }
+
+        private void ensureBytes(int extra) {
+            if(bytesUsed + extra > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, bytesUsed + extra));
+        }
+    }
+
+}
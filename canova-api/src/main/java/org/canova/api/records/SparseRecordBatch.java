@@ -0,0 +1,149 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+package org.canova.api.records;
+
+import org.canova.api.io.data.SparseVectorWritable;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A batch of sparse rows in compressed sparse row (CSR) form, each row with a label:
+ * the entries of row i are at positions {@code getRowPointers()[i]} (inclusive) to
+ * {@code getRowPointers()[i + 1]} (exclusive) of {@link #getColumnIndices()} and {@link #getValues()}.
+ *
+ * As with {@link RecordBatch}, the arrays are kept for reuse after {@link #clear()},
+ * and only grow when a batch holds more entries than any batch before it.
+ */
+public class SparseRecordBatch implements Serializable {
+
+    private final int capacity;
+    private final int numColumns;
+    private int numRows = 0;
+    private int numEntries = 0;
+    private final int[] rowPointers;
+    private final double[] labels;
+    private int[] columnIndices = new int[64];
+    private double[] values = new double[64];
+
+    /**
+     * @param capacity the maximum number of rows in the batch
+     * @param numColumns the number of columns of every row
+     */
+    public SparseRecordBatch(int capacity, int numColumns) {
+        if(capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive");
+        this.capacity = capacity;
+        this.numColumns = numColumns;
+        this.rowPointers = new int[capacity + 1];
+        this.labels = new double[capacity];
+    }
+
+    /**
+     * Removes all rows, keeping the allocated arrays
+     */
+    public void clear() {
+        numRows = 0;
+        numEntries = 0;
+    }
+
+    /**
+     * Add a row
+     * @param row the row, as many columns as the batch
+     * @param label the label of the row
+     * @return the index of the new row
+     */
+    public int addRow(SparseVectorWritable row, double label) {
+        if(isFull())
+            throw new IllegalStateException("Batch is full (" + capacity + " rows)");
+        if(row.size() != numColumns)
+            throw new IllegalArgumentException("Row has " + row.size() + " columns, batch has " + numColumns);
+
+        int needed = numEntries + row.numEntries();
+        if(needed > columnIndices.length) {
+            int newLength = Math.max(needed, columnIndices.length * 2);
+            columnIndices = Arrays.copyOf(columnIndices, newLength);
+            values = Arrays.copyOf(values, newLength);
+        }
+        for(int i = 0; i < row.numEntries(); i++) {
+            columnIndices[numEntries] = row.getIndex(i);
+            values[numEntries] = row.getValue(i);
+            numEntries++;
+        }
+
+        labels[numRows] = label;
+        rowPointers[++numRows] = numEntries;
+        return numRows - 1;
+    }
+
+    /**
+     * The row, as a sparse vector
+     * @param row the row index
+     * @return a copy of the row
+     */
+    public SparseVectorWritable getRow(int row) {
+        int start = rowPointers[row];
+        int end = rowPointers[row + 1];
+        return new SparseVectorWritable(numColumns,
+                Arrays.copyOfRange(columnIndices, start, end), Arrays.copyOfRange(values, start, end), end - start);
+    }
+
+    public boolean isFull() {
+        return numRows == capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numColumns() {
+        return numColumns;
+    }
+
+    /** The number of entries over all rows */
+    public int numEntries() {
+        return numEntries;
+    }
+
+    /** numRows() + 1 offsets into the column indices and values; the array may be longer */
+    public int[] getRowPointers() {
+        return rowPointers;
+    }
+
+    /** The column index of each entry, row after row; only the first numEntries() are used */
+    public int[] getColumnIndices() {
+        return columnIndices;
+    }
+
+    /** The value of each entry, row after row; only the first numEntries() are used */
+    public double[] getValues() {
+        return values;
+    }
+
+    /** The label of each row; only the first numRows() are used */
+    public double[] getLabels() {
+        return labels;
+    }
+
+}
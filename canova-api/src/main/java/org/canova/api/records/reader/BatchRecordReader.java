@@ -0,0 +1,48 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records.reader;
+
+import org.canova.api.records.RecordBatch;
+
+/**
+ * A record reader that can also read whole batches of records into a {@link RecordBatch},
+ * without creating a {@link org.canova.api.writable.Writable} per value.
+ *
+ * {@link #next()} and {@link #nextBatch(int)} read from the same position and can be mixed.
+ */
+public interface BatchRecordReader extends RecordReader {
+
+    /**
+     * Read up to num records
+     * @param num the maximum number of records to read
+     * @return a new batch, with fewer than num rows if the input ran out
+     */
+    RecordBatch nextBatch(int num);
+
+    /**
+     * Read records into an existing batch, replacing its contents.
+     * Reusing one batch keeps reading free of per batch allocations.
+     * @param batch the batch to fill; reads up to its capacity
+     * @return the batch
+     */
+    RecordBatch nextBatch(RecordBatch batch);
+
+}
@@ -0,0 +1,314 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records.reader.impl;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.io.DataInputBuffer;
+import org.canova.api.records.reader.RecordReader;
+import org.canova.api.records.writer.impl.BinaryRecordWriter;
+import org.canova.api.split.InputSplit;
+import org.canova.api.util.RecordUtils;
+import org.canova.api.util.ReflectionUtils;
+import org.canova.api.writable.Writable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the binary block files written by {@link BinaryRecordWriter}.
+ * Values are read back with {@link Writable#readFields}, nothing is parsed.
+ */
+public class BinaryRecordReader implements RecordReader {
+
+    private URI[] locations;
+    private int currIndex = 0;
+    private transient DataInputStream in;
+    protected Configuration conf;
+    protected InputSplit inputSplit;
+
+    // header of the current block
+    private final List<Class<? extends Writable>> blockTypes = new ArrayList<>();
+    private byte compression;
+    private int rawLength;
+    private int storedLength;
+
+    // the current block, by column
+    private transient Writable[][] columns;
+    private int blockRecords = 0;
+    private int blockPosition = 0;
+
+    private transient byte[] stored;
+    private transient byte[] raw;
+    private transient DataInputBuffer rawInput;
+    private transient Inflater inflater;
+
+    @Override
+    public void initialize(InputSplit split) throws IOException, InterruptedException {
+        close();
+        this.inputSplit = split;
+        this.locations = split.locations();
+        this.currIndex = 0;
+        this.blockRecords = 0;
+        this.blockPosition = 0;
+        if(rawInput == null) {
+            stored = new byte[0];
+            raw = new byte[0];
+            rawInput = new DataInputBuffer();
+            inflater = new Inflater();
+        }
+        if(locations != null && locations.length > 0)
+            open(locations[0]);
+    }
+
+    @Override
+    public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
+        this.conf = conf;
+        initialize(split);
+    }
+
+    @Override
+    public Collection<Writable> next() {
+        if(!hasNext())
+            throw new NoSuchElementException("No more elements found!");
+
+        List<Writable> ret = new ArrayList<>(columns.length);
+        for(Writable[] column : columns)
+            ret.add(column[blockPosition]);
+        blockPosition++;
+        return ret;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while(blockPosition == blockRecords) {
+                if(!readBlock())
+                    return false;
+            }
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read block from " + locations[currIndex], e);
+        }
+    }
+
+    /**
+     * Skip ahead; whole blocks are skipped without being decoded
+     * @param numRecords the number of records to skip
+     * @return the number of records actually skipped, less if the input ran out
+     */
+    public long skip(long numRecords) {
+        long skipped = 0;
+        try {
+            while(skipped < numRecords) {
+                if(blockPosition == blockRecords) {
+                    // decode the block only if the skip ends inside it
+                    if(!readBlockHeader())
+                        break;
+                    if(numRecords - skipped >= blockRecords) {
+                        skipPayload();
+                        skipped += blockRecords;
+                        blockPosition = blockRecords;
+                        continue;
+                    }
+                    readPayload();
+                }
+                int n = (int) Math.min(numRecords - skipped, blockRecords - blockPosition);
+                blockPosition += n;
+                skipped += n;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read block from " + locations[currIndex], e);
+        }
+        return skipped;
+    }
+
+    /**
+     * Move to the given record, counted from the start of the split
+     * @param record the record number
+     */
+    public void seek(long record) {
+        reset();
+        if(skip(record) < record)
+            throw new NoSuchElementException("Only " + record + " records in " + Arrays.toString(locations));
+    }
+
+    private boolean readBlock() throws IOException {
+        if(!readBlockHeader())
+            return false;
+        readPayload();
+        return true;
+    }
+
+    /**
+     * Read the next block header, moving on to the next location when needed
+     * @return false if there are no more blocks
+     */
+    private boolean readBlockHeader() throws IOException {
+        while(true) {
+            if(in == null)
+                return false;
+
+            int numRecords;
+            try {
+                numRecords = in.readInt();
+            } catch (EOFException e) {
+                in.close();
+                in = null;
+                if(currIndex + 1 < locations.length)
+                    open(locations[++currIndex]);
+                continue;
+            }
+
+            int numColumns = in.readInt();
+            blockTypes.clear();
+            for(int i = 0; i < numColumns; i++)
+                blockTypes.add(RecordUtils.readType(in));
+            compression = in.readByte();
+            rawLength = in.readInt();
+            storedLength = in.readInt();
+
+            blockRecords = numRecords;
+            blockPosition = 0;
+            return true;
+        }
+    }
+
+    private void skipPayload() throws IOException {
+        int remaining = storedLength;
+        while(remaining > 0) {
+            int n = in.skipBytes(remaining);
+            if(n <= 0)
+                throw new EOFException("Truncated block");
+            remaining -= n;
+        }
+    }
+
+    private void readPayload() throws IOException {
+        stored = ensure(stored, storedLength);
+        in.readFully(stored, 0, storedLength);
+
+        byte[] payload = stored;
+        if(compression == BinaryRecordWriter.COMPRESSION_DEFLATE) {
+            raw = ensure(raw, rawLength);
+            inflater.reset();
+            inflater.setInput(stored, 0, storedLength);
+            try {
+                int n = 0;
+                while(n < rawLength && !inflater.finished()) {
+                    int inflated = inflater.inflate(raw, n, rawLength - n);
+                    if(inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                        break;
+                    n += inflated;
+                }
+                if(n != rawLength)
+                    throw new IOException("Corrupt block: expected " + rawLength + " bytes, inflated " + n);
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block", e);
+            }
+            payload = raw;
+        }
+        else if(compression != BinaryRecordWriter.COMPRESSION_NONE) {
+            throw new IOException("Unknown compression " + compression);
+        }
+
+        rawInput.reset(payload, rawLength);
+        columns = new Writable[blockTypes.size()][blockRecords];
+        for(int column = 0; column < columns.length; column++) {
+            Class<? extends Writable> type = blockTypes.get(column);
+            for(int row = 0; row < blockRecords; row++) {
+                Writable w = ReflectionUtils.newInstance(type, conf);
+                w.readFields(rawInput);
+                columns[column][row] = w;
+            }
+        }
+    }
+
+    private static byte[] ensure(byte[] buffer, int length) {
+        return buffer.length >= length ? buffer : new byte[length];
+    }
+
+    private void open(URI location) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(location.toURL().openStream()));
+        byte[] magic = new byte[BinaryRecordWriter.MAGIC.length];
+        try {
+            in.readFully(magic);
+        } catch (EOFException e) {
+            // empty file
+            in.close();
+            in = null;
+            return;
+        }
+        if(!Arrays.equals(magic, BinaryRecordWriter.MAGIC))
+            throw new IOException(location + " is not a binary record file");
+        int version = in.readByte();
+        if(version != BinaryRecordWriter.VERSION)
+            throw new IOException("Unsupported binary record file version " + version + " in " + location);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(in != null) {
+            in.close();
+            in = null;
+        }
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return null;
+    }
+
+    @Override
+    public void reset() {
+        if(inputSplit == null) throw new UnsupportedOperationException("Cannot reset without first initializing");
+        try {
+            initialize(inputSplit);
+        } catch(Exception e) {
+            throw new RuntimeException("Error during BinaryRecordReader reset", e);
+        }
+    }
+
+    @Override
+    public Collection<Writable> record(URI uri, DataInputStream dataInputStream) throws IOException {
+        throw new UnsupportedOperationException("Binary records are only read in blocks");
+    }
+
+}
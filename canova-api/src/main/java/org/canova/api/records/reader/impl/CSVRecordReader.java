@@ -24,12 +24,17 @@ package org.canova.api.records.reader.impl;
 
 import org.canova.api.conf.Configuration;
 import org.canova.api.io.data.Text;
+import org.canova.api.records.RecordBatch;
+import org.canova.api.split.FileRangeSplit;
 import org.canova.api.split.InputSplit;
+import org.canova.api.split.InputStreamInputSplit;
+import org.canova.api.split.StringSplit;
 import org.canova.api.writable.Writable;
 
 import java.io.BufferedReader;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.*;
@@ -37,14 +42,34 @@ import java.util.*;
 /**
  * Simple csv record reader.
  *
+ * Files with a single char delimiter are scanned as bytes by a {@link CSVTokenizer}.
+ * Quotes are read as plain data unless a quote char is set with {@link #QUOTE},
+ * which turns on RFC 4180 quoting.
+ * Other delimiters are treated as a regex and each line is split on it.
+ * A {@link FileRangeSplit} is read through a memory map of its range,
+ * an {@link InputStreamInputSplit} straight from its stream;
+ * only the range at the start of the file skips the header lines.
+ *
  * @author Adam Gibson
  */
 public class CSVRecordReader extends LineRecordReader {
     private boolean skippedLines = false;
     private int skipNumLines = 0;
     private String delimiter = ",";
+    private int quote = -1;
     public final static String SKIP_NUM_LINES = NAME_SPACE + ".skipnumlines";
     public final static String DELIMITER = NAME_SPACE + ".delimiter";
+    /** the quote char (usually "), quoting is off when unset or empty */
+    public final static String QUOTE = NAME_SPACE + ".quote";
+    // delimiters containing any of these go through String.split
+    private final static String REGEX_CHARS = ".$|()[]{}^?*+\\";
+
+    // set when reading files through the byte level tokenizer
+    private transient CSVTokenizer tokenizer;
+    private transient URI[] tokenizerLocations;
+    private int tokenizerIndex = 0;
+    // whether the tokenizer holds a record that hasn't been returned yet
+    private boolean pending = false;
 
     /**
      * Skip first n lines
@@ -70,22 +95,80 @@ public class CSVRecordReader extends LineRecordReader {
 
     @Override
     public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
-        super.initialize(conf, split);
         this.skipNumLines = conf.getInt(SKIP_NUM_LINES,0);
-        this.delimiter = conf.get(DELIMITER, ","); 
+        this.delimiter = conf.get(DELIMITER, ",");
+        String quoteChar = conf.get(QUOTE, "");
+        this.quote = quoteChar.isEmpty() ? -1 : quoteChar.charAt(0);
+        super.initialize(conf, split);
     }
 
     @Override
-    public Collection<Writable> next() {
-        if(!skippedLines && skipNumLines > 0) {
-            for(int i = 0; i < skipNumLines; i++) {
-                if(!hasNext()) {
-                    return new ArrayList<>();
+    public void initialize(InputSplit split) throws IOException, InterruptedException {
+        closeTokenizer();
+        skippedLines = false;
+        pending = false;
+
+        URI[] locations = split instanceof StringSplit ? null : split.locations();
+        // a stream is read as it is, whatever its location
+        if(split instanceof InputStreamInputSplit && (locations == null || locations.length == 0))
+            locations = new URI[1];
+        if(locations == null || locations.length == 0 || !isPlainDelimiter()) {
+            super.initialize(split);
+            return;
+        }
+
+        this.inputSplit = split;
+        this.tokenizerLocations = locations;
+        this.tokenizerIndex = 0;
+        this.tokenizer = openTokenizer(0);
+        // only the range at the start of the file has the header
+        if(split instanceof FileRangeSplit && ((FileRangeSplit) split).getStart() > 0)
+            skippedLines = true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(tokenizer == null)
+            return super.hasNext();
+
+        try {
+            while(!pending) {
+                if(tokenizer.next()) {
+                    pending = true;
+                }
+                else if(tokenizerIndex + 1 < tokenizerLocations.length) {
+                    tokenizer.close();
+                    tokenizer = openTokenizer(++tokenizerIndex);
+                }
+                else {
+                    return false;
                 }
-                super.next();
             }
-            skippedLines = true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read " + tokenizerLocations[tokenizerIndex], e);
         }
+        return true;
+    }
+
+    @Override
+    public Collection<Writable> next() {
+        if(!skipLines())
+            return new ArrayList<>();
+
+        if(tokenizer != null) {
+            if(!hasNext())
+                throw new NoSuchElementException("No more elements found!");
+            byte[] buf = tokenizer.getBuffer();
+            List<Writable> ret = new ArrayList<>(tokenizer.numFields());
+            for(int i = 0; i < tokenizer.numFields(); i++) {
+                Text t = new Text();
+                t.set(buf, tokenizer.getFieldOffset(i), tokenizer.getFieldLength(i));
+                ret.add(t);
+            }
+            pending = false;
+            return ret;
+        }
+
         Text t =  (Text) super.next().iterator().next();
         String val = t.toString();
         String[] split = val.split(delimiter, -1);
@@ -96,6 +179,98 @@ public class CSVRecordReader extends LineRecordReader {
 
     }
 
+    @Override
+    public RecordBatch nextBatch(RecordBatch batch) {
+        batch.clear();
+        if(!skipLines())
+            return batch;
+        if(tokenizer == null)
+            return super.nextBatch(batch);
+
+        while(!batch.isFull() && hasNext()) {
+            int row = batch.addRow();
+            byte[] buf = tokenizer.getBuffer();
+            for(int i = 0; i < tokenizer.numFields(); i++)
+                batch.setBytes(row, i, buf, tokenizer.getFieldOffset(i), tokenizer.getFieldLength(i));
+            pending = false;
+        }
+        return batch;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeTokenizer();
+        super.close();
+    }
+
+    @Override
+    protected void parseLine(String line, RecordBatch batch, int row) {
+        if(delimiter.length() == 1 && REGEX_CHARS.indexOf(delimiter.charAt(0)) < 0) {
+            // plain single char delimiter: copy the fields straight out of the line
+            char delim = delimiter.charAt(0);
+            int column = 0;
+            int start = 0;
+            for(int end = line.indexOf(delim); end >= 0; end = line.indexOf(delim, start)) {
+                batch.setString(row, column++, line, start, end);
+                start = end + 1;
+            }
+            batch.setString(row, column, line, start, line.length());
+        }
+        else {
+            String[] split = line.split(delimiter, -1);
+            for(int i = 0; i < split.length; i++)
+                batch.setString(row, i, split[i]);
+        }
+    }
+
+    /**
+     * Skip the first lines, once
+     * @return false if the input ran out while skipping
+     */
+    private boolean skipLines() {
+        if(!skippedLines && skipNumLines > 0) {
+            for(int i = 0; i < skipNumLines; i++) {
+                if(!hasNext()) {
+                    return false;
+                }
+                if(tokenizer != null)
+                    pending = false;
+                else
+                    super.next();
+            }
+            skippedLines = true;
+        }
+        return true;
+    }
+
+    private boolean isPlainDelimiter() {
+        return delimiter.length() == 1 && delimiter.charAt(0) < 0x80 && REGEX_CHARS.indexOf(delimiter.charAt(0)) < 0;
+    }
+
+    private CSVTokenizer openTokenizer(int index) throws IOException {
+        byte delimiter = (byte) this.delimiter.charAt(0);
+        InputStream in;
+        if(inputSplit instanceof FileRangeSplit) {
+            FileRangeSplit range = (FileRangeSplit) inputSplit;
+            // scan the mapping directly; only ranges over 2GB go through the windowed stream
+            if(range.isMappable())
+                return new CSVTokenizer(range.map(), delimiter, quote);
+            in = range.openStream();
+        }
+        else if(inputSplit instanceof InputStreamInputSplit)
+            in = ((InputStreamInputSplit) inputSplit).getIs();
+        else
+            in = tokenizerLocations[index].toURL().openStream();
+        return new CSVTokenizer(in, delimiter, quote);
+    }
+
+    private void closeTokenizer() throws IOException {
+        if(tokenizer != null) {
+            tokenizer.close();
+            tokenizer = null;
+        }
+    }
+
     @Override
     public Collection<Writable> record(URI uri, DataInputStream dataInputStream) throws IOException {
         //Here: we are reading a single line from the DataInputStream. How to handle skipLines???
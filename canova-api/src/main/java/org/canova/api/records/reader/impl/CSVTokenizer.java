@@ -0,0 +1,281 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records.reader.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Byte level csv scanner.
+ *
+ * Reads raw bytes into a reusable buffer and splits them into records and fields
+ * without decoding to strings. Each field is handed out as an offset and length into {@link #getBuffer()},
+ * valid until the next call to {@link #next()}.
+ *
+ * Quoting follows RFC 4180: a field starting with the quote char runs to the closing quote,
+ * may contain delimiters and line breaks, and a doubled quote inside it stands for one quote.
+ * Records end at \n or \r\n.
+ */
+public class CSVTokenizer implements Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer source;
+    private final byte delimiter;
+    private final int quote;
+
+    private byte[] buf;
+    private ByteBuffer window;
+    // start of the current record, start of the next one and end of the data read so far
+    private int start = 0;
+    private int recordEnd = 0;
+    private int limit = 0;
+    private boolean eof = false;
+
+    private int numFields = 0;
+    private int[] offsets = new int[16];
+    private int[] lengths = new int[16];
+
+    /**
+     * @param in the stream to read
+     * @param delimiter the field delimiter
+     * @param quote the quote char, or -1 to turn quoting off
+     */
+    public CSVTokenizer(InputStream in, byte delimiter, int quote) {
+        this(Channels.newChannel(in), null, delimiter, quote, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Read from data already in memory (for example a mapped file), from its position to its limit
+     * @param source the data to read
+     * @param delimiter the field delimiter
+     * @param quote the quote char, or -1 to turn quoting off
+     */
+    public CSVTokenizer(ByteBuffer source, byte delimiter, int quote) {
+        this(null, source.slice(), delimiter, quote, DEFAULT_BUFFER_SIZE);
+    }
+
+    private CSVTokenizer(ReadableByteChannel channel, ByteBuffer source, byte delimiter, int quote, int bufferSize) {
+        if(delimiter == '\n' || delimiter == '\r' || delimiter == quote)
+            throw new IllegalArgumentException("Delimiter can't be a line break or the quote char");
+        this.channel = channel;
+        this.source = source;
+        this.delimiter = delimiter;
+        this.quote = quote;
+        this.buf = new byte[bufferSize];
+        this.window = ByteBuffer.wrap(buf);
+    }
+
+    /**
+     * Move to the next record
+     * @return false if there are no more records
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        start = recordEnd;
+        numFields = 0;
+        if(start == limit && !fill())
+            return false;
+
+        // positions are relative to start, which moves when fill() compacts the buffer
+        int pos = 0;
+        while(true) {
+            int write = pos;
+            int fieldStart = pos;
+            boolean quoted = false;
+
+            if(quote >= 0 && buf[start + pos] == quote) {
+                // quoted part, unescaped in place
+                quoted = true;
+                fieldStart = write = ++pos;
+                while(true) {
+                    if(start + pos == limit && !fill())
+                        break;
+                    byte b = buf[start + pos];
+                    if(b == quote) {
+                        if(start + pos + 1 == limit && !fill()) {
+                            pos++;
+                            break;
+                        }
+                        if(buf[start + pos + 1] != quote) {
+                            pos++;
+                            break;
+                        }
+                        pos++;
+                    }
+                    buf[start + write++] = buf[start + pos++];
+                }
+            }
+
+            // unquoted part, or whatever follows a closing quote
+            int end;
+            while(true) {
+                if(start + pos == limit && !fill()) {
+                    // end of the input ends the record
+                    end = '\n';
+                    break;
+                }
+                byte b = buf[start + pos];
+                if(b == delimiter || b == '\n') {
+                    end = b;
+                    pos++;
+                    break;
+                }
+                if(b == '\r') {
+                    if(start + pos + 1 == limit)
+                        fill();
+                    if(start + pos + 1 < limit && buf[start + pos + 1] == '\n') {
+                        end = '\n';
+                        pos += 2;
+                        break;
+                    }
+                }
+                if(quoted)
+                    buf[start + write] = b;
+                write++;
+                pos++;
+            }
+
+            addField(fieldStart, write - fieldStart);
+
+            if(end != delimiter) {
+                recordEnd = start + pos;
+                return true;
+            }
+
+            if(start + pos == limit && !fill()) {
+                // delimiter right before the end of the input: one last empty field
+                addField(pos, 0);
+                recordEnd = start + pos;
+                return true;
+            }
+        }
+    }
+
+    public int numFields() {
+        return numFields;
+    }
+
+    /**
+     * The buffer holding the fields of the current record
+     */
+    public byte[] getBuffer() {
+        return buf;
+    }
+
+    public int getFieldOffset(int field) {
+        checkField(field);
+        return start + offsets[field];
+    }
+
+    public int getFieldLength(int field) {
+        checkField(field);
+        return lengths[field];
+    }
+
+    /**
+     * Decode a field of the current record as utf-8
+     */
+    public String getField(int field) {
+        checkField(field);
+        return new String(buf, start + offsets[field], lengths[field], StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(channel != null)
+            channel.close();
+    }
+
+    private void checkField(int field) {
+        if(field < 0 || field >= numFields)
+            throw new IndexOutOfBoundsException("Field " + field + " out of " + numFields);
+    }
+
+    private void addField(int offset, int length) {
+        if(numFields == offsets.length) {
+            offsets = Arrays.copyOf(offsets, 2 * numFields);
+            lengths = Arrays.copyOf(lengths, 2 * numFields);
+        }
+        offsets[numFields] = offset;
+        lengths[numFields] = length;
+        numFields++;
+    }
+
+    /**
+     * Read more data after limit. If the buffer is full, the current record is moved to the front
+     * of it, or the buffer grows when the record already takes up most of it.
+     * Field offsets are kept relative to the record start, so they stay valid either way.
+     * @return false if there is no more data
+     */
+    private boolean fill() throws IOException {
+        if(eof)
+            return false;
+
+        if(limit == buf.length) {
+            int length = limit - start;
+            if(start > 0 && length <= buf.length / 2) {
+                System.arraycopy(buf, start, buf, 0, length);
+            }
+            else {
+                byte[] grown = new byte[2 * buf.length];
+                System.arraycopy(buf, start, grown, 0, length);
+                buf = grown;
+                window = ByteBuffer.wrap(buf);
+            }
+            recordEnd -= start;
+            limit = length;
+            start = 0;
+        }
+
+        window.limit(buf.length).position(limit);
+        int read;
+        if(source != null) {
+            read = Math.min(source.remaining(), window.remaining());
+            if(read == 0) {
+                read = -1;
+            }
+            else {
+                source.get(buf, limit, read);
+            }
+        }
+        else {
+            do {
+                read = channel.read(window);
+            } while(read == 0);
+        }
+
+        if(read < 0) {
+            eof = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+}
@@ -41,9 +41,11 @@ import java.util.Map;
  * @author Adam Gibson
  */
 public class CollectionRecordReader implements RecordReader {
+    private final Collection<? extends Collection<Writable>> original;
     private Iterator<? extends Collection<Writable>> records;
 
     public CollectionRecordReader(Collection<? extends Collection<Writable>> records) {
+        this.original = records;
         this.records = records.iterator();
     }
 
@@ -88,6 +90,7 @@ public class CollectionRecordReader implements RecordReader {
 
     @Override
     public void reset() {
+        records = original.iterator();
     }
 
     @Override
@@ -24,6 +24,7 @@ import org.canova.api.conf.Configuration;
 import org.canova.api.io.data.DoubleWritable;
 import org.canova.api.io.data.IntWritable;
 import org.canova.api.io.data.Text;
+import org.canova.api.records.RecordBatch;
 import org.canova.api.records.reader.LibSvm;
 import org.canova.api.split.InputSplit;
 import org.canova.api.writable.Writable;
@@ -117,6 +118,52 @@ public class LibSvmRecordReader extends LineRecordReader implements LibSvm {
         return record;
     }
 
+    @Override
+    protected void parseLine(String line, RecordBatch batch, int row) {
+        String[] tokens = line.trim().split("\\s+");
+        double response;
+        try {
+            response = Integer.parseInt(tokens[0]);
+        } catch (NumberFormatException e) {
+            try {
+                response = Double.parseDouble(tokens[0]);
+                classification = false;
+            } catch (NumberFormatException ex) {
+                throw new NumberFormatException("Unrecognized response variable value: " + tokens[0]);
+            }
+        }
+
+        int read = 0;
+        for (int k = 1; k < tokens.length; k++) {
+            String pair = tokens[k];
+            int colon = pair.indexOf(':');
+            if (colon < 0 || pair.indexOf(':', colon + 1) >= 0) {
+                throw new NumberFormatException("Invalid data: " + tokens[k]);
+            }
+
+            int j = Integer.parseInt(pair.substring(0, colon)) - 1;
+            while(j != read){
+                batch.setDouble(row, read, 0.0);
+                read++;
+            }
+            String value = pair.substring(colon + 1);
+            try {
+                batch.setInt(row, read, Integer.parseInt(value));
+            }catch(NumberFormatException e) {
+                batch.setDouble(row, read, Double.parseDouble(value));
+            }
+            read++;
+        }
+        while( read < numFeatures ){
+            batch.setDouble(row, read, 0.0);
+            read++;
+        }
+
+        if(classification && appendLabel || !classification) {
+            batch.setDouble(row, read, response);
+        }
+    }
+
     @Override
     public boolean hasNext() {
         return super.hasNext();
@@ -24,9 +24,12 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.LineIterator;
 import org.canova.api.conf.Configuration;
 import org.canova.api.io.data.Text;
-import org.canova.api.records.reader.RecordReader;
+import org.canova.api.records.RecordBatch;
+import org.canova.api.records.reader.BatchRecordReader;
+import org.canova.api.split.FileRangeSplit;
 import org.canova.api.split.FileSplit;
 import org.canova.api.split.InputSplit;
+import org.canova.api.split.InputStreamInputSplit;
 import org.canova.api.split.StringSplit;
 import org.canova.api.writable.Writable;
 
@@ -42,7 +45,7 @@ import java.util.*;
  *
  * @author Adam Gibson
  */
-public class LineRecordReader implements RecordReader {
+public class LineRecordReader implements BatchRecordReader {
 
 
     private Iterator<String> iter;
@@ -57,6 +60,14 @@ public class LineRecordReader implements RecordReader {
             StringSplit stringSplit = (StringSplit) split;
             iter = Arrays.asList(stringSplit.getData()).listIterator();
         }
+        else if(split instanceof FileRangeSplit) {
+            this.locations = split.locations();
+            iter = IOUtils.lineIterator(new InputStreamReader(((FileRangeSplit) split).openStream()));
+        }
+        else if(split instanceof InputStreamInputSplit) {
+            this.locations = split.locations();
+            iter = IOUtils.lineIterator(new InputStreamReader(((InputStreamInputSplit) split).getIs()));
+        }
         else {
             this.locations = split.locations();
             if (locations != null && locations.length > 0) {
@@ -74,10 +85,17 @@ public class LineRecordReader implements RecordReader {
     @Override
     public Collection<Writable> next() {
         List<Writable> ret = new ArrayList<>();
+        ret.add(new Text(nextLine()));
+        return ret;
+    }
 
+    /**
+     * Read the next line, moving on to the next location when the current one runs out
+     * @return the next line
+     */
+    protected String nextLine() {
         if(iter.hasNext()) {
-            ret.add(new Text(iter.next()));
-            return ret;
+            return iter.next();
         }
         else {
             currIndex++;
@@ -89,8 +107,7 @@ public class LineRecordReader implements RecordReader {
             }
 
             if(iter.hasNext()) {
-                ret.add(new Text(iter.next()));
-                return ret;
+                return iter.next();
             }
 
         }
@@ -98,6 +115,30 @@ public class LineRecordReader implements RecordReader {
         throw new NoSuchElementException("No more elements found!");
     }
 
+    @Override
+    public RecordBatch nextBatch(int num) {
+        return nextBatch(new RecordBatch(num));
+    }
+
+    @Override
+    public RecordBatch nextBatch(RecordBatch batch) {
+        batch.clear();
+        while(!batch.isFull() && hasNext())
+            parseLine(nextLine(), batch, batch.addRow());
+        return batch;
+    }
+
+    /**
+     * Parse a line into a row of a batch; the same values {@link #next()} returns.
+     * By default the whole line goes into the first column.
+     * @param line the line
+     * @param batch the batch
+     * @param row the row to fill
+     */
+    protected void parseLine(String line, RecordBatch batch, int row) {
+        batch.setString(row, 0, line);
+    }
+
     @Override
     public boolean hasNext() {
         return iter != null && iter.hasNext();
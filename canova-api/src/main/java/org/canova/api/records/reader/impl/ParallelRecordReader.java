@@ -0,0 +1,340 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records.reader.impl;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.exceptions.UnknownFormatException;
+import org.canova.api.records.reader.RecordReader;
+import org.canova.api.records.reader.factory.RecordReaderFactory;
+import org.canova.api.split.FileSplit;
+import org.canova.api.split.InputSplit;
+import org.canova.api.util.ReflectionUtils;
+import org.canova.api.writable.Writable;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the locations of a split concurrently, one reader per location,
+ * with up to {@link #NUM_THREADS} locations open at a time.
+ * Readers come from a {@link RecordReaderFactory}, so any per file reader works.
+ *
+ * Records come out either
+ * - ordered: round robin over the open locations, in location order
+ *   (a location that runs out is replaced by the next unread one), the same order on every run
+ * - as available: whichever location has a record ready first
+ *
+ * Each open location reads at most {@link #BUFFER_SIZE} records ahead.
+ * If a location fails, the other locations stop being read and every later
+ * {@link #hasNext()} and {@link #next()} throws the failure.
+ */
+public class ParallelRecordReader implements RecordReader {
+
+    public final static String NUM_THREADS = NAME_SPACE + ".parallel.threads";
+    public final static String BUFFER_SIZE = NAME_SPACE + ".parallel.buffersize";
+    public final static String ORDERED = NAME_SPACE + ".parallel.ordered";
+    public final static int DEFAULT_BUFFER_SIZE = 64;
+
+    // marks the end of a location
+    private static final Object END = new Object();
+
+    private final RecordReaderFactory factory;
+    private int numThreads;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private boolean ordered;
+    private Configuration conf;
+    private InputSplit inputSplit;
+
+    private transient URI[] locations;
+    private transient ExecutorService executor;
+    // ordered: one queue per location; as available: one shared queue
+    private transient BlockingQueue<Object>[] queues;
+    private transient BlockingQueue<Object> shared;
+    // ordered: the locations being read round robin
+    private transient List<Integer> slots;
+    private transient int currentSlot;
+    private transient int nextLocation;
+    private transient int locationsDone;
+    private transient Object nextRecord;
+    // a location failed: thrown again by every later call, until the reader is initialized again
+    private transient IllegalStateException failure;
+
+    /**
+     * @param factory creates an initialized reader for a single location
+     * @param numThreads the number of locations read at the same time
+     * @param ordered whether records come out in the deterministic round robin order
+     */
+    public ParallelRecordReader(RecordReaderFactory factory, int numThreads, boolean ordered) {
+        if(numThreads < 1)
+            throw new IllegalArgumentException("Number of threads must be positive");
+        this.factory = factory;
+        this.numThreads = numThreads;
+        this.ordered = ordered;
+    }
+
+    /**
+     * A factory that creates a reader of the given class and initializes it on the file at the uri
+     * @param clazz the reader class, needs a no arg constructor
+     * @param conf the configuration to initialize the readers with, may be null
+     * @return the factory
+     */
+    public static RecordReaderFactory factory(final Class<? extends RecordReader> clazz, final Configuration conf) {
+        return new RecordReaderFactory() {
+            @Override
+            public RecordReader create(URI uri) throws UnknownFormatException {
+                RecordReader reader = ReflectionUtils.newInstance(clazz, conf);
+                try {
+                    if(conf != null)
+                        reader.initialize(conf, new FileSplit(new File(uri)));
+                    else
+                        reader.initialize(new FileSplit(new File(uri)));
+                } catch (IOException | InterruptedException e) {
+                    throw new UnknownFormatException("Unable to read " + uri, e);
+                }
+                return reader;
+            }
+        };
+    }
+
+    @Override
+    public void initialize(InputSplit split) throws IOException, InterruptedException {
+        shutdown();
+        this.inputSplit = split;
+        this.locations = split.locations() == null ? new URI[0] : split.locations();
+        start();
+    }
+
+    @Override
+    public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
+        this.conf = conf;
+        numThreads = conf.getInt(NUM_THREADS, numThreads);
+        bufferSize = conf.getInt(BUFFER_SIZE, bufferSize);
+        ordered = conf.getBoolean(ORDERED, ordered);
+        initialize(split);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void start() {
+        nextRecord = null;
+        failure = null;
+        locationsDone = 0;
+        currentSlot = 0;
+        slots = new ArrayList<>();
+        shared = null;
+        queues = null;
+
+        executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "canova-parallel-reader-" + count++);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        if(ordered) {
+            queues = new BlockingQueue[locations.length];
+            for(int i = 0; i < locations.length; i++)
+                queues[i] = new LinkedBlockingQueue<>(bufferSize);
+            for(nextLocation = 0; nextLocation < Math.min(numThreads, locations.length); nextLocation++)
+                slots.add(nextLocation);
+        }
+        else {
+            shared = new LinkedBlockingQueue<>(bufferSize * numThreads);
+        }
+
+        // the pool runs these in order, so the open locations are always the first unfinished ones
+        for(int i = 0; i < locations.length; i++) {
+            final URI location = locations[i];
+            final BlockingQueue<Object> queue = ordered ? queues[i] : shared;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    RecordReader reader = null;
+                    try {
+                        reader = factory.create(location);
+                        while(reader.hasNext())
+                            queue.put(reader.next());
+                        queue.put(END);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Throwable t) {
+                        try {
+                            queue.put(new Failure(location, t));
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    } finally {
+                        if(reader != null) {
+                            try {
+                                reader.close();
+                            } catch (IOException e) {
+                                // done with it either way
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(failure != null)
+            throw failure;
+        if(executor == null)
+            return false;
+
+        try {
+            while(nextRecord == null) {
+                Object item;
+                if(ordered) {
+                    if(slots.isEmpty())
+                        return false;
+                    item = queues[slots.get(currentSlot)].take();
+                    if(item == END) {
+                        queues[slots.get(currentSlot)] = null;
+                        // replace the finished location with the next one, keeping its turn
+                        if(nextLocation < locations.length)
+                            slots.set(currentSlot, nextLocation++);
+                        else
+                            slots.remove(currentSlot);
+                        if(currentSlot >= slots.size())
+                            currentSlot = 0;
+                        continue;
+                    }
+                    currentSlot = (currentSlot + 1) % slots.size();
+                }
+                else {
+                    if(locationsDone == locations.length)
+                        return false;
+                    item = shared.take();
+                    if(item == END) {
+                        locationsDone++;
+                        continue;
+                    }
+                }
+
+                if(item instanceof Failure) {
+                    // the failed location never sends its END, so stop here rather than block on it later
+                    failure = new IllegalStateException("Unable to read " + ((Failure) item).location, ((Failure) item).cause);
+                    shutdown();
+                    throw failure;
+                }
+                nextRecord = item;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for records", e);
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Collection<Writable> next() {
+        if(!hasNext())
+            throw new NoSuchElementException("No more elements found!");
+        Collection<Writable> ret = (Collection<Writable>) nextRecord;
+        nextRecord = null;
+        return ret;
+    }
+
+    private void shutdown() {
+        if(executor == null)
+            return;
+        // unblocks workers waiting on full queues
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+        queues = null;
+        shared = null;
+    }
+
+    @Override
+    public void reset() {
+        if(inputSplit == null) throw new UnsupportedOperationException("Cannot reset without first initializing");
+        try {
+            initialize(inputSplit);
+        } catch(Exception e) {
+            throw new RuntimeException("Error during ParallelRecordReader reset", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        shutdown();
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return null;
+    }
+
+    @Override
+    public Collection<Writable> record(URI uri, DataInputStream dataInputStream) throws IOException {
+        try {
+            return factory.create(uri).record(uri, dataInputStream);
+        } catch (UnknownFormatException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
+    private static class Failure {
+        private final URI location;
+        private final Throwable cause;
+
+        private Failure(URI location, Throwable cause) {
+            this.location = location;
+            this.cause = cause;
+        }
+    }
+
+}
@@ -0,0 +1,270 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records.reader.impl;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.records.reader.RecordReader;
+import org.canova.api.split.InputSplit;
+import org.canova.api.writable.Writable;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs another record reader on a background thread, keeping a bounded buffer of records ahead of the caller,
+ * so reading and decoding overlap with whatever consumes the records.
+ *
+ * Records are handed over in chunks of {@link #CHUNK_SIZE} to keep the hand off cheap,
+ * and at most {@link #BUFFER_SIZE} records are held at any time.
+ * An exception in the wrapped reader is rethrown from {@link #hasNext()}/{@link #next()}.
+ * {@link #reset()}, {@link #initialize} and {@link #close()} stop the background thread first.
+ * The wrapped reader must not be used directly while this one is.
+ */
+public class PrefetchingRecordReader implements RecordReader {
+
+    public final static String BUFFER_SIZE = NAME_SPACE + ".prefetch.buffersize";
+    public final static String CHUNK_SIZE = NAME_SPACE + ".prefetch.chunksize";
+    public final static int DEFAULT_BUFFER_SIZE = 64;
+
+    // marks the end of the input on the queue
+    private static final List<Object> END = Collections.emptyList();
+
+    protected RecordReader reader;
+    private int bufferSize;
+    private int chunkSize;
+
+    private transient BlockingQueue<Object> queue;
+    private transient Thread thread;
+    private transient volatile boolean stopped;
+    private transient Iterator<Object> chunk;
+    private transient boolean done;
+
+    public PrefetchingRecordReader(RecordReader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE, 1);
+    }
+
+    public PrefetchingRecordReader(RecordReader reader, int bufferSize) {
+        this(reader, bufferSize, 1);
+    }
+
+    /**
+     * @param reader the reader to run in the background; may already be initialized
+     * @param bufferSize the maximum number of records read ahead
+     * @param chunkSize the number of records handed over at once
+     */
+    public PrefetchingRecordReader(RecordReader reader, int bufferSize, int chunkSize) {
+        if(bufferSize < 1 || chunkSize < 1)
+            throw new IllegalArgumentException("Buffer and chunk size must be positive");
+        this.reader = reader;
+        this.bufferSize = bufferSize;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void initialize(InputSplit split) throws IOException, InterruptedException {
+        stop();
+        reader.initialize(split);
+    }
+
+    @Override
+    public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
+        stop();
+        bufferSize = conf.getInt(BUFFER_SIZE, bufferSize);
+        chunkSize = conf.getInt(CHUNK_SIZE, chunkSize);
+        reader.initialize(conf, split);
+    }
+
+    /**
+     * Read the next item in the background thread
+     */
+    protected Object fetch() {
+        return reader.next();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Collection<Writable> next() {
+        return (Collection<Writable>) nextItem();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean hasNext() {
+        start();
+        while(!done && (chunk == null || !chunk.hasNext())) {
+            Object item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for records", e);
+            }
+
+            if(item == END) {
+                done = true;
+            }
+            else if(item instanceof Failure) {
+                done = true;
+                throw new IllegalStateException("Prefetching reader failed", ((Failure) item).cause);
+            }
+            else {
+                chunk = ((List<Object>) item).iterator();
+            }
+        }
+        return !done;
+    }
+
+    /**
+     * @return the next prefetched item
+     */
+    protected Object nextItem() {
+        if(!hasNext())
+            throw new NoSuchElementException("No more elements found!");
+        return chunk.next();
+    }
+
+    private void start() {
+        if(thread != null)
+            return;
+
+        final int numChunks = Math.max(1, bufferSize / chunkSize);
+        final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(numChunks);
+        this.queue = queue;
+        this.chunk = null;
+        this.done = false;
+        this.stopped = false;
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<Object> items = new ArrayList<>(chunkSize);
+                    while(!stopped && reader.hasNext()) {
+                        items.add(fetch());
+                        if(items.size() == chunkSize) {
+                            if(!put(queue, items))
+                                return;
+                            items = new ArrayList<>(chunkSize);
+                        }
+                    }
+                    if(!items.isEmpty() && !put(queue, items))
+                        return;
+                    put(queue, END);
+                } catch (Throwable t) {
+                    put(queue, new Failure(t));
+                }
+            }
+        }, "canova-prefetch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Block until there is room on the queue
+     * @return false if stopped in the meantime
+     */
+    private boolean put(BlockingQueue<Object> queue, Object item) {
+        try {
+            while(!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                if(stopped)
+                    return false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stop the background thread, waiting for it to finish its current read
+     */
+    private void stop() {
+        if(thread == null)
+            return;
+
+        stopped = true;
+        boolean interrupted = false;
+        while(thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted)
+            Thread.currentThread().interrupt();
+
+        thread = null;
+        queue = null;
+        chunk = null;
+    }
+
+    @Override
+    public void reset() {
+        stop();
+        reader.reset();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stop();
+        reader.close();
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return reader.getLabels();
+    }
+
+    @Override
+    public Collection<Writable> record(URI uri, DataInputStream dataInputStream) throws IOException {
+        return reader.record(uri, dataInputStream);
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        reader.setConf(conf);
+    }
+
+    @Override
+    public Configuration getConf() {
+        return reader.getConf();
+    }
+
+    private static class Failure {
+        private final Throwable cause;
+
+        private Failure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records.reader.impl;
+
+import org.canova.api.records.reader.SequenceRecordReader;
+import org.canova.api.writable.Writable;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collection;
+
+/**
+ * Prefetches whole sequences of another sequence record reader on a background thread.
+ * See {@link PrefetchingRecordReader}; only {@link #sequenceRecord()} is prefetched,
+ * so {@link #next()} isn't supported.
+ */
+public class PrefetchingSequenceRecordReader extends PrefetchingRecordReader implements SequenceRecordReader {
+
+    public PrefetchingSequenceRecordReader(SequenceRecordReader reader) {
+        super(reader);
+    }
+
+    public PrefetchingSequenceRecordReader(SequenceRecordReader reader, int bufferSize) {
+        super(reader, bufferSize);
+    }
+
+    @Override
+    protected Object fetch() {
+        return ((SequenceRecordReader) reader).sequenceRecord();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Collection<Collection<Writable>> sequenceRecord() {
+        return (Collection<Collection<Writable>>) nextItem();
+    }
+
+    @Override
+    public Collection<Writable> next() {
+        throw new UnsupportedOperationException("Only sequence records are prefetched, use sequenceRecord()");
+    }
+
+    @Override
+    public Collection<Collection<Writable>> sequenceRecord(URI uri, DataInputStream dataInputStream) throws IOException {
+        return ((SequenceRecordReader) reader).sequenceRecord(uri, dataInputStream);
+    }
+
+}
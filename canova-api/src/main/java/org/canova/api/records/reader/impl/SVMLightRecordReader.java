@@ -24,6 +24,7 @@ package org.canova.api.records.reader.impl;
 import org.canova.api.conf.Configuration;
 import org.canova.api.io.data.DoubleWritable;
 import org.canova.api.io.data.Text;
+import org.canova.api.records.RecordBatch;
 import org.canova.api.split.InputSplit;
 import org.canova.api.writable.Writable;
 import org.slf4j.Logger;
@@ -129,6 +130,36 @@ public class SVMLightRecordReader extends LineRecordReader {
         return ret;
     }
 
+    @Override
+    protected void parseLine(String val, RecordBatch batch, int row) {
+        // same layout as next(): zero filled features, then the class
+        try {
+            StringTokenizer tok = new StringTokenizer(val, " \t");
+            double classVal = Double.parseDouble(tok.nextToken());
+            int numAttributesAdded = 0;
+            while (tok.hasMoreTokens()) {
+                String col = tok.nextToken();
+                if (col.startsWith("#"))
+                    break;
+                if (col.startsWith("qid:"))
+                    continue;
+                int colon = col.indexOf(":");
+                int index = Integer.parseInt(col.substring(0, colon)) - 1;
+                while(numAttributesAdded < index)
+                    batch.setDouble(row, numAttributesAdded++, 0.0);
+                batch.setDouble(row, numAttributesAdded++, Double.parseDouble(col.substring(colon + 1)));
+            }
+
+            while(numAttributesAdded < numAttributes)
+                batch.setDouble(row, numAttributesAdded++, 0.0);
+
+            batch.setDouble(row, numAttributesAdded, classVal);
+        }
+        catch (Exception e) {
+            log.error("Error parsing line '" + val + "': ",e);
+        }
+    }
+
     @Override
     public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
         super.initialize(conf, split);
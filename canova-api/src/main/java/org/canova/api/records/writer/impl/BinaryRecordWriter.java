@@ -0,0 +1,228 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records.writer.impl;
+
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.io.DataOutputBuffer;
+import org.canova.api.util.RecordUtils;
+import org.canova.api.writable.Writable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Binary record writer.
+ *
+ * Records are written in blocks of up to {@link #BLOCK_SIZE} records.
+ * All records of a block have the same writable types, stored column by column
+ * with {@link Writable#write}, so they can be read back without any parsing.
+ *
+ * File layout:
+ * <pre>
+ * file header:  MAGIC, VERSION
+ * block header: number of records, number of columns, type of each column,
+ *               compression, raw length, stored length
+ * block data:   column 0 of every record, column 1 of every record, ...
+ * </pre>
+ * The stored length in each block header gives the offset of the next block,
+ * so readers can skip whole blocks without decoding them.
+ * Blocks are optionally deflate compressed ({@link #COMPRESS}).
+ *
+ * @see org.canova.api.records.reader.impl.BinaryRecordReader
+ */
+public class BinaryRecordWriter extends FileRecordWriter {
+
+    public final static String BLOCK_SIZE = "org.canova.api.records.writer.binary.blocksize";
+    public final static String COMPRESS = "org.canova.api.records.writer.binary.compress";
+
+    public final static byte[] MAGIC = {'C', 'N', 'V', 'B'};
+    public final static int VERSION = 1;
+    public final static byte COMPRESSION_NONE = 0;
+    public final static byte COMPRESSION_DEFLATE = 1;
+    public final static int DEFAULT_BLOCK_SIZE = 1024;
+
+    // no initializers: super(conf) calls setConf before they would run, and they'd undo it
+    private int blockSize;
+    private boolean compress;
+    private boolean headerChecked;
+
+    private final List<Collection<Writable>> block = new ArrayList<>();
+    private List<Class<? extends Writable>> blockTypes;
+    private final DataOutputBuffer data = new DataOutputBuffer();
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] compressed = new byte[0];
+
+    public BinaryRecordWriter() {
+        blockSize = DEFAULT_BLOCK_SIZE;
+    }
+
+    public BinaryRecordWriter(File path) throws FileNotFoundException {
+        this(path, false);
+    }
+
+    public BinaryRecordWriter(File path, boolean append) throws FileNotFoundException {
+        this(path, append, DEFAULT_BLOCK_SIZE, false);
+    }
+
+    /**
+     * @param path the file to write
+     * @param append whether to add blocks to an existing file
+     * @param blockSize the maximum number of records per block
+     * @param compress whether to deflate each block
+     */
+    public BinaryRecordWriter(File path, boolean append, int blockSize, boolean compress) throws FileNotFoundException {
+        super(path, append);
+        if(blockSize < 1)
+            throw new IllegalArgumentException("Block size must be positive");
+        this.blockSize = blockSize;
+        this.compress = compress;
+    }
+
+    public BinaryRecordWriter(Configuration conf) throws FileNotFoundException {
+        super(conf);
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        int blockSize = conf.getInt(BLOCK_SIZE, DEFAULT_BLOCK_SIZE);
+        if(blockSize < 1)
+            throw new IllegalArgumentException("Block size must be positive");
+        this.blockSize = blockSize;
+        compress = conf.getBoolean(COMPRESS, false);
+        super.setConf(conf);
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public boolean isCompress() {
+        return compress;
+    }
+
+    @Override
+    public void write(Collection<Writable> record) throws IOException {
+        if(record.isEmpty())
+            return;
+
+        List<Class<? extends Writable>> types = typesOf(record);
+        if(blockTypes != null && !blockTypes.equals(types))
+            flushBlock();
+        blockTypes = types;
+        block.add(record);
+
+        if(block.size() == blockSize)
+            flushBlock();
+    }
+
+    private static List<Class<? extends Writable>> typesOf(Collection<Writable> record) {
+        List<Class<? extends Writable>> types = new ArrayList<>(record.size());
+        for(Writable w : record)
+            types.add(w.getClass());
+        return types;
+    }
+
+    private void flushBlock() throws IOException {
+        if(block.isEmpty())
+            return;
+
+        if(!headerChecked) {
+            // appending to an existing file: it already has a header
+            if(writeTo == null || writeTo.length() == 0) {
+                out.write(MAGIC);
+                out.writeByte(VERSION);
+            }
+            headerChecked = true;
+        }
+
+        int numColumns = blockTypes.size();
+        List<Iterator<Writable>> rows = new ArrayList<>(block.size());
+        for(Collection<Writable> record : block)
+            rows.add(record.iterator());
+
+        data.reset();
+        for(int column = 0; column < numColumns; column++) {
+            for(Iterator<Writable> row : rows)
+                row.next().write(data);
+        }
+
+        byte[] payload = data.getData();
+        int rawLength = data.getLength();
+        int storedLength = rawLength;
+        byte compression = COMPRESSION_NONE;
+        if(compress) {
+            int length = deflate(payload, rawLength);
+            // only worth it if it got smaller
+            if(length < rawLength) {
+                payload = compressed;
+                storedLength = length;
+                compression = COMPRESSION_DEFLATE;
+            }
+        }
+
+        out.writeInt(block.size());
+        out.writeInt(numColumns);
+        for(Class<? extends Writable> type : blockTypes)
+            RecordUtils.writeType(out, type);
+        out.writeByte(compression);
+        out.writeInt(rawLength);
+        out.writeInt(storedLength);
+        out.write(payload, 0, storedLength);
+
+        block.clear();
+        blockTypes = null;
+    }
+
+    private int deflate(byte[] input, int length) {
+        deflater.reset();
+        deflater.setInput(input, 0, length);
+        deflater.finish();
+        if(compressed.length < length)
+            compressed = new byte[length];
+        int total = 0;
+        while(!deflater.finished()) {
+            if(total == compressed.length)
+                compressed = Arrays.copyOf(compressed, 2 * compressed.length + 64);
+            total += deflater.deflate(compressed, total, compressed.length - total);
+        }
+        return total;
+    }
+
+    @Override
+    public void close() {
+        try {
+            flushBlock();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write the last block to " + writeTo, e);
+        } finally {
+            deflater.end();
+            super.close();
+        }
+    }
+}
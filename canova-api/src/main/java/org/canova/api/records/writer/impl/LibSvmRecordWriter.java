@@ -21,6 +21,7 @@
 package org.canova.api.records.writer.impl;
 
 import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.records.reader.LibSvm;
 import org.canova.api.writable.Writable;
 
@@ -72,16 +73,28 @@ public class LibSvmRecordWriter extends LineRecordWriter implements LibSvm {
             write.append(response);
         write.append(" ");
 
+        // column of the next value; a sparse vector takes up as many columns as its size
+        int column = 0;
         for(int i = 0; i < asList.size() - 1; i++) {
+            if(asList.get(i) instanceof SparseVectorWritable) {
+                SparseVectorWritable vector = (SparseVectorWritable) asList.get(i);
+                for(int j = 0; j < vector.numEntries(); j++) {
+                    if(vector.getValue(j) != 0.0)
+                        write.append((column + vector.getIndex(j) + 1) + ":" + vector.getValue(j) + " ");
+                }
+                column += vector.size();
+                continue;
+            }
+            column++;
             //sparse format
             double val = Double.valueOf(asList.get(i).toString());
             if(val == 0.0)
                 continue;
             try {
-                write.append((i + 1)  + ":" + Integer.valueOf(asList.get(i).toString()));
+                write.append(column  + ":" + Integer.valueOf(asList.get(i).toString()));
             }
             catch(NumberFormatException e) {
-                write.append((i + 1)  + ":" + Double.valueOf(asList.get(i).toString()));
+                write.append(column  + ":" + Double.valueOf(asList.get(i).toString()));
 
             }
             if(i < asList.size() - 1)
@@ -22,6 +22,7 @@ package org.canova.api.records.writer.impl;
 
 
 import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.writable.Writable;
 
 import java.io.*;
@@ -63,13 +64,27 @@ public class SVMLightRecordWriter extends FileRecordWriter {
 
             // get only the non-zero entries
             Double value = 0.0;
+            // column of the next value; a sparse vector takes up as many columns as its size
+            int column = 0;
             
             for (int i = 0; i < recordList.size() - 1; i++) {
 
+                if (recordList.get(i) instanceof SparseVectorWritable) {
+                    SparseVectorWritable vector = (SparseVectorWritable) recordList.get(i);
+                    for (int j = 0; j < vector.numEntries(); j++) {
+                        if (vector.getValue(j) > 0.0) {
+                            result.append(" " + (column + vector.getIndex(j) + 1) + ":" + vector.getValue(j));
+                        }
+                    }
+                    column += vector.size();
+                    continue;
+                }
+
+                column++;
                 value = Double.valueOf(recordList.get(i).toString());
 
                 if ( value > 0.0 ) {
-                	result.append(" " + (i + 1) + ":"
+                	result.append(" " + column + ":"
                         + Double.valueOf(recordList.get(i).toString()));
                 }
                 
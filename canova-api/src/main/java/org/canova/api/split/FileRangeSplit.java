@@ -0,0 +1,239 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.split;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A byte range of a single file, starting at the beginning of a line.
+ *
+ * Use {@link #split(File, int)} to cut a large line oriented file into ranges
+ * that can be read concurrently (by threads, or spark partitions);
+ * {@link #map()} memory maps the whole range and {@link #openStream()} reads it through mapped windows,
+ * instead of reading the file through a stream.
+ * Records must not contain line breaks (so no quoted multi line csv fields).
+ */
+public class FileRangeSplit extends BaseInputSplit {
+
+    // how much of the range is mapped at once
+    private static final long MAP_WINDOW = 256L * 1024 * 1024;
+
+    private File file;
+    private long start;
+    private long end;
+
+    public FileRangeSplit() {
+    }
+
+    /**
+     * @param file the file
+     * @param start the first byte of the range, the start of a line
+     * @param end the byte after the range, the start of a line or the end of the file
+     */
+    public FileRangeSplit(File file, long start, long end) {
+        if(start < 0 || end < start)
+            throw new IllegalArgumentException("Invalid range " + start + "-" + end);
+        this.file = file;
+        this.start = start;
+        this.end = end;
+        this.locations = new URI[] {file.toURI()};
+    }
+
+    /**
+     * Split a file into roughly equal ranges, each starting at the beginning of a line
+     * @param file the file to split
+     * @param numSplits the number of ranges wanted; fewer come back if the file has fewer lines
+     * @return the ranges, in file order
+     * @throws IOException
+     */
+    public static List<FileRangeSplit> split(File file, int numSplits) throws IOException {
+        if(numSplits < 1)
+            throw new IllegalArgumentException("Number of splits must be positive");
+
+        List<FileRangeSplit> splits = new ArrayList<>(numSplits);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long size = raf.length();
+            long start = 0;
+            for(int i = 1; i <= numSplits && start < size; i++) {
+                long end = i == numSplits ? size : Math.max(start, nextLineStart(raf, size * i / numSplits));
+                if(end > start) {
+                    splits.add(new FileRangeSplit(file, start, end));
+                    start = end;
+                }
+            }
+        }
+        return splits;
+    }
+
+    /**
+     * @return the start of the first line at or after pos
+     */
+    private static long nextLineStart(RandomAccessFile raf, long pos) throws IOException {
+        long size = raf.length();
+        if(pos <= 0)
+            return 0;
+        // pos starts a line if the byte before it ends one
+        raf.seek(pos - 1);
+        byte[] buf = new byte[8192];
+        long offset = pos - 1;
+        int read;
+        while((read = raf.read(buf)) > 0) {
+            for(int i = 0; i < read; i++) {
+                if(buf[i] == '\n')
+                    return offset + i + 1;
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    /**
+     * Memory map the whole range. The mapping stays valid after the file is closed.
+     * @return a buffer over the bytes in the range
+     * @throws IOException
+     * @throws IllegalStateException if the range is too large for a single mapping, see {@link #openStream()}
+     */
+    public MappedByteBuffer map() throws IOException {
+        if(!isMappable())
+            throw new IllegalStateException("Range " + this + " is too large to map at once");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        }
+    }
+
+    /**
+     * @return whether the range fits in a single mapping
+     */
+    public boolean isMappable() {
+        return end - start <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Open the range as a stream over memory mapped windows of the file
+     * @return a stream of the bytes in the range
+     * @throws IOException
+     */
+    public InputStream openStream() throws IOException {
+        return new MappedRangeInputStream(new RandomAccessFile(file, "r").getChannel(), start, end);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    @Override
+    public long length() {
+        return end - start;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeUTF(file.getPath());
+        out.writeLong(start);
+        out.writeLong(end);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        file = new File(in.readUTF());
+        start = in.readLong();
+        end = in.readLong();
+        locations = new URI[] {file.toURI()};
+    }
+
+    @Override
+    public String toString() {
+        return file + ":" + start + "-" + end;
+    }
+
+    private static class MappedRangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+        private MappedByteBuffer window;
+
+        private MappedRangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        /**
+         * @return false at the end of the range
+         */
+        private boolean ensureWindow() throws IOException {
+            if(window != null && window.hasRemaining())
+                return true;
+            if(position >= end)
+                return false;
+            long size = Math.min(MAP_WINDOW, end - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            position += size;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return ensureWindow() ? window.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(len == 0)
+                return 0;
+            if(!ensureWindow())
+                return -1;
+            int n = Math.min(len, window.remaining());
+            window.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return window == null ? 0 : window.remaining();
+        }
+
+        @Override
+        public void close() throws IOException {
+            window = null;
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.util;
+
+/**
+ * MurmurHash3, x86 32 bit variant.
+ *
+ * Strings are hashed as their UTF-8 bytes, encoded on the fly, so the hashes
+ * match other MurmurHash3 implementations (feature hashing in other tools) without
+ * allocating a byte array per string.
+ */
+public class MurmurHash3 {
+
+    private static final int C1 = 0xcc9e2d51;
+    private static final int C2 = 0x1b873593;
+
+    private MurmurHash3() {
+    }
+
+    /**
+     * Hash a range of bytes
+     * @param data the bytes
+     * @param offset where the range starts
+     * @param length the length of the range
+     * @param seed the seed
+     * @return the hash
+     */
+    public static int hash32(byte[] data, int offset, int length, int seed) {
+        int h = seed;
+        int end = offset + (length & ~3);
+        for(int i = offset; i < end; i += 4) {
+            int k = (data[i] & 0xff) | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff) << 16 | data[i + 3] << 24;
+            h = mixH(h, mixK(k));
+        }
+
+        int k = 0;
+        switch(length & 3) {
+            case 3:
+                k ^= (data[end + 2] & 0xff) << 16;
+            case 2:
+                k ^= (data[end + 1] & 0xff) << 8;
+            case 1:
+                k ^= data[end] & 0xff;
+                h ^= mixK(k);
+        }
+        return fmix(h, length);
+    }
+
+    /**
+     * Hash the UTF-8 encoding of a string
+     * @param s the string
+     * @param seed the seed
+     * @return the hash, the same as hashing the UTF-8 bytes of the string
+     */
+    public static int hash32(CharSequence s, int seed) {
+        int h = seed;
+        // bytes not yet mixed in, little endian, and how many
+        int k = 0;
+        int shift = 0;
+        int length = 0;
+        for(int i = 0; i < s.length(); i++) {
+            int c = s.charAt(i);
+            int numBytes;
+            int bytes;
+            if(c < 0x80) {
+                numBytes = 1;
+                bytes = c;
+            }
+            else if(c < 0x800) {
+                numBytes = 2;
+                bytes = (0xc0 | c >> 6) | (0x80 | c & 0x3f) << 8;
+            }
+            else if(Character.isSurrogate((char) c)) {
+                if(Character.isHighSurrogate((char) c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint((char) c, s.charAt(++i));
+                    numBytes = 4;
+                    bytes = (0xf0 | cp >> 18) | (0x80 | cp >> 12 & 0x3f) << 8 | (0x80 | cp >> 6 & 0x3f) << 16 | (0x80 | cp & 0x3f) << 24;
+                }
+                else {
+                    // unpaired surrogates encode as '?', like String.getBytes
+                    numBytes = 1;
+                    bytes = '?';
+                }
+            }
+            else {
+                numBytes = 3;
+                bytes = (0xe0 | c >> 12) | (0x80 | c >> 6 & 0x3f) << 8 | (0x80 | c & 0x3f) << 16;
+            }
+
+            for(int b = 0; b < numBytes; b++) {
+                k |= (bytes >>> (b * 8) & 0xff) << shift;
+                shift += 8;
+                if(shift == 32) {
+                    h = mixH(h, mixK(k));
+                    k = 0;
+                    shift = 0;
+                }
+            }
+            length += numBytes;
+        }
+
+        if(shift > 0)
+            h ^= mixK(k);
+        return fmix(h, length);
+    }
+
+    private static int mixK(int k) {
+        k *= C1;
+        k = Integer.rotateLeft(k, 15);
+        return k * C2;
+    }
+
+    private static int mixH(int h, int k) {
+        h ^= k;
+        h = Integer.rotateLeft(h, 13);
+        return h * 5 + 0xe6546b64;
+    }
+
+    private static int fmix(int h, int length) {
+        h ^= length;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -20,11 +20,21 @@
 
 package org.canova.api.util;
 
+import org.canova.api.io.WritableUtils;
+import org.canova.api.io.data.BooleanWritable;
+import org.canova.api.io.data.ByteWritable;
 import org.canova.api.io.data.DoubleWritable;
 import org.canova.api.io.data.FloatWritable;
+import org.canova.api.io.data.IntWritable;
+import org.canova.api.io.data.LongWritable;
+import org.canova.api.io.data.Text;
 import org.canova.api.writable.Writable;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -35,6 +45,11 @@ import java.util.List;
  */
 public class RecordUtils {
 
+    // one byte tags for the common writables, anything else is tagged -1 and followed by its class name
+    private static final List<Class<? extends Writable>> WRITABLE_TYPES = Arrays.<Class<? extends Writable>>asList(
+            Text.class, DoubleWritable.class, FloatWritable.class, IntWritable.class,
+            LongWritable.class, BooleanWritable.class, ByteWritable.class);
+
     public static Collection<Writable> toRecord(double[] record) {
         List<Writable> ret = new ArrayList<>(record.length);
         for(int i = 0; i < record.length; i++)
@@ -52,4 +67,71 @@ public class RecordUtils {
         return ret;
     }
 
+
+    /**
+     * Write a record in a compact binary form: the number of writables,
+     * then a type tag and the {@link Writable#write} output of each one
+     * @param out the output to write to
+     * @param record the record to write
+     * @throws IOException
+     */
+    public static void writeRecord(DataOutput out, Collection<Writable> record) throws IOException {
+        WritableUtils.writeVInt(out, record.size());
+        for(Writable w : record) {
+            writeType(out, w.getClass());
+            w.write(out);
+        }
+    }
+
+    /**
+     * Write a compact tag for a writable class: one byte for the common writables,
+     * the class name for anything else
+     * @param out the output to write to
+     * @param clazz the class to write
+     * @throws IOException
+     */
+    public static void writeType(DataOutput out, Class<? extends Writable> clazz) throws IOException {
+        int type = WRITABLE_TYPES.indexOf(clazz);
+        out.writeByte(type);
+        if(type < 0)
+            WritableUtils.writeString(out, clazz.getName());
+    }
+
+    /**
+     * Read a tag written by {@link #writeType(DataOutput, Class)}
+     * @param in the input to read from
+     * @return the writable class
+     * @throws IOException
+     */
+    public static Class<? extends Writable> readType(DataInput in) throws IOException {
+        int type = in.readByte();
+        if(type >= 0)
+            return WRITABLE_TYPES.get(type);
+
+        String className = WritableUtils.readString(in);
+        try {
+            return Class.forName(className).asSubclass(Writable.class);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown writable class " + className, e);
+        }
+    }
+
+    /**
+     * Read a record written by {@link #writeRecord(DataOutput, Collection)}
+     * @param in the input to read from
+     * @return the record
+     * @throws IOException
+     */
+    public static Collection<Writable> readRecord(DataInput in) throws IOException {
+        int size = WritableUtils.readVInt(in);
+        List<Writable> ret = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            Writable w = ReflectionUtils.newInstance(readType(in), null);
+            w.readFields(in);
+            ret.add(w);
+        }
+
+        return ret;
+    }
+
 }
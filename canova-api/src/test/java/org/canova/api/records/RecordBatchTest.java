@@ -0,0 +1,116 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records;
+
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.IntWritable;
+import org.canova.api.io.data.Text;
+import org.canova.api.writable.Writable;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class RecordBatchTest {
+
+    @Test
+    public void testColumns() {
+        RecordBatch batch = new RecordBatch(3);
+        int row = batch.addRow();
+        batch.setInt(row, 0, 7);
+        batch.setString(row, 1, "\u00e9\u6f22\ud83d\ude00");
+        row = batch.addRow();
+        batch.setDouble(row, 0, 0.5);
+        batch.setNull(row, 1);
+        batch.setInt(row, 2, 3);
+
+        // the int column got a double, so it holds doubles now
+        assertEquals(RecordBatch.ColumnType.DOUBLE, batch.getColumnType(0));
+        assertEquals(7.0, batch.getDoubleColumn(0)[0], 0.0);
+        assertEquals(RecordBatch.ColumnType.INT, batch.getColumnType(2));
+        assertEquals("\u00e9\u6f22\ud83d\ude00", batch.getString(0, 1));
+        assertEquals(9, batch.getLengths(1)[0]);
+        assertFalse(batch.isValid(1, 1));
+
+        assertEquals(Arrays.<Writable>asList(new DoubleWritable(7.0), new Text("\u00e9\u6f22\ud83d\ude00")), batch.getRecord(0));
+        assertEquals(Arrays.<Writable>asList(new DoubleWritable(0.5), new Text(""), new IntWritable(3)), batch.getRecord(1));
+    }
+
+    @Test
+    public void testClearReusesBatch() {
+        RecordBatch batch = new RecordBatch(2);
+        batch.setString(batch.addRow(), 0, "a");
+        batch.setString(batch.addRow(), 0, "b");
+        assertTrue(batch.isFull());
+
+        batch.clear();
+        assertEquals(0, batch.numRows());
+        assertEquals(0, batch.numColumns());
+
+        batch.setDouble(batch.addRow(), 0, 1.0);
+        double[] before = batch.getDoubleColumn(0);
+        batch.clear();
+        batch.setDouble(batch.addRow(), 0, 2.0);
+        assertSame(before, batch.getDoubleColumn(0));
+        assertEquals(2.0, batch.getDouble(0, 0), 0.0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFull() {
+        RecordBatch batch = new RecordBatch(1);
+        batch.addRow();
+        batch.addRow();
+    }
+
+
+    @Test
+    public void testAddRecord() {
+        RecordBatch batch = new RecordBatch(2);
+        batch.addRecord(Arrays.<Writable>asList(new IntWritable(3), new DoubleWritable(0.5), new Text("x")));
+        batch.addRecord(Arrays.<Writable>asList(new IntWritable(4), new IntWritable(2), new IntWritable(9)));
+
+        assertEquals(RecordBatch.ColumnType.INT, batch.getColumnType(0));
+        assertEquals(RecordBatch.ColumnType.DOUBLE, batch.getColumnType(1));
+        assertEquals(RecordBatch.ColumnType.BYTES, batch.getColumnType(2));
+        assertEquals(2.0, batch.getDouble(1, 1), 0);
+        assertEquals("9", batch.getString(1, 2));
+        assertTrue(batch.isFull());
+    }
+    @Test
+    public void testSetDoubles() {
+        RecordBatch batch = new RecordBatch(2);
+        batch.setInt(batch.addRow(), 1, 5);
+        int row = batch.addRow();
+        batch.setDoubles(row, 0, new double[]{-1, 1.5, 2, 3, -1}, 1, 3);
+
+        assertEquals(3, batch.numColumns());
+        assertFalse(batch.isValid(0, 0));
+        assertEquals(1.5, batch.getDouble(1, 0), 0.0);
+        // the int column is promoted
+        assertEquals(RecordBatch.ColumnType.DOUBLE, batch.getColumnType(1));
+        assertEquals(5.0, batch.getDouble(0, 1), 0.0);
+        assertEquals(2.0, batch.getDouble(1, 1), 0.0);
+        assertEquals(3.0, batch.getDouble(1, 2), 0.0);
+        assertFalse(batch.isValid(0, 2));
+    }
+
+}
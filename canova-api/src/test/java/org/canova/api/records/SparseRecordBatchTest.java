@@ -0,0 +1,65 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+package org.canova.api.records;
+
+import org.canova.api.io.data.SparseVectorWritable;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.junit.Assert.*;
+
+public class SparseRecordBatchTest {
+
+    @Test
+    public void testRows() throws Exception {
+        SparseRecordBatch batch = new SparseRecordBatch(2, 10);
+        batch.addRow(new SparseVectorWritable(10, new int[]{7, 2, 4}, new double[]{0.7, 0.2, 0.4}, 3), 1.0);
+        batch.addRow(new SparseVectorWritable(10, new int[0], new double[0], 0), 0.0);
+        assertTrue(batch.isFull());
+
+        assertEquals(3, batch.numEntries());
+        assertArrayEquals(new int[]{0, 3, 3}, java.util.Arrays.copyOf(batch.getRowPointers(), 3));
+        assertArrayEquals(new int[]{2, 4, 7}, java.util.Arrays.copyOf(batch.getColumnIndices(), 3));
+        assertArrayEquals(new double[]{0.2, 0.4, 0.7}, java.util.Arrays.copyOf(batch.getValues(), 3), 0.0);
+        assertEquals(1.0, batch.getLabels()[0], 0.0);
+
+        SparseVectorWritable row = batch.getRow(0);
+        assertEquals(0.4, row.get(4), 0.0);
+        assertEquals(0.0, row.get(5), 0.0);
+        assertEquals(0, batch.getRow(1).numEntries());
+
+        // round trip through the writable format
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        row.write(new DataOutputStream(bytes));
+        SparseVectorWritable read = new SparseVectorWritable();
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(row, read);
+        assertArrayEquals(new double[]{0, 0, 0.2, 0, 0.4, 0, 0, 0.7, 0, 0}, read.toArray(), 0.0);
+
+        batch.clear();
+        assertEquals(0, batch.numRows());
+        assertEquals(0, batch.numEntries());
+    }
+
+}
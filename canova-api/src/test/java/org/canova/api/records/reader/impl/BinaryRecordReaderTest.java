@@ -0,0 +1,163 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records.reader.impl;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.IntWritable;
+import org.canova.api.io.data.LongWritable;
+import org.canova.api.io.data.Text;
+import org.canova.api.records.writer.impl.BinaryRecordWriter;
+import org.canova.api.records.writer.impl.FileRecordWriter;
+import org.canova.api.split.FileSplit;
+import org.canova.api.util.RecordUtils;
+import org.canova.api.writable.Writable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BinaryRecordReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Collection<Writable>> records(int num) {
+        List<Collection<Writable>> records = new ArrayList<>();
+        for(int i = 0; i < num; i++) {
+            if(i % 100 == 99)
+                // a differently shaped record starts a new block
+                records.add(Arrays.<Writable>asList(new Text("odd one " + i), new LongWritable(i)));
+            else
+                records.add(Arrays.<Writable>asList(new DoubleWritable(i / 3.0), new IntWritable(i % 7), new Text("label_" + (i % 3))));
+        }
+        return records;
+    }
+
+    private static List<Collection<Writable>> readAll(BinaryRecordReader reader) {
+        List<Collection<Writable>> read = new ArrayList<>();
+        while(reader.hasNext())
+            read.add(reader.next());
+        return read;
+    }
+
+    private void testReadWrite(boolean compress) throws Exception {
+        File file = folder.newFile();
+        List<Collection<Writable>> records = records(1000);
+        BinaryRecordWriter writer = new BinaryRecordWriter(file, false, 64, compress);
+        for(Collection<Writable> record : records)
+            writer.write(record);
+        writer.close();
+
+        BinaryRecordReader reader = new BinaryRecordReader();
+        reader.initialize(new FileSplit(file));
+        assertEquals(records, readAll(reader));
+
+        reader.reset();
+        assertEquals(records, readAll(reader));
+        reader.close();
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        testReadWrite(false);
+    }
+
+    @Test
+    public void testReadWriteCompressed() throws Exception {
+        testReadWrite(true);
+    }
+
+    @Test
+    public void testWriterConfiguration() throws Exception {
+        File file = folder.newFile();
+        Configuration conf = new Configuration();
+        conf.set(FileRecordWriter.PATH, file.getAbsolutePath());
+        conf.setBoolean(FileRecordWriter.APPEND, false);
+        conf.setInt(BinaryRecordWriter.BLOCK_SIZE, 2);
+        conf.setBoolean(BinaryRecordWriter.COMPRESS, true);
+        BinaryRecordWriter writer = new BinaryRecordWriter(conf);
+        assertEquals(2, writer.getBlockSize());
+        assertTrue(writer.isCompress());
+
+        List<Collection<Writable>> records = new ArrayList<>();
+        for(int i = 0; i < 5; i++)
+            records.add(Arrays.<Writable>asList(new Text("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa"), new IntWritable(i)));
+        for(Collection<Writable> record : records)
+            writer.write(record);
+        writer.close();
+
+        // blocks of 2, 2 and 1 records, all deflated
+        try(DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.skipBytes(BinaryRecordWriter.MAGIC.length + 1);
+            for(int expected : new int[] {2, 2, 1}) {
+                assertEquals(expected, in.readInt());
+                int numColumns = in.readInt();
+                for(int i = 0; i < numColumns; i++)
+                    RecordUtils.readType(in);
+                assertEquals(BinaryRecordWriter.COMPRESSION_DEFLATE, in.readByte());
+                in.readInt();
+                in.skipBytes(in.readInt());
+            }
+            assertEquals(-1, in.read());
+        }
+
+        BinaryRecordReader reader = new BinaryRecordReader();
+        reader.initialize(new FileSplit(file));
+        assertEquals(records, readAll(reader));
+        reader.close();
+    }
+
+    @Test
+    public void testSeekAndAppend() throws Exception {
+        File file = folder.newFile();
+        List<Collection<Writable>> records = records(500);
+        BinaryRecordWriter writer = new BinaryRecordWriter(file, false, 32, true);
+        for(Collection<Writable> record : records.subList(0, 250))
+            writer.write(record);
+        writer.close();
+        writer = new BinaryRecordWriter(file, true, 32, true);
+        for(Collection<Writable> record : records.subList(250, 500))
+            writer.write(record);
+        writer.close();
+
+        BinaryRecordReader reader = new BinaryRecordReader();
+        reader.initialize(new FileSplit(file));
+        assertEquals(records, readAll(reader));
+
+        reader.seek(317);
+        assertEquals(records.get(317), reader.next());
+        assertEquals(100, reader.skip(100));
+        assertEquals(records.get(418), reader.next());
+        assertEquals(81, reader.skip(1000));
+        assertFalse(reader.hasNext());
+    }
+
+}
@@ -1,16 +1,20 @@
 package org.canova.api.records.reader.impl;
 
 import org.apache.commons.io.FileUtils;
+import org.canova.api.conf.Configuration;
 import org.canova.api.io.data.IntWritable;
 import org.canova.api.io.data.Text;
+import org.canova.api.records.RecordBatch;
 import org.canova.api.records.writer.impl.CSVRecordWriter;
 import org.canova.api.records.writer.impl.FileRecordWriter;
 import org.canova.api.split.FileSplit;
+import org.canova.api.split.InputStreamInputSplit;
 import org.canova.api.split.StringSplit;
 import org.canova.api.util.ClassPathResource;
 import org.canova.api.writable.Writable;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -102,4 +106,101 @@ public class CSVRecordReaderTest {
 
         assertEquals(expected,fileContents);
     }
+
+    @Test
+    public void testNextBatch() throws Exception {
+        CSVRecordReader rr = new CSVRecordReader(0,",");
+        rr.initialize(new FileSplit(new ClassPathResource("iris.dat").getFile()));
+        CSVRecordReader batchReader = new CSVRecordReader(0,",");
+        batchReader.initialize(new FileSplit(new ClassPathResource("iris.dat").getFile()));
+
+        RecordBatch batch = new RecordBatch(32);
+        int lineCount = 0;
+        while(batchReader.hasNext()) {
+            batchReader.nextBatch(batch);
+            assertEquals(5, batch.numColumns());
+            assertEquals(RecordBatch.ColumnType.BYTES, batch.getColumnType(0));
+            for(int i = 0; i < batch.numRows(); i++) {
+                assertEquals(rr.next(), batch.getRecord(i));
+                lineCount++;
+            }
+        }
+        assertFalse(rr.hasNext());
+        assertEquals(150, lineCount);
+        assertEquals(150 % 32, batch.numRows());
+    }
+
+    @Test
+    public void testNextBatchRaggedRows() throws Exception {
+        Path p = Files.createTempFile("csvbatchtest","csv");
+        p.toFile().deleteOnExit();
+        FileUtils.writeStringToFile(p.toFile(), "header\na|b||d\nc", "UTF-8");
+
+        CSVRecordReader reader = new CSVRecordReader(1,"\\|");
+        reader.initialize(new FileSplit(p.toFile()));
+        RecordBatch batch = reader.nextBatch(10);
+
+        assertEquals(2, batch.numRows());
+        assertEquals(4, batch.numColumns());
+        assertEquals("", batch.getString(0, 2));
+        assertEquals("d", batch.getString(0, 3));
+        assertTrue(batch.isValid(1, 0));
+        assertFalse(batch.isValid(1, 1));
+        assertEquals(1, batch.getRecord(1).size());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void testQuotedFields() throws Exception {
+        Path p = Files.createTempFile("csvquotetest","csv");
+        p.toFile().deleteOnExit();
+        FileUtils.writeStringToFile(p.toFile(), "id,text\n1,\"hello, world\"\n2,\"multi\nline \"\"quoted\"\"\"\n", "UTF-8");
+
+        Configuration conf = new Configuration();
+        conf.setInt(CSVRecordReader.SKIP_NUM_LINES, 1);
+        conf.set(CSVRecordReader.QUOTE, "\"");
+        CSVRecordReader reader = new CSVRecordReader();
+        reader.initialize(conf, new FileSplit(p.toFile()));
+        List<Writable> first = new ArrayList<>(reader.next());
+        List<Writable> second = new ArrayList<>(reader.next());
+        assertFalse(reader.hasNext());
+
+        assertEquals(2, first.size());
+        assertEquals("hello, world", first.get(1).toString());
+        assertEquals("multi\nline \"quoted\"", second.get(1).toString());
+    }
+
+    @Test
+    public void testQuotesArePlainDataByDefault() throws Exception {
+        Path p = Files.createTempFile("csvunquotedtest","csv");
+        p.toFile().deleteOnExit();
+        FileUtils.writeStringToFile(p.toFile(), "1,\"open\n2,b\n3,c\n", "UTF-8");
+
+        CSVRecordReader reader = new CSVRecordReader();
+        reader.initialize(new FileSplit(p.toFile()));
+        List<List<String>> records = new ArrayList<>();
+        while(reader.hasNext()) {
+            List<String> record = new ArrayList<>();
+            for(Writable w : reader.next())
+                record.add(w.toString());
+            records.add(record);
+        }
+
+        // an unbalanced quote doesn't swallow the rest of the file
+        assertEquals(3, records.size());
+        assertEquals("\"open", records.get(0).get(1));
+        assertEquals("c", records.get(2).get(1));
+    }
+
+    @Test
+    public void testInputStreamSplit() throws Exception {
+        byte[] data = "a,1\nb,2\nc,3\n".getBytes("UTF-8");
+        CSVRecordReader reader = new CSVRecordReader(1,",");
+        reader.initialize(new InputStreamInputSplit(new ByteArrayInputStream(data)));
+        RecordBatch batch = reader.nextBatch(10);
+        assertEquals(2, batch.numRows());
+        assertEquals("c", batch.getString(1, 0));
+        assertEquals("3", batch.getString(1, 1));
+        assertFalse(reader.hasNext());
+    }
 }
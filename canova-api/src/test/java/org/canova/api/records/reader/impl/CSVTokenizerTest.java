@@ -0,0 +1,107 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records.reader.impl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CSVTokenizerTest {
+
+    private static List<List<String>> tokenize(CSVTokenizer tokenizer) throws Exception {
+        List<List<String>> records = new ArrayList<>();
+        while(tokenizer.next()) {
+            List<String> fields = new ArrayList<>();
+            for(int i = 0; i < tokenizer.numFields(); i++)
+                fields.add(tokenizer.getField(i));
+            records.add(fields);
+        }
+        tokenizer.close();
+        return records;
+    }
+
+    private static List<List<String>> tokenize(String data) throws Exception {
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        List<List<String>> fromStream = tokenize(new CSVTokenizer(new ByteArrayInputStream(bytes), (byte) ',', '"'));
+        assertEquals(fromStream, tokenize(new CSVTokenizer(ByteBuffer.wrap(bytes), (byte) ',', '"')));
+        return fromStream;
+    }
+
+    @Test
+    public void testPlainFields() throws Exception {
+        List<List<String>> records = tokenize("a,b,c\n1,,3,\n\nlast");
+        assertEquals(4, records.size());
+        assertEquals(Arrays.asList("a", "b", "c"), records.get(0));
+        assertEquals(Arrays.asList("1", "", "3", ""), records.get(1));
+        assertEquals(Arrays.asList(""), records.get(2));
+        assertEquals(Arrays.asList("last"), records.get(3));
+    }
+
+    @Test
+    public void testQuoting() throws Exception {
+        List<List<String>> records = tokenize("\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\"\r\nx\"y,\"\"\r\n\"\u00e9\"");
+        assertEquals(3, records.size());
+        assertEquals(Arrays.asList("a,b", "say \"hi\"", "two\nlines"), records.get(0));
+        // quotes only count at the start of a field
+        assertEquals(Arrays.asList("x\"y", ""), records.get(1));
+        assertEquals(Arrays.asList("\u00e9"), records.get(2));
+    }
+
+    @Test
+    public void testQuotingOff() throws Exception {
+        byte[] bytes = "\"a,b\"\tc\r\n".getBytes(StandardCharsets.UTF_8);
+        List<List<String>> records = tokenize(new CSVTokenizer(new ByteArrayInputStream(bytes), (byte) '\t', -1));
+        assertEquals(Arrays.asList(Arrays.asList("\"a,b\"", "c")), records);
+    }
+
+    @Test
+    public void testRecordsLargerThanBuffer() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < 100000; i++)
+            sb.append((char) ('a' + i % 26));
+        String longField = sb.toString();
+
+        List<List<String>> records = tokenize("1," + longField + "\n\"" + longField + "\",2\n");
+        assertEquals(2, records.size());
+        assertEquals(Arrays.asList("1", longField), records.get(0));
+        assertEquals(Arrays.asList(longField, "2"), records.get(1));
+    }
+
+    @Test
+    public void testManyRecordsAcrossRefills() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < 50000; i++)
+            sb.append(i).append(",\"q,").append(i).append("\",x").append(i % 7).append('\n');
+
+        List<List<String>> records = tokenize(sb.toString());
+        assertEquals(50000, records.size());
+        for(int i = 0; i < 50000; i++)
+            assertEquals(Arrays.asList(String.valueOf(i), "q," + i, "x" + (i % 7)), records.get(i));
+    }
+
+}
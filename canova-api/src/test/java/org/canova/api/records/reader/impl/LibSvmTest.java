@@ -21,6 +21,7 @@
 package org.canova.api.records.reader.impl;
 
 import org.canova.api.conf.Configuration;
+import org.canova.api.records.RecordBatch;
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.records.writer.RecordWriter;
 import org.canova.api.records.writer.impl.FileRecordWriter;
@@ -107,5 +108,29 @@ public class LibSvmTest {
         }
     }
 
+    @Test
+    public void testReadMissingBatch() throws Exception {
+        LibSvmRecordReader rr = new LibSvmRecordReader();
+        Configuration conf = new Configuration();
+        conf.set(LineRecordReader.APPEND_LABEL,"true");
+        conf.set(LibSvmRecordReader.NUM_FEATURES, "4");
+        rr.initialize(conf, new FileSplit(new ClassPathResource("libsvm_with_multiple_missing.libsvm").getFile()));
+
+        RecordBatch batch = new RecordBatch(4);
+        double label = 1.0;
+        while (rr.hasNext()) {
+            rr.nextBatch(batch);
+            assertEquals(5, batch.numColumns());
+            for( int i=0; i<batch.numRows(); i++ ){
+                assertEquals(label++, batch.getDouble(i, 4), 0.0);
+            }
+        }
+        assertEquals(12.0, label, 0.0);
+        // last batch holds rows 9-11: 0 0 0 4, 1 0 0 0, 0 0 0 0
+        assertEquals(3, batch.numRows());
+        assertEquals(4.0, batch.getDouble(0, 3), 0.0);
+        assertEquals(1.0, batch.getDouble(1, 0), 0.0);
+        assertEquals(0.0, batch.getDouble(2, 0), 0.0);
+    }
 
 }
@@ -0,0 +1,193 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records.reader.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.canova.api.split.FileSplit;
+import org.canova.api.split.InputSplit;
+import org.canova.api.writable.Writable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ParallelRecordReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOrdered() throws Exception {
+        File dir = folder.newFolder("csv");
+        InputSplit split = writeFiles(dir, 3, 7, 1, 5, 0, 4);
+
+        // round robin over two open files, a finished file is replaced by the next one
+        Map<URI, List<Collection<Writable>>> perFile = new HashMap<>();
+        for(URI uri : split.locations()) {
+            CSVRecordReader rr = new CSVRecordReader();
+            rr.initialize(new FileSplit(new File(uri)));
+            List<Collection<Writable>> records = new ArrayList<>();
+            while(rr.hasNext())
+                records.add(rr.next());
+            perFile.put(uri, records);
+        }
+        List<Collection<Writable>> expected = new ArrayList<>();
+        List<List<Collection<Writable>>> open = new ArrayList<>();
+        int next = 0;
+        for(; next < 2; next++)
+            open.add(new ArrayList<>(perFile.get(split.locations()[next])));
+        int slot = 0;
+        while(!open.isEmpty()) {
+            List<Collection<Writable>> records = open.get(slot);
+            if(records.isEmpty()) {
+                if(next < split.locations().length)
+                    open.set(slot, new ArrayList<>(perFile.get(split.locations()[next++])));
+                else
+                    open.remove(slot);
+                if(slot >= open.size())
+                    slot = 0;
+                continue;
+            }
+            expected.add(records.remove(0));
+            slot = (slot + 1) % open.size();
+        }
+        assertEquals(20, expected.size());
+
+        ParallelRecordReader reader = new ParallelRecordReader(ParallelRecordReader.factory(CSVRecordReader.class, null), 2, true);
+        reader.initialize(split);
+        for(int i = 0; i < 3; i++) {
+            assertEquals(expected, readAll(reader));
+            reader.reset();
+        }
+
+        // reset halfway through
+        for(int i = 0; i < 5; i++)
+            reader.next();
+        reader.reset();
+        assertEquals(expected, readAll(reader));
+        reader.close();
+    }
+
+    @Test
+    public void testAsAvailable() throws Exception {
+        File dir = folder.newFolder("csv");
+        InputSplit split = writeFiles(dir, 50, 1, 20, 0, 33);
+
+        CSVRecordReader serial = new CSVRecordReader();
+        serial.initialize(split);
+        List<String> expected = new ArrayList<>();
+        while(serial.hasNext())
+            expected.add(serial.next().toString());
+        Collections.sort(expected);
+
+        ParallelRecordReader reader = new ParallelRecordReader(ParallelRecordReader.factory(CSVRecordReader.class, null), 3, false);
+        reader.initialize(split);
+        List<String> read = new ArrayList<>();
+        for(Collection<Writable> record : readAll(reader))
+            read.add(record.toString());
+        Collections.sort(read);
+        assertEquals(expected, read);
+        reader.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFailurePropagates() throws Exception {
+        File dir = folder.newFolder("libsvm");
+        FileUtils.writeStringToFile(new File(dir, "0.txt"), "1 1:0.5\n");
+        FileUtils.writeStringToFile(new File(dir, "1.txt"), "1 1:0.5\nnot a number\n");
+
+        ParallelRecordReader reader = new ParallelRecordReader(ParallelRecordReader.factory(LibSvmRecordReader.class, null), 2, true);
+        reader.initialize(new FileSplit(dir));
+        try {
+            readAll(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testFailureIsTerminal() throws Exception {
+        File dir = folder.newFolder("libsvm");
+        FileUtils.writeStringToFile(new File(dir, "0.txt"), "1 1:0.5\n");
+        FileUtils.writeStringToFile(new File(dir, "1.txt"), "not a number\n");
+        for(boolean ordered : new boolean[]{true, false}) {
+            ParallelRecordReader reader = new ParallelRecordReader(ParallelRecordReader.factory(LibSvmRecordReader.class, null), 2, ordered);
+            reader.initialize(new FileSplit(dir));
+            IllegalStateException failure = null;
+            try {
+                readAll(reader);
+                fail("Expected the bad location to fail the reader");
+            } catch (IllegalStateException e) {
+                failure = e;
+            }
+            // later calls throw again rather than wait for the failed location
+            for(int i = 0; i < 2; i++) {
+                try {
+                    reader.hasNext();
+                    fail("Expected the failure again");
+                } catch (IllegalStateException e) {
+                    assertSame(failure, e);
+                }
+            }
+            try {
+                reader.next();
+                fail("Expected the failure again");
+            } catch (IllegalStateException e) {
+                assertSame(failure, e);
+            }
+
+            // a reset starts over
+            FileUtils.writeStringToFile(new File(dir, "1.txt"), "1 1:0.25\n");
+            reader.reset();
+            assertEquals(2, readAll(reader).size());
+            reader.close();
+            FileUtils.writeStringToFile(new File(dir, "1.txt"), "not a number\n");
+        }
+    }
+
+    private static InputSplit writeFiles(File dir, int... numLines) throws Exception {
+        for(int i = 0; i < numLines.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            for(int j = 0; j < numLines[i]; j++)
+                sb.append(i).append(',').append(j).append('\n');
+            FileUtils.writeStringToFile(new File(dir, i + ".csv"), sb.toString());
+        }
+        return new FileSplit(dir);
+    }
+
+    private static List<Collection<Writable>> readAll(ParallelRecordReader reader) {
+        List<Collection<Writable>> ret = new ArrayList<>();
+        while(reader.hasNext())
+            ret.add(reader.next());
+        return ret;
+    }
+
+}
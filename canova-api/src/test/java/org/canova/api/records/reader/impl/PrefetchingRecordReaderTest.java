@@ -0,0 +1,110 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records.reader.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.canova.api.split.FileSplit;
+import org.canova.api.util.ClassPathResource;
+import org.canova.api.writable.Writable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PrefetchingRecordReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameRecords() throws Exception {
+        CSVRecordReader rr = new CSVRecordReader(0, ",");
+        rr.initialize(new FileSplit(new ClassPathResource("iris.dat").getFile()));
+        List<Collection<Writable>> expected = new ArrayList<>();
+        while(rr.hasNext())
+            expected.add(rr.next());
+
+        CSVRecordReader wrapped = new CSVRecordReader(0, ",");
+        wrapped.initialize(new FileSplit(new ClassPathResource("iris.dat").getFile()));
+        PrefetchingRecordReader reader = new PrefetchingRecordReader(wrapped, 16, 4);
+
+        for(int i = 0; i < 3; i++) {
+            List<Collection<Writable>> read = new ArrayList<>();
+            while(reader.hasNext())
+                read.add(reader.next());
+            assertEquals(expected, read);
+            reader.reset();
+        }
+
+        // reset halfway through
+        for(int i = 0; i < 10; i++)
+            reader.next();
+        reader.reset();
+        assertEquals(expected.get(0), reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void testFailurePropagates() throws Exception {
+        File file = folder.newFile("bad.libsvm");
+        FileUtils.writeStringToFile(file, "1 1:0.5\n1 1:0.5\nnot a number\n");
+
+        LibSvmRecordReader wrapped = new LibSvmRecordReader();
+        wrapped.initialize(new FileSplit(file));
+        PrefetchingRecordReader reader = new PrefetchingRecordReader(wrapped);
+
+        reader.next();
+        reader.next();
+        try {
+            reader.hasNext();
+            fail("Expected the parse error of the third line");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof NumberFormatException);
+        }
+        reader.close();
+    }
+
+    @Test
+    public void testSequences() throws Exception {
+        File dir = folder.newFolder("sequences");
+        for(int i = 0; i < 5; i++)
+            FileUtils.writeStringToFile(new File(dir, "seq_" + i + ".csv"), i + ",a\n" + i + ",b\n" + i + ",c");
+
+        CSVSequenceRecordReader wrapped = new CSVSequenceRecordReader();
+        wrapped.initialize(new FileSplit(dir));
+        PrefetchingSequenceRecordReader reader = new PrefetchingSequenceRecordReader(wrapped, 2);
+
+        int count = 0;
+        while(reader.hasNext()) {
+            assertEquals(3, reader.sequenceRecord().size());
+            count++;
+        }
+        assertEquals(5, count);
+        reader.close();
+    }
+
+}
@@ -23,11 +23,15 @@ package org.canova.api.records.reader.impl;
 import static org.junit.Assume.*;
 import static org.junit.Assert.*;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
 import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.records.writer.RecordWriter;
+import org.canova.api.records.writer.impl.LibSvmRecordWriter;
 import org.canova.api.records.writer.impl.SVMLightRecordWriter;
 import org.canova.api.split.FileSplit;
 import org.canova.api.split.InputSplit;
@@ -104,4 +108,31 @@ public class SVMRecordWriterTest {
     }
 
 
+    @Test
+    public void testSparseVectorWritable() throws Exception {
+        // dense column, a sparse vector over 5 columns, another dense column, then the label
+        List<Writable> record = new ArrayList<>();
+        record.add(new DoubleWritable(0.5));
+        record.add(new SparseVectorWritable(5, new int[]{3, 1}, new double[]{1.5, 0.25}, 2));
+        record.add(new DoubleWritable(2.0));
+        record.add(new DoubleWritable(1.0));
+
+        File out = File.createTempFile("sparse_svmlight", ".txt");
+        out.deleteOnExit();
+        RecordWriter writer = new SVMLightRecordWriter(out);
+        writer.write(record);
+        writer.close();
+        assertEquals("1.0 1:0.5 3:0.25 5:1.5 7:2.0", FileUtils.readFileToString(out).trim());
+
+        File libSvmOut = File.createTempFile("sparse_libsvm", ".txt");
+        libSvmOut.deleteOnExit();
+        Configuration conf = new Configuration();
+        conf.set(LibSvmRecordWriter.PATH, libSvmOut.getAbsolutePath());
+        conf.setBoolean(LibSvmRecordWriter.APPEND, false);
+        writer = new LibSvmRecordWriter(conf);
+        writer.write(record);
+        writer.close();
+        assertEquals("1 1:0.5 3:0.25 5:1.5 7:2.0", FileUtils.readFileToString(libSvmOut).trim());
+    }
+
 }
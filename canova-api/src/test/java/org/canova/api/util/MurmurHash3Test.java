@@ -0,0 +1,48 @@
+package org.canova.api.util;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class MurmurHash3Test {
+
+    private static final String[] STRINGS = {
+            "", "a", "ab", "abc", "abcd", "hello",
+            "The quick brown fox jumps over the lazy dog",
+            "café 中文 😀"
+    };
+
+    // reference MurmurHash3_x86_32 values, seeds 0 and 42
+    private static final int[][] EXPECTED = {
+            {0, 142593372}, {1009084850, -1293573533}, {-1681926305, -684913081}, {-1277324294, 1313807976},
+            {1139631978, -396302900}, {613153351, -488910111}, {776992547, 880582914}, {-484226530, -202316200}
+    };
+
+    @Test
+    public void testKnownHashes() {
+        for(int i = 0; i < STRINGS.length; i++) {
+            byte[] bytes = STRINGS[i].getBytes(StandardCharsets.UTF_8);
+            assertEquals(STRINGS[i], EXPECTED[i][0], MurmurHash3.hash32(bytes, 0, bytes.length, 0));
+            assertEquals(STRINGS[i], EXPECTED[i][1], MurmurHash3.hash32(bytes, 0, bytes.length, 42));
+        }
+    }
+
+    @Test
+    public void testStringsHashAsUtf8() {
+        for(int i = 0; i < STRINGS.length; i++) {
+            assertEquals(STRINGS[i], EXPECTED[i][0], MurmurHash3.hash32(STRINGS[i], 0));
+            assertEquals(STRINGS[i], EXPECTED[i][1], MurmurHash3.hash32(STRINGS[i], 42));
+        }
+        // an unpaired surrogate is encoded as '?'
+        byte[] bytes = "x\ud83dy".getBytes(StandardCharsets.UTF_8);
+        assertEquals(MurmurHash3.hash32(bytes, 0, bytes.length, 0), MurmurHash3.hash32("x\ud83dy", 0));
+    }
+
+    @Test
+    public void testRange() {
+        byte[] bytes = "__hello__".getBytes(StandardCharsets.UTF_8);
+        assertEquals(613153351, MurmurHash3.hash32(bytes, 2, 5, 0));
+    }
+}
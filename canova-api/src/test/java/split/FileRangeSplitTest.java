@@ -0,0 +1,157 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package split;
+
+import org.apache.commons.io.FileUtils;
+import org.canova.api.records.reader.impl.CSVRecordReader;
+import org.canova.api.records.reader.impl.LineRecordReader;
+import org.canova.api.split.FileRangeSplit;
+import org.canova.api.writable.Writable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FileRangeSplitTest {
+
+    @Rule
+    public TemporaryFolder mainFolder = new TemporaryFolder();
+
+    private File writeCsv(int numLines) throws Exception {
+        StringBuilder sb = new StringBuilder("id,value\n");
+        for(int i = 0; i < numLines; i++)
+            sb.append(i).append(',').append(i * 31 % 1000).append('\n');
+        File file = mainFolder.newFile("data.csv");
+        FileUtils.writeStringToFile(file, sb.toString());
+        return file;
+    }
+
+    private File writeCsvLines(String data) throws Exception {
+        File file = mainFolder.newFile("lines.csv");
+        FileUtils.writeStringToFile(file, data);
+        return file;
+    }
+
+    @Test
+    public void testRangesAlignToLines() throws Exception {
+        File file = writeCsv(1000);
+        List<FileRangeSplit> splits = FileRangeSplit.split(file, 7);
+        assertEquals(7, splits.size());
+
+        byte[] bytes = FileUtils.readFileToByteArray(file);
+        long expectedStart = 0;
+        for(FileRangeSplit split : splits) {
+            assertEquals(expectedStart, split.getStart());
+            assertTrue(split.getStart() == 0 || bytes[(int) split.getStart() - 1] == '\n');
+            expectedStart = split.getEnd();
+        }
+        assertEquals(file.length(), expectedStart);
+
+        // more splits than lines
+        assertEquals(3, FileRangeSplit.split(writeCsvLines("a\nb\nc"), 10).size());
+    }
+
+    @Test
+    public void testReadRanges() throws Exception {
+        File file = writeCsv(1000);
+
+        List<String> ids = new ArrayList<>();
+        for(FileRangeSplit split : FileRangeSplit.split(file, 5)) {
+            CSVRecordReader reader = new CSVRecordReader(1, ",");
+            reader.initialize(split);
+            while(reader.hasNext()) {
+                Collection<Writable> record = reader.next();
+                assertEquals(2, record.size());
+                ids.add(record.iterator().next().toString());
+            }
+            reader.close();
+        }
+
+        assertEquals(1000, ids.size());
+        for(int i = 0; i < ids.size(); i++)
+            assertEquals(String.valueOf(i), ids.get(i));
+
+        int lines = 0;
+        for(FileRangeSplit split : FileRangeSplit.split(file, 3)) {
+            LineRecordReader reader = new LineRecordReader();
+            reader.initialize(split);
+            while(reader.hasNext()) {
+                reader.next();
+                lines++;
+            }
+        }
+        assertEquals(1001, lines);
+    }
+
+    @Test
+    public void testMapRange() throws Exception {
+        File file = writeCsv(100);
+        byte[] bytes = FileUtils.readFileToByteArray(file);
+        for(FileRangeSplit split : FileRangeSplit.split(file, 3)) {
+            byte[] expected = Arrays.copyOfRange(bytes, (int) split.getStart(), (int) split.getEnd());
+
+            assertTrue(split.isMappable());
+            MappedByteBuffer mapped = split.map();
+            byte[] fromMap = new byte[mapped.remaining()];
+            mapped.get(fromMap);
+            assertArrayEquals(expected, fromMap);
+
+            ByteArrayOutputStream fromStream = new ByteArrayOutputStream();
+            try (InputStream in = split.openStream()) {
+                byte[] buf = new byte[64];
+                int read;
+                while((read = in.read(buf)) > 0)
+                    fromStream.write(buf, 0, read);
+            }
+            assertArrayEquals(expected, fromStream.toByteArray());
+        }
+    }
+
+    @Test
+    public void testWritable() throws Exception {
+        File file = writeCsv(10);
+        FileRangeSplit split = FileRangeSplit.split(file, 2).get(1);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        split.write(new DataOutputStream(bytes));
+        FileRangeSplit read = new FileRangeSplit();
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(split.getFile(), read.getFile());
+        assertEquals(split.getStart(), read.getStart());
+        assertEquals(split.getEnd(), read.getEnd());
+        assertEquals(split.locations()[0], read.locations()[0]);
+    }
+
+}
@@ -21,20 +21,29 @@
 package org.canova.cli.csv.schema;
 
 import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.google.common.base.Strings;
 import org.apache.commons.math3.util.Pair;
+import org.canova.api.io.WritableUtils;
 import org.canova.cli.csv.schema.CSVSchemaColumn.TransformType;
+import org.canova.cli.csv.statistics.DatasetSummaryStatistics;
+import org.canova.cli.statistics.PersistableStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /*
 	purpose: to parse and represent the input schema + column transforms of CSV data to vectorize
 */
-public class CSVInputSchema {
+public class CSVInputSchema implements PersistableStatistics {
 
   private static final Logger log = LoggerFactory.getLogger(CSVInputSchema.class);
 
@@ -194,18 +203,29 @@ public class CSVInputSchema {
 	}
 	
 	public void parseSchemaFile(String schemaPath) throws Exception {
-		try (BufferedReader br = new BufferedReader(new FileReader(schemaPath))) {
-		    for (String line; (line = br.readLine()) != null; ) {
-		        // process the line.
-		    	if (!this.validateSchemaLine(line) ) {
-		    		throw new Exception("Bad Schema for CSV Data: \n\t" + line);
-		    	}
+		try (FileReader reader = new FileReader(schemaPath)) {
+			this.parseSchema(reader);
+		}
+	}
 
-		    	// now add it to the schema cache
-		    	this.addSchemaLine(line);
+	/**
+	 * Same as {@link #parseSchemaFile(String)}, for schema text that doesn't live in a local file
+	 * (read from HDFS, or shipped to a Spark executor)
+	 *
+	 * @param schema the schema text, left open
+	 * @throws Exception if the schema is bad
+	 */
+	public void parseSchema(Reader schema) throws Exception {
+		BufferedReader br = new BufferedReader(schema);
+		for (String line; (line = br.readLine()) != null; ) {
+			// process the line.
+			if (!this.validateSchemaLine(line) ) {
+				throw new Exception("Bad Schema for CSV Data: \n\t" + line);
+			}
+
+			// now add it to the schema cache
+			this.addSchemaLine(line);
 
-		    }
-		    // line is not visible here.
 		}
 	}
 
@@ -266,6 +286,78 @@ public class CSVInputSchema {
 
 
 
+	/**
+	 * Creates an empty statistics accumulator matching this schema's columns.
+	 * Use one per chunk of input (or per thread), then fold them back in with {@link #mergeStatistics}
+	 *
+	 * @return
+	 */
+	public DatasetSummaryStatistics createStatistics() {
+
+		return this.createStatistics( -1 );
+
+	}
+
+	/**
+	 * Same as {@link #createStatistics()}, for a chunk starting at a known position in the input.
+	 * Accumulators created this way can be merged together in any order and still give
+	 * the label IDs of a serial pass (see {@link DatasetSummaryStatistics#DatasetSummaryStatistics(List, long)})
+	 *
+	 * @param firstPosition the position of the chunk's first record, or negative for an input ordered merge
+	 * @return
+	 */
+	public DatasetSummaryStatistics createStatistics(long firstPosition) {
+
+		List<CSVSchemaColumn.ColumnType> columnTypes = new ArrayList<>();
+		for (CSVSchemaColumn column : this.columnSchemas.values()) {
+			columnTypes.add( column.columnType );
+		}
+
+		return new DatasetSummaryStatistics( columnTypes, firstPosition );
+
+	}
+
+	/**
+	 * Same as {@link #evaluateInputRecord(String)}, but collects into a separate accumulator
+	 * instead of the schema columns, so several of these can run at once
+	 *
+	 * @param csvRecordLine the raw csv line
+	 * @param stats the accumulator to collect into
+	 * @throws Exception
+	 */
+	public void evaluateInputRecord(String csvRecordLine, DatasetSummaryStatistics stats) throws Exception {
+
+		String[] columns = csvRecordLine.split( this.delimiter );
+
+		if (Strings.isNullOrEmpty(columns[0])) {
+			log.info("Skipping blank line");
+			return;
+		}
+
+		stats.evaluateRecord( columns );
+
+	}
+
+	/**
+	 * Folds an accumulator built by {@link #createStatistics()} into the schema columns.
+	 * When merging several, merge them in input order to get the same label IDs as a serial pass
+	 * (or merge positioned accumulators into one first).
+	 *
+	 * @param stats the statistics to merge in
+	 */
+	public void mergeStatistics(DatasetSummaryStatistics stats) {
+
+		int colIndex = 0;
+
+		for (CSVSchemaColumn column : this.columnSchemas.values()) {
+
+			column.mergeStatistics( stats.getColumn( colIndex ) );
+			colIndex++;
+
+		}
+
+	}
+
 	/**
 	 * We call this method once we've scanned the entire dataset once to gather column stats
 	 *
@@ -274,6 +366,84 @@ public class CSVInputSchema {
 		this.hasComputedStats = true;
 	}
 
+	/**
+	 * Writes the collected column statistics (min/max and label maps), in schema column order
+	 */
+	@Override
+	public void writeStatistics(DataOutput out) throws IOException {
+
+		out.writeInt( this.columnSchemas.size() );
+
+		for (CSVSchemaColumn column : this.columnSchemas.values()) {
+
+			WritableUtils.writeString( out, column.name );
+			out.writeDouble( column.minValue );
+			out.writeDouble( column.maxValue );
+
+			WritableUtils.writeVInt( out, column.recordLabels.size() );
+			for (Map.Entry<String, Pair<Integer, Integer>> label : column.recordLabels.entrySet()) {
+				WritableUtils.writeString( out, label.getKey() );
+				WritableUtils.writeVInt( out, label.getValue().getFirst() );
+				WritableUtils.writeVInt( out, label.getValue().getSecond() );
+			}
+
+		}
+
+	}
+
+	/**
+	 * Restores column statistics written by {@link #writeStatistics(DataOutput)}.
+	 * The columns must match the ones in the loaded schema file.
+	 */
+	@Override
+	public void readStatistics(DataInput in) throws IOException {
+
+		int numColumns = in.readInt();
+		if ( numColumns != this.columnSchemas.size() ) {
+			throw new IOException("Statistics cover " + numColumns + " columns, schema has " + this.columnSchemas.size());
+		}
+
+		double[] minValues = new double[ numColumns ];
+		double[] maxValues = new double[ numColumns ];
+		List<Map<String, Pair<Integer, Integer>>> labels = new ArrayList<>();
+
+		int colIndex = 0;
+		for (CSVSchemaColumn column : this.columnSchemas.values()) {
+
+			String name = WritableUtils.readString( in );
+			if ( !column.name.equals( name ) ) {
+				throw new IOException("Statistics column '" + name + "' does not match schema column '" + column.name + "'");
+			}
+
+			minValues[ colIndex ] = in.readDouble();
+			maxValues[ colIndex ] = in.readDouble();
+
+			int numLabels = WritableUtils.readVInt( in );
+			Map<String, Pair<Integer, Integer>> columnLabels = new LinkedHashMap<>();
+			for (int i = 0; i < numLabels; i++) {
+				String label = WritableUtils.readString( in );
+				int labelID = WritableUtils.readVInt( in );
+				int count = WritableUtils.readVInt( in );
+				columnLabels.put( label, new Pair<>( labelID, count ) );
+			}
+			labels.add( columnLabels );
+
+			colIndex++;
+
+		}
+
+		colIndex = 0;
+		for (CSVSchemaColumn column : this.columnSchemas.values()) {
+
+			column.minValue = minValues[ colIndex ];
+			column.maxValue = maxValues[ colIndex ];
+			column.recordLabels = labels.get( colIndex );
+			colIndex++;
+
+		}
+
+	}
+
 	public void debugPringDatasetStatistics() {
 
 		log.info("Print Schema --------");
@@ -24,6 +24,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.commons.math3.util.Pair;
+import org.canova.cli.csv.statistics.ColumnSummaryStatistics;
 
 /*
 
@@ -169,6 +170,46 @@ public class CSVSchemaColumn {
 		
 	}
 	
+	/**
+	 * Folds statistics collected elsewhere (e.g. on another thread, or over another file) into this column.
+	 * New labels get the next free label IDs, in the order the statistics first saw them.
+	 * 
+	 * @param stats statistics collected for this column
+	 */
+	public void mergeStatistics(ColumnSummaryStatistics stats) {
+
+		if ( !Double.isNaN( stats.getMinValue() ) ) {
+
+			if ( Double.isNaN( this.minValue ) || stats.getMinValue() < this.minValue ) {
+				this.minValue = stats.getMinValue();
+			}
+
+			if ( Double.isNaN( this.maxValue ) || stats.getMaxValue() > this.maxValue ) {
+				this.maxValue = stats.getMaxValue();
+			}
+
+		}
+
+		for (Map.Entry<String, Long> label : stats.getLabelCounts().entrySet()) {
+
+			String key = label.getKey();
+			int count = label.getValue().intValue();
+
+			if ( this.recordLabels.containsKey( key ) ) {
+
+				Pair<Integer, Integer> existing = this.recordLabels.get( key );
+				this.recordLabels.put( key, new Pair<>( existing.getFirst(), existing.getSecond() + count ) );
+
+			} else {
+
+				this.recordLabels.put( key, new Pair<>( this.recordLabels.size(), count ) );
+
+			}
+
+		}
+
+	}
+
 	public void computeStatistics() {
 		
 		if ( ColumnType.NUMERIC == this.columnType ) {
@@ -0,0 +1,218 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.csv.statistics;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.canova.cli.csv.schema.CSVSchemaColumn.ColumnType;
+
+/**
+ * Mergeable statistics accumulator for a single CSV column
+ * - NUMERIC columns track min/max
+ * - NOMINAL columns track label occurrence counts, in the order the labels were first seen
+ * 
+ * Accumulators can be built independently over chunks of a dataset (or over several files)
+ * and then merged. Merging chunks in input order gives exactly the same label ordering
+ * as a single serial pass would have.
+ * 
+ * Positioned accumulators also remember the input position each label was first seen at,
+ * and keep their labels ordered by it. Those can be merged in any order (say, by a tree aggregate
+ * over partitions that finish whenever they finish) and still end up with the serial label ordering.
+ *
+ */
+public class ColumnSummaryStatistics implements Serializable {
+
+	private final ColumnType columnType;
+
+	private double minValue = Double.NaN;
+	private double maxValue = Double.NaN;
+	private long count = 0;
+
+	// layout: { label, occurenceCount }, insertion ordered by first occurence
+	private final Map<String, Long> labelCounts = new LinkedHashMap<>();
+
+	// layout: { label, first input position }, null unless positioned
+	private final Map<String, Long> labelPositions;
+
+	public ColumnSummaryStatistics(ColumnType columnType) {
+		this(columnType, false);
+	}
+
+	/**
+	 * @param columnType the column type
+	 * @param positioned whether to track label positions, see {@link #evaluate(String, long)}
+	 */
+	public ColumnSummaryStatistics(ColumnType columnType, boolean positioned) {
+		this.columnType = columnType;
+		this.labelPositions = positioned ? new HashMap<String, Long>() : null;
+	}
+
+	/**
+	 * Same rules as {@link org.canova.cli.csv.schema.CSVSchemaColumn#evaluateColumnValue(String)}
+	 * 
+	 * @param value the raw column value
+	 * @throws Exception if a NUMERIC column value is not a number
+	 */
+	public void evaluate(String value) throws Exception {
+
+		this.evaluate(value, this.count);
+
+	}
+
+	/**
+	 * Same as {@link #evaluate(String)}, for a value at a known position in the whole input
+	 * 
+	 * @param value the raw column value
+	 * @param position the position of the record in the input, only used when positioned
+	 * @throws Exception if a NUMERIC column value is not a number
+	 */
+	public void evaluate(String value, long position) throws Exception {
+
+		if ( ColumnType.NUMERIC == this.columnType ) {
+
+			double tmpVal = Double.parseDouble(value);
+
+			if (Double.isNaN(tmpVal)) {
+				throw new Exception("The column was defined as Numeric yet could not be parsed as a Double");
+			}
+
+			this.updateRange(tmpVal, tmpVal);
+
+		} else if ( ColumnType.NOMINAL == this.columnType ) {
+
+			this.addLabel(value.trim(), 1, position);
+
+		}
+
+		this.count++;
+
+	}
+
+	/**
+	 * Folds another accumulator (typically built over a later chunk of the data) into this one.
+	 * Both have to be positioned, or neither.
+	 * 
+	 * @param other the statistics to merge in
+	 */
+	public void merge(ColumnSummaryStatistics other) {
+
+		if (other.columnType != this.columnType) {
+			throw new IllegalArgumentException("Cannot merge statistics of a " + other.columnType + " column into a " + this.columnType + " column");
+		}
+
+		if (other.isPositioned() != this.isPositioned()) {
+			throw new IllegalArgumentException("Cannot merge positioned and unpositioned statistics");
+		}
+
+		if (!Double.isNaN(other.minValue)) {
+			this.updateRange(other.minValue, other.maxValue);
+		}
+
+		for (Map.Entry<String, Long> label : other.labelCounts.entrySet()) {
+			this.addLabel(label.getKey(), label.getValue(), this.isPositioned() ? other.labelPositions.get(label.getKey()) : 0);
+		}
+
+		if (this.isPositioned()) {
+			this.sortLabelsByPosition();
+		}
+
+		this.count += other.count;
+
+	}
+
+	private void updateRange(double min, double max) {
+
+		if (Double.isNaN(this.minValue) || min < this.minValue) {
+			this.minValue = min;
+		}
+
+		if (Double.isNaN(this.maxValue) || max > this.maxValue) {
+			this.maxValue = max;
+		}
+
+	}
+
+	private void addLabel(String label, long occurences, long position) {
+
+		Long current = this.labelCounts.get(label);
+		this.labelCounts.put(label, null == current ? occurences : current + occurences);
+
+		if (this.isPositioned()) {
+			Long firstPosition = this.labelPositions.get(label);
+			if (null == firstPosition || position < firstPosition) {
+				this.labelPositions.put(label, position);
+			}
+		}
+
+	}
+
+	private void sortLabelsByPosition() {
+
+		List<Map.Entry<String, Long>> labels = new ArrayList<>(this.labelCounts.entrySet());
+		Collections.sort(labels, new Comparator<Map.Entry<String, Long>>() {
+			@Override
+			public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+				return Long.compare(labelPositions.get(a.getKey()), labelPositions.get(b.getKey()));
+			}
+		});
+
+		Map<String, Long> sorted = new LinkedHashMap<>();
+		for (Map.Entry<String, Long> label : labels) {
+			sorted.put(label.getKey(), label.getValue());
+		}
+
+		this.labelCounts.clear();
+		this.labelCounts.putAll(sorted);
+
+	}
+
+	public boolean isPositioned() {
+		return null != this.labelPositions;
+	}
+
+	public ColumnType getColumnType() {
+		return this.columnType;
+	}
+
+	public double getMinValue() {
+		return this.minValue;
+	}
+
+	public double getMaxValue() {
+		return this.maxValue;
+	}
+
+	public long getCount() {
+		return this.count;
+	}
+
+	public Map<String, Long> getLabelCounts() {
+		return this.labelCounts;
+	}
+
+}
@@ -20,9 +20,18 @@
 
 package org.canova.cli.csv.statistics;
 
+import java.io.Serializable;
+import java.util.List;
+
+import org.canova.cli.csv.schema.CSVSchemaColumn.ColumnType;
+
 /**
  * Tracks statistics about the dataset being vectorized
  * - right now just focused on the CLI+CSV conversion stuff
+ * - one mergeable {@link ColumnSummaryStatistics} per schema column, in schema order
+ * - chunks of a dataset (or separate files) can each get their own instance; merge them in input order
+ * - or give each chunk its first record's position in the whole input, then merge them in any order
+ * 
  * Things to track
  * -	range for each column
  * -	avg for each column
@@ -37,6 +46,85 @@ package org.canova.cli.csv.statistics;
  * @author josh
  *
  */
-public class DatasetSummaryStatistics {
+public class DatasetSummaryStatistics implements Serializable {
+
+	private final ColumnSummaryStatistics[] columns;
+	private long recordCount = 0;
+	// position of the first record in the whole input, negative when not positioned
+	private final long firstPosition;
+
+	public DatasetSummaryStatistics(List<ColumnType> columnTypes) {
+
+		this(columnTypes, -1);
+
+	}
+
+	/**
+	 * Statistics over a chunk of the input whose records are numbered from firstPosition on.
+	 * The positions only have to grow along the input, so chunks may leave gaps between them
+	 * (a partition can start at partitionIndex * 2^40, for instance).
+	 *
+	 * @param columnTypes the column types, in schema order
+	 * @param firstPosition the position of the chunk's first record, or negative to merge in input order instead
+	 */
+	public DatasetSummaryStatistics(List<ColumnType> columnTypes, long firstPosition) {
+
+		this.firstPosition = firstPosition;
+		this.columns = new ColumnSummaryStatistics[ columnTypes.size() ];
+		for (int i = 0; i < this.columns.length; i++) {
+			this.columns[ i ] = new ColumnSummaryStatistics( columnTypes.get(i), firstPosition >= 0 );
+		}
+
+	}
+
+	/**
+	 * Evaluates one already split record, one value per column
+	 * 
+	 * @param columnValues the raw column values
+	 * @throws Exception if the column count is wrong or a value does not match its column type
+	 */
+	public void evaluateRecord(String[] columnValues) throws Exception {
+
+		if (columnValues.length != this.columns.length) {
+			throw new Exception("Row column count does not match schema column count. (" + columnValues.length + " != " + this.columns.length + ") ");
+		}
+
+		for (int i = 0; i < this.columns.length; i++) {
+			this.columns[ i ].evaluate( columnValues[ i ], this.firstPosition + this.recordCount );
+		}
+
+		this.recordCount++;
+
+	}
+
+	public void merge(DatasetSummaryStatistics other) {
+
+		if (other.columns.length != this.columns.length) {
+			throw new IllegalArgumentException("Cannot merge statistics over " + other.columns.length + " columns into statistics over " + this.columns.length + " columns");
+		}
+
+		for (int i = 0; i < this.columns.length; i++) {
+			this.columns[ i ].merge( other.columns[ i ] );
+		}
+
+		this.recordCount += other.recordCount;
+
+	}
+
+	public boolean isPositioned() {
+		return this.firstPosition >= 0;
+	}
+
+	public ColumnSummaryStatistics getColumn(int index) {
+		return this.columns[ index ];
+	}
+
+	public int getColumnCount() {
+		return this.columns.length;
+	}
+
+	public long getRecordCount() {
+		return this.recordCount;
+	}
 
 }
@@ -1,86 +1,360 @@
 package org.canova.cli.shuffle;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.NoSuchElementException;
 import java.util.Random;
 
+import org.apache.commons.io.FileUtils;
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.FloatWritable;
+import org.canova.api.io.data.IntWritable;
+import org.canova.api.io.data.LongWritable;
+import org.canova.api.io.data.SparseVectorWritable;
+import org.canova.api.io.data.Text;
+import org.canova.api.util.RecordUtils;
 import org.canova.api.writable.Writable;
 
 /**
  * Record Ordering Shuffler
- * 
+ *
  * Just a good old fashioned way to shuffle the output of the records
- * 
- * Yes, it is memory based (and bound) for now. (We know. We Know.)
- * 
- * 
- * 
+ *
+ * Records are held in memory until they outgrow the memory budget, then they are spilled
+ * to disk into randomly picked buckets (temp files, compact binary via {@link RecordUtils#writeRecord}).
+ * When reading back, each bucket is loaded, shuffled in memory and streamed out, one bucket at a time.
+ * A bucket that is still too big for the budget is shuffled the same way, recursively.
+ *
+ * Datasets that fit in the budget never touch the disk.
+ *
+ *
+ *
  * @author Josh Patterson
  *
  */
-public class Shuffler {
+public class Shuffler implements Iterator< Collection<Writable> >, Closeable {
+
+	public static final String MEMORY_BUDGET_KEY = "canova.output.shuffle.memory.bytes";
+	public static final String TEMP_DIR_KEY = "canova.output.shuffle.tmp.dir";
+
+	public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+	public static final int DEFAULT_NUM_BUCKETS = 64;
 
+	// rough heap cost of a record / writable beyond its payload, used to estimate memory use
+	private static final int OBJECT_OVERHEAD = 32;
+
+	// discards what's written, for counting serialized bytes
+	private static final OutputStream NULL_OUTPUT = new OutputStream() {
+		@Override
+		public void write( int b ) {
+		}
+
+		@Override
+		public void write( byte[] b, int off, int len ) {
+		}
+	};
+
+	// records held in memory, not yet spilled
 	public List< Collection<Writable> > records;// =new List<String>();
 	//public int numRecords = -1;
-	private Random rand = new Random();
+	private Random rand;
+
+	private final long memoryBudget;
+	private final File tmpRoot;
+	private final int numBuckets;
+	private long bufferedBytes = 0;
+
+	// only set once we've had to spill
+	private File spillDir = null;
+	private DataOutputStream[] bucketWriters = null;
+	private long[] bucketBytes = null;
+	private long[] bucketRecords = null;
+	private int currentBucket = -1;
+
+	private Iterator< Collection<Writable> > iterator = null;
+	private boolean exhausted = false;
 
-	private ListIterator< Collection<Writable> > iterator = null;
-	
 	/**
 	 * We could probably infer this, but I'm lazy
-	 * 
+	 *
 	 */
 	public Shuffler() {
-		
+
+		this( DEFAULT_MEMORY_BUDGET, new File( System.getProperty("java.io.tmpdir") ) );
+
+	}
+
+	/**
+	 * @param memoryBudget roughly how many bytes of records to hold in memory before spilling to disk
+	 * @param tmpDir where the spill directory gets created
+	 */
+	public Shuffler( long memoryBudget, File tmpDir ) {
+
+		this( memoryBudget, tmpDir, DEFAULT_NUM_BUCKETS, new Random() );
+
+	}
+
+	public Shuffler( long memoryBudget, File tmpDir, int numBuckets, Random rand ) {
+
+		if (memoryBudget < 1 || numBuckets < 2) {
+			throw new IllegalArgumentException("Memory budget must be positive and there must be at least 2 buckets");
+		}
+
 		//this.numRecords = numberRecords;
 		this.records = new ArrayList<>();
-		
+		this.memoryBudget = memoryBudget;
+		this.tmpRoot = tmpDir;
+		this.numBuckets = numBuckets;
+		this.rand = rand;
+
 	}
-	
+
 	public void addRecord( Collection<Writable> record ) {
-		
-		int slot = this.getRandomSlot();
-		
-		// handles moving other items around on collisions
-		this.records.add( slot, record );
-		
+
+		if (null != this.iterator) {
+			throw new IllegalStateException("Can't add records once reading has started");
+		}
+
+		this.records.add( record );
+		this.bufferedBytes += estimateSize( record );
+
+		// a single record is never spilled on its own, so oversized records can't recurse forever
+		if (this.bufferedBytes > this.memoryBudget && this.records.size() > 1) {
+			this.spill();
+		}
+
+	}
+
+	private static long estimateSize( Collection<Writable> record ) {
+
+		long size = OBJECT_OVERHEAD;
+		for (Writable w : record) {
+			size += OBJECT_OVERHEAD + estimatePayload( w );
+		}
+		return size;
+
 	}
-	
-	private int getRandomSlot() {
 
-		int min = 0;
-		
+	private static long estimatePayload( Writable w ) {
+
+		if (w instanceof Text) {
+			return ((Text) w).getLength();
+		}
+		if (w instanceof DoubleWritable || w instanceof FloatWritable || w instanceof IntWritable || w instanceof LongWritable) {
+			return 8;
+		}
+		if (w instanceof SparseVectorWritable) {
+			// an int index and a double value per entry, in two arrays
+			return 2 * OBJECT_OVERHEAD + 12L * ((SparseVectorWritable) w).numEntries();
+		}
 
-	    // nextInt is normally exclusive of the top value,
-	    // so add 1 to make it inclusive
+		// anything else is sized by what it serializes to
+		DataOutputStream out = new DataOutputStream( NULL_OUTPUT );
+		try {
+			w.write( out );
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to size writable " + w, e);
+		}
+		return out.size();
 
-		return rand.nextInt(((this.records.size()) - min) + 1) + min;
-		
 	}
-	
-	
+
+	private void spill() {
+
+		try {
+
+			if (null == this.spillDir) {
+
+				this.spillDir = Files.createTempDirectory( this.tmpRoot.toPath(), "canova-shuffle" ).toFile();
+				this.bucketWriters = new DataOutputStream[ this.numBuckets ];
+				this.bucketBytes = new long[ this.numBuckets ];
+				this.bucketRecords = new long[ this.numBuckets ];
+
+				for (int i = 0; i < this.numBuckets; i++) {
+					this.bucketWriters[ i ] = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( this.bucketFile( i ) ) ) );
+				}
+
+			}
+
+			for (Collection<Writable> record : this.records) {
+
+				int bucket = this.rand.nextInt( this.numBuckets );
+				RecordUtils.writeRecord( this.bucketWriters[ bucket ], record );
+				this.bucketBytes[ bucket ] += estimateSize( record );
+				this.bucketRecords[ bucket ]++;
+
+			}
+
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to spill shuffle records to " + this.spillDir, e);
+		}
+
+		this.records.clear();
+		this.bufferedBytes = 0;
+
+	}
+
+	private File bucketFile( int bucket ) {
+		return new File( this.spillDir, "bucket-" + bucket );
+	}
+
+	/**
+	 * Called once, when reading starts
+	 */
+	private void startReading() {
+
+		if (null == this.spillDir) {
+
+			// everything fit in memory
+			Collections.shuffle( this.records, this.rand );
+			this.iterator = this.records.iterator();
+			return;
+
+		}
+
+		if (!this.records.isEmpty()) {
+			this.spill();
+		}
+
+		try {
+			for (DataOutputStream out : this.bucketWriters) {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to finish writing shuffle buckets to " + this.spillDir, e);
+		}
+
+		this.iterator = Collections.emptyIterator();
+
+	}
+
+	private Iterator< Collection<Writable> > loadBucket( int bucket ) throws IOException {
+
+		File file = this.bucketFile( bucket );
+
+		try (DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) )) {
+
+			if (this.bucketBytes[ bucket ] > this.memoryBudget && this.bucketRecords[ bucket ] > 1) {
+
+				// still too big, shuffle this bucket through its own set of buckets
+				Shuffler bucketShuffler = new Shuffler( this.memoryBudget, this.spillDir, this.numBuckets, this.rand );
+				for (long i = 0; i < this.bucketRecords[ bucket ]; i++) {
+					bucketShuffler.addRecord( RecordUtils.readRecord( in ) );
+				}
+				return bucketShuffler;
+
+			}
+
+			List< Collection<Writable> > bucketRecordList = new ArrayList<>( (int) this.bucketRecords[ bucket ] );
+			for (long i = 0; i < this.bucketRecords[ bucket ]; i++) {
+				bucketRecordList.add( RecordUtils.readRecord( in ) );
+			}
+
+			Collections.shuffle( bucketRecordList, this.rand );
+			return bucketRecordList.iterator();
+
+		} finally {
+
+			file.delete();
+
+		}
+
+	}
+
+
+	@Override
 	public boolean hasNext() {
 
 		// cant touch it til we read, or ConcurrentModificatoinException
 		if ( null == this.iterator ) {
-			this.iterator = this.records.listIterator();
+			this.startReading();
 		}
-		
-		return this.iterator.hasNext();
+
+		while (!this.iterator.hasNext()) {
+
+			if (null == this.spillDir || this.currentBucket + 1 >= this.numBuckets) {
+				this.finish();
+				return false;
+			}
+
+			this.currentBucket++;
+
+			try {
+				this.iterator = this.loadBucket( this.currentBucket );
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to read shuffle bucket from " + this.spillDir, e);
+			}
+
+		}
+
+		return true;
 	}
-	
+
+	@Override
 	public Collection<Writable> next() {
-		
+
 		// cant touch it til we read, or ConcurrentModificationException
-		if ( null == this.iterator ) {
-			this.iterator = this.records.listIterator();
+		if ( !this.hasNext() ) {
+			throw new NoSuchElementException("No more shuffled records");
 		}
-				
+
 		return this.iterator.next();
 	}
-	
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	private void finish() {
+
+		if (!this.exhausted) {
+			this.exhausted = true;
+			this.close();
+		}
+
+	}
+
+	/**
+	 * Removes any spilled data. Happens automatically once every record has been read.
+	 */
+	@Override
+	public void close() {
+
+		if (null == this.spillDir) {
+			return;
+		}
+
+		for (DataOutputStream out : this.bucketWriters) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				// already closed or broken, we're deleting it anyway
+			}
+		}
+
+		try {
+			FileUtils.deleteDirectory( this.spillDir );
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+	}
+
 	/*
 	for(ar=0;ar<q.size();ar++){
 
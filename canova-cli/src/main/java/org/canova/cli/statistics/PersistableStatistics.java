@@ -0,0 +1,50 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+package org.canova.cli.statistics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * First pass statistics (column ranges, label maps, vocabularies, ...) that can be saved
+ * to and restored from a {@link StatisticsSidecar}, so a later run over the same input
+ * can skip straight to the transform pass
+ *
+ */
+public interface PersistableStatistics {
+
+	/**
+	 * Write the collected statistics
+	 * @param out the output to write to
+	 * @throws IOException
+	 */
+	void writeStatistics(DataOutput out) throws IOException;
+
+	/**
+	 * Restore statistics written by {@link #writeStatistics(DataOutput)}.
+	 * Implementations should read everything before touching their own state,
+	 * so a bad or mismatched sidecar leaves them untouched
+	 * @param in the input to read from
+	 * @throws IOException if the statistics can't be read or don't fit this instance
+	 */
+	void readStatistics(DataInput in) throws IOException;
+
+}
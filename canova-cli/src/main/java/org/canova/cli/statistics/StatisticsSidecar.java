@@ -0,0 +1,238 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+package org.canova.cli.statistics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.canova.api.io.WritableUtils;
+import org.canova.api.split.InputSplit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists the statistics of a first (statistics) pass next to the data, keyed by the input
+ * 
+ * - the key covers the path, size and modification time of every location in the split,
+ *   plus any settings that change what the first pass computes (schema file, min word frequency, ...)
+ * - if any of those change the sidecar no longer matches and the first pass runs again
+ * - sidecars are small binary files, one per { engine, input, settings } combination
+ * 
+ * Turned on with canova.input.statistics.cache=true; sidecars go to canova.input.statistics.cache.dir
+ * (defaults to a canova-statistics directory under java.io.tmpdir)
+ *
+ */
+public class StatisticsSidecar {
+
+	private static final Logger log = LoggerFactory.getLogger(StatisticsSidecar.class);
+
+	public static final String CACHE_STATISTICS_KEY = "canova.input.statistics.cache";
+	public static final String CACHE_DIRECTORY_KEY = "canova.input.statistics.cache.dir";
+
+	private static final int MAGIC = 0x43535354; // "CSST"
+	private static final int VERSION = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File sidecarFile;
+	private final String kind;
+	private final byte[] key;
+
+	/**
+	 * @param directory where sidecar files live
+	 * @param kind what produced the statistics (e.g. "csv"); sidecars of different kinds never match
+	 * @param split the input the statistics are collected over
+	 * @param settings anything else the statistics depend on
+	 */
+	public StatisticsSidecar(File directory, String kind, InputSplit split, String... settings) {
+
+		this.kind = kind;
+		this.key = computeKey(kind, split, settings);
+		this.sidecarFile = new File(directory, kind + "-" + toHex(this.key) + ".stats");
+
+	}
+
+	/**
+	 * Creates a sidecar from the vectorization configuration
+	 * 
+	 * @return the sidecar, or null if statistics caching is not turned on
+	 */
+	public static StatisticsSidecar fromConfiguration(Properties configProps, String kind, InputSplit split, String... settings) {
+
+		String enabled = configProps.getProperty(CACHE_STATISTICS_KEY);
+		if (null == enabled || !"true".equals(enabled.trim().toLowerCase())) {
+			return null;
+		}
+
+		String directory = configProps.getProperty(CACHE_DIRECTORY_KEY);
+		File dir = null == directory ? new File(System.getProperty("java.io.tmpdir"), "canova-statistics") : new File(directory.trim());
+
+		return new StatisticsSidecar(dir, kind, split, settings);
+
+	}
+
+	/**
+	 * Describes a file the statistics depend on (e.g. the vector schema) by path, size and modification time
+	 */
+	public static String describeFile(String path) {
+
+		File f = new File(path);
+		return f.getAbsolutePath() + ":" + f.length() + ":" + f.lastModified();
+
+	}
+
+	public File getFile() {
+		return this.sidecarFile;
+	}
+
+	/**
+	 * Restores the statistics if a matching sidecar exists
+	 * 
+	 * @param stats the statistics to restore into
+	 * @return true if the statistics were restored and the first pass can be skipped
+	 */
+	public boolean load(PersistableStatistics stats) {
+
+		if (!this.sidecarFile.isFile()) {
+			return false;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.sidecarFile)))) {
+
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				log.warn("Ignoring statistics sidecar with unknown format: {}", this.sidecarFile);
+				return false;
+			}
+
+			byte[] storedKey = new byte[ in.readInt() ];
+			in.readFully(storedKey);
+
+			if (!this.kind.equals(WritableUtils.readString(in)) || !Arrays.equals(storedKey, this.key)) {
+				log.warn("Ignoring statistics sidecar that does not match the input: {}", this.sidecarFile);
+				return false;
+			}
+
+			stats.readStatistics(in);
+
+		} catch (IOException e) {
+			log.warn("Ignoring unreadable statistics sidecar " + this.sidecarFile, e);
+			return false;
+		}
+
+		log.info("Loaded dataset statistics from {}", this.sidecarFile);
+		return true;
+
+	}
+
+	/**
+	 * Saves the statistics of a completed first pass
+	 * 
+	 * @param stats the statistics to save
+	 * @throws IOException
+	 */
+	public void save(PersistableStatistics stats) throws IOException {
+
+		File dir = this.sidecarFile.getAbsoluteFile().getParentFile();
+		if (!dir.exists() && !dir.mkdirs()) {
+			throw new IOException("Couldn't create statistics sidecar dir: " + dir);
+		}
+
+		// write to a temp file first so an interrupted run never leaves a truncated sidecar behind
+		File tmp = new File(dir, this.sidecarFile.getName() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(this.key.length);
+			out.write(this.key);
+			WritableUtils.writeString(out, this.kind);
+
+			stats.writeStatistics(out);
+
+		}
+
+		if (this.sidecarFile.exists() && !this.sidecarFile.delete()) {
+			throw new IOException("Couldn't replace statistics sidecar: " + this.sidecarFile);
+		}
+
+		if (!tmp.renameTo(this.sidecarFile)) {
+			throw new IOException("Couldn't move statistics sidecar into place: " + this.sidecarFile);
+		}
+
+		log.info("Saved dataset statistics to {}", this.sidecarFile);
+
+	}
+
+	private static byte[] computeKey(String kind, InputSplit split, String... settings) {
+
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+
+		digest.update(kind.getBytes(UTF8));
+
+		// location order matters: it decides the order labels are first seen in
+		for (URI location : split.locations()) {
+
+			StringBuilder sb = new StringBuilder("\n").append(location);
+
+			if ("file".equals(location.getScheme())) {
+				File f = new File(location);
+				sb.append(':').append(f.length()).append(':').append(f.lastModified());
+			}
+
+			digest.update(sb.toString().getBytes(UTF8));
+
+		}
+
+		for (String setting : settings) {
+			digest.update(("\n" + setting).getBytes(UTF8));
+		}
+
+		return digest.digest();
+
+	}
+
+	private static String toHex(byte[] bytes) {
+
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+
+	}
+
+}
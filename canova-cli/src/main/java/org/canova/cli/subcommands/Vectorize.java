@@ -92,6 +92,8 @@ public class Vectorize implements SubCommand {
     public static final String NORMALIZE_DATA_FLAG = "canova.input.vectorization.normalize";
     public static final String SHUFFLE_DATA_FLAG = "canova.output.shuffle";
     public static final String PRINT_STATS_FLAG = "canova.input.statistics.debug.print";
+    // tfidf (the default) or hashing, for text input
+    public static final String TEXT_VECTORIZER = "canova.input.text.vectorizer";
     
     protected String[] args;
 
@@ -377,7 +379,11 @@ public class Vectorize implements SubCommand {
                 clazz = "org.canova.cli.vectorization.CSVVectorizationEngine";
                 break;
             case "text":
-                clazz = "org.canova.cli.vectorization.TextVectorizationEngine";
+                if ("hashing".equals(this.configProps.getProperty(TEXT_VECTORIZER, "tfidf").trim())) {
+                    clazz = "org.canova.cli.vectorization.HashingTextVectorizationEngine";
+                } else {
+                    clazz = "org.canova.cli.vectorization.TextVectorizationEngine";
+                }
                 break;
             case "audio":
                 clazz = "org.canova.cli.vectorization.AudioVectorizationEngine";
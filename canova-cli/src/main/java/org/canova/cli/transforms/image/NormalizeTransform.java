@@ -1,11 +1,15 @@
 package org.canova.cli.transforms.image;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
 
 import org.canova.api.io.data.DoubleWritable;
 import org.canova.api.io.data.FloatWritable;
 import org.canova.api.writable.Writable;
+import org.canova.cli.statistics.PersistableStatistics;
 import org.canova.cli.transforms.Transform;
 
 /**
@@ -30,7 +34,7 @@ import org.canova.cli.transforms.Transform;
  * @author josh
  *
  */
-public class NormalizeTransform implements Transform {
+public class NormalizeTransform implements Transform, PersistableStatistics {
 
     public long totalRecords = 0;
     public double minValue = Double.NaN;
@@ -126,6 +130,24 @@ public class NormalizeTransform implements Transform {
 
     }
 
+    @Override
+    public void writeStatistics(DataOutput out) throws IOException {
+        out.writeLong(this.totalRecords);
+        out.writeDouble(this.minValue);
+        out.writeDouble(this.maxValue);
+    }
+
+    @Override
+    public void readStatistics(DataInput in) throws IOException {
+        long records = in.readLong();
+        double min = in.readDouble();
+        double max = in.readDouble();
+
+        this.totalRecords = records;
+        this.minValue = min;
+        this.maxValue = max;
+    }
+
     @Override
     public void evaluateStatistics() {
         // TODO Auto-generated method stub
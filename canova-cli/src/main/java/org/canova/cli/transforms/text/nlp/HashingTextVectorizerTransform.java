@@ -0,0 +1,155 @@
+package org.canova.cli.transforms.text.nlp;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.SparseVectorWritable;
+import org.canova.api.writable.Writable;
+import org.canova.cli.transforms.Transform;
+import org.canova.nd4j.nlp.vectorizer.HashingVectorizer;
+import org.canova.nlp.tokenization.tokenizer.TokenPreProcess;
+import org.canova.nlp.tokenization.tokenizer.preprocessor.EndingPreProcessor;
+import org.canova.nlp.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.canova.nlp.tokenization.tokenizerfactory.TokenizerFactory;
+import org.canova.nlp.vectorizer.FeatureHasher;
+
+/**
+ * Feature hashing counterpart of {@link TfidfTextVectorizerTransform}
+ * 
+ * 		-	there is no vocabulary, so there are no statistics to collect: every record is
+ * 			vectorized on its own, in a single streaming pass with constant memory
+ * 		-	vectors are {@link FeatureHasher#NUM_FEATURES} wide, 2^18 by default (signed MurmurHash3 of each term),
+ * 			with optional n-grams ({@link FeatureHasher#NGRAMS}) and weighting ({@link FeatureHasher#WEIGHTING})
+ * 		-	labels get their ID the first time they are seen
+ * 
+ * Sparse output is the default here: one column per feature is rarely what you want with a 2^18 wide vector.
+ * Dense output is limited to {@link HashingVectorizer#MAX_DENSE_FEATURES} features, like the nd4j vectorizer
+ *
+ */
+public class HashingTextVectorizerTransform implements Transform {
+
+    public final static String TOKENIZER = TfidfTextVectorizerTransform.TOKENIZER;
+    /** emit { sparse hashed vector, label } records (the default) instead of one column per feature */
+    public final static String SPARSE_OUTPUT = "org.canova.nlp.hashing.sparse";
+
+    protected TokenizerFactory tokenizerFactory;
+    protected FeatureHasher featureHasher;
+    protected boolean sparseOutput = true;
+
+	// label -> label ID, in order of appearance
+	protected Map<String, Integer> labelIDs = new LinkedHashMap<>();
+
+	final EndingPreProcessor preProcessor = new EndingPreProcessor();
+
+    public void initialize(Configuration conf) {
+
+        String clazz = conf.get(TOKENIZER, DefaultTokenizerFactory.class.getName());
+        try {
+            Class<? extends TokenizerFactory> tokenizerFactoryClazz = (Class<? extends TokenizerFactory>) Class.forName(clazz);
+            tokenizerFactory = tokenizerFactoryClazz.newInstance();
+        } catch (Exception e) {
+           throw new RuntimeException(e);
+        }
+
+        // same token normalization as the TF-IDF transform
+        tokenizerFactory.setTokenPreProcessor(new TokenPreProcess() {
+            @Override
+            public String preProcess(String token) {
+				if (!token.startsWith("http://")) {
+                    token = token.replaceAll("[^a-zA-Z ]", "").toLowerCase();
+                }
+				String base = preProcessor.preProcess(token);
+                return base.replaceAll("\\d", "d");
+            }
+        });
+
+        featureHasher = FeatureHasher.fromConfiguration(conf);
+        sparseOutput = conf.getBoolean(SPARSE_OUTPUT, true);
+        if (!sparseOutput && featureHasher.getNumFeatures() > HashingVectorizer.MAX_DENSE_FEATURES) {
+            throw new IllegalArgumentException(featureHasher.getNumFeatures() + " features are too wide for dense output (at most "
+                    + HashingVectorizer.MAX_DENSE_FEATURES + "), use sparse output");
+        }
+
+    }
+
+	public int getNumFeatures() {
+		return this.featureHasher.getNumFeatures();
+	}
+
+	public int getNumberOfLabelsSeen() {
+		return this.labelIDs.size();
+	}
+
+	public int getLabelID( String label ) {
+
+		String trimmedKey = label.trim();
+		Integer labelID = this.labelIDs.get( trimmedKey );
+		if ( null == labelID ) {
+			labelID = this.labelIDs.size();
+			this.labelIDs.put( trimmedKey, labelID );
+		}
+		return labelID;
+
+	}
+
+	/**
+	 * Nothing to collect, the hashing trick doesn't need a first pass
+	 */
+	@Override
+	public void collectStatistics(Collection<Writable> vector) {
+	}
+
+	@Override
+	public void evaluateStatistics() {
+	}
+
+	/**
+	 * Hash the raw record
+	 * 
+	 * Schema:
+	 * 
+	 * 		Writable[0]: go dogs, go 1
+	 * 		Writable[1]: label_A
+	 * 
+	 * becomes { sparse vector, label ID }, or { feature 0, ..., feature n - 1, label ID }
+	 * 
+	 */
+	@Override
+	public void transform(Collection<Writable> vector) {
+
+		if ( vector.size() != 2 ) {
+			return;
+		}
+
+		Writable[] columns = vector.toArray( new Writable[ 2 ] );
+		String textRecord = columns[ 0 ].toString();
+		int labelID = this.getLabelID( columns[ 1 ].toString() );
+
+		SparseVectorWritable hashedVector = this.featureHasher.hash( this.tokenizerFactory.create( textRecord ) );
+
+		vector.clear();
+
+		if ( this.sparseOutput ) {
+
+			vector.add( hashedVector );
+
+		} else {
+
+			double[] dense = hashedVector.toArray();
+			for ( int colID = 0; colID < dense.length; colID++ ) {
+
+				vector.add( new DoubleWritable( dense[ colID ] ) );
+
+			}
+
+		}
+
+		// we always append a label
+		vector.add( new DoubleWritable( labelID ) );
+
+	}
+
+}
@@ -5,15 +5,20 @@ import org.apache.commons.math3.util.Pair;
 import org.apache.lucene.analysis.snowball.SnowballAnalyzer;
 import org.canova.api.berkeley.Counter;
 import org.canova.api.conf.Configuration;
+import org.canova.api.io.WritableUtils;
 import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.vector.Vectorizer.RecordCallBack;
 import org.canova.api.writable.Writable;
+import org.canova.cli.statistics.PersistableStatistics;
 import org.canova.cli.transforms.Transform;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -57,13 +62,16 @@ import org.canova.nlp.tokenization.tokenizerfactory.TokenizerFactory;
  * @author josh
  *
  */
-public class TfidfTextVectorizerTransform implements Transform {
+public class TfidfTextVectorizerTransform implements Transform, PersistableStatistics {
 
     protected TokenizerFactory tokenizerFactory;
     protected int minWordFrequency = 0;
     public final static String MIN_WORD_FREQUENCY = "org.nd4j.nlp.minwordfrequency";
     public final static String STOP_WORDS = "org.nd4j.nlp.stopwords";
     public final static String TOKENIZER = "org.canova.nlp.tokenizerfactory";
+    /** emit { sparse tfidf vector, label } records instead of one column per vocab word; for the SVMLight / LibSvm output formats */
+    public final static String SPARSE_OUTPUT = "org.canova.nlp.tfidf.sparse";
+    protected boolean sparseOutput = false;
     protected Collection<String> stopWords;
     protected VocabCache cache;
 
@@ -148,6 +156,7 @@ public class TfidfTextVectorizerTransform implements Transform {
 
         
         minWordFrequency = conf.getInt(MIN_WORD_FREQUENCY,5);
+        sparseOutput = conf.getBoolean(SPARSE_OUTPUT,false);
         stopWords = conf.getStringCollection(STOP_WORDS);
         if(stopWords == null || stopWords.isEmpty())
             stopWords = StopWords.getStopWords();
@@ -186,37 +195,68 @@ public class TfidfTextVectorizerTransform implements Transform {
     
     public INDArray convertTextRecordToTFIDFVector( String textRecord ) {
     	
-    	// here sentence represents a full document
-    	Counter<String> wordFrequenciesForDocument = this.wordFrequenciesForSentence( textRecord );
+        SparseVectorWritable sparseVector = this.convertTextRecordToSparseTFIDFVector( textRecord );
     	
         INDArray ret = Nd4j.create(cache.vocabWords().size());
 
+        for (int i = 0; i < sparseVector.numEntries(); i++) {
+            ret.putScalar( sparseVector.getIndex( i ), sparseVector.getValue( i ) );
+        }
+                
+        return ret;
+    	
+    }
+
+    /**
+     * Same TF-IDF values as {@link #convertTextRecordToTFIDFVector(String)}, but only for the terms of this document:
+     * a vocab word that doesn't appear in the document has a TF of 0, so it never gets an entry.
+     * Each term is looked up in the vocab's index, instead of scanning the whole vocabulary.
+     *
+     * @param textRecord the full document
+     * @return the sparse TF-IDF vector, as wide as the vocabulary
+     */
+    public SparseVectorWritable convertTextRecordToSparseTFIDFVector( String textRecord ) {
+
+    	// here sentence represents a full document
+    	Counter<String> wordFrequenciesForDocument = this.wordFrequenciesForSentence( textRecord );
+
 		int totalDocsInCorpus = (int)cache.numDocs();
 
-        // for each word in our known vocabulary ..
-        for(int i = 0; i < cache.vocabWords().size(); i++) {
-        	
-        	String term = cache.wordAt( i );
-        	
+		int[] indices = new int[ wordFrequenciesForDocument.size() ];
+		double[] values = new double[ wordFrequenciesForDocument.size() ];
+		int numEntries = 0;
+
+        // for each word in this document ..
+        for (Map.Entry<String, Double> word : wordFrequenciesForDocument.entrySet()) {
+
+        	String term = word.getKey();
+
+        	int vocabIndex = cache.vocabWords().indexOf( term );
+        	if ( vocabIndex < 0 ) {
+        		continue;
+        	}
+
         	// [TF] get the count of the word for this document (parameter for TF)
-            int termFreq_ForThisSpecificDoc = (int) wordFrequenciesForDocument.getCount( cache.wordAt( i ) );
-            
+            int termFreq_ForThisSpecificDoc = word.getValue().intValue();
+
             // [IDF]
             // oddly enough, the vocabCache just pulls the doc frequency for a term
     		int numberOfDocsThisTermAppearsIn = (int) cache.idf(term);
-            
-            
+
     		double tf_term = NLPUtils.tf( termFreq_ForThisSpecificDoc );
     		double idf_term = NLPUtils.idf( totalDocsInCorpus, numberOfDocsThisTermAppearsIn );
-    		
+
     		double tfidf_term = NLPUtils.tfidf( tf_term, idf_term );
-            
-            ret.putScalar( i, tfidf_term );
-            
+
+    		if ( tfidf_term != 0.0 ) {
+    			indices[ numEntries ] = vocabIndex;
+    			values[ numEntries++ ] = tfidf_term;
+    		}
+
         }
-                
-        return ret;
-    	
+
+        return new SparseVectorWritable( cache.vocabWords().size(), indices, values, numEntries );
+
     }
 
 	/**
@@ -344,13 +384,8 @@ public class TfidfTextVectorizerTransform implements Transform {
 		
 		labelID = this.getLabelID( label );
 		
-		// 3. get the converted vector
-	//	System.out.print( "Label: " + label + " ");
-	//	INDArray tfidfVector = this.convertSentenceToTFIDFVector( textRecord );
-		INDArray tfidfVector = this.convertTextRecordToTFIDFVector( textRecord );
-		
-	//	System.out.println( "cols: " + tfidfVector.columns() );
-	//	System.out.println( "rows: " + tfidfVector.rows() );
+		// 3. get the converted vector, only touching the terms of this document
+		SparseVectorWritable tfidfVector = this.convertTextRecordToSparseTFIDFVector( textRecord );
 		
 		// 4. rebuild the vector refernece w the schema { vector entries, ..., label }
 		
@@ -359,10 +394,19 @@ public class TfidfTextVectorizerTransform implements Transform {
 		
 		// 4.b. rebuild
 		
-		for ( int colID = 0; colID < tfidfVector.columns(); colID++ ) {
-			
-			vector.add(new DoubleWritable( tfidfVector.getDouble(0, colID) ) );
-			
+		if ( this.sparseOutput ) {
+
+			vector.add( tfidfVector );
+
+		} else {
+
+			double[] dense = tfidfVector.toArray();
+			for ( int colID = 0; colID < dense.length; colID++ ) {
+
+				vector.add(new DoubleWritable( dense[ colID ] ) );
+
+			}
+
 		}
 		
 		// we always append a label
@@ -375,6 +419,75 @@ public class TfidfTextVectorizerTransform implements Transform {
 	
 
 
+	/**
+	 * Writes the label map and the TF-IDF vocabulary (in vocab index order, with word and doc frequencies).
+	 * Words that never made it into the vocab aren't used by the transform pass, so they are left out.
+	 */
+	@Override
+	public void writeStatistics(DataOutput out) throws IOException {
+
+		WritableUtils.writeVInt(out, this.recordLabels.size());
+		for (Map.Entry<String, Pair<Integer, Integer>> label : this.recordLabels.entrySet()) {
+			WritableUtils.writeString(out, label.getKey());
+			WritableUtils.writeVInt(out, label.getValue().getFirst());
+			WritableUtils.writeVInt(out, label.getValue().getSecond());
+		}
+
+		out.writeDouble(cache.numDocs());
+
+		int vocabSize = cache.vocabWords().size();
+		WritableUtils.writeVInt(out, vocabSize);
+		for (int i = 0; i < vocabSize; i++) {
+			String word = cache.wordAt(i);
+			WritableUtils.writeString(out, word);
+			out.writeDouble(cache.wordFrequency(word));
+			out.writeDouble(cache.idf(word));
+		}
+
+	}
+
+	/**
+	 * Restores statistics written by {@link #writeStatistics(DataOutput)} into a freshly initialized transform
+	 */
+	@Override
+	public void readStatistics(DataInput in) throws IOException {
+
+		if (cache.numDocs() > 0 || !this.recordLabels.isEmpty()) {
+			throw new IllegalStateException("Statistics can only be restored before the first pass");
+		}
+
+		Map<String, Pair<Integer, Integer>> labels = new LinkedHashMap<>();
+		int numLabels = WritableUtils.readVInt(in);
+		for (int i = 0; i < numLabels; i++) {
+			String label = WritableUtils.readString(in);
+			int labelID = WritableUtils.readVInt(in);
+			int count = WritableUtils.readVInt(in);
+			labels.put(label, new Pair<>(labelID, count));
+		}
+
+		double numDocs = in.readDouble();
+
+		int vocabSize = WritableUtils.readVInt(in);
+		String[] words = new String[vocabSize];
+		double[] wordFrequencies = new double[vocabSize];
+		double[] docFrequencies = new double[vocabSize];
+		for (int i = 0; i < vocabSize; i++) {
+			words[i] = WritableUtils.readString(in);
+			wordFrequencies[i] = in.readDouble();
+			docFrequencies[i] = in.readDouble();
+		}
+
+		this.recordLabels.putAll(labels);
+		cache.incrementNumDocs(numDocs);
+
+		// vocab words are added in index order as soon as they cross the min word frequency
+		for (int i = 0; i < vocabSize; i++) {
+			cache.incrementCount(words[i], wordFrequencies[i]);
+			cache.incrementDocCount(words[i], docFrequencies[i]);
+		}
+
+	}
+
 	/**
 	 * This is where we'll take the dataset stats learned from the first pass and setup for the 
 	 * transform pass
@@ -30,6 +30,7 @@ import org.canova.api.writable.Writable;
 import org.canova.cli.csv.schema.CSVInputSchema;
 import org.canova.cli.csv.schema.CSVSchemaColumn;
 import org.canova.cli.shuffle.Shuffler;
+import org.canova.cli.statistics.StatisticsSidecar;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,9 +53,21 @@ public class CSVVectorizationEngine extends VectorizationEngine {
   private static final Logger log = LoggerFactory.getLogger(CSVVectorizationEngine.class);
 
   public static final String SKIP_HEADER_KEY = "canova.input.header.skip";
+  public static final String THREADS_KEY = "canova.input.vectorization.threads";
+  public static final String BATCH_SIZE_KEY = "canova.input.vectorization.batch.size";
+  public static final String QUEUE_SIZE_KEY = "canova.input.vectorization.queue.size";
+  public static final String ORDERED_OUTPUT_KEY = "canova.output.ordered";
+
+  public static final int DEFAULT_BATCH_SIZE = 1000;
 
   private CSVInputSchema inputSchema = null;
   private boolean skipHeader = false;
+
+  // anything above 1 thread switches the transform pass over to the CSVVectorizationPipeline
+  private int numThreads = 1;
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private int queueSize = -1;
+  private boolean orderedOutput = true;
   //private CSVVectorizationEngine vectorizer = null;
   
 
@@ -70,6 +83,23 @@ public class CSVVectorizationEngine extends VectorizationEngine {
         this.skipHeader = "true".equals(headerSkipString.trim().toLowerCase());
       }
 
+      if (null != this.configProps.get( THREADS_KEY )) {
+        this.numThreads = Integer.parseInt(((String) this.configProps.get( THREADS_KEY )).trim());
+      }
+
+      if (null != this.configProps.get( BATCH_SIZE_KEY )) {
+        this.batchSize = Integer.parseInt(((String) this.configProps.get( BATCH_SIZE_KEY )).trim());
+      }
+
+      if (null != this.configProps.get( QUEUE_SIZE_KEY )) {
+        this.queueSize = Integer.parseInt(((String) this.configProps.get( QUEUE_SIZE_KEY )).trim());
+      }
+
+      if (null != this.configProps.get( ORDERED_OUTPUT_KEY )) {
+        String orderedString = (String) this.configProps.get( ORDERED_OUTPUT_KEY );
+        this.orderedOutput = !"false".equals(orderedString.trim().toLowerCase());
+      }
+
       
   }
 
@@ -103,32 +133,65 @@ public class CSVVectorizationEngine extends VectorizationEngine {
 	  
 	  
 	  
+      // 0. see if a previous run over the same input already left us the statistics
+      String schemaFilePath = (String) this.configProps.get("canova.input.vector.schema");
+      StatisticsSidecar sidecar = this.createStatisticsSidecar( "csv", StatisticsSidecar.describeFile( schemaFilePath ), "skipHeader=" + this.skipHeader );
+      boolean statisticsLoaded = null != sidecar && sidecar.load( this.inputSchema );
+
       // 1. Do a pre-pass to collect dataset statistics
-      while (reader.hasNext()) {
+      if (statisticsLoaded) {
+
+    	  System.out.println( "Loaded dataset statistics from: " + sidecar.getFile() );
+
+      } else if (this.numThreads > 1) {
+
+          if (this.skipHeader && reader.hasNext()) {
+        	  System.out.println("Skipping Header: " + reader.next().toArray()[0].toString());
+        	  recordsRead++;
+          }
+
+          recordsRead += this.createPipeline().collectStatistics(reader);
+
+      } else {
+
+        while (reader.hasNext()) {
     	  
     	  
-          Collection<Writable> w = reader.next();
+            Collection<Writable> w = reader.next();
 
-          if (this.skipHeader && recordsRead == 0) {
+            if (this.skipHeader && recordsRead == 0) {
         	  
-        	  System.out.println("Skipping Header: " + w.toArray()[0].toString());
+          	  System.out.println("Skipping Header: " + w.toArray()[0].toString());
         	  
-          } else {
-
-        	  try {
-		          this.inputSchema.evaluateInputRecord(w.toArray()[0].toString());
-		      } catch (Exception e) {
-		          // TODO Auto-generated catch block
-		          e.printStackTrace();
-		      }
+            } else {
+
+          	  try {
+  		          this.inputSchema.evaluateInputRecord(w.toArray()[0].toString());
+  		      } catch (Exception e) {
+  		          // TODO Auto-generated catch block
+  		          e.printStackTrace();
+  		      }
         	  
-          }
+            }
           
-          recordsRead++;
+            recordsRead++;
+
+        }
 
       }
 
-      reader.close();
+      if (!statisticsLoaded) {
+
+    	  reader.close();
+
+    	  if (null != sidecar) {
+    		  sidecar.save( this.inputSchema );
+    	  }
+
+    	  // 1.a. reset the reader for the second pass
+    	  reader = inputFormat.createReader(split);
+
+      }
 
       // 2. computate the dataset statistics
       this.inputSchema.computeDatasetStatistics();	  
@@ -153,17 +216,42 @@ public class CSVVectorizationEngine extends VectorizationEngine {
 
       // 1. make second pass to do transforms now that we have stats on the datasets
 
-      // 1.a. reset the reader
-		reader = inputFormat.createReader(split);
-
-
       Configuration conf = new Configuration();
       conf.set( OutputFormat.OUTPUT_PATH, this.outputFilename );
       boolean skippedHeaderYet = false;
 
-      if (shuffleOn) {
+      if (this.numThreads > 1) {
+
+    	  final Shuffler shuffle = shuffleOn ? this.createShuffler() : null;
+	      final RecordWriter writer = outputFormat.createWriter(conf);
+
+	      if (this.skipHeader && reader.hasNext()) {
+	    	  reader.next();
+	      }
+
+	      recordsWritten = this.createPipeline().execute(reader, new CSVVectorizationPipeline.RecordSink() {
+	    	  @Override
+	    	  public void write(Collection<Writable> record) throws IOException {
+	    		  if (null == shuffle) {
+	    			  writer.write(record);
+	    		  } else {
+	    			  shuffle.addRecord(record);
+	    		  }
+	    	  }
+	      });
+
+	      if (null != shuffle) {
+	    	  while (shuffle.hasNext()) {
+	    		  writer.write( shuffle.next() );
+	    	  }
+	      }
+
+	      reader.close();
+	      writer.close();
+
+      } else if (shuffleOn) {
     	  
-    	  Shuffler shuffle = new Shuffler();
+    	  Shuffler shuffle = this.createShuffler();
     	  
 	      RecordWriter writer = outputFormat.createWriter(conf); //new SVMLightRecordWriter(tmpOutSVMLightFile,true);
 
@@ -249,13 +337,24 @@ public class CSVVectorizationEngine extends VectorizationEngine {
 	      
       }
       
-      System.out.println( "CSV Lines Read: " + recordsRead );
+      if (!statisticsLoaded) {
+    	  System.out.println( "CSV Lines Read: " + recordsRead );
+      }
       System.out.println( "Vector Records Written: " + recordsWritten );
       
       
       
   }
   
+  private CSVVectorizationPipeline createPipeline() {
+
+	  // by default keep a few batches queued up per worker
+	  int batchesInFlight = this.queueSize > 0 ? this.queueSize : this.numThreads * 4;
+
+	  return new CSVVectorizationPipeline(this, this.inputSchema, this.numThreads, this.batchSize, batchesInFlight, this.orderedOutput);
+
+  }
+
   /**
    * Use statistics collected from a previous pass to vectorize (or drop) each column
    *
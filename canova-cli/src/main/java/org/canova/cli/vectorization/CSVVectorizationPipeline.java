@@ -0,0 +1,371 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.vectorization;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.canova.api.exceptions.CanovaException;
+import org.canova.api.records.reader.RecordReader;
+import org.canova.api.writable.Writable;
+import org.canova.cli.csv.schema.CSVInputSchema;
+import org.canova.cli.csv.statistics.DatasetSummaryStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+
+/**
+ * Pipelined, multi-threaded version of the two CSV passes
+ * - a reader thread pulls lines from the record reader and groups them into batches
+ * - N worker threads process the batches: collect statistics for the first pass, vectorize for the second
+ * - the calling thread drains the finished batches, in input order unless told otherwise
+ * <p/>
+ * The number of batches in flight (queued, being processed, or waiting to be re-ordered) is capped,
+ * so heap use stays bounded no matter how big the input is.
+ */
+public class CSVVectorizationPipeline {
+
+  private static final Logger log = LoggerFactory.getLogger(CSVVectorizationPipeline.class);
+
+  /**
+   * Receives vectorized records; always called from a single thread
+   */
+  public interface RecordSink {
+    void write(Collection<Writable> record) throws IOException;
+  }
+
+  /**
+   * Turns a batch of raw lines into a result; called concurrently from the worker threads
+   */
+  private interface BatchProcessor<T> {
+    T process(List<String> lines) throws Exception;
+  }
+
+  /**
+   * Receives finished batch results; always called from the calling thread
+   */
+  private interface BatchConsumer<T> {
+    void consume(T result) throws IOException;
+  }
+
+  private final CSVVectorizationEngine engine;
+  private final CSVInputSchema schema;
+  private final int numWorkers;
+  private final int batchSize;
+  private final int maxBatchesInFlight;
+  private final boolean ordered;
+
+  // marks the end of the input on the work queue and the end of a worker on the result queue
+  private static final Batch END = new Batch(-1);
+  // pushed onto the result queue when the reader or a worker fails
+  private static final Batch ABORT = new Batch(-2);
+
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+  /**
+   * @param engine the engine whose {@link CSVVectorizationEngine#vectorizeToWritable} is run per line
+   * @param schema the input schema
+   * @param numWorkers the number of worker threads
+   * @param batchSize the number of lines handed to a worker at once
+   * @param maxBatchesInFlight the maximum number of batches held in memory at any time
+   * @param ordered whether vectorized records are written in input order
+   */
+  public CSVVectorizationPipeline(CSVVectorizationEngine engine, CSVInputSchema schema, int numWorkers, int batchSize, int maxBatchesInFlight, boolean ordered) {
+
+    if (numWorkers < 1 || batchSize < 1 || maxBatchesInFlight < 1) {
+      throw new IllegalArgumentException("Workers, batch size and batches in flight must all be positive");
+    }
+
+    this.engine = engine;
+    this.schema = schema;
+    this.numWorkers = numWorkers;
+    this.batchSize = batchSize;
+    this.maxBatchesInFlight = maxBatchesInFlight;
+    this.ordered = ordered;
+
+  }
+
+  /**
+   * First pass: collects the column statistics of every remaining line of the reader into the schema.
+   * Each batch gets its own {@link DatasetSummaryStatistics}; they are always merged in input order,
+   * so the label IDs come out the same as with a serial pass.
+   * Bad records are reported and skipped, same as the serial pass.
+   *
+   * @param reader a line reader, already positioned past any header
+   * @return the number of lines read from the reader
+   * @throws CanovaException if reading failed
+   * @throws InterruptedException
+   */
+  public long collectStatistics(RecordReader reader) throws CanovaException, InterruptedException {
+
+    return this.run(reader, true, new BatchProcessor<DatasetSummaryStatistics>() {
+      @Override
+      public DatasetSummaryStatistics process(List<String> lines) {
+
+        DatasetSummaryStatistics stats = schema.createStatistics();
+
+        for (String line : lines) {
+          try {
+            schema.evaluateInputRecord(line, stats);
+          } catch (Exception e) {
+            log.warn("Skipping record while collecting statistics: " + e.getMessage());
+          }
+        }
+
+        return stats;
+
+      }
+    }, new BatchConsumer<DatasetSummaryStatistics>() {
+      @Override
+      public void consume(DatasetSummaryStatistics stats) {
+        schema.mergeStatistics(stats);
+      }
+    });
+
+  }
+
+  /**
+   * Second pass: vectorizes every remaining line of the reader into the sink
+   *
+   * @param reader a line reader, already positioned past any header
+   * @param sink where the vectorized records go
+   * @return the number of lines read from the reader
+   * @throws CanovaException if reading, vectorizing or writing failed
+   * @throws InterruptedException
+   */
+  public long execute(RecordReader reader, final RecordSink sink) throws CanovaException, InterruptedException {
+
+    return this.run(reader, this.ordered, new BatchProcessor<List<Collection<Writable>>>() {
+      @Override
+      public List<Collection<Writable>> process(List<String> lines) {
+
+        List<Collection<Writable>> vectors = new ArrayList<>(lines.size());
+
+        for (String line : lines) {
+          if (!Strings.isNullOrEmpty(line)) {
+            Collection<Writable> vector = engine.vectorizeToWritable("", line, schema);
+            if (null != vector) {
+              vectors.add(vector);
+            }
+          }
+        }
+
+        return vectors;
+
+      }
+    }, new BatchConsumer<List<Collection<Writable>>>() {
+      @Override
+      public void consume(List<Collection<Writable>> vectors) throws IOException {
+        for (Collection<Writable> vector : vectors) {
+          sink.write(vector);
+        }
+      }
+    });
+
+  }
+
+  private <T> long run(final RecordReader reader, boolean inOrder, final BatchProcessor<T> processor, BatchConsumer<T> consumer) throws CanovaException, InterruptedException {
+
+    this.failure.set(null);
+
+    final Semaphore inFlight = new Semaphore(this.maxBatchesInFlight);
+    final BlockingQueue<Batch> work = new ArrayBlockingQueue<>(this.maxBatchesInFlight + this.numWorkers);
+    // never holds more than maxBatchesInFlight batches plus the end/abort markers
+    final BlockingQueue<Batch> results = new LinkedBlockingQueue<>();
+    final AtomicLong linesRead = new AtomicLong();
+
+    List<Thread> threads = new ArrayList<>();
+
+    threads.add(new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+
+          long sequence = 0;
+          Batch batch = new Batch(sequence++);
+
+          while (reader.hasNext()) {
+
+            Collection<Writable> w = reader.next();
+            batch.lines.add(w.iterator().next().toString());
+            linesRead.incrementAndGet();
+
+            if (batch.lines.size() == batchSize) {
+              inFlight.acquire();
+              work.put(batch);
+              batch = new Batch(sequence++);
+            }
+
+          }
+
+          if (!batch.lines.isEmpty()) {
+            inFlight.acquire();
+            work.put(batch);
+          }
+
+          for (int i = 0; i < numWorkers; i++) {
+            work.put(END);
+          }
+
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+          fail(t, results);
+        }
+      }
+    }, "canova-csv-reader"));
+
+    for (int i = 0; i < this.numWorkers; i++) {
+
+      threads.add(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+
+            for (Batch batch = work.take(); batch != END; batch = work.take()) {
+
+              batch.result = processor.process(batch.lines);
+              batch.lines = null;
+              results.put(batch);
+
+            }
+
+            results.put(END);
+
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } catch (Throwable t) {
+            fail(t, results);
+          }
+        }
+      }, "canova-csv-worker-" + i));
+
+    }
+
+    for (Thread t : threads) {
+      t.setDaemon(true);
+      t.start();
+    }
+
+    try {
+
+      this.drain(results, inFlight, inOrder, consumer);
+
+    } catch (IOException | RuntimeException e) {
+
+      this.failure.compareAndSet(null, e);
+
+    } finally {
+
+      // either we are done and these are no-ops, or something broke and we need the threads to stop
+      for (Thread t : threads) {
+        t.interrupt();
+      }
+      for (Thread t : threads) {
+        t.join();
+      }
+
+    }
+
+    Throwable t = this.failure.get();
+    if (null != t) {
+      throw new CanovaException("Parallel CSV processing failed", t);
+    }
+
+    return linesRead.get();
+
+  }
+
+  private <T> void drain(BlockingQueue<Batch> results, Semaphore inFlight, boolean inOrder, BatchConsumer<T> consumer) throws IOException, InterruptedException {
+
+    // batches that finished ahead of the one we are waiting on
+    Map<Long, Batch> pending = new HashMap<>();
+    long nextSequence = 0;
+    int workersDone = 0;
+
+    while (workersDone < this.numWorkers) {
+
+      Batch batch = results.take();
+
+      if (batch == ABORT) {
+        return;
+      }
+
+      if (batch == END) {
+        workersDone++;
+        continue;
+      }
+
+      if (!inOrder) {
+        this.consumeBatch(batch, inFlight, consumer);
+        continue;
+      }
+
+      pending.put(batch.sequence, batch);
+
+      for (Batch next = pending.remove(nextSequence); null != next; next = pending.remove(nextSequence)) {
+        this.consumeBatch(next, inFlight, consumer);
+        nextSequence++;
+      }
+
+    }
+
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> void consumeBatch(Batch batch, Semaphore inFlight, BatchConsumer<T> consumer) throws IOException {
+
+    consumer.consume((T) batch.result);
+    inFlight.release();
+
+  }
+
+  private void fail(Throwable t, BlockingQueue<Batch> results) {
+
+    this.failure.compareAndSet(null, t);
+    results.offer(ABORT);
+
+  }
+
+  private static class Batch {
+
+    private final long sequence;
+    private List<String> lines = new ArrayList<>();
+    private Object result;
+
+    private Batch(long sequence) {
+      this.sequence = sequence;
+    }
+
+  }
+
+}
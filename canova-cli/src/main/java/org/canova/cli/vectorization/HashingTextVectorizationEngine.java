@@ -0,0 +1,90 @@
+package org.canova.cli.vectorization;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.canova.api.writable.Writable;
+import org.canova.cli.shuffle.Shuffler;
+import org.canova.cli.transforms.text.nlp.HashingTextVectorizerTransform;
+import org.canova.nlp.vectorizer.FeatureHasher;
+
+/**
+ * Text vectorization with the hashing trick
+ * 
+ * Unlike {@link TextVectorizationEngine} there's no vocabulary pass: records are read,
+ * hashed and written out in one streaming pass, with memory that doesn't grow with the corpus
+ * (unless shuffling is on).
+ * 
+ * Picked for text input when canova.input.text.vectorizer=hashing; the hashing settings
+ * ({@link FeatureHasher#NUM_FEATURES}, {@link FeatureHasher#NGRAMS}, {@link FeatureHasher#WEIGHTING},
+ * {@link HashingTextVectorizerTransform#SPARSE_OUTPUT}) are read from the config file.
+ *
+ */
+public class HashingTextVectorizationEngine extends VectorizationEngine {
+
+  private static final String[] HASHING_KEYS = {
+      FeatureHasher.NUM_FEATURES, FeatureHasher.NGRAMS, FeatureHasher.WEIGHTING,
+      HashingTextVectorizerTransform.SPARSE_OUTPUT, HashingTextVectorizerTransform.TOKENIZER
+  };
+
+  @Override
+  public void execute() throws IOException {
+
+    for (String key : HASHING_KEYS) {
+      String value = configProps.getProperty(key);
+      if (null != value) {
+        conf.set(key, value.trim());
+      }
+    }
+
+    HashingTextVectorizerTransform hashingTransform = new HashingTextVectorizerTransform();
+    hashingTransform.initialize(conf);
+
+    int recordsSeen = 0;
+
+    if (shuffleOn) {
+
+      Shuffler shuffle = this.createShuffler();
+
+      while (reader.hasNext()) {
+
+        Collection<Writable> w = reader.next();
+        hashingTransform.transform(w);
+        shuffle.addRecord(w);
+        recordsSeen++;
+
+      }
+
+      while (shuffle.hasNext()) {
+
+        writer.write(shuffle.next());
+
+      }
+
+    } else {
+
+      while (reader.hasNext()) {
+
+        Collection<Writable> w = reader.next();
+        hashingTransform.transform(w);
+        writer.write(w);
+        recordsSeen++;
+
+      }
+
+    }
+
+    reader.close();
+    writer.close();
+
+    if (this.printStats) {
+
+      System.out.println("Total Records: " + recordsSeen);
+      System.out.println("Total Labels: " + hashingTransform.getNumberOfLabelsSeen());
+      System.out.println("Hashed Features: " + hashingTransform.getNumFeatures());
+
+    }
+
+  }
+
+}
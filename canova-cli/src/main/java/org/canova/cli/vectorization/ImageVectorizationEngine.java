@@ -6,6 +6,7 @@ import java.util.Collection;
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.writable.Writable;
 import org.canova.cli.shuffle.Shuffler;
+import org.canova.cli.statistics.StatisticsSidecar;
 import org.canova.cli.subcommands.Vectorize;
 import org.canova.cli.transforms.image.NormalizeTransform;
 
@@ -36,32 +37,46 @@ public class ImageVectorizationEngine extends VectorizationEngine {
 	public void execute() throws IOException {
 
 		NormalizeTransform normalizer = new NormalizeTransform();
-		
-		// 1. collect stats for normalize
-        while (reader.hasNext()) {
-            
-        	// get the record from the input format
-        	Collection<Writable> w = reader.next();
-        	normalizer.collectStatistics(w);
-
-        }
-        
-		// 2. reset reader
-        
-        reader.close();
-        //RecordReader reader = null;
-		try {
-			this.reader = inputFormat.createReader(split, conf);
-		} catch (InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+
+		StatisticsSidecar sidecar = this.createStatisticsSidecar("image", inputFormat.getClass().getName());
+
+		if (null != sidecar && sidecar.load(normalizer)) {
+
+			System.out.println( "Loaded dataset statistics from: " + sidecar.getFile() );
+
+		} else {
+
+			// 1. collect stats for normalize
+	        while (reader.hasNext()) {
+	            
+	        	// get the record from the input format
+	        	Collection<Writable> w = reader.next();
+	        	normalizer.collectStatistics(w);
+	
+	        }
+
+	        if (null != sidecar) {
+	        	sidecar.save(normalizer);
+	        }
+	        
+			// 2. reset reader
+	        
+	        reader.close();
+	        //RecordReader reader = null;
+			try {
+				this.reader = inputFormat.createReader(split, conf);
+			} catch (InterruptedException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
+
 		}
 		
 		// 3. transform data
 		
 	      if (shuffleOn) {
 	    	  
-	    	  Shuffler shuffle = new Shuffler();
+	    	  Shuffler shuffle = this.createShuffler();
 			
 			
 			//int x = 0;
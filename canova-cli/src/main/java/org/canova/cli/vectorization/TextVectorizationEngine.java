@@ -5,6 +5,7 @@ import java.util.Collection;
 
 import org.canova.api.writable.Writable;
 import org.canova.cli.shuffle.Shuffler;
+import org.canova.cli.statistics.StatisticsSidecar;
 import org.canova.cli.transforms.text.nlp.TfidfTextVectorizerTransform;
 
 public class TextVectorizationEngine extends VectorizationEngine {
@@ -33,25 +34,47 @@ public class TextVectorizationEngine extends VectorizationEngine {
 
     TfidfTextVectorizerTransform tfidfTransform = new TfidfTextVectorizerTransform();
     conf.setInt(TfidfTextVectorizerTransform.MIN_WORD_FREQUENCY, 1);
+    // sparse records only make sense for the SVMLight / LibSvm output formats, so this stays opt in
+    String sparseOutput = configProps.getProperty(TfidfTextVectorizerTransform.SPARSE_OUTPUT);
+    if (null != sparseOutput) {
+      conf.setBoolean(TfidfTextVectorizerTransform.SPARSE_OUTPUT, Boolean.parseBoolean(sparseOutput.trim()));
+    }
     //	conf.set(TfidfTextVectorizerTransform.TOKENIZER, "org.canova.nlp.tokenization.tokenizerfactory.PosUimaTokenizerFactory");
     tfidfTransform.initialize(conf);
 
     int recordsSeen = 0;
 
+    StatisticsSidecar sidecar = this.createStatisticsSidecar("text", inputFormat.getClass().getName(),
+        conf.get(TfidfTextVectorizerTransform.TOKENIZER, ""), conf.get(TfidfTextVectorizerTransform.MIN_WORD_FREQUENCY));
+    boolean statisticsLoaded = null != sidecar && sidecar.load(tfidfTransform);
+
+    if (statisticsLoaded) {
 
-    // 1. collect stats for normalize
-    while (reader.hasNext()) {
+      System.out.println("Loaded dataset statistics from: " + sidecar.getFile());
 
-      // get the record from the input format
-      Collection<Writable> w = reader.next();
-      tfidfTransform.collectStatistics(w);
-      recordsSeen++;
+    } else {
+
+      // 1. collect stats for normalize
+      while (reader.hasNext()) {
+
+        // get the record from the input format
+        Collection<Writable> w = reader.next();
+        tfidfTransform.collectStatistics(w);
+        recordsSeen++;
+
+      }
+
+      if (null != sidecar) {
+        sidecar.save(tfidfTransform);
+      }
 
     }
 
     if (this.printStats) {
 
-      System.out.println("Total Records: " + recordsSeen);
+      if (!statisticsLoaded) {
+        System.out.println("Total Records: " + recordsSeen);
+      }
       System.out.println("Total Labels: " + tfidfTransform.getNumberOfLabelsSeen());
       System.out.println("Vocabulary Size of Corpus: " + tfidfTransform.getVocabularySize());
       tfidfTransform.debugPrintVocabList();
@@ -60,20 +83,24 @@ public class TextVectorizationEngine extends VectorizationEngine {
 
     // 2. reset reader
 
-    reader.close();
-    //RecordReader reader = null;
-    try {
-      this.reader = inputFormat.createReader(split, conf);
-    } catch (InterruptedException e) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
+    if (!statisticsLoaded) {
+
+      reader.close();
+      //RecordReader reader = null;
+      try {
+        this.reader = inputFormat.createReader(split, conf);
+      } catch (InterruptedException e) {
+        // TODO Auto-generated catch block
+        e.printStackTrace();
+      }
+
     }
 
     // 3. transform data
 
     if (shuffleOn) {
 
-      Shuffler shuffle = new Shuffler();
+      Shuffler shuffle = this.createShuffler();
 
 
       // collect the writables into the shuffler
@@ -1,5 +1,6 @@
 package org.canova.cli.vectorization;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Properties;
 
@@ -10,6 +11,8 @@ import org.canova.api.formats.output.OutputFormat;
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.records.writer.RecordWriter;
 import org.canova.api.split.InputSplit;
+import org.canova.cli.shuffle.Shuffler;
+import org.canova.cli.statistics.StatisticsSidecar;
 import org.canova.cli.subcommands.Vectorize;
 
 public abstract class VectorizationEngine {
@@ -72,6 +75,37 @@ public abstract class VectorizationEngine {
 
   public abstract void execute() throws CanovaException, IOException, InterruptedException;
 
+  /**
+   * Creates the statistics sidecar for this input, if statistics caching is turned on
+   * (see {@link StatisticsSidecar#CACHE_STATISTICS_KEY})
+   *
+   * @param kind the kind of statistics, so different engines never share a sidecar
+   * @param settings anything besides the input data that the first pass depends on
+   * @return the sidecar, or null if statistics caching is off
+   */
+  protected StatisticsSidecar createStatisticsSidecar(String kind, String... settings) {
+    return StatisticsSidecar.fromConfiguration(this.configProps, kind, this.split, settings);
+  }
+
+  /**
+   * Creates the shuffler for the output records, sized by {@link Shuffler#MEMORY_BUDGET_KEY}
+   * and spilling to {@link Shuffler#TEMP_DIR_KEY} (defaults to java.io.tmpdir)
+   *
+   * @return a new, empty shuffler
+   */
+  protected Shuffler createShuffler() {
+
+    long memoryBudget = Shuffler.DEFAULT_MEMORY_BUDGET;
+    String budgetValue = this.configProps.getProperty(Shuffler.MEMORY_BUDGET_KEY);
+    if (null != budgetValue) {
+      memoryBudget = Long.parseLong(budgetValue.trim());
+    }
+
+    String tmpDir = this.configProps.getProperty(Shuffler.TEMP_DIR_KEY, System.getProperty("java.io.tmpdir"));
+
+    return new Shuffler(memoryBudget, new File(tmpDir.trim()));
+  }
+
   /**
    * These two methods are stubbing the future vector transform transform system
    * <p/>
@@ -22,6 +22,7 @@ package org.canova.cli.csv.schema;
 
 import static org.junit.Assert.*;
 
+import org.canova.cli.csv.statistics.DatasetSummaryStatistics;
 import org.junit.Test;
 
 public class TestCSVInputSchema {
@@ -149,4 +150,106 @@ public class TestCSVInputSchema {
 	}
 	
 	
+	@Test
+	public void testMergedChunkStatisticsMatchSerialPass() throws Exception {
+
+		String schemaFilePath = "src/test/resources/csv/schemas/unit_test_schema.txt";
+
+		String[] records = {
+				"5.1,3.5,1.4,0.2,Iris-setosa",
+				"7.0,3.2,4.7,1.4,Iris-versicolor",
+				"6.3,3.3,6.0,2.5,Iris-virginica",
+				"4.9,3.0,1.4,0.2,Iris-setosa",
+				"6.4,3.2,4.5,1.5,Iris-versicolor"
+		};
+
+		CSVInputSchema serialSchema = new CSVInputSchema();
+		serialSchema.parseSchemaFile( schemaFilePath );
+		for (String record : records) {
+			serialSchema.evaluateInputRecord( record );
+		}
+
+		// two independent chunks, merged back in input order
+		CSVInputSchema mergedSchema = new CSVInputSchema();
+		mergedSchema.parseSchemaFile( schemaFilePath );
+
+		DatasetSummaryStatistics chunk_0 = mergedSchema.createStatistics();
+		DatasetSummaryStatistics chunk_1 = mergedSchema.createStatistics();
+		for (int i = 0; i < records.length; i++) {
+			mergedSchema.evaluateInputRecord( records[ i ], i < 2 ? chunk_0 : chunk_1 );
+		}
+
+		assertEquals( 2, chunk_0.getRecordCount() );
+		assertEquals( 3, chunk_1.getRecordCount() );
+
+		mergedSchema.mergeStatistics( chunk_0 );
+		mergedSchema.mergeStatistics( chunk_1 );
+
+		for (String column : serialSchema.getColumnSchemas().keySet()) {
+
+			CSVSchemaColumn expected = serialSchema.getColumnSchemaByName( column );
+			CSVSchemaColumn actual = mergedSchema.getColumnSchemaByName( column );
+
+			assertEquals( expected.minValue, actual.minValue, 0.0 );
+			assertEquals( expected.maxValue, actual.maxValue, 0.0 );
+			assertEquals( expected.recordLabels, actual.recordLabels );
+
+		}
+
+		assertEquals( 2, (int) mergedSchema.getColumnSchemaByName( "class" ).getLabelID( "Iris-virginica" ) );
+		assertEquals( 2, (int) mergedSchema.getColumnSchemaByName( "class" ).getLabelCount( "Iris-setosa" ) );
+
+	}
+
+	@Test
+	public void testPositionedStatisticsMergeInAnyOrder() throws Exception {
+
+		String schemaFilePath = "src/test/resources/csv/schemas/unit_test_schema.txt";
+
+		String[] records = {
+				"5.1,3.5,1.4,0.2,Iris-setosa",
+				"7.0,3.2,4.7,1.4,Iris-versicolor",
+				"6.3,3.3,6.0,2.5,Iris-virginica",
+				"4.9,3.0,1.4,0.2,Iris-setosa",
+				"6.4,3.2,4.5,1.5,Iris-versicolor"
+		};
+
+		CSVInputSchema serialSchema = new CSVInputSchema();
+		serialSchema.parseSchemaFile( schemaFilePath );
+		for (String record : records) {
+			serialSchema.evaluateInputRecord( record );
+		}
+
+		// three chunks with gaps between their positions, merged back to front
+		CSVInputSchema mergedSchema = new CSVInputSchema();
+		mergedSchema.parseSchemaFile( schemaFilePath );
+
+		DatasetSummaryStatistics chunk_0 = mergedSchema.createStatistics( 0 );
+		DatasetSummaryStatistics chunk_1 = mergedSchema.createStatistics( 1L << 40 );
+		DatasetSummaryStatistics chunk_2 = mergedSchema.createStatistics( 2L << 40 );
+		for (int i = 0; i < records.length; i++) {
+			mergedSchema.evaluateInputRecord( records[ i ], i < 1 ? chunk_0 : i < 3 ? chunk_1 : chunk_2 );
+		}
+
+		chunk_2.merge( chunk_1 );
+		chunk_2.merge( chunk_0 );
+		mergedSchema.mergeStatistics( chunk_2 );
+
+		for (String column : serialSchema.getColumnSchemas().keySet()) {
+
+			CSVSchemaColumn expected = serialSchema.getColumnSchemaByName( column );
+			CSVSchemaColumn actual = mergedSchema.getColumnSchemaByName( column );
+
+			assertEquals( expected.minValue, actual.minValue, 0.0 );
+			assertEquals( expected.maxValue, actual.maxValue, 0.0 );
+			assertEquals( expected.recordLabels, actual.recordLabels );
+
+		}
+
+		assertEquals( 5, chunk_2.getRecordCount() );
+		assertEquals( 0, (int) mergedSchema.getColumnSchemaByName( "class" ).getLabelID( "Iris-setosa" ) );
+		assertEquals( 2, (int) mergedSchema.getColumnSchemaByName( "class" ).getLabelID( "Iris-virginica" ) );
+
+	}
+
 }
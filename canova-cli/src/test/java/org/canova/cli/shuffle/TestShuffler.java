@@ -2,9 +2,17 @@ package org.canova.cli.shuffle;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
 
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.IntWritable;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.io.data.Text;
 import org.canova.api.writable.Writable;
 import org.junit.Test;
@@ -44,4 +52,96 @@ public class TestShuffler {
 		
 	}
 
+	/**
+	 * A budget this small forces the records out to disk (and through the recursive bucket pass),
+	 * every record should still come back exactly once, and the spill files should be gone afterwards
+	 */
+	@Test
+	public void testSpillToDisk() throws Exception {
+
+		File tmpDir = Files.createTempDirectory("canova-shuffle-test").toFile();
+		tmpDir.deleteOnExit();
+
+		Shuffler shuffle = new Shuffler( 2048, tmpDir, 4, new Random(42) );
+
+		int numRecords = 1000;
+		for (int i = 0; i < numRecords; i++) {
+
+			Collection<Writable> vector = new ArrayList<>();
+			vector.add(new IntWritable(i) );
+			vector.add(new DoubleWritable(i / 10.0) );
+			vector.add(new Text("label_" + (i % 3)) );
+			shuffle.addRecord(vector);
+
+		}
+
+		assertTrue( shuffle.records.size() < numRecords );
+
+		Set<Integer> seen = new HashSet<>();
+		boolean inOrder = true;
+		int count = 0;
+
+		while (shuffle.hasNext()) {
+
+			Object[] s = shuffle.next().toArray();
+			int id = ((IntWritable) s[ 0 ]).get();
+
+			assertTrue( seen.add( id ) );
+			assertEquals( id / 10.0, ((DoubleWritable) s[ 1 ]).get(), 0.0 );
+			assertEquals( "label_" + (id % 3), s[ 2 ].toString() );
+
+			inOrder &= ( id == count );
+			count++;
+
+		}
+
+		assertEquals( numRecords, count );
+		assertFalse( inOrder );
+		assertEquals( 0, tmpDir.list().length );
+
+		tmpDir.delete();
+
+	}
+
+	/**
+	 * Sparse vectors are sized by their entries, so they spill like any other big record
+	 */
+	@Test
+	public void testSparseRecordsSpill() throws Exception {
+
+		File tmpDir = Files.createTempDirectory("canova-shuffle-test").toFile();
+		tmpDir.deleteOnExit();
+
+		// each record holds 1000 entries, about 12KB
+		Shuffler shuffle = new Shuffler( 64 * 1024, tmpDir, 4, new Random(42) );
+		int numRecords = 50;
+		for (int i = 0; i < numRecords; i++) {
+
+			int[] indices = new int[ 1000 ];
+			double[] values = new double[ 1000 ];
+			for (int j = 0; j < indices.length; j++) {
+				indices[ j ] = 2 * j;
+				values[ j ] = i;
+			}
+			Collection<Writable> vector = new ArrayList<>();
+			vector.add( new SparseVectorWritable( 2000, indices, values, indices.length ) );
+			shuffle.addRecord(vector);
+
+		}
+
+		assertTrue( shuffle.records.size() < numRecords );
+
+		Set<Integer> seen = new HashSet<>();
+		while (shuffle.hasNext()) {
+			SparseVectorWritable vector = (SparseVectorWritable) shuffle.next().iterator().next();
+			assertEquals( 1000, vector.numEntries() );
+			assertTrue( seen.add( (int) vector.getValue( 0 ) ) );
+		}
+		assertEquals( numRecords, seen.size() );
+		assertEquals( 0, tmpDir.list().length );
+
+		tmpDir.delete();
+
+	}
+
 }
@@ -0,0 +1,90 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+package org.canova.cli.statistics;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.canova.api.split.FileSplit;
+import org.canova.cli.csv.schema.CSVInputSchema;
+import org.junit.Test;
+
+public class TestStatisticsSidecar {
+
+	private static final String SCHEMA = "src/test/resources/csv/schemas/uci/iris.txt";
+	private static final String DATA = "src/test/resources/csv/data/uci_iris_sample.txt";
+
+	@Test
+	public void testRoundTripCSVStatistics() throws Exception {
+
+		File dir = Files.createTempDirectory("canova-sidecar").toFile();
+		FileSplit split = new FileSplit( new File( DATA ) );
+
+		CSVInputSchema schema = new CSVInputSchema();
+		schema.parseSchemaFile( SCHEMA );
+		for (String line : Files.readAllLines( new File( DATA ).toPath(), StandardCharsets.UTF_8 )) {
+			schema.evaluateInputRecord( line );
+		}
+
+		StatisticsSidecar sidecar = new StatisticsSidecar( dir, "csv", split, StatisticsSidecar.describeFile( SCHEMA ) );
+		assertFalse( sidecar.load( schema ) );
+		sidecar.save( schema );
+
+		CSVInputSchema restored = new CSVInputSchema();
+		restored.parseSchemaFile( SCHEMA );
+		assertTrue( new StatisticsSidecar( dir, "csv", split, StatisticsSidecar.describeFile( SCHEMA ) ).load( restored ) );
+
+		for (String column : schema.getColumnSchemas().keySet()) {
+			assertEquals( schema.getColumnSchemaByName( column ).minValue, restored.getColumnSchemaByName( column ).minValue, 0.0 );
+			assertEquals( schema.getColumnSchemaByName( column ).maxValue, restored.getColumnSchemaByName( column ).maxValue, 0.0 );
+			assertEquals( schema.getColumnSchemaByName( column ).recordLabels, restored.getColumnSchemaByName( column ).recordLabels );
+		}
+
+		// different settings, different sidecar
+		assertFalse( new StatisticsSidecar( dir, "csv", split, "other settings" ).load( new CSVInputSchema() ) );
+
+		FileUtils.deleteDirectory( dir );
+
+	}
+
+	@Test
+	public void testModifiedInputDoesNotMatch() throws Exception {
+
+		File dir = Files.createTempDirectory("canova-sidecar").toFile();
+		File data = new File( dir, "data.csv" );
+		FileUtils.copyFile( new File( DATA ), data );
+
+		CSVInputSchema schema = new CSVInputSchema();
+		schema.parseSchemaFile( SCHEMA );
+		new StatisticsSidecar( dir, "csv", new FileSplit( data ) ).save( schema );
+		assertTrue( new StatisticsSidecar( dir, "csv", new FileSplit( data ) ).load( schema ) );
+
+		FileUtils.writeStringToFile( data, FileUtils.readFileToString( data ) + "5.0,3.3,1.4,0.2,Iris-setosa\n" );
+		assertFalse( new StatisticsSidecar( dir, "csv", new FileSplit( data ) ).load( schema ) );
+
+		FileUtils.deleteDirectory( dir );
+
+	}
+
+}
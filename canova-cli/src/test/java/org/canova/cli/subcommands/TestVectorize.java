@@ -355,6 +355,27 @@ public class TestVectorize {
     }
 
 
+    @Test
+    public void testExecuteCSVConversionWorkflow_Parallel() throws Exception {
+
+        String[] args = { "-conf", "src/test/resources/csv/confs/unit_test_csv_conf_parallel.txt" };
+        Vectorize vecCommand = new Vectorize( args );
+
+        vecCommand.execute();
+
+        // same output as the single threaded run, in the same order
+        int count = checkNumberOfRecordsInSVMLightOutput( vecCommand.outputVectorFilename );
+        assertEquals(12, count);
+
+        String[] serialArgs = { "-conf", "src/test/resources/csv/confs/unit_test_conf.txt" };
+        Vectorize serialCommand = new Vectorize( serialArgs );
+        serialCommand.execute();
+
+        assertEquals( FileUtils.readFileToString( new File( serialCommand.outputVectorFilename ) ),
+            FileUtils.readFileToString( new File( vecCommand.outputVectorFilename ) ) );
+    }
+
+
     @Test
     public void testExecuteImageCustomMNISTInputFormatConversionWorkflow() throws Exception {
 
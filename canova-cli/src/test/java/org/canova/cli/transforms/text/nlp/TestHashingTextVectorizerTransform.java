@@ -0,0 +1,121 @@
+package org.canova.cli.transforms.text.nlp;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.SparseVectorWritable;
+import org.canova.api.io.data.Text;
+import org.canova.api.writable.Writable;
+import org.canova.nd4j.nlp.vectorizer.HashingVectorizer;
+import org.canova.nlp.vectorizer.FeatureHasher;
+import org.junit.Test;
+
+public class TestHashingTextVectorizerTransform {
+
+	@Test
+	public void testSingleRecordNeedsNoStatistics() {
+
+		Configuration conf = new Configuration();
+		conf.setInt( FeatureHasher.NUM_FEATURES, 1024 );
+
+		HashingTextVectorizerTransform hashingTransform = new HashingTextVectorizerTransform();
+		hashingTransform.initialize(conf);
+
+		Collection<Writable> vector1 = this.record( "Go Dogs, Go", "label_A" );
+		Collection<Writable> vector2 = this.record( "cats sleep", "label_B" );
+		Collection<Writable> vector3 = this.record( "go dogs go", "label_A" );
+
+		hashingTransform.transform(vector1);
+		hashingTransform.transform(vector2);
+		hashingTransform.transform(vector3);
+
+		assertEquals( 2, vector1.size() );
+		Iterator<Writable> iter = vector1.iterator();
+		SparseVectorWritable hashed = (SparseVectorWritable) iter.next();
+		assertEquals( 1024, hashed.size() );
+		assertEquals( 0.0, ((DoubleWritable) iter.next()).get(), 0.0 );
+
+		// "go" twice and "dogs" once, unless they collide
+		double total = 0;
+		for (int i = 0; i < hashed.numEntries(); i++) {
+			total += Math.abs( hashed.getValue( i ) );
+		}
+		assertTrue( hashed.numEntries() == 2 ? total == 3.0 : hashed.numEntries() == 1 );
+
+		// same text, same vector, whatever came before
+		assertArrayEquals( hashed.toArray(), ((SparseVectorWritable) vector3.iterator().next()).toArray(), 0.0 );
+
+		Iterator<Writable> iter2 = vector2.iterator();
+		iter2.next();
+		assertEquals( 1.0, ((DoubleWritable) iter2.next()).get(), 0.0 );
+		assertEquals( 2, hashingTransform.getNumberOfLabelsSeen() );
+
+	}
+
+	@Test
+	public void testBinaryWeightingWithBigrams() {
+
+		Configuration conf = new Configuration();
+		conf.setInt( FeatureHasher.NUM_FEATURES, 1 << 20 );
+		conf.setInt( FeatureHasher.NGRAMS, 2 );
+		conf.set( FeatureHasher.WEIGHTING, "binary" );
+
+		HashingTextVectorizerTransform hashingTransform = new HashingTextVectorizerTransform();
+		hashingTransform.initialize(conf);
+
+		Collection<Writable> vector = this.record( "go dogs go", "label_A" );
+		hashingTransform.transform(vector);
+
+		// go, dogs, "go dogs", "dogs go"
+		SparseVectorWritable hashed = (SparseVectorWritable) vector.iterator().next();
+		assertEquals( 4, hashed.numEntries() );
+		for (int i = 0; i < hashed.numEntries(); i++) {
+			assertEquals( 1.0, Math.abs( hashed.getValue( i ) ), 0.0 );
+		}
+
+	}
+
+	@Test
+	public void testDenseOutput() {
+
+		Configuration conf = new Configuration();
+		conf.setInt( FeatureHasher.NUM_FEATURES, 16 );
+		conf.setBoolean( HashingTextVectorizerTransform.SPARSE_OUTPUT, false );
+
+		HashingTextVectorizerTransform hashingTransform = new HashingTextVectorizerTransform();
+		hashingTransform.initialize(conf);
+
+		Collection<Writable> vector = this.record( "go dogs go", "label_A" );
+		hashingTransform.transform(vector);
+
+		// 16 features and the label
+		assertEquals( 17, vector.size() );
+
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDenseOutputWidthLimit() {
+
+		Configuration conf = new Configuration();
+		conf.setInt( FeatureHasher.NUM_FEATURES, HashingVectorizer.MAX_DENSE_FEATURES + 1 );
+		conf.setBoolean( HashingTextVectorizerTransform.SPARSE_OUTPUT, false );
+
+		new HashingTextVectorizerTransform().initialize(conf);
+
+	}
+
+	private Collection<Writable> record( String text, String label ) {
+
+		Collection<Writable> record = new ArrayList<>();
+		record.add( new Text( text ) );
+		record.add( new Text( label ) );
+		return record;
+
+	}
+
+}
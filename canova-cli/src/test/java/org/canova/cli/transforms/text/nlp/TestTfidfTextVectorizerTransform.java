@@ -9,6 +9,7 @@ import java.util.List;
 
 import org.canova.api.conf.Configuration;
 import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.io.data.Text;
 import org.canova.api.records.reader.impl.FileRecordReader;
 import org.canova.api.util.MathUtils;
@@ -69,6 +70,65 @@ public class TestTfidfTextVectorizerTransform {
 					
 	
 	
+	}
+
+	@Test
+	public void testSparseOutputMatchesDense() {
+
+		String[][] documents = {
+				{ "go dogs go", "label_A" },
+				{ "cats sleep", "label_B" },
+				{ "dogs sleep well", "label_A" }
+		};
+
+		List<Collection<Writable>> dense = this.transformAll( documents, false );
+		List<Collection<Writable>> sparse = this.transformAll( documents, true );
+
+		for (int i = 0; i < documents.length; i++) {
+
+			// { sparse vector, label } vs { one column per vocab word, label }
+			assertEquals( 2, sparse.get( i ).size() );
+			Iterator<Writable> sparseIter = sparse.get( i ).iterator();
+			SparseVectorWritable sparseVector = (SparseVectorWritable) sparseIter.next();
+			assertEquals( dense.get( i ).size() - 1, sparseVector.size() );
+
+			Iterator<Writable> denseIter = dense.get( i ).iterator();
+			for (int col = 0; col < sparseVector.size(); col++) {
+				assertEquals( ((DoubleWritable) denseIter.next()).get(), sparseVector.get( col ), 0.0 );
+			}
+			assertEquals( ((DoubleWritable) denseIter.next()).get(), ((DoubleWritable) sparseIter.next()).get(), 0.0 );
+
+		}
+
+		// "go" and "dogs" only
+		assertEquals( 2, ((SparseVectorWritable) sparse.get( 0 ).iterator().next()).numEntries() );
+
+	}
+
+	private List<Collection<Writable>> transformAll( String[][] documents, boolean sparseOutput ) {
+
+		Configuration conf = new Configuration();
+		conf.setInt( TfidfTextVectorizerTransform.MIN_WORD_FREQUENCY, 1 );
+		conf.setBoolean( TfidfTextVectorizerTransform.SPARSE_OUTPUT, sparseOutput );
+
+		TfidfTextVectorizerTransform tfidfTransform = new TfidfTextVectorizerTransform();
+		tfidfTransform.initialize(conf);
+
+		List<Collection<Writable>> records = new ArrayList<>();
+		for (String[] document : documents) {
+			Collection<Writable> record = new ArrayList<>();
+			record.add( new Text( document[ 0 ] ) );
+			record.add( new Text( document[ 1 ] ) );
+			records.add( record );
+			tfidfTransform.collectStatistics( record );
+		}
+
+		for (Collection<Writable> record : records) {
+			tfidfTransform.transform( record );
+		}
+
+		return records;
+
 	}
 
 }
@@ -0,0 +1,138 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.metadata;
+
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import org.canova.nlp.tokenization.tokenizer.Tokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds a vocab from many threads at once.
+ *
+ * Each thread counts into its own {@link Shard}: primitive (unboxed) word and
+ * document counts, with no locking. {@link #build()} merges the shards,
+ * drops the words seen less than the min word frequency and freezes the rest
+ * into a {@link FrozenVocabCache}.
+ */
+public class ConcurrentVocabBuilder {
+
+    private final int minWordFrequency;
+    private final List<Shard> shards = new ArrayList<>();
+
+    /**
+     * @param minWordFrequency the number of times a word has to be seen to be in the vocab
+     */
+    public ConcurrentVocabBuilder(int minWordFrequency) {
+        this.minWordFrequency = minWordFrequency;
+    }
+
+    /**
+     * A new shard to count into. Shards aren't thread safe: use one per thread.
+     * @return the new shard
+     */
+    public synchronized Shard newShard() {
+        Shard shard = new Shard();
+        shards.add(shard);
+        return shard;
+    }
+
+    /**
+     * Merge the counts of every shard and freeze the vocab.
+     * Call once every thread is done counting.
+     * Vocab words are sorted, so the vocab doesn't depend on how documents were spread over the shards.
+     * @return the frozen vocab
+     */
+    public synchronized FrozenVocabCache build() {
+        Shard merged = new Shard();
+        for(Shard shard : shards) {
+            // fold the smaller map into the bigger one
+            if(shard.wordCounts.size() > merged.wordCounts.size()) {
+                Shard tmp = merged;
+                merged = shard;
+                shard = tmp;
+            }
+            merged.merge(shard);
+        }
+        shards.clear();
+
+        List<String> words = new ArrayList<>();
+        for(Object2LongMap.Entry<String> entry : merged.wordCounts.object2LongEntrySet()) {
+            if(entry.getLongValue() >= minWordFrequency)
+                words.add(entry.getKey());
+        }
+        String[] vocab = words.toArray(new String[words.size()]);
+        Arrays.sort(vocab);
+
+        long[] wordCounts = new long[vocab.length];
+        long[] docCounts = new long[vocab.length];
+        for(int i = 0; i < vocab.length; i++) {
+            wordCounts[i] = merged.wordCounts.getLong(vocab[i]);
+            docCounts[i] = merged.docCounts.getLong(vocab[i]);
+        }
+        return new FrozenVocabCache(vocab, wordCounts, docCounts, merged.numDocs, minWordFrequency);
+    }
+
+    /**
+     * Word and document counts for the documents seen by one thread
+     */
+    public static class Shard {
+        private Object2LongOpenHashMap<String> wordCounts = new Object2LongOpenHashMap<>();
+        private Object2LongOpenHashMap<String> docCounts = new Object2LongOpenHashMap<>();
+        // the distinct words of the current document, reused across documents
+        private ObjectOpenHashSet<String> seen = new ObjectOpenHashSet<>();
+        private long numDocs = 0;
+
+        private Shard() {
+        }
+
+        /**
+         * Count the tokens of a document
+         * @param tokenizer the document's tokens
+         */
+        public void addDocument(Tokenizer tokenizer) {
+            seen.clear();
+            while(tokenizer.hasMoreTokens()) {
+                String token = tokenizer.nextToken();
+                wordCounts.addTo(token, 1);
+                if(seen.add(token))
+                    docCounts.addTo(token, 1);
+            }
+            numDocs++;
+        }
+
+        public long numDocs() {
+            return numDocs;
+        }
+
+        private void merge(Shard other) {
+            for(Object2LongMap.Entry<String> entry : other.wordCounts.object2LongEntrySet())
+                wordCounts.addTo(entry.getKey(), entry.getLongValue());
+            for(Object2LongMap.Entry<String> entry : other.docCounts.object2LongEntrySet())
+                docCounts.addTo(entry.getKey(), entry.getLongValue());
+            numDocs += other.numDocs;
+        }
+    }
+}
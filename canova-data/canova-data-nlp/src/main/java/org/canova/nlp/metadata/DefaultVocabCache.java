@@ -83,6 +83,16 @@ public class DefaultVocabCache implements VocabCache {
         return vocabWords;
     }
 
+    @Override
+    public int indexOf(String word) {
+        return vocabWords.indexOf(word);
+    }
+
+    @Override
+    public int numWords() {
+        return vocabWords.size();
+    }
+
     @Override
     public void incrementDocCount(String word) {
         incrementDocCount(word,1.0);
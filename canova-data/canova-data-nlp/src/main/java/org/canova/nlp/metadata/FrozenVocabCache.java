@@ -0,0 +1,170 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.metadata;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.canova.api.conf.Configuration;
+import org.canova.api.util.Index;
+import org.canova.api.util.MathUtils;
+
+/**
+ * Immutable vocab, as built by {@link ConcurrentVocabBuilder}.
+ *
+ * Only the vocab words are kept, with their counts in arrays parallel to the words.
+ * Lookups go through an open addressing hash of the words, without locks or boxing,
+ * so any number of threads can vectorize against it. Counts can't be incremented:
+ * the increment methods throw {@link UnsupportedOperationException}, use {@link #thaw()}
+ * for a copy that can keep counting.
+ */
+public class FrozenVocabCache implements VocabCache {
+
+    private final String[] words;
+    private final long[] wordCounts;
+    private final long[] docCounts;
+    private final Object2IntOpenHashMap<String> indexes;
+    private final double numDocs;
+    private final int minWordFrequency;
+    // only built for callers of vocabWords()
+    private volatile Index vocabWords;
+
+    /**
+     * @param words the vocab words, in vocab order
+     * @param wordCounts the number of times each word was seen
+     * @param docCounts the number of documents each word was seen in
+     * @param numDocs the number of documents
+     * @param minWordFrequency the min word frequency the vocab was pruned with
+     */
+    public FrozenVocabCache(String[] words, long[] wordCounts, long[] docCounts, double numDocs, int minWordFrequency) {
+        if(words.length != wordCounts.length || words.length != docCounts.length)
+            throw new IllegalArgumentException("Words and counts must have the same length");
+        this.words = words;
+        this.wordCounts = wordCounts;
+        this.docCounts = docCounts;
+        this.numDocs = numDocs;
+        this.minWordFrequency = minWordFrequency;
+        this.indexes = new Object2IntOpenHashMap<>(words.length);
+        indexes.defaultReturnValue(-1);
+        for(int i = 0; i < words.length; i++)
+            indexes.put(words[i], i);
+    }
+
+    /**
+     * A mutable copy of this vocab, with the same words in the same order and the same counts.
+     * Words that were pruned by the min word frequency aren't in the copy,
+     * so they start counting again from 0.
+     * @return the mutable copy
+     */
+    public DefaultVocabCache thaw() {
+        DefaultVocabCache ret = new DefaultVocabCache(minWordFrequency);
+        ret.incrementNumDocs(numDocs);
+        for(int i = 0; i < words.length; i++) {
+            ret.incrementCount(words[i], wordCounts[i]);
+            ret.incrementDocCount(words[i], docCounts[i]);
+        }
+        return ret;
+    }
+
+    @Override
+    public void incrementNumDocs(double by) {
+        throw new UnsupportedOperationException("Vocab is frozen");
+    }
+
+    @Override
+    public double numDocs() {
+        return numDocs;
+    }
+
+    @Override
+    public String wordAt(int i) {
+        return words[i];
+    }
+
+    @Override
+    public int indexOf(String word) {
+        return indexes.getInt(word);
+    }
+
+    @Override
+    public int numWords() {
+        return words.length;
+    }
+
+    @Override
+    public void initialize(Configuration conf) {
+    }
+
+    @Override
+    public double wordFrequency(String word) {
+        int i = indexOf(word);
+        return i < 0 ? 0 : wordCounts[i];
+    }
+
+    @Override
+    public int minWordFrequency() {
+        return minWordFrequency;
+    }
+
+    @Override
+    public Index vocabWords() {
+        if(vocabWords == null) {
+            synchronized(this) {
+                if(vocabWords == null) {
+                    Index index = new Index();
+                    for(int i = 0; i < words.length; i++)
+                        index.add(words[i], i);
+                    vocabWords = index;
+                }
+            }
+        }
+        return vocabWords;
+    }
+
+    @Override
+    public void incrementDocCount(String word) {
+        throw new UnsupportedOperationException("Vocab is frozen");
+    }
+
+    @Override
+    public void incrementDocCount(String word, double by) {
+        throw new UnsupportedOperationException("Vocab is frozen");
+    }
+
+    @Override
+    public void incrementCount(String word) {
+        throw new UnsupportedOperationException("Vocab is frozen");
+    }
+
+    @Override
+    public void incrementCount(String word, double by) {
+        throw new UnsupportedOperationException("Vocab is frozen");
+    }
+
+    @Override
+    public double idf(String word) {
+        int i = indexOf(word);
+        return i < 0 ? 0 : docCounts[i];
+    }
+
+    @Override
+    public double tfidf(String word, double frequency) {
+        return MathUtils.tfidf(MathUtils.tf((int) frequency), MathUtils.idf(numDocs, idf(word)));
+    }
+}
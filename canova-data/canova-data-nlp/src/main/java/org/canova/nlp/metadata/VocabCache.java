@@ -82,6 +82,19 @@ public interface VocabCache {
      */
    Index vocabWords();
 
+    /**
+     * The index of a word in the vocab
+     * @param word the word to look up
+     * @return the index of the word, or -1 if it isn't a vocab word
+     */
+    int indexOf(String word);
+
+    /**
+     * The number of vocab words
+     * @return the size of the vocab
+     */
+    int numWords();
+
 
     /**
      * Increment the doc count for a word by 1
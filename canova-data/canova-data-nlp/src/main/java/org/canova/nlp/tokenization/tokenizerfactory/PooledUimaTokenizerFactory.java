@@ -0,0 +1,383 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.tokenization.tokenizerfactory;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.canova.nlp.annotator.PoStagger;
+import org.canova.nlp.annotator.SentenceAnnotator;
+import org.canova.nlp.annotator.StemmerAnnotator;
+import org.canova.nlp.annotator.TokenizerAnnotator;
+import org.canova.nlp.tokenization.tokenizer.TokenPreProcess;
+import org.canova.nlp.tokenization.tokenizer.Tokenizer;
+import org.cleartk.token.type.Token;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uima tokenization that scales with threads.
+ *
+ * {@link UimaTokenizerFactory} and {@link PosUimaTokenizerFactory} share one analysis engine,
+ * so concurrent tokenizing serializes on it. Here documents are tokenized by a pool of analysis engines
+ * (each with its own CAS), all created from the same description as they're first needed.
+ * There are never more engines than workers: a thread borrows one for a document and returns it,
+ * waiting when they're all in use.
+ *
+ * {@link #create(String)} tokenizes on the calling thread, so callers that already have
+ * their own threads just use it as a {@link TokenizerFactory}.
+ * {@link #tokenize(List)} and {@link #submit(String)} run documents on the factory's own pool of workers;
+ * once the queue of pending documents is full the submitting thread tokenizes the document itself,
+ * which keeps producers from getting ahead of the workers.
+ *
+ * Without part of speech tags, label tags such as &lt;LABEL&gt; are dropped (as with {@link UimaTokenizerFactory});
+ * with allowed part of speech tags, they and tokens with any other tag become NONE (as with {@link PosUimaTokenizerFactory}).
+ * Close the factory to stop the workers and release the engines; it can't be used afterwards.
+ */
+public class PooledUimaTokenizerFactory implements TokenizerFactory, Closeable {
+
+    public final static int DEFAULT_QUEUED_DOCUMENTS_PER_THREAD = 16;
+
+    private final AnalysisEngineDescription description;
+    private final Collection<String> allowedPosTags;
+    private final ThreadPoolExecutor workers;
+    private final int maxEngines;
+    // engines not in use right now
+    private final BlockingQueue<Engine> idleEngines;
+    // engines created so far, never more than maxEngines
+    private int numEngines = 0;
+    private volatile boolean closed = false;
+    private volatile TokenPreProcess preProcess;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    /**
+     * Sentence splitting and tokenizing, on as many workers as there are cores
+     */
+    public PooledUimaTokenizerFactory() {
+        this(defaultTokenizerDescription(), null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param description the description the pooled analysis engines are created from
+     * @param allowedPosTags the part of speech tags to keep, null to keep every token
+     * @param numThreads the number of workers for {@link #tokenize(List)} and {@link #submit(String)}, and of engines
+     */
+    public PooledUimaTokenizerFactory(AnalysisEngineDescription description, Collection<String> allowedPosTags, int numThreads) {
+        this(description, allowedPosTags, numThreads, numThreads * DEFAULT_QUEUED_DOCUMENTS_PER_THREAD);
+    }
+
+    /**
+     * @param description the description the pooled analysis engines are created from
+     * @param allowedPosTags the part of speech tags to keep, null to keep every token
+     * @param numThreads the number of workers for {@link #tokenize(List)} and {@link #submit(String)}, and of engines
+     * @param queueCapacity how many documents can wait for a worker before submitters tokenize themselves
+     */
+    public PooledUimaTokenizerFactory(AnalysisEngineDescription description, Collection<String> allowedPosTags, int numThreads, int queueCapacity) {
+        if(numThreads < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException("Number of threads and queue capacity must be positive");
+        this.description = description;
+        this.allowedPosTags = allowedPosTags;
+        this.maxEngines = numThreads;
+        this.idleEngines = new ArrayBlockingQueue<>(numThreads);
+        this.workers = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "uima-tokenizer-" + threadCount.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                }, new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                        if(executor.isShutdown())
+                            throw new IllegalStateException("Tokenizer factory is closed");
+                        // queue is full: the submitter does the work, which slows it down to the workers' pace
+                        r.run();
+                    }
+                });
+    }
+
+    /**
+     * Sentence splitting and tokenizing
+     * @return the description
+     */
+    public static AnalysisEngineDescription defaultTokenizerDescription() {
+        try {
+            return AnalysisEngineFactory.createEngineDescription(
+                    SentenceAnnotator.getDescription(),
+                    TokenizerAnnotator.getDescription());
+        } catch(ResourceInitializationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Sentence splitting, tokenizing, part of speech tagging and stemming (english)
+     * @return the description
+     */
+    public static AnalysisEngineDescription defaultPosDescription() {
+        try {
+            return AnalysisEngineFactory.createEngineDescription(
+                    SentenceAnnotator.getDescription(),
+                    TokenizerAnnotator.getDescription(),
+                    PoStagger.getDescription("en"),
+                    StemmerAnnotator.getDescription("English"));
+        } catch(ResourceInitializationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Tokenizer create(String toTokenize) {
+        checkOpen();
+        if(toTokenize == null || toTokenize.isEmpty())
+            throw new IllegalArgumentException("Unable to proceed; on sentence to tokenize");
+        return new ListTokenizer(tokens(toTokenize), preProcess);
+    }
+
+    @Override
+    public Tokenizer create(InputStream toTokenize) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Tokenize a document on one of the workers
+     * @param document the document
+     * @return the document's tokens, once tokenized
+     */
+    public Future<List<String>> submit(final String document) {
+        checkOpen();
+        return workers.submit(new Callable<List<String>>() {
+            @Override
+            public List<String> call() throws Exception {
+                return create(document).getTokens();
+            }
+        });
+    }
+
+    /**
+     * Tokenize a batch of documents across the workers
+     * @param documents the documents
+     * @return the tokens of each document, in document order
+     */
+    public List<List<String>> tokenize(List<String> documents) {
+        List<Future<List<String>>> pending = new ArrayList<>(documents.size());
+        for(String document : documents)
+            pending.add(submit(document));
+
+        List<List<String>> ret = new ArrayList<>(documents.size());
+        try {
+            for(Future<List<String>> tokens : pending)
+                ret.add(tokens.get());
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while tokenizing", e);
+        } catch(ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch(CancellationException e) {
+            throw new IllegalStateException("Tokenizer factory was closed while tokenizing", e);
+        }
+        return ret;
+    }
+
+    @Override
+    public void setTokenPreProcessor(TokenPreProcess preProcessor) {
+        this.preProcess = preProcessor;
+    }
+
+    /**
+     * Stop the workers and release the engines.
+     * Documents still waiting for a worker are cancelled; engines in use are released once returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for(Runnable pending : workers.shutdownNow()) {
+            if(pending instanceof Future)
+                ((Future<?>) pending).cancel(false);
+        }
+        destroyIdleEngines();
+    }
+
+    /**
+     * The number of analysis engines created so far
+     * @return the number of engines, at most the number of workers
+     */
+    public synchronized int numEngines() {
+        return numEngines;
+    }
+
+    private void checkOpen() {
+        if(closed)
+            throw new IllegalStateException("Tokenizer factory is closed");
+    }
+
+    private Engine borrowEngine() throws InterruptedException {
+        Engine engine = idleEngines.poll();
+        if(engine != null)
+            return engine;
+        synchronized(this) {
+            if(numEngines < maxEngines) {
+                numEngines++;
+                try {
+                    return new Engine();
+                } catch(RuntimeException e) {
+                    numEngines--;
+                    throw e;
+                }
+            }
+        }
+        return idleEngines.take();
+    }
+
+    private void returnEngine(Engine engine) {
+        if(!idleEngines.offer(engine))
+            engine.analysisEngine.destroy();
+        // closed while the engine was out
+        if(closed)
+            destroyIdleEngines();
+    }
+
+    private void destroyIdleEngines() {
+        for(Engine engine = idleEngines.poll(); engine != null; engine = idleEngines.poll())
+            engine.analysisEngine.destroy();
+    }
+
+    private List<String> tokens(String text) {
+        Engine engine;
+        try {
+            engine = borrowEngine();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an analysis engine", e);
+        }
+
+        CAS cas = engine.cas;
+        cas.reset();
+        cas.setDocumentText(text);
+        List<String> tokens = new ArrayList<>();
+        try {
+            engine.analysisEngine.process(cas);
+            for(Token t : JCasUtil.select(cas.getJCas(), Token.class)) {
+                if(!valid(t)) {
+                    // filtering by part of speech keeps the token's position
+                    if(allowedPosTags != null)
+                        tokens.add("NONE");
+                }
+                else if(t.getLemma() != null)
+                    tokens.add(t.getLemma());
+                else if(t.getStem() != null)
+                    tokens.add(t.getStem());
+                else
+                    tokens.add(t.getCoveredText());
+            }
+        } catch(Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            cas.reset();
+            returnEngine(engine);
+        }
+        return tokens;
+    }
+
+    private boolean valid(Token token) {
+        String check = token.getCoveredText();
+        if(check.matches("<[A-Z]+>") || check.matches("</[A-Z]+>"))
+            return false;
+        else if(allowedPosTags != null && token.getPos() != null && !allowedPosTags.contains(token.getPos()))
+            return false;
+        return true;
+    }
+
+    // an analysis engine and the CAS it reuses
+    private class Engine {
+        private final AnalysisEngine analysisEngine;
+        private final CAS cas;
+
+        private Engine() {
+            try {
+                analysisEngine = AnalysisEngineFactory.createEngine(description);
+                cas = analysisEngine.newCAS();
+            } catch(ResourceInitializationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static class ListTokenizer implements Tokenizer {
+        private final List<String> tokens;
+        private TokenPreProcess preProcess;
+        private int index;
+
+        private ListTokenizer(List<String> tokens, TokenPreProcess preProcess) {
+            this.tokens = tokens;
+            this.preProcess = preProcess;
+        }
+
+        @Override
+        public boolean hasMoreTokens() {
+            return index < tokens.size();
+        }
+
+        @Override
+        public int countTokens() {
+            return tokens.size();
+        }
+
+        @Override
+        public String nextToken() {
+            String token = tokens.get(index++);
+            return preProcess != null ? preProcess.preProcess(token) : token;
+        }
+
+        @Override
+        public List<String> getTokens() {
+            List<String> ret = new ArrayList<>();
+            while(hasMoreTokens())
+                ret.add(nextToken());
+            return ret;
+        }
+
+        @Override
+        public void setTokenPreProcessor(TokenPreProcess tokenPreProcessor) {
+            this.preProcess = tokenPreProcessor;
+        }
+    }
+}
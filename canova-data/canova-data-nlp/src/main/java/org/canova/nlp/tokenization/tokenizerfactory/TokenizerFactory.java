@@ -28,7 +28,9 @@ import org.canova.nlp.tokenization.tokenizer.Tokenizer;
 import java.io.InputStream;
 
 /**
- * Generates a tokenizer for a given string
+ * Generates a tokenizer for a given string.
+ * Factories aren't expected to be thread safe unless they say so;
+ * only share one between threads (e.g. a vectorizer fitting on several threads) if it is.
  * @author Adam Gibson
  *
  */
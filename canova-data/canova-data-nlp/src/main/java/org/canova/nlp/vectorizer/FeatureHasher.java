@@ -0,0 +1,183 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.vectorizer;
+
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.SparseVectorWritable;
+import org.canova.api.util.MurmurHash3;
+import org.canova.nlp.tokenization.tokenizer.Tokenizer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashing trick: maps the tokens of a document (and optionally their n-grams)
+ * straight to the columns of a fixed size vector, without a vocab.
+ *
+ * Each term goes to column murmur3(term) mod numFeatures, and is added with the
+ * sign of the hash, so collisions tend to cancel out instead of piling up.
+ * Nothing is kept between documents: vectorizing needs no fit pass, and memory
+ * only depends on the size of the document being hashed.
+ */
+public class FeatureHasher implements Serializable {
+
+    public final static String NUM_FEATURES = "org.canova.nlp.hashing.numfeatures";
+    /** the longest n-gram hashed, 1 for the tokens only */
+    public final static String NGRAMS = "org.canova.nlp.hashing.ngrams";
+    /** tf, logtf or binary, see {@link Weighting} */
+    public final static String WEIGHTING = "org.canova.nlp.hashing.weighting";
+    /** 2^18 columns: few collisions for most vocabularies, and still 2 MB as a dense row of doubles */
+    public final static int DEFAULT_NUM_FEATURES = 1 << 18;
+
+    /**
+     * How the signed count of a column is turned into its value
+     */
+    public enum Weighting {
+        /** the count itself */
+        TF,
+        /** 1 + log(count) */
+        LOG_TF,
+        /** 1 */
+        BINARY;
+
+        public static Weighting fromString(String weighting) {
+            switch(weighting.trim().toLowerCase()) {
+                case "tf":
+                    return TF;
+                case "logtf":
+                case "log_tf":
+                    return LOG_TF;
+                case "binary":
+                    return BINARY;
+                default:
+                    throw new IllegalArgumentException("Unknown weighting " + weighting + ", expected tf, logtf or binary");
+            }
+        }
+    }
+
+    private final int numFeatures;
+    private final int nGrams;
+    private final Weighting weighting;
+
+    /**
+     * @param numFeatures the size of the vectors
+     * @param nGrams the longest n-gram hashed, 1 for the tokens only
+     * @param weighting how counts are turned into values
+     */
+    public FeatureHasher(int numFeatures, int nGrams, Weighting weighting) {
+        if(numFeatures < 1 || nGrams < 1)
+            throw new IllegalArgumentException("Number of features and n-grams must be positive");
+        this.numFeatures = numFeatures;
+        this.nGrams = nGrams;
+        this.weighting = weighting;
+    }
+
+    /**
+     * Create a feature hasher from {@link #NUM_FEATURES}, {@link #NGRAMS} and {@link #WEIGHTING}
+     * @param conf the configuration
+     * @return the feature hasher
+     */
+    public static FeatureHasher fromConfiguration(Configuration conf) {
+        return new FeatureHasher(conf.getInt(NUM_FEATURES, DEFAULT_NUM_FEATURES), conf.getInt(NGRAMS, 1),
+                Weighting.fromString(conf.get(WEIGHTING, "tf")));
+    }
+
+    /**
+     * Hash the tokens of a document, skipping empty tokens
+     * @param tokenizer the document's tokens
+     * @return the sparse vector, numFeatures wide
+     */
+    public SparseVectorWritable hash(Tokenizer tokenizer) {
+        List<String> tokens = new ArrayList<>();
+        while(tokenizer.hasMoreTokens()) {
+            String token = tokenizer.nextToken();
+            if(!token.isEmpty())
+                tokens.add(token);
+        }
+        return hash(tokens);
+    }
+
+    /**
+     * Hash a document's tokens, and their n-grams (tokens joined by a space)
+     * @param tokens the tokens, in document order
+     * @return the sparse vector, numFeatures wide
+     */
+    public SparseVectorWritable hash(List<String> tokens) {
+        Int2DoubleOpenHashMap counts = new Int2DoubleOpenHashMap(tokens.size() * nGrams);
+        StringBuilder nGram = new StringBuilder();
+        for(int i = 0; i < tokens.size(); i++) {
+            add(counts, tokens.get(i));
+            nGram.setLength(0);
+            nGram.append(tokens.get(i));
+            for(int n = 2; n <= nGrams && i + n <= tokens.size(); n++) {
+                nGram.append(' ').append(tokens.get(i + n - 1));
+                add(counts, nGram);
+            }
+        }
+
+        int[] indices = new int[counts.size()];
+        double[] values = new double[counts.size()];
+        int numEntries = 0;
+        for(Int2DoubleMap.Entry entry : counts.int2DoubleEntrySet()) {
+            double count = entry.getDoubleValue();
+            // colliding terms can cancel out
+            if(count == 0.0)
+                continue;
+            indices[numEntries] = entry.getIntKey();
+            values[numEntries++] = weight(count);
+        }
+        return new SparseVectorWritable(numFeatures, indices, values, numEntries);
+    }
+
+    private void add(Int2DoubleOpenHashMap counts, CharSequence term) {
+        int hash = MurmurHash3.hash32(term, 0);
+        int index = hash % numFeatures;
+        if(index < 0)
+            index += numFeatures;
+        counts.addTo(index, hash < 0 ? -1.0 : 1.0);
+    }
+
+    private double weight(double count) {
+        switch(weighting) {
+            case LOG_TF:
+                return Math.signum(count) * (1.0 + Math.log(Math.abs(count)));
+            case BINARY:
+                return Math.signum(count);
+            default:
+                return count;
+        }
+    }
+
+    public int getNumFeatures() {
+        return numFeatures;
+    }
+
+    public int getNGrams() {
+        return nGrams;
+    }
+
+    public Weighting getWeighting() {
+        return weighting;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.vectorizer;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.SparseVectorWritable;
+import org.canova.api.records.reader.RecordReader;
+import org.canova.api.writable.Writable;
+import org.canova.nlp.tokenization.tokenizer.Tokenizer;
+import org.canova.nlp.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.canova.nlp.tokenization.tokenizerfactory.TokenizerFactory;
+
+import java.util.Collection;
+
+/**
+ * Feature hashing vectorizer: vectors are {@link FeatureHasher#NUM_FEATURES} wide
+ * and each document is vectorized on its own, so there's no vocab to fit.
+ * {@link #fit(RecordReader)} only reads through the records (for the callback).
+ */
+public abstract class HashingVectorizer<VECTOR_TYPE> extends TextVectorizer<VECTOR_TYPE> {
+
+    protected FeatureHasher featureHasher;
+
+    @Override
+    public void initialize(Configuration conf) {
+        super.initialize(conf);
+        featureHasher = FeatureHasher.fromConfiguration(conf);
+    }
+
+    @Override
+    public void fit(RecordReader reader, RecordCallBack callBack) {
+        while(reader.hasNext()) {
+            Collection<Writable> record = reader.next();
+            if(callBack != null)
+                callBack.onRecord(record);
+        }
+    }
+
+    @Override
+    public void doWithTokens(Tokenizer tokenizer) {
+        // nothing to count
+    }
+
+    @Override
+    public TokenizerFactory createTokenizerFactory(Configuration conf) {
+        String clazz = conf.get(TOKENIZER,DefaultTokenizerFactory.class.getName());
+        try {
+            Class<? extends TokenizerFactory> tokenizerFactoryClazz = (Class<? extends TokenizerFactory>) Class.forName(clazz);
+            return tokenizerFactoryClazz.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Hashed vector for a record
+     * @param record the record to vectorize
+     * @return the sparse vector, {@link #getNumFeatures()} wide
+     */
+    public SparseVectorWritable transformSparse(Collection<Writable> record) {
+        return featureHasher.hash(tokenizerFactory.create(toString(record)));
+    }
+
+    public int getNumFeatures() {
+        return featureHasher.getNumFeatures();
+    }
+
+    public FeatureHasher getFeatureHasher() {
+        return featureHasher;
+    }
+}
@@ -49,8 +49,14 @@ public abstract class TextVectorizer<VECTOR_TYPE> implements Vectorizer<VECTOR_T
     public final static String MIN_WORD_FREQUENCY = "org.nd4j.nlp.minwordfrequency";
     public final static String STOP_WORDS = "org.nd4j.nlp.stopwords";
     public final static String TOKENIZER = "org.canova.nlp.tokenizerfactory";
+    /**
+     * the number of threads counting the vocab while fitting, defaults to 1;
+     * with more, the tokenizer factory is called from all of them at once, so it has to be thread safe
+     */
+    public final static String NUM_THREADS = "org.canova.nlp.vectorizer.threads";
     protected Collection<String> stopWords;
     protected VocabCache cache;
+    protected int numThreads = 1;
 
     @Override
     public void initialize(Configuration conf) {
@@ -60,6 +66,7 @@ public abstract class TextVectorizer<VECTOR_TYPE> implements Vectorizer<VECTOR_T
         if(stopWords == null || stopWords.isEmpty())
             stopWords = StopWords.getStopWords();
         cache = new DefaultVocabCache(minWordFrequency);
+        numThreads = Math.max(1,conf.getInt(NUM_THREADS,1));
 
     }
 
@@ -84,6 +91,14 @@ public abstract class TextVectorizer<VECTOR_TYPE> implements Vectorizer<VECTOR_T
     }
 
 
+    /**
+     * The vocab and word/document counts collected by {@link #fit(RecordReader)}
+     * @return the vocab cache
+     */
+    public VocabCache getCache() {
+        return cache;
+    }
+
     protected Counter<String> wordFrequenciesForRecord(Collection<Writable> record) {
         String s = toString(record);
         Tokenizer tokenizer = tokenizerFactory.create(s);
@@ -20,35 +20,142 @@
 
 package org.canova.nlp.vectorizer;
 
+import org.canova.api.berkeley.Counter;
 import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.writable.Writable;
+import org.canova.nlp.metadata.ConcurrentVocabBuilder;
+import org.canova.nlp.metadata.FrozenVocabCache;
 import org.canova.nlp.tokenization.tokenizer.Tokenizer;
 import org.canova.nlp.tokenization.tokenizerfactory.DefaultTokenizerFactory;
 import org.canova.nlp.tokenization.tokenizerfactory.TokenizerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tf idf vectorizer
  * @author Adam Gibson
  */
 public abstract class TfidfVectorizer<VECTOR_TYPE> extends TextVectorizer<VECTOR_TYPE> {
+    private final static int QUEUED_DOCUMENTS_PER_THREAD = 64;
+    // compared by identity, tells a worker to stop
+    private final static String END_OF_DOCUMENTS = new String();
 
+    /**
+     * Count the tokens of a document into the cache.
+     * {@link #fit(RecordReader, RecordCallBack)} no longer calls this: it counts on its own threads,
+     * so overriding this doesn't change what fit counts.
+     * If the cache was frozen by fit, it's thawed into a {@link org.canova.nlp.metadata.DefaultVocabCache} first.
+     * @param tokenizer the document's tokens
+     * @deprecated fit counts with a {@link ConcurrentVocabBuilder}, use one directly to count documents by hand
+     */
+    @Deprecated
     @Override
     public void doWithTokens(Tokenizer tokenizer) {
+        if(cache instanceof FrozenVocabCache)
+            cache = ((FrozenVocabCache) cache).thaw();
         Set<String> seen = new HashSet<>();
         while(tokenizer.hasMoreTokens()) {
             String token = tokenizer.nextToken();
             cache.incrementCount(token);
-            if(!seen.contains(token)) {
+            if(seen.add(token)) {
                 cache.incrementDocCount(token);
             }
         }
     }
 
+    /**
+     * Count the vocab over every record of the reader.
+     * The reader is read on the calling thread (the callback runs there too, in record order),
+     * while tokenizing and counting is spread over {@link #NUM_THREADS} threads,
+     * each counting into its own shard of a {@link ConcurrentVocabBuilder}.
+     * The cache ends up a {@link FrozenVocabCache} of the words seen at least min word frequency times.
+     *
+     * Unlike {@link TextVectorizer#fit(RecordReader, RecordCallBack)}, each fit replaces the cache
+     * rather than adding to it, and {@link #doWithTokens(Tokenizer)} isn't called.
+     * The frozen cache's increment methods throw {@link UnsupportedOperationException};
+     * {@link FrozenVocabCache#thaw()} gives a copy that can keep counting.
+     */
+    @Override
+    public void fit(RecordReader reader, RecordCallBack callBack) {
+        ConcurrentVocabBuilder builder = new ConcurrentVocabBuilder(minWordFrequency);
+        if(numThreads < 2) {
+            ConcurrentVocabBuilder.Shard shard = builder.newShard();
+            while(reader.hasNext()) {
+                Collection<Writable> record = reader.next();
+                shard.addDocument(tokenizerFactory.create(toString(record)));
+                if(callBack != null)
+                    callBack.onRecord(record);
+            }
+        }
+        else {
+            fitConcurrently(reader, callBack, builder);
+        }
+
+        cache = builder.build();
+    }
+
+    private void fitConcurrently(RecordReader reader, RecordCallBack callBack, ConcurrentVocabBuilder builder) {
+        final BlockingQueue<String> documents = new ArrayBlockingQueue<>(numThreads * QUEUED_DOCUMENTS_PER_THREAD);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<?>> workers = new ArrayList<>(numThreads);
+        try {
+            for(int i = 0; i < numThreads; i++) {
+                final ConcurrentVocabBuilder.Shard shard = builder.newShard();
+                workers.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for(String document = documents.take(); document != END_OF_DOCUMENTS; document = documents.take())
+                            shard.addDocument(tokenizerFactory.create(document));
+                        return null;
+                    }
+                }));
+            }
+
+            while(reader.hasNext()) {
+                Collection<Writable> record = reader.next();
+                enqueue(documents, toString(record), workers);
+                if(callBack != null)
+                    callBack.onRecord(record);
+            }
+            for(int i = 0; i < numThreads; i++)
+                enqueue(documents, END_OF_DOCUMENTS, workers);
+            for(Future<?> worker : workers)
+                worker.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while counting the vocab", e);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("Unable to count the vocab", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // a worker that died would never take from the queue again, so don't block on it forever
+    private static void enqueue(BlockingQueue<String> documents, String document, List<Future<?>> workers)
+            throws InterruptedException, ExecutionException {
+        while(!documents.offer(document, 100, TimeUnit.MILLISECONDS)) {
+            for(Future<?> worker : workers)
+                if(worker.isDone())
+                    worker.get();
+        }
+    }
+
     @Override
     public TokenizerFactory createTokenizerFactory(Configuration conf) {
         String clazz = conf.get(TOKENIZER,DefaultTokenizerFactory.class.getName());
@@ -60,6 +167,39 @@ public abstract class TfidfVectorizer<VECTOR_TYPE> extends TextVectorizer<VECTOR
         }
     }
 
+    /**
+     * Tfidf vector for a record, with entries only for the vocab words in the record
+     * @param record the record to vectorize
+     * @return the sparse tfidf vector, as wide as the vocab
+     */
+    public SparseVectorWritable transformSparse(Collection<Writable> record) {
+        return createSparseVector(wordFrequenciesForRecord(record));
+    }
+
+    /**
+     * Tfidf vector for the word frequencies of a document.
+     * Only the document's own words are visited, each looked up in the vocab index;
+     * vocab words that aren't in the document have a tfidf of 0 and get no entry.
+     * @param docFrequencies the word frequencies of the document
+     * @return the sparse tfidf vector, as wide as the vocab
+     */
+    public SparseVectorWritable createSparseVector(Counter<String> docFrequencies) {
+        int[] indices = new int[docFrequencies.size()];
+        double[] values = new double[docFrequencies.size()];
+        int numEntries = 0;
+        for(Map.Entry<String,Double> word : docFrequencies.entrySet()) {
+            int index = cache.indexOf(word.getKey());
+            if(index < 0)
+                continue;
+            double tfidf = cache.tfidf(word.getKey(),word.getValue());
+            if(tfidf != 0.0) {
+                indices[numEntries] = index;
+                values[numEntries++] = tfidf;
+            }
+        }
+        return new SparseVectorWritable(cache.numWords(),indices,values,numEntries);
+    }
+
     @Override
     public abstract VECTOR_TYPE createVector(Object[] args);
 
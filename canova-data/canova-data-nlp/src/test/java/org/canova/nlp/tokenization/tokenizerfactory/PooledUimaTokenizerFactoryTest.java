@@ -0,0 +1,194 @@
+package org.canova.nlp.tokenization.tokenizerfactory;
+
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.jcas.JCas;
+import org.cleartk.token.type.Token;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class PooledUimaTokenizerFactoryTest {
+
+    /**
+     * Adds a token per whitespace separated word; capitalized words are tagged NN, the rest VB.
+     * Waits for {@link #gate} first, when it's set.
+     */
+    public static class WhitespaceTokenAnnotator extends JCasAnnotator_ImplBase {
+        static volatile CountDownLatch gate;
+
+        @Override
+        public void process(JCas jCas) throws AnalysisEngineProcessException {
+            CountDownLatch gate = WhitespaceTokenAnnotator.gate;
+            if(gate != null) {
+                try {
+                    gate.await();
+                } catch(InterruptedException e) {
+                    throw new AnalysisEngineProcessException(e);
+                }
+            }
+            Matcher m = Pattern.compile("\\S+").matcher(jCas.getDocumentText());
+            while(m.find()) {
+                Token token = new Token(jCas, m.start(), m.end());
+                token.setPos(Character.isUpperCase(m.group().charAt(0)) ? "NN" : "VB");
+                token.addToIndexes();
+            }
+        }
+    }
+
+    private PooledUimaTokenizerFactory factory;
+
+    private static AnalysisEngineDescription description() throws Exception {
+        return AnalysisEngineFactory.createEngineDescription(WhitespaceTokenAnnotator.class);
+    }
+
+    @After
+    public void tearDown() {
+        WhitespaceTokenAnnotator.gate = null;
+        if(factory != null)
+            factory.close();
+    }
+
+    @Test
+    public void testBatchMatchesSequential() throws Exception {
+        factory = new PooledUimaTokenizerFactory(description(), null, 4, 2);
+        List<String> documents = new ArrayList<>();
+        for(int i = 0; i < 200; i++)
+            documents.add("doc " + i + " has <LABEL> " + (i % 7) + " words");
+
+        List<List<String>> tokens = factory.tokenize(documents);
+        assertEquals(documents.size(), tokens.size());
+        for(int i = 0; i < documents.size(); i++) {
+            // label tags are dropped
+            assertEquals(Arrays.asList("doc", String.valueOf(i), "has", String.valueOf(i % 7), "words"), tokens.get(i));
+            assertEquals(tokens.get(i), factory.create(documents.get(i)).getTokens());
+        }
+        assertTrue(factory.numEngines() <= 4);
+    }
+
+    @Test
+    public void testEnginesBoundedAcrossCallerThreads() throws Exception {
+        factory = new PooledUimaTokenizerFactory(description(), null, 2);
+        List<Thread> threads = new ArrayList<>();
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        for(int t = 0; t < 16; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for(int i = 0; i < 20; i++)
+                            assertEquals(Arrays.asList("a", "b", "c"), factory.create("a b c").getTokens());
+                    } catch(Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for(Thread thread : threads)
+            thread.join();
+        assertEquals(Collections.emptyList(), failures);
+        assertTrue(factory.numEngines() <= 2);
+    }
+
+    @Test
+    public void testPosFilter() throws Exception {
+        factory = new PooledUimaTokenizerFactory(description(), Collections.singletonList("NN"), 1);
+        assertEquals(Arrays.asList("Dogs", "NONE", "Home", "NONE"), factory.create("Dogs run Home <LABEL>").getTokens());
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        WhitespaceTokenAnnotator.gate = new CountDownLatch(1);
+        factory = new PooledUimaTokenizerFactory(description(), null, 1, 1);
+        // one running, one queued
+        Future<List<String>> running = factory.submit("first");
+        Future<List<String>> queued = factory.submit("second");
+
+        // the queue is full: the submitter has to tokenize itself, and waits for the only engine
+        final Future<?>[] third = new Future<?>[1];
+        Thread submitter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                third[0] = factory.submit("third");
+            }
+        });
+        submitter.start();
+        submitter.join(200);
+        assertTrue(submitter.isAlive());
+
+        WhitespaceTokenAnnotator.gate.countDown();
+        submitter.join(5000);
+        assertFalse(submitter.isAlive());
+        assertEquals(Collections.singletonList("first"), running.get());
+        assertEquals(Collections.singletonList("second"), queued.get());
+        assertEquals(Collections.singletonList("third"), third[0].get());
+    }
+
+    @Test
+    public void testCloseRejectsAndCancels() throws Exception {
+        WhitespaceTokenAnnotator.gate = new CountDownLatch(1);
+        factory = new PooledUimaTokenizerFactory(description(), null, 1, 4);
+        factory.submit("running");
+        Future<List<String>> queued = factory.submit("queued");
+        factory.close();
+
+        assertTrue(queued.isCancelled());
+        try {
+            factory.submit("after close");
+            fail("Closed factory accepted a document");
+        } catch(IllegalStateException e) {
+            // expected
+        }
+        try {
+            factory.create("after close");
+            fail("Closed factory accepted a document");
+        } catch(IllegalStateException e) {
+            // expected
+        }
+        try {
+            factory.tokenize(Collections.singletonList("after close"));
+            fail("Closed factory accepted a document");
+        } catch(IllegalStateException e) {
+            // expected
+        }
+        WhitespaceTokenAnnotator.gate.countDown();
+    }
+
+    @Test(timeout = 10000)
+    public void testTokenizeFailsWhenClosedMidBatch() throws Exception {
+        WhitespaceTokenAnnotator.gate = new CountDownLatch(1);
+        factory = new PooledUimaTokenizerFactory(description(), null, 1, 8);
+        final Throwable[] failure = new Throwable[1];
+        Thread tokenizing = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    factory.tokenize(Arrays.asList("a", "b", "c"));
+                } catch(Throwable e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        tokenizing.start();
+        Thread.sleep(100);
+        factory.close();
+        WhitespaceTokenAnnotator.gate.countDown();
+        tokenizing.join();
+        assertNotNull(failure[0]);
+    }
+}
@@ -20,7 +20,7 @@
 
 package org.canova.codec.reader;
 
-import org.apache.commons.compress.utils.IOUtils;
+import org.apache.commons.io.FileUtils;
 import org.canova.api.conf.Configuration;
 import org.canova.api.records.reader.SequenceRecordReader;
 import org.canova.api.records.reader.impl.FileRecordReader;
@@ -28,21 +28,14 @@ import org.canova.api.split.InputSplit;
 import org.canova.api.writable.Writable;
 import org.canova.common.RecordConverter;
 import org.canova.image.loader.ImageLoader;
-import org.jcodec.api.FrameGrab;
-import org.jcodec.api.JCodecException;
-import org.jcodec.common.ByteBufferSeekableByteChannel;
 import org.jcodec.common.NIOUtils;
 import org.jcodec.common.SeekableByteChannel;
-import org.jcodec.scale.AWTUtil;
 
 
-import java.awt.image.BufferedImage;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Field;
 import java.net.URI;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 
@@ -60,6 +53,8 @@ import java.util.Collection;
  MXF demuxer
 
  Credit to jcodec for the underlying parser
+
+ Frames are decoded one at a time straight from the file, see {@link #frameIterator()}
  *
  * @author Adam Gibson
  */
@@ -71,6 +66,8 @@ public class CodecRecordReader extends FileRecordReader implements SequenceRecor
     private double videoLength = -1;
     private ImageLoader imageLoader;
     private boolean ravel = false;
+    private int frameStride = 1;
+    private int seekStride = 0;
 
     public final static String NAME_SPACE = "org.canova.codec.reader";
     public final static String ROWS = NAME_SPACE + ".rows";
@@ -80,74 +77,77 @@ public class CodecRecordReader extends FileRecordReader implements SequenceRecor
     public final static String TIME_SLICE = NAME_SPACE + ".time";
     public final static String RAVEL = NAME_SPACE + ".ravel";
     public final static String VIDEO_DURATION = NAME_SPACE + ".duration";
+    /** take every n-th frame, starting at the start frame */
+    public final static String FRAME_STRIDE = NAME_SPACE + ".stride";
+    /** strides at least this long seek to the next frame instead of decoding through, 0 to never seek */
+    public final static String SEEK_STRIDE = NAME_SPACE + ".seekstride";
 
 
     @Override
     public Collection<Collection<Writable>> sequenceRecord() {
-        File next = iter.next();
-
-        try{
-            return loadData(NIOUtils.readableFileChannel(next));
-        }catch(IOException e){
+        try {
+            return toRecords(frameIterator());
+        } catch(IOException e) {
             throw new RuntimeException(e);
         }
     }
 
     @Override
     public Collection<Collection<Writable>> sequenceRecord(URI uri, DataInputStream dataInputStream) throws IOException {
-        //Reading video from DataInputStream: Need data from this stream in a SeekableByteChannel
-        //Approach used here: load entire video into memory -> ByteBufferSeekableByteChanel
-        byte[] data = IOUtils.toByteArray(dataInputStream);
-        ByteBuffer bb = ByteBuffer.wrap(data);
-        SeekableByteChannel sbc = new FixedByteBufferSeekableByteChannel(bb);
-        return loadData(sbc);
+        return toRecords(frameIterator(uri, dataInputStream));
     }
 
-    private Collection<Collection<Writable>> loadData( SeekableByteChannel seekableByteChannel ) throws IOException {
-        Collection<Collection<Writable>> record = new ArrayList<>();
+    /**
+     * Decode the frames of the next video lazily, instead of reading the whole sequence at once
+     * @return the frames as tensors; close it when done
+     * @throws IOException if the video can't be opened
+     */
+    public VideoFrameIterator frameIterator() throws IOException {
+        return openFrames(NIOUtils.readableFileChannel(iter.next()));
+    }
 
-        if(numFrames >= 1) {
-            FrameGrab fg;
-            try{
-                fg = new FrameGrab(seekableByteChannel);
-                if(startFrame != 0) fg.seekToFramePrecise(startFrame);
-            } catch(JCodecException e){
-                throw new RuntimeException(e);
-            }
-
-            for(int i = startFrame; i < startFrame+numFrames; i++) {
-                try {
-                    BufferedImage grab = fg.getFrame();
-                    if(ravel)
-                        record.add(RecordConverter.toRecord(imageLoader.toRaveledTensor(grab)));
-                    else
-                        record.add(RecordConverter.toRecord(imageLoader.asRowVector(grab)));
-
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            }
-        } else {
-            if(framesPerSecond < 1)
-                throw new IllegalStateException("No frames or frame time intervals specified");
-
-
-            else {
-                for(double i = 0; i < videoLength; i += framesPerSecond) {
-                    try {
-                        BufferedImage grab = FrameGrab.getFrame(seekableByteChannel, i);
-                        if(ravel)
-                            record.add(RecordConverter.toRecord(imageLoader.toRaveledTensor(grab)));
-                        else
-                            record.add(RecordConverter.toRecord(imageLoader.asRowVector(grab)));
-
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                }
-            }
+    /**
+     * Decode the frames of a video lazily. Videos that aren't local files are
+     * copied to a temp file first, so the video is never held in memory.
+     * @param uri the location of the video, may be null
+     * @param dataInputStream the video
+     * @return the frames as tensors; close it when done
+     * @throws IOException if the video can't be opened
+     */
+    public VideoFrameIterator frameIterator(URI uri, DataInputStream dataInputStream) throws IOException {
+        if(uri != null && "file".equals(uri.getScheme()) && new File(uri).isFile())
+            return openFrames(NIOUtils.readableFileChannel(new File(uri)));
+
+        File spooled = File.createTempFile("canova-video", ".tmp");
+        try {
+            FileUtils.copyInputStreamToFile(dataInputStream, spooled);
+            VideoFrameIterator frames = openFrames(NIOUtils.readableFileChannel(spooled));
+            frames.deleteOnClose(spooled);
+            return frames;
+        } catch(IOException | RuntimeException e) {
+            spooled.delete();
+            throw e;
         }
+    }
+
+    private VideoFrameIterator openFrames(SeekableByteChannel channel) throws IOException {
+        if(numFrames >= 1)
+            return VideoFrameIterator.frames(channel, imageLoader, ravel, startFrame, numFrames, frameStride, seekStride);
+        if(framesPerSecond < 1) {
+            channel.close();
+            throw new IllegalStateException("No frames or frame time intervals specified");
+        }
+        return VideoFrameIterator.timeSlices(channel, imageLoader, ravel, framesPerSecond, videoLength);
+    }
 
+    private Collection<Collection<Writable>> toRecords(VideoFrameIterator frames) throws IOException {
+        Collection<Collection<Writable>> record = new ArrayList<>();
+        try {
+            while(frames.hasNext())
+                record.add(RecordConverter.toRecord(frames.next()));
+        } finally {
+            frames.close();
+        }
         return record;
     }
 
@@ -185,6 +185,8 @@ public class CodecRecordReader extends FileRecordReader implements SequenceRecor
         videoLength = conf.getFloat(VIDEO_DURATION,-1);
         ravel = conf.getBoolean(RAVEL, false);
         totalFrames = conf.getInt(TOTAL_FRAMES, -1);
+        frameStride = conf.getInt(FRAME_STRIDE, 1);
+        seekStride = conf.getInt(SEEK_STRIDE, 0);
     }
 
     @Override
@@ -193,26 +195,4 @@ public class CodecRecordReader extends FileRecordReader implements SequenceRecor
     }
 
 
-    /** Ugly workaround to a bug in JCodec: https://github.com/jcodec/jcodec/issues/24 */
-    private static class FixedByteBufferSeekableByteChannel extends ByteBufferSeekableByteChannel {
-        private ByteBuffer backing;
-        public FixedByteBufferSeekableByteChannel(ByteBuffer backing) {
-            super(backing);
-            try{
-                Field f = this.getClass().getSuperclass().getDeclaredField("maxPos");
-                f.setAccessible(true);
-                f.set(this,backing.limit());
-            }catch(Exception e){
-                throw new RuntimeException(e);
-            }
-            this.backing = backing;
-        }
-
-        @Override
-        public int read(ByteBuffer dst) throws IOException {
-            if(!backing.hasRemaining()) return -1;
-            return super.read(dst);
-        }
-    }
-
 }
@@ -0,0 +1,218 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.codec.reader;
+
+import org.canova.image.loader.ImageLoader;
+import org.jcodec.api.FrameGrab;
+import org.jcodec.api.JCodecException;
+import org.jcodec.common.SeekableByteChannel;
+import org.jcodec.common.model.Picture;
+import org.jcodec.scale.AWTUtil;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Decodes the frames of a video one at a time, as they are asked for,
+ * so only the current frame is ever held in memory.
+ *
+ * Frames are either taken by frame number, every stride-th frame from a start frame,
+ * or one every time slice. Frames skipped over by a stride are decoded without being
+ * converted to images; strides of at least the seek stride seek to the next frame instead,
+ * which only decodes from the key frame before it.
+ *
+ * Closing the iterator closes the channel.
+ */
+public class VideoFrameIterator implements Iterator<INDArray>, Closeable {
+
+    private final SeekableByteChannel channel;
+    private final FrameGrab grab;
+    private final ImageLoader imageLoader;
+    private final boolean ravel;
+
+    // frame mode
+    private final int numFrames;
+    private final int stride;
+    private final int seekStride;
+    private int frame;
+    private int returned = 0;
+
+    // time slice mode, interval < 0 in frame mode
+    private final double interval;
+    private final double duration;
+    private double time = 0;
+
+    private BufferedImage nextImage;
+    private boolean done = false;
+    private File deleteOnClose;
+
+    private VideoFrameIterator(SeekableByteChannel channel, ImageLoader imageLoader, boolean ravel, int startFrame,
+                               int numFrames, int stride, int seekStride, double interval, double duration) throws IOException {
+        if(stride < 1)
+            throw new IllegalArgumentException("Frame stride must be positive");
+        this.channel = channel;
+        this.imageLoader = imageLoader;
+        this.ravel = ravel;
+        this.frame = startFrame;
+        this.numFrames = numFrames;
+        this.stride = stride;
+        this.seekStride = seekStride;
+        this.interval = interval;
+        this.duration = duration;
+        try {
+            this.grab = new FrameGrab(channel);
+            if(interval < 0 && startFrame != 0)
+                grab.seekToFramePrecise(startFrame);
+        } catch (JCodecException e) {
+            channel.close();
+            throw new IOException(e);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Iterate over frames by frame number
+     * @param channel the video
+     * @param imageLoader scales the frames
+     * @param ravel whether frames are raveled tensors or row vectors
+     * @param startFrame the first frame
+     * @param numFrames the maximum number of frames, -1 for all
+     * @param stride take every stride-th frame
+     * @param seekStride strides at least this long seek instead of decoding every frame, 0 to never seek
+     * @return the frames
+     * @throws IOException if the video can't be opened
+     */
+    public static VideoFrameIterator frames(SeekableByteChannel channel, ImageLoader imageLoader, boolean ravel,
+                                            int startFrame, int numFrames, int stride, int seekStride) throws IOException {
+        return new VideoFrameIterator(channel, imageLoader, ravel, startFrame, numFrames, stride, seekStride, -1, -1);
+    }
+
+    /**
+     * Iterate over one frame per time slice
+     * @param channel the video
+     * @param imageLoader scales the frames
+     * @param ravel whether frames are raveled tensors or row vectors
+     * @param interval the seconds between frames
+     * @param duration the seconds of video to read
+     * @return the frames
+     * @throws IOException if the video can't be opened
+     */
+    public static VideoFrameIterator timeSlices(SeekableByteChannel channel, ImageLoader imageLoader, boolean ravel,
+                                                double interval, double duration) throws IOException {
+        if(interval <= 0)
+            throw new IllegalArgumentException("Time slice must be positive");
+        return new VideoFrameIterator(channel, imageLoader, ravel, 0, -1, 1, 0, interval, duration);
+    }
+
+    /**
+     * Delete a file, typically a spooled copy of the video, once the iterator is closed
+     * @param file the file to delete
+     */
+    void deleteOnClose(File file) {
+        this.deleteOnClose = file;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(nextImage != null)
+            return true;
+        if(done)
+            return false;
+        try {
+            nextImage = interval < 0 ? grabFrame() : grabTimeSlice();
+        } catch (IOException | JCodecException e) {
+            throw new IllegalStateException("Unable to decode video frame", e);
+        }
+        if(nextImage == null)
+            done = true;
+        return nextImage != null;
+    }
+
+    @Override
+    public INDArray next() {
+        if(!hasNext())
+            throw new NoSuchElementException("No more frames");
+        BufferedImage image = nextImage;
+        nextImage = null;
+        return ravel ? imageLoader.toRaveledTensor(image) : imageLoader.asRowVector(image);
+    }
+
+    private BufferedImage grabFrame() throws IOException, JCodecException {
+        if(numFrames >= 0 && returned >= numFrames)
+            return null;
+
+        if(returned > 0 && stride > 1) {
+            frame += stride;
+            if(seekStride > 0 && stride >= seekStride) {
+                grab.seekToFramePrecise(frame);
+            }
+            else {
+                // still has to be decoded as later frames may refer to it, but never converted
+                for(int i = 1; i < stride; i++)
+                    if(grab.getNativeFrame() == null)
+                        return null;
+            }
+        }
+        else if(returned > 0) {
+            frame++;
+        }
+
+        Picture picture = grab.getNativeFrame();
+        if(picture == null)
+            return null;
+        returned++;
+        return AWTUtil.toBufferedImage(picture);
+    }
+
+    private BufferedImage grabTimeSlice() throws IOException, JCodecException {
+        if(time >= duration)
+            return null;
+        grab.seekToSecondPrecise(time);
+        time += interval;
+        Picture picture = grab.getNativeFrame();
+        return picture == null ? null : AWTUtil.toBufferedImage(picture);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        done = true;
+        nextImage = null;
+        try {
+            channel.close();
+        } finally {
+            if(deleteOnClose != null)
+                deleteOnClose.delete();
+        }
+    }
+
+}
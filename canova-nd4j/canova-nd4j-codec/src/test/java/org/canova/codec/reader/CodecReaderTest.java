@@ -27,6 +27,7 @@ import org.canova.api.records.reader.SequenceRecordReader;
 import org.canova.api.split.FileSplit;
 import org.canova.api.util.ClassPathResource;
 import org.canova.api.writable.Writable;
+import org.canova.common.RecordConverter;
 import org.junit.Test;
 
 import java.io.DataInputStream;
@@ -34,7 +35,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.net.URI;
 import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * @author Adam Gibson
@@ -94,4 +97,34 @@ public class CodecReaderTest {
         assertEquals(expected,actual);
     }
 
+    @Test
+    public void testFrameStride() throws Exception {
+        File file = new ClassPathResource("fire_lowres.mp4").getFile();
+        Configuration conf = new Configuration();
+        conf.set(CodecRecordReader.RAVEL, "true");
+        conf.set(CodecRecordReader.START_FRAME, "160");
+        conf.set(CodecRecordReader.TOTAL_FRAMES, "30");
+        conf.set(CodecRecordReader.ROWS, "80");
+        conf.set(CodecRecordReader.COLUMNS, "46");
+
+        CodecRecordReader reader = new CodecRecordReader();
+        reader.initialize(conf, new FileSplit(file));
+        List<Collection<Writable>> all = new ArrayList<>(reader.sequenceRecord());
+
+        conf.set(CodecRecordReader.TOTAL_FRAMES, "10");
+        conf.set(CodecRecordReader.FRAME_STRIDE, "3");
+        for(String seekStride : new String[]{"0", "2"}) {
+            conf.set(CodecRecordReader.SEEK_STRIDE, seekStride);
+            CodecRecordReader strided = new CodecRecordReader();
+            strided.initialize(conf, new FileSplit(file));
+            VideoFrameIterator frames = strided.frameIterator();
+            for(int i = 0; i < 10; i++) {
+                assertTrue(frames.hasNext());
+                assertEquals(all.get(i * 3), RecordConverter.toRecord(frames.next()));
+            }
+            assertFalse(frames.hasNext());
+            frames.close();
+        }
+    }
+
 }
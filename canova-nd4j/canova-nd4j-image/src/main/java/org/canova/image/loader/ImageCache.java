@@ -0,0 +1,426 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.image.loader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On disk cache of preprocessed images, so decoding and resizing
+ * only happens the first time an image is read.
+ *
+ * - entries are keyed by the image's path, size and modification time plus the
+ *   settings that went in to preprocessing it (size, channels, reader, ...);
+ *   if any of those change the old entry is simply never hit again
+ * - each entry holds the raw values, as bytes when they are all
+ *   integers in 0-255, floats when that's exact and doubles otherwise
+ * - entries are appended to segment files of up to {@link #DEFAULT_SEGMENT_SIZE} bytes;
+ *   each segment is memory mapped once and found through an in memory index of its entries,
+ *   so a hit is a hash lookup and a copy out of the mapping
+ * - appends hold a lock on the segment file, so several readers can share a cache directory;
+ *   entries appended by other readers are picked up when a lookup misses
+ *
+ * Deleting the directory clears the cache.
+ */
+public class ImageCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageCache.class);
+
+    /** segments are only appended to while they are smaller than this */
+    public static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+
+    private static final int MAGIC = 0x434e4943; // "CNIC"
+    private static final byte VERSION = 2;
+    private static final int TYPE_OFFSET = 5;
+    private static final int LENGTH_OFFSET = 6;
+    private static final int KEY_OFFSET = 10;
+    private static final int KEY_SIZE = 20;
+    private static final int HEADER_SIZE = KEY_OFFSET + KEY_SIZE;
+    private static final byte UINT8 = 0;
+    private static final byte FLOAT32 = 1;
+    private static final byte FLOAT64 = 2;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    // file locks are held per process, so appends within one are serialized here first
+    private static final Object APPEND_LOCK = new Object();
+
+    private final File directory;
+    private final long segmentSize;
+    private final List<Segment> segments = new ArrayList<>();
+    // entry key to the segment number (high int) and offset (low int) of the entry
+    private final Map<String,Long> index = new HashMap<>();
+
+    /**
+     * @param directory where the segments are kept, created if needed
+     */
+    public ImageCache(File directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param directory where the segments are kept, created if needed
+     * @param segmentSize the size past which a new segment is started
+     */
+    public ImageCache(File directory, long segmentSize) {
+        if(segmentSize < 1 || segmentSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Segment size must be between 1 and " + Integer.MAX_VALUE);
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Get the cached values of an image
+     * @param image the image file
+     * @param settings the preprocessing settings the values were put with
+     * @return the values, or null if they aren't cached
+     */
+    public double[] get(File image, String settings) {
+        ByteBuffer buffer = find(image, settings);
+        if(buffer == null)
+            return null;
+
+        int length = buffer.getInt(LENGTH_OFFSET);
+        double[] ret = new double[length];
+        switch(buffer.get(TYPE_OFFSET)) {
+            case UINT8:
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                for(int i = 0; i < length; i++)
+                    ret[i] = bytes[i] & 0xff;
+                break;
+            case FLOAT32:
+                float[] floats = new float[length];
+                buffer.asFloatBuffer().get(floats);
+                for(int i = 0; i < length; i++)
+                    ret[i] = floats[i];
+                break;
+            default:
+                buffer.asDoubleBuffer().get(ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Read the cached values of an image straight in to a float buffer;
+     * values stored as floats are copied from the mapped segment in one go
+     * @param image the image file
+     * @param settings the preprocessing settings the values were put with
+     * @param dst where to write the values
+     * @param offset where in dst to start writing
+     * @param length the number of values expected
+     * @return false if the values aren't cached, or there aren't length of them
+     */
+    public boolean get(File image, String settings, float[] dst, int offset, int length) {
+        ByteBuffer buffer = find(image, settings);
+        if(buffer == null || buffer.getInt(LENGTH_OFFSET) != length)
+            return false;
+
+        switch(buffer.get(TYPE_OFFSET)) {
+            case UINT8:
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                for(int i = 0; i < length; i++)
+                    dst[offset + i] = bytes[i] & 0xff;
+                break;
+            case FLOAT32:
+                buffer.asFloatBuffer().get(dst, offset, length);
+                break;
+            default:
+                double[] doubles = new double[length];
+                buffer.asDoubleBuffer().get(doubles);
+                for(int i = 0; i < length; i++)
+                    dst[offset + i] = (float) doubles[i];
+        }
+        return true;
+    }
+
+    /**
+     * Cache the values of an image
+     * @param image the image file
+     * @param settings the preprocessing settings that produced the values
+     * @param values the preprocessed values
+     */
+    public void put(File image, String settings, double[] values) {
+        byte[] key = computeKey(image, settings);
+        byte type = typeOf(values);
+        ByteBuffer buffer = allocate(key, type, values.length);
+        switch(type) {
+            case UINT8:
+                for(double v : values)
+                    buffer.put((byte) v);
+                break;
+            case FLOAT32:
+                for(double v : values)
+                    buffer.putFloat((float) v);
+                break;
+            default:
+                buffer.asDoubleBuffer().put(values);
+        }
+        write(image, key, buffer);
+    }
+
+    /**
+     * Cache the values of an image held in a float buffer
+     * @param image the image file
+     * @param settings the preprocessing settings that produced the values
+     * @param values holds the preprocessed values
+     * @param offset where in values they start
+     * @param length the number of values
+     */
+    public void put(File image, String settings, float[] values, int offset, int length) {
+        byte[] key = computeKey(image, settings);
+        ByteBuffer buffer;
+        if(isUInt8(values, offset, length)) {
+            buffer = allocate(key, UINT8, length);
+            for(int i = 0; i < length; i++)
+                buffer.put((byte) values[offset + i]);
+        }
+        else {
+            buffer = allocate(key, FLOAT32, length);
+            buffer.asFloatBuffer().put(values, offset, length);
+        }
+        write(image, key, buffer);
+    }
+
+    /**
+     * Find an entry, indexing what other readers appended if it isn't known yet
+     * @return the entry positioned at its values, or null if it isn't cached
+     */
+    private synchronized ByteBuffer find(File image, String settings) {
+        String key = toHex(computeKey(image, settings));
+        try {
+            Long location = index.get(key);
+            if(location == null) {
+                refresh();
+                location = index.get(key);
+                if(location == null)
+                    return null;
+            }
+
+            Segment segment = segments.get((int) (location >>> 32));
+            int offset = (int) (location & 0xffffffffL);
+            // entries appended since the segment was mapped are past the end of the mapping
+            if(segment.buffer == null || segment.buffer.capacity() < segment.indexed)
+                segment.buffer = map(segment.file);
+
+            ByteBuffer ret = segment.buffer.duplicate();
+            int end = offset + HEADER_SIZE + ret.getInt(offset + LENGTH_OFFSET) * sizeOf(ret.get(offset + TYPE_OFFSET));
+            ret.limit(end);
+            ret.position(offset);
+            ret = ret.slice();
+            ret.position(HEADER_SIZE);
+            return ret;
+        } catch (IOException e) {
+            log.warn("Unable to read cached image " + image + " from " + directory, e);
+            return null;
+        }
+    }
+
+    private void write(File image, byte[] key, ByteBuffer buffer) {
+        try {
+            synchronized(APPEND_LOCK) {
+                synchronized(this) {
+                    append(toHex(key), buffer);
+                }
+            }
+        } catch (IOException e) {
+            // the cache is only an optimization, the values were computed anyway
+            log.warn("Unable to cache image " + image + " in " + directory, e);
+        }
+    }
+
+    /**
+     * Append an entry to the last segment, or a new one if that's full or corrupt
+     */
+    private void append(String key, ByteBuffer buffer) throws IOException {
+        directory.mkdirs();
+        refresh();
+        for(int number = Math.max(0, segments.size() - 1); ; number++) {
+            if(number == segments.size())
+                segments.add(new Segment(segmentFile(number)));
+            Segment segment = segments.get(number);
+            if(segment.corrupt)
+                continue;
+
+            try (RandomAccessFile file = new RandomAccessFile(segment.file, "rw");
+                 FileChannel channel = file.getChannel();
+                 FileLock lock = channel.lock()) {
+                // catch up with whatever other readers appended
+                if(channel.size() > segment.indexed)
+                    scan(segment);
+                if(segment.corrupt || (segment.indexed > 0 && segment.indexed + buffer.capacity() > segmentSize))
+                    continue;
+                // anything past the indexed entries was cut short by a reader that died mid append
+                if(channel.size() > segment.indexed)
+                    channel.truncate(segment.indexed);
+
+                buffer.rewind();
+                long position = segment.indexed;
+                while(buffer.hasRemaining())
+                    position += channel.write(buffer, position);
+                index.put(key, ((long) number << 32) | segment.indexed);
+                segment.indexed = (int) position;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Index the segments, and the entries in them, that were added since the last refresh
+     */
+    private void refresh() throws IOException {
+        for(File file = segmentFile(segments.size()); file.isFile(); file = segmentFile(segments.size()))
+            segments.add(new Segment(file));
+        for(Segment segment : segments) {
+            if(!segment.corrupt && segment.file.length() > segment.indexed)
+                scan(segment);
+        }
+    }
+
+    /**
+     * Index the entries past the indexed ones, stopping at one that's still being written
+     */
+    private void scan(Segment segment) throws IOException {
+        MappedByteBuffer buffer = map(segment.file);
+        segment.buffer = buffer;
+        int number = segments.indexOf(segment);
+        int position = segment.indexed;
+        byte[] key = new byte[KEY_SIZE];
+        while(buffer.capacity() - position >= HEADER_SIZE) {
+            byte type = buffer.get(position + TYPE_OFFSET);
+            int length = buffer.getInt(position + LENGTH_OFFSET);
+            if(buffer.getInt(position) != MAGIC || buffer.get(position + 4) != VERSION
+                    || type < UINT8 || type > FLOAT64 || length < 0) {
+                log.warn("Ignoring corrupt cached images in " + segment.file + " past " + position);
+                segment.corrupt = true;
+                break;
+            }
+            long end = position + HEADER_SIZE + (long) length * sizeOf(type);
+            if(end > buffer.capacity())
+                break;
+
+            ByteBuffer entry = buffer.duplicate();
+            entry.position(position + KEY_OFFSET);
+            entry.get(key);
+            index.put(toHex(key), ((long) number << 32) | position);
+            position = (int) end;
+        }
+        segment.indexed = position;
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        // the mapping stays valid after the channel is closed
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE));
+        }
+    }
+
+    private static ByteBuffer allocate(byte[] key, byte type, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length * sizeOf(type));
+        buffer.putInt(MAGIC).put(VERSION).put(type).putInt(length).put(key);
+        return buffer;
+    }
+
+    /**
+     * The file a segment is kept in
+     */
+    protected File segmentFile(int number) {
+        return new File(directory, "images-" + number + ".cache");
+    }
+
+    private static byte[] computeKey(File image, String settings) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update((image.getAbsolutePath() + "\n" + image.length() + "\n" + image.lastModified() + "\n" + settings).getBytes(UTF8));
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for(byte b : bytes)
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return sb.toString();
+    }
+
+    private static byte typeOf(double[] values) {
+        byte type = UINT8;
+        for(double v : values) {
+            if(type == UINT8 && (v < 0 || v > 255 || v != Math.rint(v)))
+                type = FLOAT32;
+            if(type == FLOAT32 && (float) v != v && !Double.isNaN(v))
+                return FLOAT64;
+        }
+        return type;
+    }
+
+    private static boolean isUInt8(float[] values, int offset, int length) {
+        for(int i = offset; i < offset + length; i++) {
+            float v = values[i];
+            if(v < 0 || v > 255 || v != Math.rint(v))
+                return false;
+        }
+        return true;
+    }
+
+    private static int sizeOf(byte type) {
+        switch(type) {
+            case UINT8: return 1;
+            case FLOAT32: return 4;
+            case FLOAT64: return 8;
+            default: throw new IllegalArgumentException("Unknown type " + type);
+        }
+    }
+
+    private static class Segment {
+        private final File file;
+        // remapped when an entry past its end is looked up
+        private MappedByteBuffer buffer;
+        // bytes at the start of the file holding indexed entries
+        private int indexed;
+        private boolean corrupt;
+
+        private Segment(File file) {
+            this.file = file;
+        }
+    }
+
+}
@@ -46,6 +46,7 @@ public class ImageLoader implements Serializable {
     private int width = -1;
     private int height = -1;
     private int channels = -1;
+    private ImageResizer.Interpolation interpolation = ImageResizer.Interpolation.AREA;
 
     static {
         IIORegistry registry = IIORegistry.getDefaultInstance();
@@ -86,6 +87,29 @@ public class ImageLoader implements Serializable {
         this.channels = channels;
     }
 
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public ImageResizer.Interpolation getInterpolation() {
+        return interpolation;
+    }
+
+    /**
+     * @param interpolation how images are resized to the width and height
+     */
+    public void setInterpolation(ImageResizer.Interpolation interpolation) {
+        this.interpolation = interpolation;
+    }
+
     /**
      * Convert a file to a row vector
      *
@@ -244,17 +268,95 @@ public class ImageLoader implements Serializable {
             image = scalingIfNeed(image, true);
             int w = image.getWidth();
             int h = image.getHeight();
-            INDArray ret = Nd4j.create(h, w);
-
-            for (int i = 0; i < h; i++) {
-                for (int j = 0; j < w; j++) {
-                    ret.putScalar(new int[]{i, j}, image.getRGB(i, j));
-                }
+            int[] pixels = image.getRGB(0, 0, w, h, null, 0, w);
+            double[] data = new double[pixels.length];
+            for (int i = 0; i < pixels.length; i++) {
+                data[i] = pixels[i];
             }
-            return ret;
+            return Nd4j.create(data, new int[]{h, w});
         }
     }
 
+    /**
+     * Load, resize and convert an image file straight in to a float buffer
+     * @param f the image file
+     * @param layout the order the values are written in
+     * @param dst where to write {@link #floatArrayLength(BufferedImage)} values
+     * @param offset where in dst to start writing
+     * @throws IOException
+     */
+    public void asFloatArray(File f, ImageResizer.Layout layout, float[] dst, int offset) throws IOException {
+        BufferedImage image = ImageIO.read(f);
+        if(image == null)
+            throw new IOException("Unable to load image " + f);
+        asFloatArray(image, layout, dst, offset);
+    }
+
+    /**
+     * Resize and convert an image straight in to a float buffer, skipping
+     * any intermediate images. The image is resized to the width and height
+     * (if set) with the loader's {@link #getInterpolation()}; the values are in 0-255.
+     * Images get 3 channels (b,g,r) unless the loader has 1 (gray) or 4 (a,b,g,r).
+     * @param image the image to convert
+     * @param layout the order the values are written in
+     * @param dst where to write {@link #floatArrayLength(BufferedImage)} values
+     * @param offset where in dst to start writing
+     */
+    public void asFloatArray(BufferedImage image, ImageResizer.Layout layout, float[] dst, int offset) {
+        ImageResizer.resize(image, outputWidth(image), outputHeight(image), outputChannels(), interpolation, layout, dst, offset);
+    }
+
+    /**
+     * Resize and convert an image to a new float array
+     * @param image the image to convert
+     * @param layout the order the values are written in
+     * @return the pixel values
+     * @see #asFloatArray(BufferedImage, ImageResizer.Layout, float[], int)
+     */
+    public float[] asFloatArray(BufferedImage image, ImageResizer.Layout layout) {
+        float[] ret = new float[floatArrayLength(image)];
+        asFloatArray(image, layout, ret, 0);
+        return ret;
+    }
+
+    /**
+     * The number of values {@link #asFloatArray(BufferedImage, ImageResizer.Layout, float[], int)} writes for an image
+     * @param image the image
+     * @return channels * height * width
+     */
+    public int floatArrayLength(BufferedImage image) {
+        return outputChannels() * outputHeight(image) * outputWidth(image);
+    }
+
+    private int outputWidth(BufferedImage image) {
+        return width > 0 && height > 0 ? width : image.getWidth();
+    }
+
+    private int outputHeight(BufferedImage image) {
+        return width > 0 && height > 0 ? height : image.getHeight();
+    }
+
+    private int outputChannels() {
+        if (channels == 1 || channels == BufferedImage.TYPE_BYTE_GRAY)
+            return 1;
+        if (channels == 4 || channels == BufferedImage.TYPE_4BYTE_ABGR)
+            return 4;
+        return 3;
+    }
+
+    /**
+     * The shape {@link #asFloatArray(BufferedImage, ImageResizer.Layout, float[], int)} writes,
+     * the same for every image once the width and height are set.
+     * Note a loader without a 1 or 4 channel setting has 3 channels here even for gray images,
+     * where {@link #asRowVector(File)} gives them one value per pixel.
+     * @return channels, height, width
+     */
+    public int[] getFloatArrayShape() {
+        if (width <= 0 || height <= 0)
+            throw new IllegalStateException("Width and height must be set for images to have a fixed shape");
+        return new int[]{outputChannels(), height, width};
+    }
+
     /**
      * Slices up an image in to a mini batch.
      *
@@ -441,14 +543,14 @@ public class ImageLoader implements Serializable {
 
     protected BufferedImage scalingIfNeed(BufferedImage image, int dstWidth, int dstHeight, boolean needAlpha) {
         if (dstHeight > 0 && dstWidth > 0 && (image.getHeight() != dstHeight || image.getWidth() != dstWidth)) {
-            Image scaled = image.getScaledInstance(dstWidth, dstHeight, Image.SCALE_SMOOTH);
-
+            int type;
             if (needAlpha && image.getColorModel().hasAlpha() && channels == BufferedImage.TYPE_4BYTE_ABGR) {
-                return toBufferedImage(scaled, BufferedImage.TYPE_4BYTE_ABGR);
+                type = BufferedImage.TYPE_4BYTE_ABGR;
             } else {
-                if(channels == BufferedImage.TYPE_BYTE_GRAY) return toBufferedImage(scaled, BufferedImage.TYPE_BYTE_GRAY);
-                else return toBufferedImage(scaled, BufferedImage.TYPE_3BYTE_BGR);
+                if(channels == BufferedImage.TYPE_BYTE_GRAY) type = BufferedImage.TYPE_BYTE_GRAY;
+                else type = BufferedImage.TYPE_3BYTE_BGR;
             }
+            return ImageResizer.resize(image, new BufferedImage(dstWidth, dstHeight, type), interpolation);
         } else {
             if (image.getType() == BufferedImage.TYPE_4BYTE_ABGR || image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
                 return image;
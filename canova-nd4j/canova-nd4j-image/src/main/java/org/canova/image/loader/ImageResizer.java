@@ -0,0 +1,440 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.image.loader;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+
+/**
+ * Resizes images and converts them to pixel values in one pass,
+ * reading straight from the raster's backing array where it can
+ * (byte interleaved images such as 3BYTE_BGR, 4BYTE_ABGR and BYTE_GRAY,
+ * and int packed ones such as INT_RGB and INT_ARGB), and going through
+ * {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)} a row at a time otherwise.
+ *
+ * Channels come out in the same order as the loader's bgr tensors:
+ * 1 channel is gray, 3 are b,g,r and 4 are a,b,g,r. Values are in 0-255.
+ *
+ * @see ImageLoader#asFloatArray(BufferedImage, Layout, float[], int)
+ */
+public class ImageResizer {
+
+    public enum Interpolation {
+        /** the closest source pixel */
+        NEAREST,
+        /** weighted by the 4 closest source pixels */
+        BILINEAR,
+        /** the average of the source pixels under the destination pixel, best for shrinking */
+        AREA
+    }
+
+    public enum Layout {
+        /** channels, then rows, then columns */
+        CHW,
+        /** rows, then columns, then channels */
+        HWC
+    }
+
+    private ImageResizer() {
+    }
+
+    /**
+     * Resize an image and write its pixel values in to the given buffer
+     * @param src the image to resize
+     * @param dstWidth the width to resize to
+     * @param dstHeight the height to resize to
+     * @param channels 1, 3 or 4
+     * @param interpolation how to compute the resized pixels
+     * @param layout the order the values are written in
+     * @param dst where to write dstWidth * dstHeight * channels values
+     * @param offset where in dst to start writing
+     */
+    public static void resize(BufferedImage src, final int dstWidth, final int dstHeight, final int channels,
+                              Interpolation interpolation, final Layout layout, final float[] dst, final int offset) {
+        if(offset < 0 || dst.length - offset < (long) dstWidth * dstHeight * channels)
+            throw new IllegalArgumentException("Buffer too small for a " + channels + "x" + dstHeight + "x" + dstWidth + " image");
+
+        resize(src, dstWidth, dstHeight, channels, interpolation, new RowSink() {
+            @Override
+            public void put(int y, float[] row) {
+                if(layout == Layout.HWC) {
+                    System.arraycopy(row, 0, dst, offset + y * dstWidth * channels, dstWidth * channels);
+                    return;
+                }
+                int plane = dstWidth * dstHeight;
+                for(int c = 0; c < channels; c++) {
+                    int j = offset + c * plane + y * dstWidth;
+                    for(int x = 0, i = c; x < dstWidth; x++, i += channels)
+                        dst[j + x] = row[i];
+                }
+            }
+        });
+    }
+
+    /**
+     * Resize an image in to another one
+     * @param src the image to resize
+     * @param dst the image to resize in to, one of TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR or TYPE_BYTE_GRAY
+     * @param interpolation how to compute the resized pixels
+     * @return dst
+     */
+    public static BufferedImage resize(BufferedImage src, BufferedImage dst, Interpolation interpolation) {
+        final int channels;
+        switch(dst.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY: channels = 1; break;
+            case BufferedImage.TYPE_3BYTE_BGR: channels = 3; break;
+            case BufferedImage.TYPE_4BYTE_ABGR: channels = 4; break;
+            default: throw new IllegalArgumentException("Unsupported destination image type " + dst.getType());
+        }
+
+        final Raster raster = dst.getRaster();
+        final byte[] pixels = ((DataBufferByte) raster.getDataBuffer()).getData();
+        final int scanline = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+        final int base = raster.getDataBuffer().getOffset() - raster.getSampleModelTranslateY() * scanline
+                - raster.getSampleModelTranslateX() * channels;
+        final int width = dst.getWidth();
+
+        resize(src, width, dst.getHeight(), channels, interpolation, new RowSink() {
+            @Override
+            public void put(int y, float[] row) {
+                int j = base + y * scanline;
+                for(int i = 0; i < width * channels; i++) {
+                    int v = (int) (row[i] + 0.5f);
+                    pixels[j + i] = (byte) (v < 0 ? 0 : v > 255 ? 255 : v);
+                }
+            }
+        });
+        return dst;
+    }
+
+    private static void resize(BufferedImage src, int dstWidth, int dstHeight, int channels, Interpolation interpolation, RowSink sink) {
+        if(channels != 1 && channels != 3 && channels != 4)
+            throw new IllegalArgumentException("Channels must be 1, 3 or 4 but was " + channels);
+        if(dstWidth < 1 || dstHeight < 1)
+            throw new IllegalArgumentException("Invalid size " + dstWidth + "x" + dstHeight);
+
+        PixelReader reader = new PixelReader(src, channels);
+        switch(interpolation) {
+            case NEAREST: nearest(reader, dstWidth, dstHeight, sink); break;
+            case BILINEAR: bilinear(reader, dstWidth, dstHeight, sink); break;
+            case AREA: area(reader, dstWidth, dstHeight, sink); break;
+            default: throw new IllegalArgumentException("Unknown interpolation " + interpolation);
+        }
+    }
+
+    private static void nearest(PixelReader reader, int dstWidth, int dstHeight, RowSink sink) {
+        int channels = reader.channels;
+        int srcWidth = reader.width;
+        int srcHeight = reader.height;
+
+        int[] xIndex = new int[dstWidth];
+        for(int x = 0; x < dstWidth; x++)
+            xIndex[x] = Math.min((int) ((x + 0.5) * srcWidth / dstWidth), srcWidth - 1) * channels;
+
+        int[] src = new int[srcWidth * channels];
+        float[] row = new float[dstWidth * channels];
+        int loaded = -1;
+        for(int y = 0; y < dstHeight; y++) {
+            int sy = Math.min((int) ((y + 0.5) * srcHeight / dstHeight), srcHeight - 1);
+            if(sy != loaded) {
+                reader.readRow(sy, src);
+                loaded = sy;
+            }
+            for(int x = 0, i = 0; x < dstWidth; x++)
+                for(int c = 0; c < channels; c++)
+                    row[i++] = src[xIndex[x] + c];
+            sink.put(y, row);
+        }
+    }
+
+    private static void bilinear(PixelReader reader, int dstWidth, int dstHeight, RowSink sink) {
+        int channels = reader.channels;
+        int srcWidth = reader.width;
+        int srcHeight = reader.height;
+
+        // pixel centers line up, sampling positions are clamped to the image
+        int[] x0 = new int[dstWidth];
+        int[] x1 = new int[dstWidth];
+        float[] wx = new float[dstWidth];
+        for(int x = 0; x < dstWidth; x++) {
+            double fx = Math.max((x + 0.5) * srcWidth / dstWidth - 0.5, 0);
+            int sx = Math.min((int) fx, srcWidth - 1);
+            x0[x] = sx * channels;
+            x1[x] = Math.min(sx + 1, srcWidth - 1) * channels;
+            wx[x] = (float) (fx - sx);
+        }
+
+        int[] top = new int[srcWidth * channels];
+        int[] bottom = new int[srcWidth * channels];
+        int topRow = -1;
+        int bottomRow = -1;
+        float[] row = new float[dstWidth * channels];
+        for(int y = 0; y < dstHeight; y++) {
+            double fy = Math.max((y + 0.5) * srcHeight / dstHeight - 0.5, 0);
+            int y0 = Math.min((int) fy, srcHeight - 1);
+            int y1 = Math.min(y0 + 1, srcHeight - 1);
+            float wy = (float) (fy - y0);
+
+            if(topRow != y0) {
+                if(bottomRow == y0) {
+                    int[] tmp = top;
+                    top = bottom;
+                    bottom = tmp;
+                    bottomRow = topRow;
+                }
+                else {
+                    reader.readRow(y0, top);
+                }
+                topRow = y0;
+            }
+            if(bottomRow != y1) {
+                reader.readRow(y1, bottom);
+                bottomRow = y1;
+            }
+
+            for(int x = 0, i = 0; x < dstWidth; x++) {
+                float w = wx[x];
+                for(int c = 0; c < channels; c++) {
+                    float t = top[x0[x] + c] + w * (top[x1[x] + c] - top[x0[x] + c]);
+                    float b = bottom[x0[x] + c] + w * (bottom[x1[x] + c] - bottom[x0[x] + c]);
+                    row[i++] = t + wy * (b - t);
+                }
+            }
+            sink.put(y, row);
+        }
+    }
+
+    private static void area(PixelReader reader, int dstWidth, int dstHeight, RowSink sink) {
+        int channels = reader.channels;
+        int srcWidth = reader.width;
+
+        Span xSpan = new Span(reader.width, dstWidth);
+        Span ySpan = new Span(reader.height, dstHeight);
+
+        int[] src = new int[srcWidth * channels];
+        // the last source row shrunk horizontally; consecutive destination rows share their boundary row
+        float[] shrunk = new float[dstWidth * channels];
+        int shrunkRow = -1;
+        float[] row = new float[dstWidth * channels];
+        for(int y = 0; y < dstHeight; y++) {
+            Arrays.fill(row, 0);
+            for(int k = 0; k < ySpan.count[y]; k++) {
+                int sy = ySpan.start[y] + k;
+                float wy = ySpan.weights[ySpan.offset[y] + k];
+                if(sy != shrunkRow) {
+                    reader.readRow(sy, src);
+                    for(int x = 0, i = 0; x < dstWidth; x++) {
+                        for(int c = 0; c < channels; c++) {
+                            float sum = 0;
+                            for(int j = 0, s = xSpan.start[x] * channels + c; j < xSpan.count[x]; j++, s += channels)
+                                sum += xSpan.weights[xSpan.offset[x] + j] * src[s];
+                            shrunk[i++] = sum;
+                        }
+                    }
+                    shrunkRow = sy;
+                }
+                for(int i = 0; i < row.length; i++)
+                    row[i] += wy * shrunk[i];
+            }
+            sink.put(y, row);
+        }
+    }
+
+    /**
+     * The source pixels each destination pixel covers along one axis,
+     * weighted by how much of them it covers
+     */
+    private static class Span {
+        private final int[] start;
+        private final int[] count;
+        private final int[] offset;
+        private final float[] weights;
+
+        private Span(int srcSize, int dstSize) {
+            start = new int[dstSize];
+            count = new int[dstSize];
+            offset = new int[dstSize];
+            double scale = (double) srcSize / dstSize;
+            weights = new float[dstSize * ((int) Math.ceil(scale) + 1)];
+
+            int n = 0;
+            for(int d = 0; d < dstSize; d++) {
+                double from = d * scale;
+                double to = Math.min((d + 1) * scale, srcSize);
+                int first = (int) from;
+                int last = Math.min((int) Math.ceil(to), srcSize);
+                start[d] = first;
+                count[d] = last - first;
+                offset[d] = n;
+                for(int s = first; s < last; s++)
+                    weights[n++] = (float) ((Math.min(s + 1, to) - Math.max(s, from)) / (to - from));
+            }
+        }
+    }
+
+    private interface RowSink {
+        /**
+         * @param y the destination row
+         * @param row the row's values, pixel by pixel with the channels interleaved
+         */
+        void put(int y, float[] row);
+    }
+
+    /**
+     * Reads rows of source pixels as ints in 0-255, converted to the output channels
+     */
+    private static class PixelReader {
+        private static final int[] ARGB_MASKS = {0xff0000, 0xff00, 0xff, 0xff000000};
+
+        private final BufferedImage image;
+        private final int width;
+        private final int height;
+        private final int channels;
+
+        // byte interleaved rasters: offsets of r, g, b and a (-1 if there is none) within a pixel
+        private byte[] bytes;
+        private int[] byteOffsets;
+        private int pixelStride;
+        // int packed rasters, or rows fetched through getRGB: masks of r, g, b and a (0 if there is none)
+        private int[] ints;
+        private int[] masks = ARGB_MASKS;
+        private final int[] shifts = new int[4];
+        private int[] rgbRow;
+
+        private int base;
+        private int scanline;
+
+        private PixelReader(BufferedImage image, int channels) {
+            this.image = image;
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+            this.channels = channels;
+
+            Raster raster = image.getRaster();
+            ColorModel cm = image.getColorModel();
+            int colorSpace = cm.getColorSpace().getType();
+            if(raster.getDataBuffer() instanceof DataBufferByte && raster.getSampleModel() instanceof ComponentSampleModel
+                    && cm instanceof ComponentColorModel && is8Bit(cm)) {
+                ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+                int[] bands = sm.getBandOffsets();
+                boolean singleBank = true;
+                for(int bank : sm.getBankIndices())
+                    singleBank &= bank == 0;
+
+                if(singleBank && colorSpace == ColorSpace.TYPE_RGB && cm.getNumColorComponents() == 3)
+                    byteOffsets = new int[]{bands[0], bands[1], bands[2], cm.hasAlpha() ? bands[3] : -1};
+                else if(singleBank && colorSpace == ColorSpace.TYPE_GRAY && cm.getNumColorComponents() == 1)
+                    byteOffsets = new int[]{bands[0], bands[0], bands[0], cm.hasAlpha() ? bands[1] : -1};
+
+                if(byteOffsets != null) {
+                    bytes = ((DataBufferByte) raster.getDataBuffer()).getData();
+                    pixelStride = sm.getPixelStride();
+                    scanline = sm.getScanlineStride();
+                    base = raster.getDataBuffer().getOffset() - raster.getSampleModelTranslateY() * scanline
+                            - raster.getSampleModelTranslateX() * pixelStride;
+                }
+            }
+            else if(raster.getDataBuffer() instanceof DataBufferInt && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                    && cm instanceof DirectColorModel && colorSpace == ColorSpace.TYPE_RGB && is8Bit(cm)) {
+                DirectColorModel dcm = (DirectColorModel) cm;
+                SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                ints = ((DataBufferInt) raster.getDataBuffer()).getData();
+                masks = new int[]{dcm.getRedMask(), dcm.getGreenMask(), dcm.getBlueMask(), dcm.getAlphaMask()};
+                scanline = sm.getScanlineStride();
+                base = raster.getDataBuffer().getOffset() - raster.getSampleModelTranslateY() * scanline
+                        - raster.getSampleModelTranslateX();
+            }
+
+            if(bytes == null && ints == null)
+                rgbRow = new int[width];
+            for(int i = 0; i < 4; i++)
+                shifts[i] = Integer.numberOfTrailingZeros(masks[i]);
+        }
+
+        private static boolean is8Bit(ColorModel cm) {
+            for(int size : cm.getComponentSize())
+                if(size != 8)
+                    return false;
+            return true;
+        }
+
+        /**
+         * @param y the source row
+         * @param row filled with width * channels values
+         */
+        private void readRow(int y, int[] row) {
+            int i = 0;
+            if(bytes != null) {
+                int r = byteOffsets[0], g = byteOffsets[1], b = byteOffsets[2], a = byteOffsets[3];
+                for(int x = 0, p = base + y * scanline; x < width; x++, p += pixelStride)
+                    i = store(row, i, bytes[p + r] & 0xff, bytes[p + g] & 0xff, bytes[p + b] & 0xff, a < 0 ? 255 : bytes[p + a] & 0xff);
+                return;
+            }
+
+            int[] pixels;
+            int p;
+            if(ints != null) {
+                pixels = ints;
+                p = base + y * scanline;
+            }
+            else {
+                image.getRGB(0, y, width, 1, rgbRow, 0, width);
+                pixels = rgbRow;
+                p = 0;
+            }
+            int rm = masks[0], gm = masks[1], bm = masks[2], am = masks[3];
+            int rs = shifts[0], gs = shifts[1], bs = shifts[2], as = shifts[3];
+            for(int x = 0; x < width; x++, p++) {
+                int v = pixels[p];
+                i = store(row, i, (v & rm) >>> rs, (v & gm) >>> gs, (v & bm) >>> bs, am == 0 ? 255 : (v & am) >>> as);
+            }
+        }
+
+        private int store(int[] row, int i, int r, int g, int b, int a) {
+            switch(channels) {
+                case 1:
+                    row[i++] = (r * 299 + g * 587 + b * 114 + 500) / 1000;
+                    break;
+                case 3:
+                    row[i++] = b;
+                    row[i++] = g;
+                    row[i++] = r;
+                    break;
+                default:
+                    row[i++] = a;
+                    row[i++] = b;
+                    row[i++] = g;
+                    row[i++] = r;
+            }
+            return i;
+        }
+    }
+
+}
@@ -0,0 +1,299 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.image.mnist;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A memory mapped file in the IDX format used by MNIST and similar datasets:
+ * a magic number holding the value type and the number of dimensions,
+ * the size of each dimension, then the values as one big endian array.
+ *
+ * The first dimension indexes the entries (images, labels) and every entry
+ * has the same size, so any range of entries is one contiguous slice of the file
+ * and is converted in bulk. Reads don't share any state, so one file can be read
+ * from several threads at once.
+ */
+public class IdxFile {
+
+    public static final int UBYTE = 0x08;
+    public static final int BYTE = 0x09;
+    public static final int SHORT = 0x0B;
+    public static final int INT = 0x0C;
+    public static final int FLOAT = 0x0D;
+    public static final int DOUBLE = 0x0E;
+
+    // values converted at once when going through a byte array
+    private static final int SCRATCH_SIZE = 1 << 16;
+
+    private final File file;
+    private final int type;
+    private final int[] dimensions;
+    private final int entryLength;
+    private final int entrySize;
+    private final int entriesPerChunk;
+    private final MappedByteBuffer[] chunks;
+
+    /**
+     * Map an IDX file and read its header
+     * @param file the file
+     * @throws IOException if the file isn't an IDX file
+     */
+    public IdxFile(File file) throws IOException {
+        this.file = file;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            int magic = raf.readInt();
+            if((magic >>> 16) != 0)
+                throw new IOException(file + " is not an IDX file");
+            type = (magic >>> 8) & 0xff;
+            int valueSize = sizeOf(type);
+            int numDimensions = magic & 0xff;
+            if(numDimensions < 1)
+                throw new IOException(file + " has no dimensions");
+
+            dimensions = new int[numDimensions];
+            long length = 1;
+            for(int i = 0; i < numDimensions; i++) {
+                dimensions[i] = raf.readInt();
+                if(i > 0)
+                    length *= dimensions[i];
+            }
+            if(length * valueSize > Integer.MAX_VALUE)
+                throw new IOException("Entries of " + file + " are too large");
+            entryLength = (int) length;
+            entrySize = entryLength * valueSize;
+
+            long header = 4L + 4L * numDimensions;
+            if(header + (long) dimensions[0] * entrySize > raf.length())
+                throw new IOException(file + " is shorter than its header says");
+
+            // each chunk holds whole entries so no entry straddles two maps
+            entriesPerChunk = entrySize == 0 ? Math.max(1, dimensions[0]) : Math.max(1, Integer.MAX_VALUE / entrySize);
+            int numChunks = Math.max(1, (dimensions[0] + entriesPerChunk - 1) / entriesPerChunk);
+            chunks = new MappedByteBuffer[numChunks];
+            FileChannel channel = raf.getChannel();
+            for(int i = 0; i < numChunks; i++) {
+                long first = (long) i * entriesPerChunk;
+                long count = Math.min(entriesPerChunk, dimensions[0] - first);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, header + first * entrySize, count * entrySize);
+            }
+        }
+    }
+
+    /**
+     * The size in bytes of a value of the given type
+     * @param type the IDX type code
+     * @return the size of a value
+     * @throws IOException if the type is unknown
+     */
+    public static int sizeOf(int type) throws IOException {
+        switch(type) {
+            case UBYTE:
+            case BYTE:
+                return 1;
+            case SHORT:
+                return 2;
+            case INT:
+            case FLOAT:
+                return 4;
+            case DOUBLE:
+                return 8;
+            default:
+                throw new IOException("Unknown IDX type " + type);
+        }
+    }
+
+    /**
+     * Convert a range of entries to floats
+     * @param index the first entry
+     * @param num the number of entries
+     * @param dst where to write num * {@link #getEntryLength()} values
+     * @param offset where in dst to start writing
+     */
+    public void read(int index, int num, float[] dst, int offset) {
+        checkRange(index, num);
+        byte[] scratch = null;
+        while(num > 0) {
+            ByteBuffer buf = chunk(index);
+            int n = Math.min(num, entriesPerChunk - index % entriesPerChunk);
+            int length = n * entryLength;
+            switch(type) {
+                case UBYTE:
+                case BYTE:
+                    if(scratch == null)
+                        scratch = new byte[Math.min(length, SCRATCH_SIZE)];
+                    int mask = type == UBYTE ? 0xff : -1;
+                    for(int done = 0; done < length; ) {
+                        int m = Math.min(scratch.length, length - done);
+                        buf.get(scratch, 0, m);
+                        for(int i = 0; i < m; i++)
+                            dst[offset + done + i] = scratch[i] & mask;
+                        done += m;
+                    }
+                    break;
+                case SHORT:
+                    ShortBuffer shorts = buf.asShortBuffer();
+                    for(int i = 0; i < length; i++)
+                        dst[offset + i] = shorts.get(i);
+                    break;
+                case INT:
+                    IntBuffer ints = buf.asIntBuffer();
+                    for(int i = 0; i < length; i++)
+                        dst[offset + i] = ints.get(i);
+                    break;
+                case FLOAT:
+                    buf.asFloatBuffer().get(dst, offset, length);
+                    break;
+                default:
+                    DoubleBuffer doubles = buf.asDoubleBuffer();
+                    for(int i = 0; i < length; i++)
+                        dst[offset + i] = (float) doubles.get(i);
+                    break;
+            }
+            index += n;
+            num -= n;
+            offset += length;
+        }
+    }
+
+    /**
+     * Convert a single entry to a new float array
+     * @param index the entry
+     * @return its values
+     */
+    public float[] read(int index) {
+        float[] ret = new float[entryLength];
+        read(index, 1, ret, 0);
+        return ret;
+    }
+
+    /**
+     * Copy the raw bytes of a range of entries
+     * @param index the first entry
+     * @param num the number of entries
+     * @param dst where to write num * {@link #getEntrySize()} bytes
+     * @param offset where in dst to start writing
+     */
+    public void readBytes(int index, int num, byte[] dst, int offset) {
+        checkRange(index, num);
+        while(num > 0) {
+            int n = Math.min(num, entriesPerChunk - index % entriesPerChunk);
+            chunk(index).get(dst, offset, n * entrySize);
+            index += n;
+            num -= n;
+            offset += n * entrySize;
+        }
+    }
+
+    /**
+     * Read an entry holding a single integer value, such as a label
+     * @param index the entry
+     * @return its value
+     */
+    public int readInt(int index) {
+        if(entryLength != 1)
+            throw new IllegalStateException("Entries of " + file + " hold " + entryLength + " values");
+        checkRange(index, 1);
+        ByteBuffer buf = chunk(index);
+        switch(type) {
+            case UBYTE:
+                return buf.get() & 0xff;
+            case BYTE:
+                return buf.get();
+            case SHORT:
+                return buf.getShort();
+            case INT:
+                return buf.getInt();
+            case FLOAT:
+                return (int) buf.getFloat();
+            default:
+                return (int) buf.getDouble();
+        }
+    }
+
+    /**
+     * @return a buffer of its own positioned at the given entry
+     */
+    private ByteBuffer chunk(int index) {
+        ByteBuffer buf = chunks[index / entriesPerChunk].duplicate();
+        buf.position((index % entriesPerChunk) * entrySize);
+        return buf;
+    }
+
+    private void checkRange(int index, int num) {
+        if(index < 0 || num < 0 || (long) index + num > dimensions[0])
+            throw new IndexOutOfBoundsException("Entries " + index + "-" + (index + num) + " out of range for " + dimensions[0] + " entries");
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the IDX type code of the values
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * @return the size of every dimension, the first is the number of entries
+     */
+    public int[] getDimensions() {
+        return dimensions.clone();
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int getCount() {
+        return dimensions[0];
+    }
+
+    /**
+     * @return the number of values in an entry
+     */
+    public int getEntryLength() {
+        return entryLength;
+    }
+
+    /**
+     * @return the number of bytes in an entry
+     */
+    public int getEntrySize() {
+        return entrySize;
+    }
+
+    @Override
+    public String toString() {
+        return file + " " + Arrays.toString(dimensions);
+    }
+
+}
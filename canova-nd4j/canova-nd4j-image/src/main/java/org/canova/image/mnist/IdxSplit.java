@@ -0,0 +1,141 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.image.mnist;
+
+import org.canova.api.split.BaseInputSplit;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A range of entries of an IDX images file and, optionally, its labels file.
+ *
+ * Use {@link #split(File, File, int)} to cut a dataset into ranges
+ * that can be read concurrently (by threads, or spark partitions).
+ */
+public class IdxSplit extends BaseInputSplit {
+
+    private File images;
+    private File labels;
+    private int start;
+    private int end;
+
+    public IdxSplit() {
+    }
+
+    /**
+     * @param images the images file
+     * @param labels the labels file, may be null
+     * @param start the first entry of the range
+     * @param end the entry after the range
+     */
+    public IdxSplit(File images, File labels, int start, int end) {
+        if(start < 0 || end < start)
+            throw new IllegalArgumentException("Invalid range " + start + "-" + end);
+        this.images = images;
+        this.labels = labels;
+        this.start = start;
+        this.end = end;
+        initLocations();
+    }
+
+    /**
+     * Split a dataset into ranges of (almost) the same number of entries
+     * @param images the images file
+     * @param labels the labels file, may be null
+     * @param numSplits the number of ranges wanted; fewer come back if there are fewer entries
+     * @return the ranges, in file order
+     * @throws IOException
+     */
+    public static List<IdxSplit> split(File images, File labels, int numSplits) throws IOException {
+        if(numSplits < 1)
+            throw new IllegalArgumentException("Number of splits must be positive");
+
+        int count = new IdxFile(images).getCount();
+        List<IdxSplit> splits = new ArrayList<>(numSplits);
+        int start = 0;
+        for(int i = 1; i <= numSplits; i++) {
+            int end = (int) ((long) count * i / numSplits);
+            if(end > start) {
+                splits.add(new IdxSplit(images, labels, start, end));
+                start = end;
+            }
+        }
+        return splits;
+    }
+
+    private void initLocations() {
+        locations = labels == null ? new URI[] {images.toURI()} : new URI[] {images.toURI(), labels.toURI()};
+    }
+
+    public File getImages() {
+        return images;
+    }
+
+    public File getLabels() {
+        return labels;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the number of entries in the range
+     */
+    @Override
+    public long length() {
+        return end - start;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeUTF(images.getPath());
+        out.writeUTF(labels == null ? "" : labels.getPath());
+        out.writeInt(start);
+        out.writeInt(end);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        images = new File(in.readUTF());
+        String labelPath = in.readUTF();
+        labels = labelPath.isEmpty() ? null : new File(labelPath);
+        start = in.readInt();
+        end = in.readInt();
+        initLocations();
+    }
+
+    @Override
+    public String toString() {
+        return images + ":" + start + "-" + end;
+    }
+
+}
@@ -60,9 +60,12 @@ public class MnistImageFile extends MnistDbFile {
      */
     public int[][] readImage() throws IOException {
         int[][] dat = new int[getRows()][getCols()];
+        byte[] pixels = new byte[getEntryLength()];
+        readFully(pixels);
+        int p = 0;
         for (int i = 0; i < getCols(); i++) {
             for (int j = 0; j < getRows(); j++) {
-                dat[i][j] = readUnsignedByte();
+                dat[i][j] = pixels[p++] & 0xff;
             }
         }
         return dat;
@@ -24,14 +24,18 @@ import org.apache.commons.io.FileUtils;
 import org.canova.api.conf.Configuration;
 import org.canova.api.io.data.DoubleWritable;
 import org.canova.api.io.data.Text;
-import org.canova.api.records.reader.RecordReader;
+import org.canova.api.records.RecordBatch;
+import org.canova.api.records.reader.BatchRecordReader;
 import org.canova.api.split.FileSplit;
 import org.canova.api.split.InputSplit;
 import org.canova.api.split.InputStreamInputSplit;
 import org.canova.api.writable.Writable;
 import org.canova.common.RecordConverter;
+import org.canova.image.loader.ImageCache;
 import org.canova.image.loader.ImageLoader;
+import org.canova.image.loader.ImageResizer;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
 
 import javax.imageio.ImageIO;
 import javax.imageio.spi.IIORegistry;
@@ -44,13 +48,19 @@ import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Base class for the image record reader
  *
  * @author Adam Gibson
  */
-public abstract class BaseImageRecordReader implements RecordReader {
+public abstract class BaseImageRecordReader implements BatchRecordReader, ImageBatchRecordReader {
     protected Iterator<File> iter;
     protected Configuration conf;
     protected File currentFile;
@@ -64,10 +74,26 @@ public abstract class BaseImageRecordReader implements RecordReader {
     protected Map<String,String> fileNameMap = new LinkedHashMap<>();
     protected String pattern; // Pattern to split and segment file name, pass in regex
     protected int patternPosition = 0;
+    // not serializable, reopened from the cache directory by initialize
+    protected transient ImageCache cache;
+    protected File cacheDirectory;
+    protected int decodeThreads = 0;
+    protected int decodeAhead = 0;
+    private transient ExecutorService decodePool;
+    // images handed to the decode threads, in file order; created lazily, as deserializing skips initializers
+    private transient LinkedList<PendingImage> pending;
+    // the next image file when the decode threads are on, taken from iter ahead of time to skip other files
+    private transient File nextImage;
 
     public final static String WIDTH = NAME_SPACE + ".width";
     public final static String HEIGHT = NAME_SPACE + ".height";
     public final static String CHANNELS = NAME_SPACE + ".channels";
+    /** directory to cache preprocessed images in, images are decoded every time when not set */
+    public final static String CACHE_DIR = NAME_SPACE + ".cachedir";
+    /** number of threads decoding images ahead of the reader, 0 to decode on the calling thread */
+    public final static String DECODE_THREADS = NAME_SPACE + ".decodethreads";
+    /** number of images decoded ahead, defaults to twice the decode threads */
+    public final static String DECODE_AHEAD = NAME_SPACE + ".decodeahead";
 
     static {
         ImageIO.scanForPlugins();
@@ -120,6 +146,8 @@ public abstract class BaseImageRecordReader implements RecordReader {
 
     @Override
     public void initialize(InputSplit split) throws IOException{
+            cancelPending();
+            reopenCache();
             inputSplit = split;
             if(split instanceof FileSplit) {
                 URI[] locations = split.locations();
@@ -192,6 +220,13 @@ public abstract class BaseImageRecordReader implements RecordReader {
         this.appendLabel = conf.getBoolean(APPEND_LABEL,false);
         this.labels = new ArrayList<>(conf.getStringCollection(LABELS));
         imageLoader = new ImageLoader(conf.getInt(WIDTH,28),conf.getInt(HEIGHT,28),conf.getInt(CHANNELS,1));
+        String cacheDir = conf.get(CACHE_DIR);
+        // the cache's index is kept across initializations with the same directory
+        if(cacheDir == null)
+            setCache(null);
+        else if(cache == null || !cache.getDirectory().equals(new File(cacheDir)))
+            setCache(new ImageCache(new File(cacheDir)));
+        setDecodeThreads(conf.getInt(DECODE_THREADS, decodeThreads), conf.getInt(DECODE_AHEAD, decodeAhead));
         this.conf = conf;
         initialize(split);
     }
@@ -199,24 +234,23 @@ public abstract class BaseImageRecordReader implements RecordReader {
 
     @Override
     public Collection<Writable> next() {
+        if(iter != null && decodeThreads > 0) {
+            PendingImage image = pollPending();
+            if(image == null)
+                throw new NoSuchElementException("No more images");
+            currentFile = image.file;
+            return toRecord(image.file, await(image.row));
+        }
         if(iter != null) {
-            Collection<Writable> ret = new ArrayList<>();
-            File image = (File) iter.next();
+            File image = pollImage();
+            if(image == null)
+                throw new NoSuchElementException("No more images");
             currentFile = image;
-
-            if(image.isDirectory())
-                return next();
-
             try {
-                BufferedImage bimg = ImageIO.read(image);
-                INDArray row = imageLoader.asRowVector(bimg);
-                ret = RecordConverter.toRecord(row);
-                if(appendLabel)
-                    ret.add(new DoubleWritable(labels.indexOf(image.getParentFile().getName())));
-            } catch (Exception e) {
-                e.printStackTrace();
+                return toRecord(image, loadImage(image));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to load image " + image, e);
             }
-            return ret;
         }
         else if(record != null) {
             hitImage = true;
@@ -225,10 +259,360 @@ public abstract class BaseImageRecordReader implements RecordReader {
         throw new IllegalStateException("No more elements");
     }
 
+    @Override
+    public RecordBatch nextBatch(int num) {
+        return nextBatch(new RecordBatch(num));
+    }
+
+    @Override
+    public RecordBatch nextBatch(RecordBatch batch) {
+        batch.clear();
+        while(!batch.isFull() && hasNext()) {
+            if(iter == null) {
+                // the single image of an input stream split, already converted
+                hitImage = true;
+                batch.addRecord(record);
+                continue;
+            }
+
+            File image;
+            double[] values;
+            if(decodeThreads > 0) {
+                PendingImage next = pollPending();
+                if(next == null)
+                    break;
+                image = next.file;
+                values = toDoubleArray(await(next.row));
+            }
+            else {
+                image = pollImage();
+                if(image == null)
+                    break;
+                try {
+                    values = loadValues(image);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to load image " + image, e);
+                }
+            }
+            currentFile = image;
+
+            int row = batch.addRow();
+            batch.setDoubles(row, 0, values, 0, values.length);
+            if(appendLabel)
+                batch.setDouble(row, values.length, labels.indexOf(image.getParentFile().getName()));
+        }
+        return batch;
+    }
+
+    @Override
+    public int[] getImageShape() {
+        return imageLoader.getFloatArrayShape();
+    }
+
+    @Override
+    public ImageBatch nextImageBatch(int num) {
+        int[] shape = getImageShape();
+        return nextImageBatch(new ImageBatch(num, shape[0], shape[1], shape[2]));
+    }
+
+    @Override
+    public ImageBatch nextImageBatch(ImageBatch batch) {
+        if(iter == null)
+            throw new UnsupportedOperationException("Image batches can only be read from a file split");
+        int[] shape = getImageShape();
+        if(batch.getChannels() != shape[0] || batch.getHeight() != shape[1] || batch.getWidth() != shape[2])
+            throw new IllegalArgumentException("Batch shape doesn't match the image shape " + Arrays.toString(shape));
+
+        batch.clear();
+        final float[] features = batch.getFeatures();
+        final int length = batch.imageLength();
+        List<Future<?>> loads = new ArrayList<>();
+        while(!batch.isFull()) {
+            // images already decoding as row vectors for next() are taken over, not decoded again
+            PendingImage decoding = pending == null ? null : pending.pollFirst();
+            final File image = decoding != null ? decoding.file : pollImage();
+            if(image == null)
+                break;
+            currentFile = image;
+
+            int index = batch.addImage();
+            final int offset = batch.getImageOffset(index);
+            if(decoding != null) {
+                copyRow(image, await(decoding.row), features, offset, length);
+            }
+            else if(decodeThreads > 0) {
+                // each image goes to its own slot, so the batch comes out in file order
+                loads.add(decodePool().submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        loadImage(image, features, offset, length);
+                        return null;
+                    }
+                }));
+            }
+            else {
+                try {
+                    loadImage(image, features, offset, length);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to load image " + image, e);
+                }
+            }
+            if(appendLabel)
+                batch.setLabel(index, labels.indexOf(image.getParentFile().getName()));
+        }
+        try {
+            for(Future<?> load : loads)
+                await(load);
+        } catch (IllegalStateException e) {
+            // don't leave threads writing in to a batch the caller may reuse
+            for(Future<?> load : loads)
+                load.cancel(true);
+            throw e;
+        }
+        return batch;
+    }
+
+    private static void copyRow(File image, INDArray row, float[] dst, int offset, int length) {
+        float[] values = row.dup().data().asFloat();
+        if(values.length != length)
+            throw new IllegalStateException("Image " + image + " has " + values.length + " values, not " + length);
+        System.arraycopy(values, 0, dst, offset, length);
+    }
+
+    /**
+     * Decode images on a pool of threads, ahead of the reader.
+     * Records still come out in file order; files that aren't images are skipped.
+     * @param threads the number of decode threads, 0 to decode on the calling thread
+     * @param ahead the number of images to decode ahead, 0 for twice the threads
+     */
+    public void setDecodeThreads(int threads, int ahead) {
+        if(threads < 0 || ahead < 0)
+            throw new IllegalArgumentException("Decode threads and images ahead can't be negative");
+        if(threads != decodeThreads && decodePool != null) {
+            cancelPending();
+            decodePool.shutdownNow();
+            decodePool = null;
+        }
+        this.decodeThreads = threads;
+        this.decodeAhead = ahead;
+    }
+
+    public int getDecodeThreads() {
+        return decodeThreads;
+    }
+
+    private ExecutorService decodePool() {
+        if(decodePool == null) {
+            decodePool = Executors.newFixedThreadPool(decodeThreads, new ThreadFactory() {
+                private int count = 0;
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "canova-image-decode-" + count++);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return decodePool;
+    }
+
+    /**
+     * Keep the decode threads busy with the next images
+     */
+    private void fillPending() {
+        int ahead = decodeAhead > 0 ? decodeAhead : 2 * decodeThreads;
+        if(pending == null)
+            pending = new LinkedList<>();
+        while(pending.size() < ahead && peekImage() != null) {
+            final File image = pollImage();
+            pending.add(new PendingImage(image, decodePool().submit(new Callable<INDArray>() {
+                @Override
+                public INDArray call() throws IOException {
+                    return loadImage(image);
+                }
+            })));
+        }
+    }
+
+    /**
+     * @return the next image handed to the decode threads, null if there are no more images
+     */
+    private PendingImage pollPending() {
+        fillPending();
+        PendingImage next = pending.pollFirst();
+        fillPending();
+        return next;
+    }
+
+    /**
+     * @return the next image file, skipping directories and other files, or null at the end
+     */
+    private File peekImage() {
+        while(nextImage == null && iter != null && iter.hasNext()) {
+            File file = iter.next();
+            if(!file.isDirectory() && containsFormat(file.getAbsolutePath()))
+                nextImage = file;
+        }
+        return nextImage;
+    }
+
+    private File pollImage() {
+        File ret = peekImage();
+        nextImage = null;
+        return ret;
+    }
+
+    protected void cancelPending() {
+        if(pending != null) {
+            for(PendingImage image : pending)
+                image.row.cancel(true);
+            pending.clear();
+        }
+        nextImage = null;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while decoding images", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unable to load image", e.getCause());
+        }
+    }
+
+    /**
+     * Turn a loaded image in to a record, adding the label if needed
+     * @param image the image file
+     * @param row the image as a row vector
+     * @return the record
+     */
+    protected Collection<Writable> toRecord(File image, INDArray row) {
+        Collection<Writable> ret = RecordConverter.toRecord(row);
+        if(appendLabel)
+            ret.add(new DoubleWritable(labels.indexOf(image.getParentFile().getName())));
+        return ret;
+    }
+
+    /**
+     * Any preprocessing of a decoded image before it is resized and converted
+     * @param image the decoded image
+     * @return the image to convert
+     */
+    protected BufferedImage preprocess(BufferedImage image) {
+        return image;
+    }
+
+    private BufferedImage readImage(File image) throws IOException {
+        BufferedImage ret = ImageIO.read(image);
+        if(ret == null)
+            throw new IOException("Unable to load image " + image);
+        return preprocess(ret);
+    }
+
+    /**
+     * Load an image straight in to a float buffer as channels, height, width,
+     * from the cache if there is one
+     * @param image the image file
+     * @param dst where to write the values
+     * @param offset where in dst to start writing
+     * @param length the number of values
+     * @throws IOException
+     */
+    protected void loadImage(File image, float[] dst, int offset, int length) throws IOException {
+        String settings = cache == null ? null : cacheSettings() + ",chw";
+        if(cache != null && cache.get(image, settings, dst, offset, length))
+            return;
+
+        imageLoader.asFloatArray(readImage(image), ImageResizer.Layout.CHW, dst, offset);
+        if(cache != null)
+            cache.put(image, settings, dst, offset, length);
+    }
+
+    /**
+     * Load an image as a row vector, from the cache if there is one
+     * @param image the image file
+     * @return the image as a row vector
+     * @throws IOException
+     */
+    protected INDArray loadImage(File image) throws IOException {
+        if(cache == null)
+            return imageLoader.asRowVector(readImage(image));
+
+        String settings = cacheSettings();
+        double[] cached = cache.get(image, settings);
+        if(cached != null)
+            return Nd4j.create(cached);
+
+        INDArray row = imageLoader.asRowVector(readImage(image));
+        cache.put(image, settings, toDoubleArray(row));
+        return row;
+    }
+
+    /**
+     * Load the values of an image in the order {@link #next()} returns them,
+     * straight from the cache if there is one
+     * @param image the image file
+     * @return the values
+     * @throws IOException
+     */
+    protected double[] loadValues(File image) throws IOException {
+        if(cache == null)
+            return toDoubleArray(imageLoader.asRowVector(readImage(image)));
+
+        String settings = cacheSettings();
+        double[] values = cache.get(image, settings);
+        if(values == null) {
+            values = toDoubleArray(imageLoader.asRowVector(readImage(image)));
+            cache.put(image, settings, values);
+        }
+        return values;
+    }
+
+    /**
+     * Copy out the values of a row vector in one go
+     */
+    private static double[] toDoubleArray(INDArray row) {
+        // a fresh copy is laid out in row order, so its buffer can be copied out whole
+        return row.dup().data().asDouble();
+    }
+
+    /**
+     * Everything besides the image itself that the loaded values depend on
+     * @return the settings the cache entries are keyed by
+     */
+    protected String cacheSettings() {
+        return getClass().getName() + "," + imageLoader.getWidth() + "," + imageLoader.getHeight() + ","
+                + imageLoader.getChannels() + "," + imageLoader.getInterpolation();
+    }
+
+    /**
+     * Open the cache again after the reader was deserialized
+     */
+    protected void reopenCache() {
+        if(cache == null && cacheDirectory != null)
+            cache = new ImageCache(cacheDirectory);
+    }
+
+    public ImageCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @param cache where to cache preprocessed images, null to decode them every time
+     */
+    public void setCache(ImageCache cache) {
+        this.cache = cache;
+        this.cacheDirectory = cache == null ? null : cache.getDirectory();
+    }
+
     @Override
     public boolean hasNext() {
         if(iter != null) {
-            return iter.hasNext();
+            // files that aren't images are skipped whether or not the decode threads are on
+            return (pending != null && !pending.isEmpty()) || peekImage() != null;
         }
         else if(record != null) {
             return !hitImage;
@@ -238,7 +622,11 @@ public abstract class BaseImageRecordReader implements RecordReader {
 
     @Override
     public void close() throws IOException {
-
+        cancelPending();
+        if(decodePool != null) {
+            decodePool.shutdownNow();
+            decodePool = null;
+        }
     }
 
     @Override
@@ -305,4 +693,14 @@ public abstract class BaseImageRecordReader implements RecordReader {
         return ret;
     }
 
+    private static class PendingImage {
+        private final File file;
+        private final Future<INDArray> row;
+
+        private PendingImage(File file, Future<INDArray> row) {
+            this.file = file;
+            this.row = row;
+        }
+    }
+
 }
@@ -0,0 +1,235 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.image.recordreader;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.records.reader.RecordReader;
+import org.canova.api.split.InputSplit;
+import org.canova.api.writable.Writable;
+import org.canova.common.RecordConverter;
+import org.canova.image.mnist.IdxFile;
+import org.canova.image.mnist.IdxSplit;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads IDX files (the MNIST format) through a memory map.
+ *
+ * The split is either an {@link IdxSplit}, for a range of the entries,
+ * or any split whose first location is the images file and whose optional
+ * second location is the labels file. Each record is the values of an image
+ * followed by its label; image batches are converted straight from the mapped file.
+ */
+public class IdxRecordReader implements RecordReader, ImageBatchRecordReader {
+
+    /** values above this become 1 and the rest 0, negative to turn it off */
+    public final static String BINARIZE_THRESHOLD = NAME_SPACE + ".idx.binarize";
+    /** values are multiplied by this, unless binarized */
+    public final static String SCALE = NAME_SPACE + ".idx.scale";
+
+    private float binarizeThreshold = -1;
+    private float scale = 1;
+    private Configuration conf;
+
+    private transient IdxFile images;
+    private transient IdxFile labelFile;
+    private List<String> labels = new ArrayList<>();
+    private int start;
+    private int end;
+    private int cursor;
+
+    public IdxRecordReader() {
+    }
+
+    /**
+     * @param binarizeThreshold values above this become 1 and the rest 0, negative to turn it off
+     * @param scale values are multiplied by this, unless binarized
+     */
+    public IdxRecordReader(float binarizeThreshold, float scale) {
+        this.binarizeThreshold = binarizeThreshold;
+        this.scale = scale;
+    }
+
+    @Override
+    public void initialize(InputSplit split) throws IOException, InterruptedException {
+        File labelsFile;
+        if(split instanceof IdxSplit) {
+            IdxSplit idxSplit = (IdxSplit) split;
+            images = new IdxFile(idxSplit.getImages());
+            labelsFile = idxSplit.getLabels();
+            start = idxSplit.getStart();
+            end = Math.min(idxSplit.getEnd(), images.getCount());
+        }
+        else {
+            URI[] locations = split.locations();
+            if(locations == null || locations.length == 0)
+                throw new IllegalArgumentException("Split has no images file");
+            images = new IdxFile(new File(locations[0]));
+            labelsFile = locations.length > 1 ? new File(locations[1]) : null;
+            start = 0;
+            end = images.getCount();
+        }
+
+        labelFile = null;
+        labels = new ArrayList<>();
+        if(labelsFile != null) {
+            labelFile = new IdxFile(labelsFile);
+            if(labelFile.getCount() < end)
+                throw new IOException(labelsFile + " has fewer labels than " + images.getFile() + " has images");
+            int max = -1;
+            for(int i = 0; i < labelFile.getCount(); i++)
+                max = Math.max(max, labelFile.readInt(i));
+            for(int i = 0; i <= max; i++)
+                labels.add(String.valueOf(i));
+        }
+        cursor = start;
+    }
+
+    @Override
+    public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
+        this.binarizeThreshold = conf.getFloat(BINARIZE_THRESHOLD, binarizeThreshold);
+        this.scale = conf.getFloat(SCALE, scale);
+        this.conf = conf;
+        initialize(split);
+    }
+
+    @Override
+    public Collection<Writable> next() {
+        if(!hasNext())
+            throw new NoSuchElementException("No more images");
+        float[] values = new float[images.getEntryLength()];
+        read(cursor, 1, values, 0);
+        Collection<Writable> ret = RecordConverter.toRecord(Nd4j.create(values));
+        if(labelFile != null)
+            ret.add(new DoubleWritable(labelFile.readInt(cursor)));
+        cursor++;
+        return ret;
+    }
+
+    /**
+     * Read a range of images, normalized the same way as {@link #next()},
+     * independently of the position of the reader
+     * @param index the first image, relative to the whole file
+     * @param num the number of images
+     * @param dst where to write the values
+     * @param offset where in dst to start writing
+     */
+    public void read(int index, int num, float[] dst, int offset) {
+        images.read(index, num, dst, offset);
+        int length = num * images.getEntryLength();
+        if(binarizeThreshold >= 0) {
+            for(int i = offset; i < offset + length; i++)
+                dst[i] = dst[i] > binarizeThreshold ? 1 : 0;
+        }
+        else if(scale != 1) {
+            for(int i = offset; i < offset + length; i++)
+                dst[i] *= scale;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return images != null && cursor < end;
+    }
+
+    @Override
+    public int[] getImageShape() {
+        int[] dims = images.getDimensions();
+        switch(dims.length) {
+            case 1:
+                return new int[]{1, 1, 1};
+            case 2:
+                return new int[]{1, 1, dims[1]};
+            case 3:
+                return new int[]{1, dims[1], dims[2]};
+            default:
+                return new int[]{dims[1], dims[2], images.getEntryLength() / (dims[1] * dims[2])};
+        }
+    }
+
+    @Override
+    public ImageBatch nextImageBatch(int num) {
+        int[] shape = getImageShape();
+        return nextImageBatch(new ImageBatch(num, shape[0], shape[1], shape[2]));
+    }
+
+    @Override
+    public ImageBatch nextImageBatch(ImageBatch batch) {
+        if(batch.imageLength() != images.getEntryLength())
+            throw new IllegalArgumentException("Batch shape doesn't match the image shape " + Arrays.toString(getImageShape()));
+
+        batch.clear();
+        int num = Math.min(batch.capacity(), end - cursor);
+        if(num <= 0)
+            return batch;
+        for(int i = 0; i < num; i++)
+            batch.addImage();
+        read(cursor, num, batch.getFeatures(), 0);
+        if(labelFile != null) {
+            for(int i = 0; i < num; i++)
+                batch.setLabel(i, labelFile.readInt(cursor + i));
+        }
+        cursor += num;
+        return batch;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    @Override
+    public void reset() {
+        cursor = start;
+    }
+
+    @Override
+    public Collection<Writable> record(URI uri, DataInputStream dataInputStream) throws IOException {
+        throw new UnsupportedOperationException("IDX files are read through a memory map, not a stream");
+    }
+
+    @Override
+    public void close() throws IOException {
+        images = null;
+        labelFile = null;
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.image.recordreader;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Arrays;
+
+/**
+ * A minibatch of images of the same shape, kept as one float buffer
+ * laid out as [batch, channels, height, width], plus a label index per image.
+ *
+ * The buffers are allocated once and reused by {@link #clear()},
+ * so a reader can fill the same batch over and over.
+ *
+ * @see ImageBatchRecordReader
+ */
+public class ImageBatch {
+
+    private final int capacity;
+    private final int channels;
+    private final int height;
+    private final int width;
+    private final float[] features;
+    private final float[] labels;
+    private int size = 0;
+
+    /**
+     * @param capacity the maximum number of images
+     * @param channels the channels of each image
+     * @param height the height of each image
+     * @param width the width of each image
+     */
+    public ImageBatch(int capacity, int channels, int height, int width) {
+        if(capacity < 1 || channels < 1 || height < 1 || width < 1)
+            throw new IllegalArgumentException("Capacity and image shape must be positive");
+        this.capacity = capacity;
+        this.channels = channels;
+        this.height = height;
+        this.width = width;
+        this.features = new float[capacity * imageLength()];
+        this.labels = new float[capacity];
+    }
+
+    /**
+     * Empty the batch, keeping its buffers
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Add an image, with no label
+     * @return the index of the image
+     */
+    public int addImage() {
+        if(isFull())
+            throw new IllegalStateException("Batch is full");
+        labels[size] = -1;
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of values in each image
+     */
+    public int imageLength() {
+        return channels * height * width;
+    }
+
+    /**
+     * @param image the index of an image
+     * @return where the image starts in {@link #getFeatures()}
+     */
+    public int getImageOffset(int image) {
+        return image * imageLength();
+    }
+
+    /**
+     * @param image the index of an image
+     * @param label the label index, -1 for none
+     */
+    public void setLabel(int image, int label) {
+        labels[image] = label;
+    }
+
+    public int getLabel(int image) {
+        return (int) labels[image];
+    }
+
+    /**
+     * @return the image values, of which the first size() images are set
+     */
+    public float[] getFeatures() {
+        return features;
+    }
+
+    /**
+     * @return the label index of each image, -1 for none; the first size() are set
+     */
+    public float[] getLabels() {
+        return labels;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the images as a new [size, channels, height, width] array
+     */
+    public INDArray getFeatureTensor() {
+        return Nd4j.create(Arrays.copyOf(features, size * imageLength()), new int[]{size, channels, height, width});
+    }
+
+    /**
+     * @return the label indices as a new row vector of length size
+     */
+    public INDArray getLabelVector() {
+        return Nd4j.create(Arrays.copyOf(labels, size));
+    }
+
+}
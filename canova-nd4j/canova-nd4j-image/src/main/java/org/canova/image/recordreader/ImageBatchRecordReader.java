@@ -0,0 +1,49 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.image.recordreader;
+
+/**
+ * Reads images straight in to a minibatch buffer,
+ * without turning every pixel in to a writable
+ */
+public interface ImageBatchRecordReader {
+
+    /**
+     * The shape of the images this reader returns
+     * @return channels, height, width
+     */
+    int[] getImageShape();
+
+    /**
+     * Read the next num images in to a new batch
+     * @param num the maximum number of images
+     * @return the batch, with fewer than num images at the end of the input
+     */
+    ImageBatch nextImageBatch(int num);
+
+    /**
+     * Clear the given batch and fill it with the next images
+     * @param batch the batch to fill, of the shape {@link #getImageShape()}
+     * @return the batch
+     */
+    ImageBatch nextImageBatch(ImageBatch batch);
+
+}
@@ -4,7 +4,6 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.canova.api.berkeley.Pair;
 import org.canova.api.io.data.DoubleWritable;
-import org.canova.api.io.data.Text;
 import org.canova.api.split.FileSplit;
 import org.canova.api.split.InputSplit;
 import org.canova.api.writable.Writable;
@@ -93,6 +92,8 @@ public class ImageNetRecordReader extends BaseImageRecordReader {
 
     @Override
     public void initialize(InputSplit split) throws IOException {
+        cancelPending();
+        reopenCache();
         inputSplit = split;
         imgNetLabelSetup();
 
@@ -125,45 +126,21 @@ public class ImageNetRecordReader extends BaseImageRecordReader {
     }
 
     @Override
-    public Collection<Writable> next() {
-        if(iter != null) {
-            File image = iter.next();
-
-            if(image.isDirectory())
-                return next();
-
-            try {
-                return load(ImageIO.read(image), image.getName());
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    protected BufferedImage preprocess(BufferedImage image) {
+        return imageLoader.centerCropIfNeeded(image);
+    }
 
-            Collection<Writable> ret = new ArrayList<>();
-            if(iter.hasNext()) {
-                return ret;
-            }
-            else {
-                if(iter.hasNext()) {
-                    try {
-                        ret.add(new Text(FileUtils.readFileToString((File) iter.next())));
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-            return ret;
-        }
-        else if(record != null) {
-            hitImage = true;
-            return record;
-        }
-        throw new IllegalStateException("No more elements");
+    @Override
+    protected Collection<Writable> toRecord(File image, INDArray row) {
+        return toRecord(row, image.getName());
     }
 
     private Collection<Writable> load(BufferedImage image, String filename){
+        return toRecord(imageLoader.asRowVector(preprocess(image)), filename);
+    }
+
+    private Collection<Writable> toRecord(INDArray row, String filename){
         int labelId = -1;
-        BufferedImage bimg = imageLoader.centerCropIfNeeded(image);
-        INDArray row = imageLoader.asRowVector(bimg);
         Collection<Writable> ret = RecordConverter.toRecord(row);
         if(appendLabel && fileNameMapPath == null) {
             String WNID = FilenameUtils.getBaseName(filename).split(pattern)[patternPosition];
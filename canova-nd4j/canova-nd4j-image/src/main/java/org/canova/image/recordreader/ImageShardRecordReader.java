@@ -0,0 +1,311 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.image.recordreader;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.records.reader.RecordReader;
+import org.canova.api.split.InputSplit;
+import org.canova.api.writable.Writable;
+import org.canova.common.RecordConverter;
+import org.canova.image.loader.ImageLoader;
+import org.canova.image.loader.ImageResizer;
+import org.canova.image.shard.ImageShard;
+import org.canova.image.shard.ImageShardWriter;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Streams images out of shards written by {@link ImageShardWriter},
+ * one shard after the other, so a dataset is read with a few large sequential reads.
+ *
+ * With a random number generator the shard order is shuffled on every pass,
+ * and records are drawn at random from a buffer of the next {@link #SHUFFLE_BUFFER} records.
+ * Encoded shards are decoded and resized to the width, height and channels of the reader.
+ *
+ * @see org.canova.image.shard.ImageShardSplit
+ * @see org.canova.image.shard.ImageSharder
+ */
+public class ImageShardRecordReader implements RecordReader, ImageBatchRecordReader {
+
+    /** the number of records to draw from at random, 0 to only shuffle the shard order */
+    public final static String SHUFFLE_BUFFER = NAME_SPACE + ".shard.shufflebuffer";
+    /** the seed of the shuffle, records are read in order when unset */
+    public final static String SEED = NAME_SPACE + ".shard.seed";
+
+    private ImageLoader imageLoader;
+    private int shuffleBuffer = 0;
+    private Random rng;
+    private Configuration conf;
+    private InputSplit inputSplit;
+    private List<String> labels = new ArrayList<>();
+
+    private transient List<URI> shards;
+    private int shardIndex = 0;
+    private transient ImageShard current;
+    private ImageShardWriter.Format format;
+    private int[] shape;
+    private final List<Entry> buffer = new ArrayList<>();
+
+    public ImageShardRecordReader() {
+        this(-1, -1, -1);
+    }
+
+    /**
+     * @param width the width encoded images are resized to
+     * @param height the height encoded images are resized to
+     * @param channels the channels of encoded images
+     */
+    public ImageShardRecordReader(int width, int height, int channels) {
+        this(width, height, channels, 0, null);
+    }
+
+    /**
+     * @param width the width encoded images are resized to
+     * @param height the height encoded images are resized to
+     * @param channels the channels of encoded images
+     * @param shuffleBuffer the number of records to draw from at random
+     * @param rng shuffles the shards and records, null to read in order
+     */
+    public ImageShardRecordReader(int width, int height, int channels, int shuffleBuffer, Random rng) {
+        this.imageLoader = new ImageLoader(width, height, channels);
+        this.shuffleBuffer = shuffleBuffer;
+        this.rng = rng;
+    }
+
+    @Override
+    public void initialize(InputSplit split) throws IOException, InterruptedException {
+        closeShard();
+        buffer.clear();
+        inputSplit = split;
+        shards = new ArrayList<>(Arrays.asList(split.locations()));
+        if(rng != null)
+            Collections.shuffle(shards, rng);
+        shardIndex = 0;
+        format = null;
+        labels = new ArrayList<>();
+        if(!shards.isEmpty())
+            openShard(0);
+    }
+
+    @Override
+    public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
+        this.imageLoader = new ImageLoader(conf.getInt(BaseImageRecordReader.WIDTH, imageLoader.getWidth()),
+                conf.getInt(BaseImageRecordReader.HEIGHT, imageLoader.getHeight()),
+                conf.getInt(BaseImageRecordReader.CHANNELS, imageLoader.getChannels()));
+        this.shuffleBuffer = conf.getInt(SHUFFLE_BUFFER, shuffleBuffer);
+        String seed = conf.get(SEED);
+        if(seed != null)
+            this.rng = new Random(Long.parseLong(seed));
+        this.conf = conf;
+        initialize(split);
+    }
+
+    @Override
+    public Collection<Writable> next() {
+        Entry entry = take();
+        INDArray row;
+        if(format == ImageShardWriter.Format.ENCODED) {
+            row = imageLoader.asRowVector(decodeImage(entry));
+        }
+        else {
+            float[] values = new float[shape[0] * shape[1] * shape[2]];
+            ImageShard.decode(format, entry.payload, values.length, values, 0);
+            row = Nd4j.create(values);
+        }
+        Collection<Writable> ret = RecordConverter.toRecord(row);
+        if(entry.label >= 0)
+            ret.add(new DoubleWritable(entry.label));
+        return ret;
+    }
+
+    @Override
+    public boolean hasNext() {
+        fill();
+        return !buffer.isEmpty();
+    }
+
+    @Override
+    public int[] getImageShape() {
+        if(format == null || format == ImageShardWriter.Format.ENCODED)
+            return imageLoader.getFloatArrayShape();
+        return shape.clone();
+    }
+
+    @Override
+    public ImageBatch nextImageBatch(int num) {
+        int[] shape = getImageShape();
+        return nextImageBatch(new ImageBatch(num, shape[0], shape[1], shape[2]));
+    }
+
+    @Override
+    public ImageBatch nextImageBatch(ImageBatch batch) {
+        int[] shape = getImageShape();
+        if(batch.getChannels() != shape[0] || batch.getHeight() != shape[1] || batch.getWidth() != shape[2])
+            throw new IllegalArgumentException("Batch shape doesn't match the image shape " + Arrays.toString(shape));
+
+        batch.clear();
+        float[] features = batch.getFeatures();
+        while(!batch.isFull() && hasNext()) {
+            Entry entry = take();
+            int image = batch.addImage();
+            int offset = batch.getImageOffset(image);
+            if(format == ImageShardWriter.Format.ENCODED)
+                imageLoader.asFloatArray(decodeImage(entry), ImageResizer.Layout.CHW, features, offset);
+            else
+                ImageShard.decode(format, entry.payload, batch.imageLength(), features, offset);
+            if(entry.label >= 0)
+                batch.setLabel(image, entry.label);
+        }
+        return batch;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    @Override
+    public void reset() {
+        if(inputSplit == null)
+            throw new UnsupportedOperationException("Cannot reset without first initializing");
+        try {
+            initialize(inputSplit);
+        } catch(Exception e) {
+            throw new RuntimeException("Error during ImageShardRecordReader reset",e);
+        }
+    }
+
+    @Override
+    public Collection<Writable> record(URI uri, DataInputStream dataInputStream) throws IOException {
+        throw new UnsupportedOperationException("Reading a single record isn't supported by shards");
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeShard();
+        buffer.clear();
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
+    /**
+     * Top up the buffer from the shards, moving on to the next shard as each one runs out
+     */
+    private void fill() {
+        int target = Math.max(1, shuffleBuffer);
+        try {
+            while(buffer.size() < target && current != null) {
+                if(current.next()) {
+                    buffer.add(new Entry(current.getLabel(), Arrays.copyOf(current.getPayload(), current.getPayloadLength())));
+                }
+                else {
+                    closeShard();
+                    if(++shardIndex < shards.size())
+                        openShard(shardIndex);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read shard " + shards.get(shardIndex), e);
+        }
+    }
+
+    private Entry take() {
+        fill();
+        if(buffer.isEmpty())
+            throw new NoSuchElementException("No more images");
+        int last = buffer.size() - 1;
+        if(rng == null || last == 0)
+            return buffer.remove(0);
+        // swap a random record with the last one so the removal is constant time
+        int index = rng.nextInt(buffer.size());
+        Entry ret = buffer.get(index);
+        buffer.set(index, buffer.get(last));
+        buffer.remove(last);
+        return ret;
+    }
+
+    private void openShard(int index) throws IOException {
+        ImageShard shard = new ImageShard(new File(shards.get(index)));
+        if(format == null) {
+            format = shard.getFormat();
+            shape = shard.getShape();
+            labels = new ArrayList<>(shard.getLabels());
+        }
+        else if(format != shard.getFormat() || !Arrays.equals(shape, shard.getShape())) {
+            shard.close();
+            throw new IOException("Shard " + shard.getFile() + " doesn't match the format of the other shards");
+        }
+        current = shard;
+    }
+
+    private void closeShard() throws IOException {
+        if(current != null) {
+            current.close();
+            current = null;
+        }
+    }
+
+    private BufferedImage decodeImage(Entry entry) {
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(entry.payload));
+            if(image == null)
+                throw new IOException("Unable to decode image");
+            return image;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to decode image from shard", e);
+        }
+    }
+
+    private static class Entry {
+        private final int label;
+        private final byte[] payload;
+
+        private Entry(int label, byte[] payload) {
+            this.label = label;
+            this.payload = payload;
+        }
+    }
+
+}
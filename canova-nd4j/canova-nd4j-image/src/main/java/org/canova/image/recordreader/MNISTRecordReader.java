@@ -57,7 +57,7 @@ import java.util.*;
  * @author Josh Patterson
  *
  */
-public class MNISTRecordReader implements RecordReader {
+public class MNISTRecordReader implements RecordReader, ImageBatchRecordReader {
 
 	private static Logger log = LoggerFactory.getLogger(MNISTRecordReader.class);
 
@@ -208,6 +208,51 @@ public class MNISTRecordReader implements RecordReader {
     }
     
 
+    @Override
+    public int[] getImageShape() {
+        return new int[]{1, man.getImages().getRows(), man.getImages().getCols()};
+    }
+
+    @Override
+    public ImageBatch nextImageBatch(int num) {
+        int[] shape = getImageShape();
+        return nextImageBatch(new ImageBatch(num, shape[0], shape[1], shape[2]));
+    }
+
+    /**
+     * Fills the batch with the next images, normalized the same way as {@link #next()},
+     * and their digits as the labels
+     */
+    @Override
+    public ImageBatch nextImageBatch(ImageBatch batch) {
+        if(batch.imageLength() != inputColumns)
+            throw new IllegalArgumentException("Batch shape doesn't match the image shape");
+
+        batch.clear();
+        float[] features = batch.getFeatures();
+        try {
+            while(!batch.isFull() && hasNext()) {
+                man.setCurrent(cursor);
+                int[][] image = man.readImage();
+                int index = batch.addImage();
+                int p = batch.getImageOffset(index);
+                for(int[] row : image) {
+                    for(int v : row) {
+                        if(binarize)
+                            features[p++] = v > 30 ? 1 : 0;
+                        else
+                            features[p++] = v / 255f;
+                    }
+                }
+                batch.setLabel(index, man.readLabel());
+                cursor++;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read image", e);
+        }
+        return batch;
+    }
+
     @Override
     public boolean hasNext() {
     //    return iter != null && iter.hasNext();
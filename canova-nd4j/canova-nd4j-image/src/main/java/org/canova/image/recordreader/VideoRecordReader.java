@@ -31,6 +31,7 @@ import org.canova.api.split.InputStreamInputSplit;
 import org.canova.api.writable.Writable;
 import org.canova.common.RecordConverter;
 import org.canova.image.loader.ImageLoader;
+import org.canova.image.loader.ImageResizer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 
 import java.io.DataInputStream;
@@ -51,7 +52,7 @@ import java.util.*;
  * @author Adam Gibson
  *
  */
-public class VideoRecordReader implements SequenceRecordReader {
+public class VideoRecordReader implements SequenceRecordReader, ImageBatchRecordReader {
     private Iterator<File> iter;
     private ImageLoader imageLoader;
     private List<String> labels  = new ArrayList<>();
@@ -63,6 +64,8 @@ public class VideoRecordReader implements SequenceRecordReader {
     public final static String WIDTH = NAME_SPACE + ".video.width";
     public final static String HEIGHT = NAME_SPACE + ".video.height";
     protected InputSplit inputSplit;
+    // frames of the video nextImageBatch is in the middle of
+    private Iterator<File> frames;
 
     public VideoRecordReader() {
     }
@@ -105,6 +108,7 @@ public class VideoRecordReader implements SequenceRecordReader {
 
     @Override
     public void initialize(InputSplit split) throws IOException, InterruptedException {
+        frames = null;
         if(split instanceof FileSplit) {
             URI[] locations = split.locations();
             if(locations != null && locations.length >= 1) {
@@ -235,10 +239,71 @@ public class VideoRecordReader implements SequenceRecordReader {
 
     }
 
+    @Override
+    public int[] getImageShape() {
+        return imageLoader.getFloatArrayShape();
+    }
+
+    @Override
+    public ImageBatch nextImageBatch(int num) {
+        int[] shape = getImageShape();
+        return nextImageBatch(new ImageBatch(num, shape[0], shape[1], shape[2]));
+    }
+
+    /**
+     * Fills the batch with the next frames: those of each video directory in the order
+     * {@link #sequenceRecord()} reads them, or the frame files themselves as {@link #next()} returns them.
+     * A batch can span videos.
+     */
+    @Override
+    public ImageBatch nextImageBatch(ImageBatch batch) {
+        if(iter == null)
+            throw new UnsupportedOperationException("Image batches can only be read from a file split");
+        int[] shape = getImageShape();
+        if(batch.getChannels() != shape[0] || batch.getHeight() != shape[1] || batch.getWidth() != shape[2])
+            throw new IllegalArgumentException("Batch shape doesn't match the image shape " + Arrays.toString(shape));
+
+        batch.clear();
+        while(!batch.isFull()) {
+            File image = nextFrame();
+            if(image == null)
+                break;
+            int index = batch.addImage();
+            try {
+                imageLoader.asFloatArray(image, ImageResizer.Layout.CHW, batch.getFeatures(), batch.getImageOffset(index));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to load image " + image, e);
+            }
+            if(appendLabel)
+                batch.setLabel(index, labels.indexOf(image.getParentFile().getName()));
+        }
+        return batch;
+    }
+
+    /**
+     * @return the next frame file, from the current video or the next one, null at the end
+     */
+    private File nextFrame() {
+        while(true) {
+            if(frames != null && frames.hasNext()) {
+                File frame = frames.next();
+                if(!frame.isDirectory() && containsFormat(frame.getAbsolutePath()))
+                    return frame;
+            }
+            else if(iter.hasNext()) {
+                File next = iter.next();
+                frames = next.isDirectory() ? Arrays.asList(next.listFiles()).iterator() : Collections.singletonList(next).iterator();
+            }
+            else {
+                return null;
+            }
+        }
+    }
+
     @Override
     public boolean hasNext() {
         if(iter != null) {
-            return iter.hasNext();
+            return (frames != null && frames.hasNext()) || iter.hasNext();
         }
         else if(record != null) {
             return !hitImage;
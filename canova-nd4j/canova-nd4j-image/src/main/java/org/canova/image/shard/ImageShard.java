@@ -0,0 +1,194 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.image.shard;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streams the records of a shard written by {@link ImageShardWriter}, in order
+ */
+public class ImageShard implements Closeable {
+
+    private final File file;
+    private final DataInputStream in;
+    private final ImageShardWriter.Format format;
+    private final int[] shape;
+    private final List<String> labels;
+
+    private int label;
+    private byte[] payload = new byte[0];
+    private int length;
+    private boolean done = false;
+
+    /**
+     * Open a shard and read its header
+     * @param file the shard file
+     * @throws IOException if the file isn't a shard
+     */
+    public ImageShard(File file) throws IOException {
+        this.file = file;
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 20));
+        try {
+            if(in.readInt() != ImageShardWriter.MAGIC)
+                throw new IOException(file + " is not an image shard");
+            byte version = in.readByte();
+            if(version != ImageShardWriter.VERSION)
+                throw new IOException("Unsupported shard version " + version + " in " + file);
+            format = ImageShardWriter.Format.values()[in.readByte()];
+            shape = new int[]{in.readInt(), in.readInt(), in.readInt()};
+            int numLabels = in.readInt();
+            List<String> labels = new ArrayList<>(numLabels);
+            for(int i = 0; i < numLabels; i++)
+                labels.add(in.readUTF());
+            this.labels = Collections.unmodifiableList(labels);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Move to the next record
+     * @return false once there are no more records
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        if(done)
+            return false;
+        byte marker = in.readByte();
+        if(marker == ImageShardWriter.END) {
+            done = true;
+            return false;
+        }
+        if(marker != ImageShardWriter.RECORD)
+            throw new IOException("Corrupt shard " + file);
+
+        label = in.readInt();
+        length = in.readInt();
+        if(length < 0)
+            throw new IOException("Corrupt shard " + file);
+        if(payload.length < length)
+            payload = new byte[Math.max(length, payload.length * 2)];
+        in.readFully(payload, 0, length);
+        return true;
+    }
+
+    /**
+     * @return the label index of the current record, -1 for none
+     */
+    public int getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the payload of the current record; only the first {@link #getPayloadLength()} bytes
+     * are set and the array is reused by {@link #next()}
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public int getPayloadLength() {
+        return length;
+    }
+
+    public ImageShardWriter.Format getFormat() {
+        return format;
+    }
+
+    /**
+     * @return channels, height and width of decoded images, all 0 for encoded ones
+     */
+    public int[] getShape() {
+        return shape.clone();
+    }
+
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Turn the payload of a decoded image back in to values
+     * @param format the shard format, UINT8 or FLOAT32
+     * @param payload the payload
+     * @param length the number of values
+     * @param dst where to write the values
+     * @param offset where in dst to start writing
+     */
+    public static void decode(ImageShardWriter.Format format, byte[] payload, int length, float[] dst, int offset) {
+        if(format == ImageShardWriter.Format.UINT8) {
+            for(int i = 0; i < length; i++)
+                dst[offset + i] = payload[i] & 0xff;
+        }
+        else if(format == ImageShardWriter.Format.FLOAT32) {
+            for(int i = 0, j = 0; i < length; i++, j += 4)
+                dst[offset + i] = Float.intBitsToFloat(((payload[j] & 0xff) << 24) | ((payload[j + 1] & 0xff) << 16)
+                        | ((payload[j + 2] & 0xff) << 8) | (payload[j + 3] & 0xff));
+        }
+        else {
+            throw new IllegalArgumentException("Encoded images need to be decoded as images");
+        }
+    }
+
+    /**
+     * Read the index footer of a shard
+     * @param file the shard file
+     * @return the offset of every record in the file
+     * @throws IOException
+     */
+    public static long[] readIndex(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if(raf.length() < 12)
+                throw new EOFException(file + " is too short to be an image shard");
+            raf.seek(raf.length() - 12);
+            long footer = raf.readLong();
+            if(raf.readInt() != ImageShardWriter.MAGIC)
+                throw new IOException(file + " has no shard footer");
+            raf.seek(footer);
+            if(raf.readByte() != ImageShardWriter.END)
+                throw new IOException("Corrupt shard footer in " + file);
+            long[] offsets = new long[raf.readInt()];
+            for(int i = 0; i < offsets.length; i++)
+                offsets[i] = raf.readLong();
+            return offsets;
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.image.shard;
+
+import org.apache.commons.io.FileUtils;
+import org.canova.api.split.FileSplit;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The shard files under a directory, in name order,
+ * optionally only every n-th one so several workers can each read their own shards
+ */
+public class ImageShardSplit extends FileSplit {
+
+    private int worker;
+    private int numWorkers;
+
+    public ImageShardSplit(File rootDir) {
+        this(rootDir, 0, 1);
+    }
+
+    /**
+     * @param rootDir the shard directory, or a single shard
+     * @param worker the index of this worker
+     * @param numWorkers the number of workers sharing the shards
+     */
+    public ImageShardSplit(File rootDir, int worker, int numWorkers) {
+        super(rootDir, new String[]{ImageShardWriter.EXTENSION}, true, null, false);
+        if(numWorkers < 1 || worker < 0 || worker >= numWorkers)
+            throw new IllegalArgumentException("Worker " + worker + " out of range for " + numWorkers + " workers");
+        this.worker = worker;
+        this.numWorkers = numWorkers;
+        initialize();
+    }
+
+    @Override
+    protected void initialize() {
+        if(rootDir == null)
+            throw new IllegalArgumentException("File must not be null");
+
+        List<File> files = rootDir.isDirectory() ? new ArrayList<>(FileUtils.listFiles(rootDir, allowFormat, recursive))
+                : Collections.singletonList(rootDir);
+        Collections.sort(files);
+
+        List<URI> mine = new ArrayList<>();
+        for(int i = worker; i < files.size(); i += numWorkers) {
+            mine.add(files.get(i).toURI());
+            length += files.get(i).length();
+        }
+        locations = mine.toArray(new URI[mine.size()]);
+    }
+
+    public int getWorker() {
+        return worker;
+    }
+
+    public int getNumWorkers() {
+        return numWorkers;
+    }
+
+}
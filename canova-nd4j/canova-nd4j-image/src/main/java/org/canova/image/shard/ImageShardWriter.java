@@ -0,0 +1,186 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.image.shard;
+
+import org.apache.commons.io.output.CountingOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Packs images and their labels in to one large shard file,
+ * so they can be read back sequentially instead of opening every image.
+ *
+ * A shard is
+ * - a header: magic, version, {@link Format}, the image shape (channels, height, width,
+ *   all 0 for encoded images) and the label names
+ * - the records: a record marker, the label index, the payload length and the payload,
+ *   which is either the original encoded image or its decoded values
+ * - an index footer: an end marker, the number of records and the offset of each record,
+ *   followed by the offset of the footer and the magic again
+ *
+ * Readers stream the records and only need the footer to jump to a given record.
+ *
+ * @see org.canova.image.recordreader.ImageShardRecordReader
+ */
+public class ImageShardWriter implements Closeable {
+
+    public static final int MAGIC = 0x434e4953; // "CNIS"
+    public static final byte VERSION = 1;
+    public static final byte RECORD = 1;
+    public static final byte END = 0;
+    public static final String EXTENSION = "shard";
+
+    public enum Format {
+        /** the original image file bytes, decoded when read */
+        ENCODED,
+        /** decoded values rounded to bytes, for values in 0-255 */
+        UINT8,
+        /** decoded values as floats */
+        FLOAT32
+    }
+
+    private final CountingOutputStream counter;
+    private final DataOutputStream out;
+    private final Format format;
+    private final int[] shape;
+    private final int imageLength;
+    private long[] offsets = new long[1024];
+    private int count = 0;
+    private byte[] buffer = new byte[0];
+
+    /**
+     * @param file the shard file to create
+     * @param format how images are stored
+     * @param shape channels, height and width of the decoded images, ignored for encoded images
+     * @param labels the label names, in label index order
+     * @throws IOException
+     */
+    public ImageShardWriter(File file, Format format, int[] shape, List<String> labels) throws IOException {
+        this.format = format;
+        this.shape = format == Format.ENCODED ? new int[3] : Arrays.copyOf(shape, 3);
+        this.imageLength = this.shape[0] * this.shape[1] * this.shape[2];
+        if(format != Format.ENCODED && imageLength <= 0)
+            throw new IllegalArgumentException("Decoded images need a positive shape but got " + Arrays.toString(shape));
+
+        counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 20));
+        out = new DataOutputStream(counter);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(format.ordinal());
+        for(int d : this.shape)
+            out.writeInt(d);
+        out.writeInt(labels.size());
+        for(String label : labels)
+            out.writeUTF(label);
+    }
+
+    /**
+     * Add an encoded image
+     * @param image the image file bytes
+     * @param label the label index, -1 for none
+     * @throws IOException
+     */
+    public void writeEncoded(byte[] image, int label) throws IOException {
+        if(format != Format.ENCODED)
+            throw new IllegalStateException("Shard holds " + format + " images");
+        startRecord(label, image.length);
+        out.write(image);
+    }
+
+    /**
+     * Add a decoded image
+     * @param values the image values, channels, height, width
+     * @param offset where in values the image starts
+     * @param label the label index, -1 for none
+     * @throws IOException
+     */
+    public void writeDecoded(float[] values, int offset, int label) throws IOException {
+        if(format == Format.ENCODED)
+            throw new IllegalStateException("Shard holds encoded images");
+        int length = imageLength * (format == Format.UINT8 ? 1 : 4);
+        if(buffer.length < length)
+            buffer = new byte[length];
+
+        if(format == Format.UINT8) {
+            for(int i = 0; i < imageLength; i++) {
+                int v = Math.round(values[offset + i]);
+                buffer[i] = (byte) (v < 0 ? 0 : v > 255 ? 255 : v);
+            }
+        }
+        else {
+            for(int i = 0, j = 0; i < imageLength; i++) {
+                int v = Float.floatToIntBits(values[offset + i]);
+                buffer[j++] = (byte) (v >>> 24);
+                buffer[j++] = (byte) (v >>> 16);
+                buffer[j++] = (byte) (v >>> 8);
+                buffer[j++] = (byte) v;
+            }
+        }
+        startRecord(label, length);
+        out.write(buffer, 0, length);
+    }
+
+    private void startRecord(int label, int length) throws IOException {
+        if(count == offsets.length)
+            offsets = Arrays.copyOf(offsets, count * 2);
+        offsets[count++] = counter.getByteCount();
+        out.writeByte(RECORD);
+        out.writeInt(label);
+        out.writeInt(length);
+    }
+
+    /**
+     * @return the number of images written so far
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return the number of bytes written so far
+     */
+    public long size() {
+        return counter.getByteCount();
+    }
+
+    /**
+     * Writes the index footer and closes the shard
+     */
+    @Override
+    public void close() throws IOException {
+        long footer = counter.getByteCount();
+        out.writeByte(END);
+        out.writeInt(count);
+        for(int i = 0; i < count; i++)
+            out.writeLong(offsets[i]);
+        out.writeLong(footer);
+        out.writeInt(MAGIC);
+        out.close();
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.image.shard;
+
+import org.apache.commons.io.FileUtils;
+import org.canova.image.loader.BaseImageLoader;
+import org.canova.image.loader.ImageLoader;
+import org.canova.image.loader.ImageResizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Packs a directory of images, one sub directory per label, in to shards.
+ *
+ * Usage: ImageSharder inputDir outputDir [imagesPerShard] [ENCODED|UINT8|FLOAT32] [width height channels]
+ *
+ * Decoded formats need the width, height and channels to resize every image to.
+ */
+public class ImageSharder {
+
+    public static final int DEFAULT_IMAGES_PER_SHARD = 1024;
+
+    private ImageSharder() {
+    }
+
+    /**
+     * Pack the images under a directory in to shards
+     * @param inputDir the images, one sub directory per label
+     * @param outputDir where to write the shards
+     * @param prefix the shard file name prefix
+     * @param imagesPerShard the maximum number of images in a shard
+     * @param format how images are stored
+     * @param loader resizes and decodes images for the decoded formats, ignored for encoded images
+     * @param rng shuffles the images across the shards, null to keep them in file order
+     * @return the shards written
+     * @throws IOException
+     */
+    public static List<File> shard(File inputDir, File outputDir, String prefix, int imagesPerShard,
+                                   ImageShardWriter.Format format, ImageLoader loader, Random rng) throws IOException {
+        if(imagesPerShard < 1)
+            throw new IllegalArgumentException("Images per shard must be positive");
+        if(!outputDir.isDirectory() && !outputDir.mkdirs())
+            throw new IOException("Unable to create " + outputDir);
+
+        List<File> images = new ArrayList<>(FileUtils.listFiles(inputDir, BaseImageLoader.ALLOWED_FORMATS, true));
+        Collections.sort(images);
+        SortedSet<String> labelSet = new TreeSet<>();
+        for(File image : images)
+            labelSet.add(image.getParentFile().getName());
+        List<String> labels = new ArrayList<>(labelSet);
+        if(rng != null)
+            Collections.shuffle(images, rng);
+
+        int[] shape = format == ImageShardWriter.Format.ENCODED ? null : loader.getFloatArrayShape();
+        float[] values = shape == null ? null : new float[shape[0] * shape[1] * shape[2]];
+        List<File> shards = new ArrayList<>();
+        ImageShardWriter writer = null;
+        try {
+            for(File image : images) {
+                if(writer == null || writer.count() == imagesPerShard) {
+                    if(writer != null)
+                        writer.close();
+                    File shard = new File(outputDir, String.format("%s-%05d.%s", prefix, shards.size(), ImageShardWriter.EXTENSION));
+                    writer = new ImageShardWriter(shard, format, shape, labels);
+                    shards.add(shard);
+                }
+
+                int label = labels.indexOf(image.getParentFile().getName());
+                if(format == ImageShardWriter.Format.ENCODED) {
+                    writer.writeEncoded(FileUtils.readFileToByteArray(image), label);
+                }
+                else {
+                    loader.asFloatArray(image, ImageResizer.Layout.CHW, values, 0);
+                    writer.writeDecoded(values, 0, label);
+                }
+            }
+        } finally {
+            if(writer != null)
+                writer.close();
+        }
+        return shards;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2) {
+            System.err.println("Usage: ImageSharder inputDir outputDir [imagesPerShard] [ENCODED|UINT8|FLOAT32] [width height channels]");
+            System.exit(1);
+        }
+
+        File input = new File(args[0]);
+        File output = new File(args[1]);
+        int imagesPerShard = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_IMAGES_PER_SHARD;
+        ImageShardWriter.Format format = args.length > 3 ? ImageShardWriter.Format.valueOf(args[3].toUpperCase()) : ImageShardWriter.Format.ENCODED;
+        ImageLoader loader = args.length > 6 ? new ImageLoader(Integer.parseInt(args[4]), Integer.parseInt(args[5]), Integer.parseInt(args[6]))
+                : new ImageLoader();
+        if(format != ImageShardWriter.Format.ENCODED && args.length < 7) {
+            System.err.println("Decoded formats need the width, height and channels");
+            System.exit(1);
+        }
+
+        List<File> shards = shard(input, output, input.getName(), imagesPerShard, format, loader, new Random());
+        System.out.println("Wrote " + shards.size() + " shards to " + output);
+    }
+
+}
@@ -0,0 +1,159 @@
+package org.canova.image.loader;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestImageCache {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // magic, version, type, number of values and key
+    private static final int HEADER_SIZE = 30;
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        File image = folder.newFile("image.jpg");
+        FileUtils.writeStringToFile(image, "not really an image");
+        File dir = folder.newFolder("cache");
+        ImageCache cache = new ImageCache(dir);
+
+        double[] bytes = {0, 1, 128, 255};
+        double[] floats = {0.5, -1, 300};
+        double[] doubles = {0.1, 16777217};
+
+        assertNull(cache.get(image, "bytes"));
+        cache.put(image, "bytes", bytes);
+        assertEquals(HEADER_SIZE + 4, cacheSize(dir));
+        cache.put(image, "floats", floats);
+        assertEquals(2 * HEADER_SIZE + 4 + 3 * 4, cacheSize(dir));
+        cache.put(image, "doubles", doubles);
+
+        assertArrayEquals(bytes, cache.get(image, "bytes"), 0);
+        assertArrayEquals(floats, cache.get(image, "floats"), 0);
+        assertArrayEquals(doubles, cache.get(image, "doubles"), 0);
+        assertNull(cache.get(image, "other settings"));
+    }
+
+    @Test
+    public void testFloatBuffers() throws Exception {
+        File image = folder.newFile("image.jpg");
+        FileUtils.writeStringToFile(image, "not really an image");
+        File dir = folder.newFolder("cache");
+        ImageCache cache = new ImageCache(dir);
+
+        float[] bytes = {-1, 0, 1, 128, 255, -1};
+        float[] floats = {-1, 0.5f, 300, -2, -1};
+        cache.put(image, "bytes", bytes, 1, 4);
+        assertEquals(HEADER_SIZE + 4, cacheSize(dir));
+        cache.put(image, "floats", floats, 1, 3);
+        assertEquals(2 * HEADER_SIZE + 4 + 3 * 4, cacheSize(dir));
+        cache.put(image, "doubles", new double[]{0.25, 16777217});
+
+        float[] dst = new float[6];
+        assertTrue(cache.get(image, "bytes", dst, 2, 4));
+        assertArrayEquals(new float[]{0, 0, 0, 1, 128, 255}, dst, 0);
+        assertTrue(cache.get(image, "floats", dst, 0, 3));
+        assertArrayEquals(new float[]{0.5f, 300, -2, 1, 128, 255}, dst, 0);
+        assertTrue(cache.get(image, "doubles", dst, 4, 2));
+        assertArrayEquals(new float[]{0.5f, 300, -2, 1, 0.25f, 16777216}, dst, 0);
+        assertArrayEquals(new double[]{0.5, 300, -2}, cache.get(image, "floats"), 0);
+
+        // missing, or a different number of values
+        assertFalse(cache.get(image, "other settings", dst, 0, 3));
+        assertFalse(cache.get(image, "floats", dst, 0, 2));
+    }
+
+    @Test
+    public void testChangedImageMisses() throws Exception {
+        File image = folder.newFile("image.jpg");
+        FileUtils.writeStringToFile(image, "not really an image");
+        ImageCache cache = new ImageCache(folder.newFolder("cache"));
+
+        cache.put(image, "settings", new double[]{1, 2, 3});
+        assertArrayEquals(new double[]{1, 2, 3}, cache.get(image, "settings"), 0);
+
+        image.setLastModified(image.lastModified() - 10000);
+        assertNull(cache.get(image, "settings"));
+    }
+
+    @Test
+    public void testSegmentsAreSharedAndRolled() throws Exception {
+        File image = folder.newFile("image.jpg");
+        File dir = folder.newFolder("cache");
+        // room for two entries of 4 bytes per segment
+        ImageCache first = new ImageCache(dir, 2 * (HEADER_SIZE + 4));
+        ImageCache second = new ImageCache(dir, 2 * (HEADER_SIZE + 4));
+
+        for(int i = 0; i < 5; i++)
+            first.put(image, "settings" + i, new double[]{i, i, i, i});
+        assertEquals(3, dir.listFiles().length);
+        // the second cache picks up what the first appended, on a miss
+        assertArrayEquals(new double[]{4, 4, 4, 4}, second.get(image, "settings4"), 0);
+        second.put(image, "settings5", new double[]{5, 5, 5, 5});
+        assertEquals(3, dir.listFiles().length);
+
+        for(int i = 0; i < 6; i++) {
+            double[] expected = {i, i, i, i};
+            assertArrayEquals(expected, first.get(image, "settings" + i), 0);
+            assertArrayEquals(expected, second.get(image, "settings" + i), 0);
+        }
+    }
+
+    @Test
+    public void testCutShortEntryMisses() throws Exception {
+        File image = folder.newFile("image.jpg");
+        File dir = folder.newFolder("cache");
+        new ImageCache(dir).put(image, "settings", new double[]{1, 2, 3});
+
+        File segment = dir.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(segment.length() - 1);
+        }
+        ImageCache cache = new ImageCache(dir);
+        assertNull(cache.get(image, "settings"));
+
+        // the cut short entry is dropped and overwritten with good values
+        cache.put(image, "settings", new double[]{4, 5});
+        assertEquals(HEADER_SIZE + 2, segment.length());
+        assertArrayEquals(new double[]{4, 5}, cache.get(image, "settings"), 0);
+        assertArrayEquals(new double[]{4, 5}, new ImageCache(dir).get(image, "settings"), 0);
+    }
+
+    @Test
+    public void testCorruptSegmentIsSkipped() throws Exception {
+        File image = folder.newFile("image.jpg");
+        File dir = folder.newFolder("cache");
+        new ImageCache(dir).put(image, "settings", new double[]{1, 2, 3});
+
+        File segment = dir.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.write(0);
+        }
+        ImageCache cache = new ImageCache(dir);
+        assertNull(cache.get(image, "settings"));
+
+        // good values go to a new segment
+        cache.put(image, "settings", new double[]{4, 5});
+        assertEquals(2, dir.listFiles().length);
+        assertArrayEquals(new double[]{4, 5}, cache.get(image, "settings"), 0);
+    }
+
+    private static long cacheSize(File dir) {
+        long ret = 0;
+        for(File file : dir.listFiles())
+            ret += file.length();
+        return ret;
+    }
+}
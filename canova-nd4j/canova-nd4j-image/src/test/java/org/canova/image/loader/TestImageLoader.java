@@ -5,6 +5,7 @@ import org.nd4j.linalg.api.ndarray.INDArray;
 import java.awt.image.BufferedImage;
 import java.util.Random;
 import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 
@@ -13,6 +14,32 @@ public class TestImageLoader {
     private static long seed = 10;
     private static Random rng = new Random(seed);
 
+    @Test
+    public void testFloatArrayChannels() throws Exception {
+        BufferedImage gray = new BufferedImage(4, 3, BufferedImage.TYPE_BYTE_GRAY);
+        float[] expected = new float[12];
+        for (int i = 0; i < 12; ++i) {
+            gray.getRaster().setSample(i % 4, i / 4, 0, 20 * i);
+            expected[i] = 20 * i;
+        }
+
+        // an explicit single channel keeps gray images gray
+        ImageLoader grayLoader = new ImageLoader(4, 3, 1);
+        assertArrayEquals(new int[]{1, 3, 4}, grayLoader.getFloatArrayShape());
+        assertArrayEquals(expected, grayLoader.asFloatArray(gray, ImageResizer.Layout.CHW), 0f);
+
+        // without a 1 or 4 channel setting every image gets 3 channels, gray ones included,
+        // so all the images in a batch have the same shape
+        for (ImageLoader loader : new ImageLoader[]{new ImageLoader(4, 3), new ImageLoader(4, 3, 2)}) {
+            assertArrayEquals(new int[]{3, 3, 4}, loader.getFloatArrayShape());
+            float[] values = loader.asFloatArray(gray, ImageResizer.Layout.CHW);
+            assertEquals(36, values.length);
+            for (int c = 0; c < 3; ++c)
+                for (int i = 0; i < 12; ++i)
+                    assertEquals(expected[i], values[c * 12 + i], 0f);
+        }
+    }
+
     @Test
     public void testToIntArrayArray() throws Exception {
         BufferedImage img = makeRandomBufferedImage(true);
@@ -0,0 +1,132 @@
+package org.canova.image.loader;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestImageResizer {
+
+    private static long seed = 10;
+    private static Random rng = new Random(seed);
+
+    @Test
+    public void testSameSizeMatchesPixels() {
+        BufferedImage img = makeRandomBufferedImage(BufferedImage.TYPE_4BYTE_ABGR, 31, 17);
+        int w = img.getWidth(), h = img.getHeight();
+
+        for (ImageResizer.Interpolation interpolation : ImageResizer.Interpolation.values()) {
+            float[] chw = new float[4 * h * w];
+            ImageResizer.resize(img, w, h, 4, interpolation, ImageResizer.Layout.CHW, chw, 0);
+            float[] hwc = new float[4 * h * w + 5];
+            ImageResizer.resize(img, w, h, 4, interpolation, ImageResizer.Layout.HWC, hwc, 5);
+
+            for (int i = 0; i < h; ++i) {
+                for (int j = 0; j < w; ++j) {
+                    int argb = img.getRGB(j, i);
+                    int[] abgr = {argb >>> 24, argb & 0xff, (argb >> 8) & 0xff, (argb >> 16) & 0xff};
+                    for (int c = 0; c < 4; ++c) {
+                        assertEquals(abgr[c], chw[c * h * w + i * w + j], 1e-3);
+                        assertEquals(abgr[c], hwc[5 + (i * w + j) * 4 + c], 1e-3);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testImageTypesAgree() {
+        BufferedImage bgr = makeRandomBufferedImage(BufferedImage.TYPE_3BYTE_BGR, 40, 30);
+        BufferedImage rgb = new BufferedImage(bgr.getWidth(), bgr.getHeight(), BufferedImage.TYPE_INT_RGB);
+        BufferedImage indexed = new BufferedImage(bgr.getWidth(), bgr.getHeight(), BufferedImage.TYPE_USHORT_565_RGB);
+        for (int i = 0; i < bgr.getHeight(); ++i) {
+            for (int j = 0; j < bgr.getWidth(); ++j) {
+                rgb.setRGB(j, i, bgr.getRGB(j, i));
+                indexed.setRGB(j, i, bgr.getRGB(j, i));
+            }
+        }
+        // the same pixels through a sub image
+        BufferedImage padded = new BufferedImage(bgr.getWidth() + 7, bgr.getHeight() + 3, BufferedImage.TYPE_3BYTE_BGR);
+        padded.getGraphics().drawImage(bgr, 5, 2, null);
+        BufferedImage sub = padded.getSubimage(5, 2, bgr.getWidth(), bgr.getHeight());
+
+        for (ImageResizer.Interpolation interpolation : ImageResizer.Interpolation.values()) {
+            float[] expected = resize(bgr, 23, 19, 3, interpolation);
+            assertArrayEquals(expected, resize(rgb, 23, 19, 3, interpolation), 1e-3f);
+            assertArrayEquals(expected, resize(sub, 23, 19, 3, interpolation), 1e-3f);
+
+            // 565 loses the low bits, but goes through getRGB
+            float[] lossy = resize(indexed, 23, 19, 3, interpolation);
+            assertArrayEquals(expected, lossy, 8f);
+        }
+    }
+
+    @Test
+    public void testAreaAverages() {
+        BufferedImage img = new BufferedImage(4, 2, BufferedImage.TYPE_BYTE_GRAY);
+        int[] values = {0, 10, 20, 30, 40, 50, 60, 70};
+        img.getRaster().setPixels(0, 0, 4, 2, values);
+
+        float[] half = resize(img, 2, 1, 1, ImageResizer.Interpolation.AREA);
+        assertArrayEquals(new float[]{(0 + 10 + 40 + 50) / 4f, (20 + 30 + 60 + 70) / 4f}, half, 1e-3f);
+
+        // uneven: each destination pixel covers 4/3 source pixels
+        float[] thirds = resize(img, 3, 1, 1, ImageResizer.Interpolation.AREA);
+        assertEquals((0 + 40 + (10 + 50) / 3f) / 2f / (4f / 3f), thirds[0], 1e-3f);
+
+        float[] nearest = resize(img, 2, 1, 1, ImageResizer.Interpolation.NEAREST);
+        assertArrayEquals(new float[]{50, 70}, nearest, 1e-3f);
+
+        float[] bilinear = resize(img, 2, 1, 1, ImageResizer.Interpolation.BILINEAR);
+        assertArrayEquals(new float[]{(0 + 10 + 40 + 50) / 4f, (20 + 30 + 60 + 70) / 4f}, bilinear, 1e-3f);
+    }
+
+    @Test
+    public void testConstantImageStaysConstant() {
+        BufferedImage img = new BufferedImage(13, 29, BufferedImage.TYPE_3BYTE_BGR);
+        for (int i = 0; i < img.getHeight(); ++i)
+            for (int j = 0; j < img.getWidth(); ++j)
+                img.setRGB(j, i, 0x102030);
+
+        for (ImageResizer.Interpolation interpolation : ImageResizer.Interpolation.values()) {
+            for (int[] size : new int[][]{{5, 7}, {40, 50}, {13, 3}}) {
+                float[] values = resize(img, size[0], size[1], 3, interpolation);
+                for (int i = 0; i < values.length; i += 3) {
+                    assertEquals(0x30, values[i], 1e-3);
+                    assertEquals(0x20, values[i + 1], 1e-3);
+                    assertEquals(0x10, values[i + 2], 1e-3);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testResizeToImage() {
+        BufferedImage img = makeRandomBufferedImage(BufferedImage.TYPE_3BYTE_BGR, 64, 48);
+        BufferedImage gray = ImageResizer.resize(img, new BufferedImage(32, 24, BufferedImage.TYPE_BYTE_GRAY), ImageResizer.Interpolation.AREA);
+        float[] expected = resize(img, 32, 24, 1, ImageResizer.Interpolation.AREA);
+
+        int[] pixels = gray.getRaster().getPixels(0, 0, 32, 24, (int[]) null);
+        for (int i = 0; i < pixels.length; ++i)
+            assertEquals(Math.round(expected[i]), pixels[i]);
+    }
+
+    private static float[] resize(BufferedImage img, int w, int h, int channels, ImageResizer.Interpolation interpolation) {
+        float[] ret = new float[w * h * channels];
+        ImageResizer.resize(img, w, h, channels, interpolation, ImageResizer.Layout.HWC, ret, 0);
+        return ret;
+    }
+
+    private static BufferedImage makeRandomBufferedImage(int type, int w, int h) {
+        BufferedImage img = new BufferedImage(w, h, type);
+        for (int i = 0; i < h; ++i) {
+            for (int j = 0; j < w; ++j) {
+                img.setRGB(j, i, rng.nextInt());
+            }
+        }
+        return img;
+    }
+}
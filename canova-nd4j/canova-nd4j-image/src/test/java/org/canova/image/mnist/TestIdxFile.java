@@ -0,0 +1,108 @@
+package org.canova.image.mnist;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+
+import org.canova.image.recordreader.ImageBatch;
+import org.canova.image.recordreader.IdxRecordReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TestIdxFile {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadTypes() throws Exception {
+        File bytes = folder.newFile("bytes.idx");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(bytes))) {
+            out.writeInt(0x0803);
+            out.writeInt(3);
+            out.writeInt(2);
+            out.writeInt(2);
+            for(int i = 0; i < 12; i++)
+                out.writeByte(i * 20);
+        }
+        IdxFile file = new IdxFile(bytes);
+        assertEquals(IdxFile.UBYTE, file.getType());
+        assertArrayEquals(new int[]{3, 2, 2}, file.getDimensions());
+        assertEquals(4, file.getEntryLength());
+        assertArrayEquals(new float[]{80, 100, 120, 140}, file.read(1), 0);
+
+        float[] all = new float[14];
+        file.read(0, 3, all, 2);
+        assertEquals(220, all[2 + 11], 0);
+        byte[] raw = new byte[4];
+        file.readBytes(2, 1, raw, 0);
+        assertEquals(160, raw[0] & 0xff);
+
+        File floats = folder.newFile("floats.idx");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(floats))) {
+            out.writeInt(0x0D02);
+            out.writeInt(2);
+            out.writeInt(3);
+            for(int i = 0; i < 6; i++)
+                out.writeFloat(i - 2.5f);
+        }
+        assertArrayEquals(new float[]{0.5f, 1.5f, 2.5f}, new IdxFile(floats).read(1), 0);
+    }
+
+    @Test
+    public void testSplitAndBatch() throws Exception {
+        File images = folder.newFile("images.idx");
+        File labels = folder.newFile("labels.idx");
+        int count = 10;
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(images))) {
+            out.writeInt(2051);
+            out.writeInt(count);
+            out.writeInt(3);
+            out.writeInt(3);
+            for(int i = 0; i < count * 9; i++)
+                out.writeByte(i % 9 == 0 ? 255 : i % 9);
+        }
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(labels))) {
+            out.writeInt(2049);
+            out.writeInt(count);
+            for(int i = 0; i < count; i++)
+                out.writeByte(i % 3);
+        }
+
+        List<IdxSplit> splits = IdxSplit.split(images, labels, 3);
+        assertEquals(3, splits.size());
+        assertEquals(0, splits.get(0).getStart());
+        assertEquals(count, splits.get(2).getEnd());
+
+        int seen = 0;
+        for(IdxSplit split : splits) {
+            IdxRecordReader reader = new IdxRecordReader(-1, 1 / 255f);
+            reader.initialize(split);
+            assertArrayEquals(new int[]{1, 3, 3}, reader.getImageShape());
+            assertEquals(3, reader.getLabels().size());
+            ImageBatch batch = reader.nextImageBatch(2);
+            while(!batch.isEmpty()) {
+                for(int i = 0; i < batch.size(); i++, seen++) {
+                    assertEquals(seen % 3, batch.getLabel(i));
+                    assertEquals(1, batch.getFeatures()[batch.getImageOffset(i)], 1e-6);
+                    assertEquals(8 / 255f, batch.getFeatures()[batch.getImageOffset(i) + 8], 1e-6);
+                }
+                reader.nextImageBatch(batch);
+            }
+            assertFalse(reader.hasNext());
+        }
+        assertEquals(count, seen);
+
+        MnistImageFile mnist = new MnistImageFile(images.getPath(), "r");
+        mnist.setCurrentIndex(1);
+        assertEquals(255, mnist.readImage()[0][0]);
+        assertEquals(8, mnist.readImage()[2][2]);
+    }
+
+}
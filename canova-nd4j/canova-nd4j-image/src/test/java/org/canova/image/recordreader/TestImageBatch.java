@@ -0,0 +1,44 @@
+package org.canova.image.recordreader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestImageBatch {
+
+    @Test
+    public void testFillAndReuse() {
+        ImageBatch batch = new ImageBatch(3, 2, 4, 5);
+        assertEquals(40, batch.imageLength());
+        assertEquals(3 * 40, batch.getFeatures().length);
+        assertTrue(batch.isEmpty());
+
+        for (int i = 0; i < 3; i++) {
+            int index = batch.addImage();
+            assertEquals(i, index);
+            assertEquals(-1, batch.getLabel(index));
+            assertEquals(i * 40, batch.getImageOffset(index));
+            batch.setLabel(index, i + 10);
+        }
+        assertTrue(batch.isFull());
+        assertEquals(12, batch.getLabel(2));
+
+        float[] features = batch.getFeatures();
+        batch.clear();
+        assertEquals(0, batch.size());
+        assertFalse(batch.isFull());
+        assertEquals(features, batch.getFeatures());
+        assertEquals(0, batch.addImage());
+        assertEquals(-1, batch.getLabel(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddPastCapacity() {
+        ImageBatch batch = new ImageBatch(1, 1, 2, 2);
+        batch.addImage();
+        batch.addImage();
+    }
+
+}
@@ -20,19 +20,38 @@
 
 package org.canova.image.recordreader;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+import org.canova.api.records.RecordBatch;
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.records.reader.impl.FileRecordReader;
 import org.canova.api.split.FileSplit;
 import org.canova.api.split.InputStreamInputSplit;
 import org.canova.api.writable.Writable;
+import org.canova.image.loader.ImageCache;
+import org.junit.Rule;
 import org.junit.Test;
 import org.canova.api.util.ClassPathResource;
+import org.junit.rules.TemporaryFolder;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 
 /**
@@ -40,6 +59,358 @@ import static org.junit.Assert.assertTrue;
  */
 public class TestImageRecordReader {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Write small gray images that need no resizing, each with different pixels
+     */
+    private File writeImages(String name, int num) throws IOException {
+        File dir = folder.newFolder(name);
+        writeImages(dir, num);
+        return dir;
+    }
+
+    private static void writeImages(File dir, int num) throws IOException {
+        dir.mkdirs();
+        for(int i = 0; i < num; i++) {
+            BufferedImage image = new BufferedImage(4, 3, BufferedImage.TYPE_BYTE_GRAY);
+            for(int y = 0; y < 3; y++)
+                for(int x = 0; x < 4; x++)
+                    image.getRaster().setSample(x, y, 0, (31 * i + 4 * y + 7 * x) % 256);
+            ImageIO.write(image, "png", new File(dir, "image" + i + ".png"));
+        }
+    }
+
+    /**
+     * Write small color images that need no resizing
+     */
+    private File writeColorImages(String name, int num) throws IOException {
+        File dir = folder.newFolder(name);
+        for(int i = 0; i < num; i++) {
+            BufferedImage image = new BufferedImage(4, 3, BufferedImage.TYPE_3BYTE_BGR);
+            for(int y = 0; y < 3; y++)
+                for(int x = 0; x < 4; x++)
+                    image.setRGB(x, y, (31 * i + 4 * y) << 16 | (7 * x) << 8 | (11 * i + x + y));
+            ImageIO.write(image, "png", new File(dir, "image" + i + ".png"));
+        }
+        return dir;
+    }
+
+    private static float[] floatValues(Collection<Writable> record) {
+        float[] ret = new float[record.size()];
+        int i = 0;
+        for(Writable w : record)
+            ret[i++] = (float) w.toDouble();
+        return ret;
+    }
+
+    private static float[] image(ImageBatch batch, int image) {
+        int offset = batch.getImageOffset(image);
+        return Arrays.copyOfRange(batch.getFeatures(), offset, offset + batch.imageLength());
+    }
+
+    private static List<Double> values(Collection<Writable> record) {
+        List<Double> ret = new ArrayList<>();
+        for(Writable w : record)
+            ret.add(w.toDouble());
+        return ret;
+    }
+
+    private static List<Double> values(RecordBatch batch, int row) {
+        List<Double> ret = new ArrayList<>();
+        for(int i = 0; i < batch.numColumns(); i++)
+            ret.add(batch.getDouble(row, i));
+        return ret;
+    }
+
+    /**
+     * Read all images of a reader through nextImageBatch, one array per image
+     */
+    private static List<float[]> readImageBatches(ImageRecordReader reader, int batchSize) {
+        List<float[]> ret = new ArrayList<>();
+        while(reader.hasNext()) {
+            ImageBatch batch = reader.nextImageBatch(batchSize);
+            assertFalse(batch.isEmpty());
+            for(int i = 0; i < batch.size(); i++) {
+                int offset = batch.getImageOffset(i);
+                ret.add(Arrays.copyOfRange(batch.getFeatures(), offset, offset + batch.imageLength()));
+            }
+        }
+        return ret;
+    }
+
+    private static void assertSameImages(List<float[]> expected, List<float[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++)
+            assertArrayEquals(expected.get(i), actual.get(i), 0f);
+    }
+
+    @Test
+    public void testDecodePoolKeepsFileOrder() throws Exception {
+        File dir = writeImages("images", 11);
+        FileUtils.writeStringToFile(new File(dir, "notes.txt"), "not an image");
+        ImageRecordReader sequential = new ImageRecordReader(4, 3, 1);
+        sequential.initialize(new FileSplit(dir));
+        List<float[]> expected = readImageBatches(sequential, 4);
+        assertEquals(11, expected.size());
+
+        for(int threads = 1; threads <= 4; threads++) {
+            ImageRecordReader reader = new ImageRecordReader(4, 3, 1);
+            reader.setDecodeThreads(threads, 0);
+            reader.initialize(new FileSplit(dir));
+            assertSameImages(expected, readImageBatches(reader, 4));
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testDecodePoolSkipsTrailingFiles() throws Exception {
+        File dir = writeImages("images", 2);
+        for(int i = 0; i < 3; i++)
+            FileUtils.writeStringToFile(new File(dir, "notes" + i + ".txt"), "not an image");
+        new File(dir, "empty").mkdir();
+
+        ImageRecordReader reader = new ImageRecordReader(4, 3, 1);
+        reader.setDecodeThreads(2, 0);
+        reader.initialize(new FileSplit(dir));
+        // every batch handed out after hasNext() has an image in it
+        assertEquals(2, readImageBatches(reader, 1).size());
+        assertFalse(reader.hasNext());
+        reader.close();
+    }
+
+    @Test
+    public void testDecodePoolPropagatesFailures() throws Exception {
+        File dir = writeImages("images", 3);
+        FileUtils.writeStringToFile(new File(dir, "bad.png"), "not really an image");
+
+        ImageRecordReader reader = new ImageRecordReader(4, 3, 1);
+        reader.setDecodeThreads(2, 0);
+        reader.initialize(new FileSplit(dir));
+        try {
+            readImageBatches(reader, 10);
+            fail("Expected the bad image to fail the batch");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        reader.reset();
+        try {
+            while(reader.hasNext())
+                reader.next();
+            fail("Expected the bad image to fail next()");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        reader.close();
+    }
+
+    @Test
+    public void testSerialReadSkipsOtherFiles() throws Exception {
+        File dir = writeImages("images", 2);
+        FileUtils.writeStringToFile(new File(dir, "notes.txt"), "not an image");
+        new File(dir, "empty").mkdir();
+
+        ImageRecordReader reader = new ImageRecordReader(4, 3, 1);
+        reader.initialize(new FileSplit(dir));
+        int records = 0;
+        while(reader.hasNext()) {
+            assertEquals(12, reader.next().size());
+            records++;
+        }
+        assertEquals(2, records);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSerialReadFailsOnBadImage() throws Exception {
+        File dir = folder.newFolder("bad");
+        FileUtils.writeStringToFile(new File(dir, "bad.png"), "not really an image");
+        ImageRecordReader reader = new ImageRecordReader(4, 3, 1);
+        reader.initialize(new FileSplit(dir));
+        assertTrue(reader.hasNext());
+        reader.next();
+    }
+
+    @Test
+    public void testDeserializedReaderInitializes() throws Exception {
+        File dir = writeImages("images", 5);
+        ImageRecordReader reader = new ImageRecordReader(4, 3, 1);
+        reader.setDecodeThreads(2, 0);
+        ImageRecordReader copy = serializeAndBack(reader);
+        copy.initialize(new FileSplit(dir));
+        assertEquals(5, readImageBatches(copy, 2).size());
+        copy.close();
+    }
+
+    @Test
+    public void testDeserializedReaderReopensCache() throws Exception {
+        File dir = writeImages("images", 3);
+        File cacheDir = folder.newFolder("cache");
+        ImageRecordReader reader = new ImageRecordReader(4, 3, 1);
+        reader.setCache(new ImageCache(cacheDir));
+
+        ImageRecordReader copy = serializeAndBack(reader);
+        copy.initialize(new FileSplit(dir));
+        List<float[]> expected = readImageBatches(copy, 2);
+        assertEquals(cacheDir, copy.getCache().getDirectory());
+        assertEquals(1, cacheDir.listFiles().length);
+        // the second pass comes from the cache
+        copy.reset();
+        assertSameImages(expected, readImageBatches(copy, 2));
+    }
+
+    private static ImageRecordReader serializeAndBack(ImageRecordReader reader) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(reader);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (ImageRecordReader) in.readObject();
+        }
+    }
+
+    @Test
+    public void testDecodePoolResetAndCloseMidStream() throws Exception {
+        File dir = writeImages("images", 9);
+        ImageRecordReader sequential = new ImageRecordReader(4, 3, 1);
+        sequential.initialize(new FileSplit(dir));
+        List<float[]> expected = readImageBatches(sequential, 2);
+
+        ImageRecordReader reader = new ImageRecordReader(4, 3, 1);
+        reader.setDecodeThreads(3, 4);
+        reader.initialize(new FileSplit(dir));
+        reader.nextImageBatch(2);
+        assertTrue(reader.hasNext());
+        reader.reset();
+        assertSameImages(expected, readImageBatches(reader, 2));
+
+        // closing drops the decode threads; a reset starts them again
+        reader.reset();
+        reader.nextImageBatch(3);
+        reader.close();
+        reader.reset();
+        assertSameImages(expected, readImageBatches(reader, 2));
+        reader.close();
+    }
+
+    @Test
+    public void testImageBatchTakesOverPendingDecodes() throws Exception {
+        File dir = writeImages("images", 6);
+        ImageRecordReader sequential = new ImageRecordReader(4, 3, 1);
+        sequential.initialize(new FileSplit(dir));
+        List<float[]> expected = readImageBatches(sequential, 6);
+
+        ImageRecordReader reader = new ImageRecordReader(4, 3, 1);
+        reader.setDecodeThreads(2, 4);
+        reader.initialize(new FileSplit(dir));
+        // next() leaves the following images decoding as row vectors
+        Collection<Writable> first = reader.next();
+        float[] firstValues = new float[first.size()];
+        int i = 0;
+        for(Writable w : first)
+            firstValues[i++] = (float) w.toDouble();
+
+        List<float[]> actual = new ArrayList<>();
+        actual.add(firstValues);
+        actual.addAll(readImageBatches(reader, 3));
+        assertSameImages(expected, actual);
+        reader.close();
+    }
+
+    @Test
+    public void testImageBatchMatchesNext() throws Exception {
+        File[] dirs = {writeImages("gray", 5), writeColorImages("color", 5)};
+        int[] channels = {1, 3};
+        for(int d = 0; d < dirs.length; d++) {
+            RecordReader expected = new ImageRecordReader(4, 3, channels[d]);
+            expected.initialize(new FileSplit(dirs[d]));
+            ImageRecordReader reader = new ImageRecordReader(4, 3, channels[d]);
+            reader.initialize(new FileSplit(dirs[d]));
+            assertArrayEquals(new int[]{channels[d], 3, 4}, reader.getImageShape());
+
+            int images = 0;
+            while(reader.hasNext()) {
+                ImageBatch batch = reader.nextImageBatch(2);
+                for(int i = 0; i < batch.size(); i++)
+                    assertArrayEquals(floatValues(expected.next()), image(batch, i), 0f);
+                images += batch.size();
+            }
+            assertEquals(5, images);
+            assertFalse(expected.hasNext());
+        }
+    }
+
+    @Test
+    public void testVideoImageBatchMatchesNext() throws Exception {
+        File root = folder.newFolder("videos");
+        writeImages(new File(root, "video0"), 4);
+        writeImages(new File(root, "video1"), 3);
+
+        VideoRecordReader expected = new VideoRecordReader(4, 3);
+        expected.initialize(new FileSplit(root));
+        List<float[]> frames = new ArrayList<>();
+        while(expected.hasNext())
+            for(Collection<Writable> frame : expected.sequenceRecord())
+                frames.add(floatValues(frame));
+        // a single frame file is read by next()
+        expected.initialize(new FileSplit(new File(root, "video1/image2.png")));
+        frames.add(floatValues(expected.next()));
+
+        VideoRecordReader reader = new VideoRecordReader(4, 3);
+        // the video reader's loader has no channel setting, so frames come out with 3 channels
+        assertArrayEquals(new int[]{3, 3, 4}, reader.getImageShape());
+        List<float[]> actual = new ArrayList<>();
+        reader.initialize(new FileSplit(root));
+        while(reader.hasNext()) {
+            ImageBatch batch = reader.nextImageBatch(3);
+            for(int i = 0; i < batch.size(); i++)
+                actual.add(image(batch, i));
+        }
+        reader.initialize(new FileSplit(new File(root, "video1/image2.png")));
+        actual.add(image(reader.nextImageBatch(3), 0));
+        assertFalse(reader.hasNext());
+
+        assertEquals(8, frames.size());
+        assertEquals(8, actual.size());
+        for(int i = 0; i < frames.size(); i++) {
+            // one value per pixel of a gray frame, which each channel of the batch repeats
+            float[] frame = frames.get(i);
+            for(int c = 0; c < 3; c++)
+                assertArrayEquals(frame, Arrays.copyOfRange(actual.get(i), c * frame.length, (c + 1) * frame.length), 0f);
+        }
+    }
+
+    @Test
+    public void testNextBatchMatchesNext() throws Exception {
+        File dir = writeImages("images", 5);
+        RecordReader expected = new ImageRecordReader(4, 3, 1);
+        expected.initialize(new FileSplit(dir));
+        ImageRecordReader reader = new ImageRecordReader(4, 3, 1);
+        reader.initialize(new FileSplit(dir));
+
+        RecordBatch batch = new RecordBatch(3);
+        int rows = 0;
+        while(reader.hasNext()) {
+            reader.nextBatch(batch);
+            assertEquals(12, batch.numColumns());
+            for(int row = 0; row < batch.numRows(); row++)
+                assertEquals(values(expected.next()), values(batch, row));
+            rows += batch.numRows();
+        }
+        assertEquals(5, rows);
+        assertFalse(expected.hasNext());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNextBatchFailsOnBadImage() throws Exception {
+        File dir = folder.newFolder("bad");
+        FileUtils.writeStringToFile(new File(dir, "bad.png"), "not really an image");
+        ImageRecordReader reader = new ImageRecordReader(4, 3, 1);
+        reader.initialize(new FileSplit(dir));
+        reader.nextBatch(2);
+    }
+
     // TODO fix tests and fix for TravisCI
 //    @Test
 //    public void testInputStream() throws Exception {
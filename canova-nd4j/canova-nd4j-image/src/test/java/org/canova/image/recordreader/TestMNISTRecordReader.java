@@ -5,7 +5,9 @@ import static org.junit.Assert.*;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.canova.api.records.reader.RecordReader;
@@ -88,4 +90,29 @@ public class TestMNISTRecordReader {
     }
 
 
+    @Test
+    public void testImageBatchMatchesNext() throws Exception {
+        String MNIST_ROOT = System.getProperty("user.home") + File.separator + "MNIST" + File.separator;
+        if(!new File(MNIST_ROOT).exists())
+            new MnistFetcher().downloadAndUntar();
+
+        MNISTRecordReader expected = new MNISTRecordReader();
+        MNISTRecordReader reader = new MNISTRecordReader();
+        assertArrayEquals(new int[]{1, 28, 28}, reader.getImageShape());
+
+        ImageBatch batch = new ImageBatch(8, 1, 28, 28);
+        for(int b = 0; b < 3; b++) {
+            reader.nextImageBatch(batch);
+            assertEquals(8, batch.size());
+            for(int i = 0; i < batch.size(); i++) {
+                List<Writable> record = new ArrayList<>(expected.next());
+                assertEquals(785, record.size());
+                int offset = batch.getImageOffset(i);
+                for(int j = 0; j < 784; j++)
+                    assertEquals(record.get(j).toDouble(), batch.getFeatures()[offset + j], 0);
+                assertEquals(record.get(784).toDouble(), batch.getLabels()[i], 0);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,149 @@
+package org.canova.image.shard;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.canova.image.loader.ImageLoader;
+import org.canova.image.loader.ImageResizer;
+import org.canova.image.recordreader.ImageBatch;
+import org.canova.image.recordreader.ImageShardRecordReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TestImageShards {
+
+    private static Random rng = new Random(12345);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDecodedInOrder() throws Exception {
+        File dir = folder.newFolder("shards");
+        int[] shape = {1, 2, 3};
+        writeShard(new File(dir, "a-00000.shard"), ImageShardWriter.Format.FLOAT32, shape, 0, 5);
+        writeShard(new File(dir, "a-00001.shard"), ImageShardWriter.Format.FLOAT32, shape, 5, 5);
+        assertEquals(5, ImageShard.readIndex(new File(dir, "a-00001.shard")).length);
+
+        ImageShardRecordReader reader = new ImageShardRecordReader();
+        reader.initialize(new ImageShardSplit(dir));
+        assertArrayEquals(shape, reader.getImageShape());
+        assertEquals(Arrays.asList("x", "y"), reader.getLabels());
+
+        int image = 0;
+        ImageBatch batch = new ImageBatch(4, 1, 2, 3);
+        while(reader.hasNext()) {
+            reader.nextImageBatch(batch);
+            for(int i = 0; i < batch.size(); i++, image++) {
+                assertEquals(image % 2, batch.getLabel(i));
+                for(int j = 0; j < 6; j++)
+                    assertEquals(image * 10 + j + 0.25f, batch.getFeatures()[batch.getImageOffset(i) + j], 0);
+            }
+        }
+        assertEquals(10, image);
+        reader.close();
+    }
+
+    @Test
+    public void testShuffleKeepsEveryImage() throws Exception {
+        File dir = folder.newFolder("shards");
+        int[] shape = {1, 1, 2};
+        for(int i = 0; i < 4; i++)
+            writeShard(new File(dir, "b-0000" + i + ".shard"), ImageShardWriter.Format.UINT8, shape, i * 6, 6);
+
+        ImageShardRecordReader reader = new ImageShardRecordReader(-1, -1, -1, 5, new Random(42));
+        reader.initialize(new ImageShardSplit(dir));
+        List<Integer> seen = new ArrayList<>();
+        ImageBatch batch = reader.nextImageBatch(7);
+        while(!batch.isEmpty()) {
+            for(int i = 0; i < batch.size(); i++) {
+                int value = (int) batch.getFeatures()[batch.getImageOffset(i)];
+                assertEquals(value * 10 + 1, (int) batch.getFeatures()[batch.getImageOffset(i) + 1]);
+                seen.add(value);
+            }
+            reader.nextImageBatch(batch);
+        }
+
+        List<Integer> expected = new ArrayList<>();
+        for(int i = 0; i < 24; i++)
+            expected.add(i);
+        assertFalse(expected.equals(seen));
+        Collections.sort(seen);
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    public void testSharderEncoded() throws Exception {
+        File input = folder.newFolder("images");
+        List<File> images = new ArrayList<>();
+        for(String label : new String[]{"cat", "dog"}) {
+            File labelDir = new File(input, label);
+            labelDir.mkdirs();
+            for(int i = 0; i < 3; i++) {
+                BufferedImage image = new BufferedImage(7, 5, BufferedImage.TYPE_3BYTE_BGR);
+                for(int y = 0; y < 5; y++)
+                    for(int x = 0; x < 7; x++)
+                        image.setRGB(x, y, rng.nextInt(1 << 24));
+                File file = new File(labelDir, i + ".png");
+                ImageIO.write(image, "png", file);
+                images.add(file);
+            }
+        }
+
+        File output = folder.newFolder("shards");
+        ImageLoader loader = new ImageLoader(4, 3, 3);
+        List<File> shards = ImageSharder.shard(input, output, "pets", 4, ImageShardWriter.Format.ENCODED, loader, null);
+        assertEquals(2, shards.size());
+        assertEquals(new File(output, "pets-00001.shard"), shards.get(1));
+
+        ImageShardRecordReader reader = new ImageShardRecordReader(4, 3, 3);
+        reader.initialize(new ImageShardSplit(output));
+        assertEquals(Arrays.asList("cat", "dog"), reader.getLabels());
+        ImageBatch batch = reader.nextImageBatch(6);
+        assertEquals(6, batch.size());
+        assertFalse(reader.hasNext());
+        for(int i = 0; i < images.size(); i++) {
+            float[] expected = loader.asFloatArray(ImageIO.read(images.get(i)), ImageResizer.Layout.CHW);
+            float[] actual = Arrays.copyOfRange(batch.getFeatures(), batch.getImageOffset(i), batch.getImageOffset(i) + batch.imageLength());
+            assertArrayEquals(expected, actual, 0);
+            assertEquals(i / 3, batch.getLabel(i));
+        }
+    }
+
+    @Test
+    public void testSplitWorkers() throws Exception {
+        File dir = folder.newFolder("shards");
+        for(int i = 0; i < 5; i++)
+            writeShard(new File(dir, "c-0000" + i + ".shard"), ImageShardWriter.Format.UINT8, new int[]{1, 1, 1}, i, 1);
+
+        ImageShardSplit split = new ImageShardSplit(dir, 1, 2);
+        assertEquals(2, split.locations().length);
+        assertEquals(new File(dir, "c-00001.shard").toURI(), split.locations()[0]);
+        assertEquals(new File(dir, "c-00003.shard").toURI(), split.locations()[1]);
+    }
+
+    private static void writeShard(File file, ImageShardWriter.Format format, int[] shape, int first, int count) throws Exception {
+        int length = shape[0] * shape[1] * shape[2];
+        float[] values = new float[length];
+        try (ImageShardWriter writer = new ImageShardWriter(file, format, shape, Arrays.asList("x", "y"))) {
+            for(int image = first; image < first + count; image++) {
+                for(int j = 0; j < length; j++)
+                    values[j] = format == ImageShardWriter.Format.UINT8 ? (j == 0 ? image : image * 10 + j) : image * 10 + j + 0.25f;
+                writer.writeDecoded(values, 0, image % 2);
+            }
+        }
+    }
+
+}
@@ -22,27 +22,35 @@ package org.canova.nd4j.nlp.reader;
 
 import org.canova.api.conf.Configuration;
 import org.canova.api.io.data.IntWritable;
+import org.canova.api.io.data.SparseVectorWritable;
+import org.canova.api.records.SparseRecordBatch;
 import org.canova.api.records.reader.impl.FileRecordReader;
 import org.canova.api.split.InputSplit;
-import org.canova.api.vector.Vectorizer;
 import org.canova.api.writable.Writable;
 import org.canova.nd4j.nlp.vectorizer.TfidfVectorizer;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.List;
 
 /**
- * TFIDF record reader (wraps a tfidf vectorizer for delivering labels and conforming to the record reader interface)
+ * Reads each file of the split as a document, vectorized with tfidf.
+ *
+ * Initializing runs the fit pass: every document is read once, and only the
+ * vocab and the word/document counts are kept. The documents are then read
+ * again, lazily, one per {@link #next()} (or a bounded batch per
+ * {@link #nextBatch(SparseRecordBatch)}), so memory use doesn't grow with the corpus.
+ *
+ * Records are { sparse tfidf vector, label }, the label only if labels are appended.
  *
  * @author Adam Gibson
  */
 public class TfidfRecordReader extends FileRecordReader  {
     private TfidfVectorizer tfidfVectorizer;
-    private Collection<Collection<Writable>> records = new ArrayList<>();
-    private Iterator<Collection<Writable>> recordIter;
     private Configuration conf;
+    // false during the fit pass, where next() returns the raw documents
+    private boolean fitted = false;
 
 
     @Override
@@ -53,34 +61,54 @@ public class TfidfRecordReader extends FileRecordReader  {
     @Override
     public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
         super.initialize(conf,split);
+        fitted = false;
         tfidfVectorizer = new TfidfVectorizer();
         tfidfVectorizer.initialize(conf);
-        tfidfVectorizer.fit(this, new Vectorizer.RecordCallBack() {
-            @Override
-            public void onRecord(Collection<Writable> record) {
-                records.add(record);
-            }
-        });
-
-        recordIter = records.iterator();
+        tfidfVectorizer.fit(this);
+
+        // start over for the transform pass
+        fitted = true;
+        doInitialize(split);
     }
 
     @Override
     public Collection<Writable> next() {
-        if(recordIter == null)
-            return super.next();
-        Collection<Writable> record = recordIter.next();
+        Collection<Writable> document = super.next();
+        if(!fitted)
+            return document;
+        List<Writable> record = new ArrayList<>(2);
+        record.add(tfidfVectorizer.transformSparse(document));
         if(appendLabel)
             record.add(new IntWritable(getCurrentLabel()));
         return record;
     }
 
-    @Override
-    public boolean hasNext() {
-        //we aren't done vectorizing yet
-        if(recordIter == null)
-            return super.hasNext();
-        return recordIter.hasNext();
+    /**
+     * Vectorize the next documents into a batch, up to its capacity.
+     * Rows are labeled with the label index when labels are appended, 0 otherwise.
+     * @param batch the batch to fill, as wide as the vocab (see {@link #getVocabSize()}); cleared first
+     * @return the batch
+     */
+    public SparseRecordBatch nextBatch(SparseRecordBatch batch) {
+        batch.clear();
+        while(!batch.isFull() && hasNext()) {
+            Collection<Writable> document = super.next();
+            SparseVectorWritable vector = tfidfVectorizer.transformSparse(document);
+            batch.addRow(vector, appendLabel ? getCurrentLabel() : 0);
+        }
+        return batch;
+    }
+
+    /**
+     * The size of the tfidf vectors: the number of vocab words found by the fit pass
+     * @return the vocab size
+     */
+    public int getVocabSize() {
+        return tfidfVectorizer.getCache().numWords();
+    }
+
+    public TfidfVectorizer getTfidfVectorizer() {
+        return tfidfVectorizer;
     }
 
     @Override
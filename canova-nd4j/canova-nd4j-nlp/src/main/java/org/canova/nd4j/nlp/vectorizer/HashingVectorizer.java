@@ -0,0 +1,103 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nd4j.nlp.vectorizer;
+
+
+import org.canova.api.io.data.SparseVectorWritable;
+import org.canova.api.records.reader.RecordReader;
+import org.canova.api.writable.Writable;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ *
+ * Nd4j feature hashing vectorizer
+ *
+ * Vectors come out dense, so their width is limited to {@link #MAX_DENSE_FEATURES};
+ * wider ones are only available through {@link #transformSparse(Collection)}.
+ *
+ */
+public class HashingVectorizer extends org.canova.nlp.vectorizer.HashingVectorizer<INDArray> {
+
+    /** the widest dense vector created, 2^20 columns (8 MB a row) */
+    public final static int MAX_DENSE_FEATURES = 1 << 20;
+
+    @Override
+    public INDArray createVector(Object[] args) {
+        SparseVectorWritable vector = (SparseVectorWritable) args[0];
+        checkDenseWidth(vector.size());
+        INDArray ret = Nd4j.create(vector.size());
+        for(int i = 0; i < vector.numEntries(); i++)
+            ret.putScalar(vector.getIndex(i),vector.getValue(i));
+        return ret;
+    }
+
+    @Override
+    public INDArray fitTransform(RecordReader reader) {
+        return fitTransform(reader,null);
+    }
+
+    /**
+     * Transform every record into a row of a [numRecords, numFeatures] matrix, in a single pass.
+     * Only the sparse rows are held until the number of records is known, but the result is dense:
+     * its memory grows with numRecords * numFeatures. Large corpora are better vectorized one
+     * record at a time with {@link #transformSparse(Collection)}.
+     */
+    @Override
+    public INDArray fitTransform(RecordReader reader, RecordCallBack callBack) {
+        checkDenseWidth(getNumFeatures());
+        List<SparseVectorWritable> rows = new ArrayList<>();
+        while(reader.hasNext()) {
+            Collection<Writable> record = reader.next();
+            rows.add(transformSparse(record));
+            if(callBack != null)
+                callBack.onRecord(record);
+        }
+
+        if(rows.isEmpty())
+            throw new IllegalStateException("No records found!");
+        if((long) rows.size() * getNumFeatures() > Integer.MAX_VALUE)
+            throw new IllegalStateException(rows.size() + " records of " + getNumFeatures() + " features are too many for a dense matrix, use transformSparse");
+
+        INDArray ret = Nd4j.create(rows.size(),getNumFeatures());
+        for(int i = 0; i < rows.size(); i++) {
+            SparseVectorWritable row = rows.get(i);
+            for(int j = 0; j < row.numEntries(); j++)
+                ret.putScalar(i,row.getIndex(j),row.getValue(j));
+        }
+        return ret;
+    }
+
+    @Override
+    public INDArray transform(Collection<Writable> record) {
+        checkDenseWidth(getNumFeatures());
+        return createVector(new Object[]{transformSparse(record)});
+    }
+
+    private static void checkDenseWidth(int numFeatures) {
+        if(numFeatures > MAX_DENSE_FEATURES)
+            throw new IllegalArgumentException(numFeatures + " features are too wide for dense vectors (at most " + MAX_DENSE_FEATURES + "), use transformSparse");
+    }
+}
@@ -22,6 +22,8 @@ package org.canova.nd4j.nlp.vectorizer;
 
 
 import org.canova.api.berkeley.Counter;
+import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.writable.Writable;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -38,15 +40,17 @@ import java.util.List;
  * @author Adam Gibson
  */
 public class TfidfVectorizer extends org.canova.nlp.vectorizer.TfidfVectorizer<INDArray> {
+    /** have fitTransform read the reader twice (reset in between) instead of holding its records */
+    public final static String TWO_PASS = "org.canova.nlp.tfidf.twopass";
+    private boolean twoPass = false;
+
     @Override
     public INDArray createVector(Object[] args) {
-        INDArray ret = Nd4j.create(cache.vocabWords().size());
-        Counter<String> docFrequencies = (Counter<String>)args[0];
-        for(int i = 0; i < cache.vocabWords().size(); i++) {
-            double freq = docFrequencies.getCount(cache.wordAt(i));
-            double tfidf = cache.tfidf(cache.wordAt(i),freq);
-            ret.putScalar(i,tfidf);
-        }
+        INDArray ret = Nd4j.create(cache.numWords());
+        // only the document's own words can have a non zero tfidf
+        SparseVectorWritable vector = createSparseVector((Counter<String>)args[0]);
+        for(int i = 0; i < vector.numEntries(); i++)
+            ret.putScalar(vector.getIndex(i),vector.getValue(i));
         return ret;
     }
 
@@ -55,31 +59,65 @@ public class TfidfVectorizer extends org.canova.nlp.vectorizer.TfidfVectorizer<I
         return fitTransform(reader,null);
     }
 
+    @Override
+    public void initialize(Configuration conf) {
+        super.initialize(conf);
+        twoPass = conf.getBoolean(TWO_PASS,false);
+    }
+
+    /**
+     * Fit, then transform every record into a row of a [numDocs, vocabSize] matrix.
+     * By default the records are held in memory between the passes. With {@link #TWO_PASS}
+     * the reader is {@link RecordReader#reset()} after fitting and read again instead;
+     * only use it with readers that really start over on reset.
+     * The callback, if any, sees each record during the transform pass.
+     */
     @Override
     public INDArray fitTransform(RecordReader reader, RecordCallBack callBack) {
         final List<Collection<Writable>> records = new ArrayList<>();
 
-        fit(reader,new RecordCallBack() {
-            @Override
-            public void onRecord(Collection<Writable> record) {
-                records.add(record);
-            }
-        });
+        if(twoPass) {
+            fit(reader);
+            reader.reset();
+        }
+        else {
+            fit(reader,new RecordCallBack() {
+                @Override
+                public void onRecord(Collection<Writable> record) {
+                    records.add(record);
+                }
+            });
+        }
 
-        if(records.isEmpty())
+        if(cache.numDocs() < 1)
             throw new IllegalStateException("No records found!");
 
-        INDArray ret = Nd4j.create(records.size(),cache.vocabWords().size());
+        int numDocs = (int) cache.numDocs();
+        INDArray ret = Nd4j.create(numDocs,cache.numWords());
         int i = 0;
-        for(Collection<Writable> record : records) {
-            ret.putRow(i++, transform(record));
-            if(callBack != null)
-                callBack.onRecord(record);
+        if(twoPass) {
+            while(reader.hasNext()) {
+                if(i == numDocs)
+                    throw new IllegalStateException("Reader returned more records after reset than the " + numDocs + " it was fit on");
+                transformRow(ret, i++, reader.next(), callBack);
+            }
+            if(i != numDocs)
+                throw new IllegalStateException("Reader returned " + i + " records after reset, but was fit on " + numDocs + "; it can't be read twice");
+        }
+        else {
+            for(Collection<Writable> record : records)
+                transformRow(ret, i++, record, callBack);
         }
 
         return ret;
     }
 
+    private void transformRow(INDArray ret, int row, Collection<Writable> record, RecordCallBack callBack) {
+        ret.putRow(row, transform(record));
+        if(callBack != null)
+            callBack.onRecord(record);
+    }
+
     @Override
     public INDArray transform(Collection<Writable> record) {
         Counter<String> wordFrequencies = wordFrequenciesForRecord(record);
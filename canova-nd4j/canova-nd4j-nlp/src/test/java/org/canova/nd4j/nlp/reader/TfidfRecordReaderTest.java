@@ -21,6 +21,8 @@
 package org.canova.nd4j.nlp.reader;
 
 import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.SparseVectorWritable;
+import org.canova.api.records.SparseRecordBatch;
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.split.FileSplit;
 import org.canova.api.util.ClassPathResource;
@@ -31,6 +33,7 @@ import org.junit.Test;
 import java.util.Collection;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Adam Gibson
@@ -49,10 +52,30 @@ public class TfidfRecordReaderTest {
         int count = 0;
         while(reader.hasNext()) {
             Collection<Writable> record = reader.next();
+            assertEquals(2,record.size());
+            SparseVectorWritable vector = (SparseVectorWritable) record.iterator().next();
+            assertEquals(reader.getVocabSize(),vector.size());
             count++;
         }
         assertEquals(3,reader.getLabels().size());
         assertEquals(3,count);
     }
 
+    @Test
+    public void testNextBatch() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setInt(TfidfVectorizer.MIN_WORD_FREQUENCY, 1);
+        conf.setBoolean(RecordReader.APPEND_LABEL, true);
+        TfidfRecordReader reader = new TfidfRecordReader();
+        reader.initialize(conf, new FileSplit(new ClassPathResource("labeled").getFile()));
+        SparseRecordBatch batch = new SparseRecordBatch(2, reader.getVocabSize());
+        int count = 0;
+        while(reader.hasNext()) {
+            reader.nextBatch(batch);
+            assertTrue(batch.numRows() <= 2);
+            count += batch.numRows();
+        }
+        assertEquals(3,count);
+    }
+
 }
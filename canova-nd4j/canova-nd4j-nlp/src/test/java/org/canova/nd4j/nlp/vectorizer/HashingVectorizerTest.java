@@ -0,0 +1,76 @@
+package org.canova.nd4j.nlp.vectorizer;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.SparseVectorWritable;
+import org.canova.api.io.data.Text;
+import org.canova.api.records.reader.impl.CollectionRecordReader;
+import org.canova.api.writable.Writable;
+import org.canova.api.writable.Writables;
+import org.canova.nlp.vectorizer.FeatureHasher;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HashingVectorizerTest {
+
+    @Test
+    public void testTransformWithoutFit() {
+        HashingVectorizer vectorizer = new HashingVectorizer();
+        Configuration conf = new Configuration();
+        conf.setInt(FeatureHasher.NUM_FEATURES,1 << 16);
+        vectorizer.initialize(conf);
+
+        Collection<Writable> record = Collections.<Writable>singletonList(new Text("Testing one two."));
+        SparseVectorWritable vector = vectorizer.transformSparse(record);
+        assertEquals(1 << 16,vector.size());
+        assertEquals(vector.numEntries(),vectorizer.transformSparse(record).numEntries());
+        assertArrayEquals(vector.toArray(),vectorizer.transformSparse(record).toArray(),0.0);
+    }
+
+    @Test
+    public void testFitOnlyReadsRecords() {
+        HashingVectorizer vectorizer = new HashingVectorizer();
+        Configuration conf = new Configuration();
+        vectorizer.initialize(conf);
+        CollectionRecordReader reader = new CollectionRecordReader(Writables.writables(Arrays.asList("Testing one.", "Testing 2.")));
+        final int[] seen = {0};
+        vectorizer.fit(reader,new HashingVectorizer.RecordCallBack() {
+            @Override
+            public void onRecord(Collection<Writable> record) {
+                seen[0]++;
+            }
+        });
+        assertEquals(2,seen[0]);
+        assertEquals(FeatureHasher.DEFAULT_NUM_FEATURES,vectorizer.getNumFeatures());
+    }
+
+    @Test
+    public void testDenseWidthLimit() {
+        HashingVectorizer vectorizer = new HashingVectorizer();
+        Configuration conf = new Configuration();
+        conf.setInt(FeatureHasher.NUM_FEATURES,HashingVectorizer.MAX_DENSE_FEATURES + 1);
+        vectorizer.initialize(conf);
+
+        Collection<Writable> record = Collections.<Writable>singletonList(new Text("Testing one two."));
+        // sparse vectors can be as wide as needed
+        assertEquals(HashingVectorizer.MAX_DENSE_FEATURES + 1,vectorizer.transformSparse(record).size());
+        try {
+            vectorizer.transform(record);
+            fail("Expected dense vectors that wide to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            vectorizer.fitTransform(new CollectionRecordReader(Writables.writables(Arrays.asList("Testing one."))));
+            fail("Expected dense matrices that wide to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -26,13 +26,22 @@ import org.canova.api.conf.Configuration;
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.records.reader.impl.CollectionRecordReader;
 import org.canova.api.writable.Writables;
+import org.canova.nlp.metadata.DefaultVocabCache;
+import org.canova.nlp.metadata.VocabCache;
+import org.canova.nlp.tokenization.tokenizer.Tokenizer;
+import org.canova.nlp.tokenization.tokenizerfactory.DefaultTokenizerFactory;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Created by agibsonccc on 11/23/14.
@@ -55,4 +64,154 @@ public class TfidfVectorizerTest {
         assertEquals(2,n.rows());
     }
 
+    @Test
+    public void testTwoPassFitTransform() {
+        TfidfVectorizer vectorizer = new TfidfVectorizer();
+        Configuration conf = new Configuration();
+        conf.setInt(TfidfVectorizer.MIN_WORD_FREQUENCY,1);
+        conf.setBoolean(TfidfVectorizer.TWO_PASS,true);
+        vectorizer.initialize(conf);
+        RecordReader reader = new CollectionRecordReader(Writables.writables(Arrays.asList("Testing one.", "Testing 2.")));
+        INDArray n = vectorizer.fitTransform(reader);
+        assertEquals(3,n.columns());
+        assertEquals(2,n.rows());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTwoPassRejectsReaderThatCantReset() {
+        TfidfVectorizer vectorizer = new TfidfVectorizer();
+        Configuration conf = new Configuration();
+        conf.setInt(TfidfVectorizer.MIN_WORD_FREQUENCY,1);
+        conf.setBoolean(TfidfVectorizer.TWO_PASS,true);
+        vectorizer.initialize(conf);
+        RecordReader reader = new CollectionRecordReader(Writables.writables(Arrays.asList("Testing one.", "Testing 2."))) {
+            @Override
+            public void reset() {
+                // like a reader over a consumed stream
+            }
+        };
+        vectorizer.fitTransform(reader);
+    }
+
+    @Test
+    public void testConcurrentFitMatchesSingleThreaded() {
+        List<String> documents = new ArrayList<>();
+        for(int i = 0; i < 500; i++)
+            documents.add("word" + (i % 7) + " word" + (i % 13) + " common");
+
+        TfidfVectorizer single = fit(documents, 1, 1);
+        TfidfVectorizer concurrent = fit(documents, 4, 1);
+        VocabCache expected = single.getCache();
+        VocabCache actual = concurrent.getCache();
+        assertEquals(500,actual.numDocs(),0.0);
+        assertEquals(expected.numWords(),actual.numWords());
+        for(int i = 0; i < expected.numWords(); i++) {
+            String word = expected.wordAt(i);
+            assertEquals(word,actual.wordAt(i));
+            assertEquals(i,actual.indexOf(word));
+            assertEquals(expected.wordFrequency(word),actual.wordFrequency(word),0.0);
+            assertEquals(expected.idf(word),actual.idf(word),0.0);
+        }
+        // common is in every document, once
+        assertEquals(500,actual.idf("common"),0.0);
+        assertEquals(-1,actual.indexOf("missing"));
+    }
+
+    @Test
+    public void testConcurrentFitMatchesDefaultVocabCache() {
+        List<String> documents = new ArrayList<>();
+        for(int i = 0; i < 500; i++)
+            documents.add("word" + (i % 7) + " word" + (i % 13) + " common" + (i % 50 == 0 ? " rare" + i : ""));
+
+        VocabCache expected = countSequentially(documents, 3);
+        VocabCache actual = fit(documents, 4, 3).getCache();
+        assertEquals(expected.numDocs(),actual.numDocs(),0.0);
+        assertEquals(expected.numWords(),actual.numWords());
+        for(int i = 0; i < expected.numWords(); i++) {
+            String word = expected.wordAt(i);
+            assertTrue(word,actual.indexOf(word) >= 0);
+            assertEquals(expected.wordFrequency(word),actual.wordFrequency(word),0.0);
+            assertEquals(expected.idf(word),actual.idf(word),0.0);
+        }
+        // the rare words are seen once each, under the min word frequency
+        assertEquals(-1,actual.indexOf("rare0"));
+    }
+
+    @Test
+    public void testDoWithTokensAfterFitKeepsCounting() {
+        TfidfVectorizer vectorizer = fit(Arrays.asList("a b", "b c", "c d"), 2, 1);
+        VocabCache fitted = vectorizer.getCache();
+        vectorizer.doWithTokens(new DefaultTokenizerFactory().create("b b"));
+        VocabCache cache = vectorizer.getCache();
+        assertEquals(fitted.numWords(),cache.numWords());
+        for(int i = 0; i < fitted.numWords(); i++)
+            assertEquals(fitted.wordAt(i),cache.wordAt(i));
+        assertEquals(fitted.wordFrequency("b") + 2,cache.wordFrequency("b"),0.0);
+        assertEquals(fitted.idf("b") + 1,cache.idf("b"),0.0);
+        assertEquals(fitted.wordFrequency("c"),cache.wordFrequency("c"),0.0);
+    }
+
+    @Test
+    public void testFitIsSingleThreadedByDefault() {
+        TfidfVectorizer vectorizer = new TfidfVectorizer();
+        Configuration conf = new Configuration();
+        conf.setInt(TfidfVectorizer.MIN_WORD_FREQUENCY,1);
+        conf.set(TfidfVectorizer.TOKENIZER,ThreadRecordingTokenizerFactory.class.getName());
+        vectorizer.initialize(conf);
+        ThreadRecordingTokenizerFactory.THREADS.clear();
+        List<String> documents = new ArrayList<>();
+        for(int i = 0; i < 100; i++)
+            documents.add("word" + i);
+        vectorizer.fit(new CollectionRecordReader(Writables.writables(documents)));
+        assertEquals(100,vectorizer.getCache().numWords());
+        assertEquals(Collections.singleton(Thread.currentThread()),ThreadRecordingTokenizerFactory.THREADS);
+    }
+
+    @Test
+    public void testMinWordFrequencyPrunesVocab() {
+        TfidfVectorizer vectorizer = fit(Arrays.asList("rare common", "other common"), 2, 2);
+        assertEquals(1,vectorizer.getCache().numWords());
+        assertEquals("common",vectorizer.getCache().wordAt(0));
+    }
+
+    private TfidfVectorizer fit(List<String> documents, int numThreads, int minWordFrequency) {
+        TfidfVectorizer vectorizer = new TfidfVectorizer();
+        Configuration conf = new Configuration();
+        conf.setInt(TfidfVectorizer.MIN_WORD_FREQUENCY,minWordFrequency);
+        conf.setInt(TfidfVectorizer.NUM_THREADS,numThreads);
+        vectorizer.initialize(conf);
+        vectorizer.fit(new CollectionRecordReader(Writables.writables(documents)));
+        return vectorizer;
+    }
+
+    // counts the way fit did before it was concurrent: one document at a time into a DefaultVocabCache
+    private VocabCache countSequentially(List<String> documents, int minWordFrequency) {
+        final DefaultVocabCache expected = new DefaultVocabCache(minWordFrequency);
+        TfidfVectorizer vectorizer = new TfidfVectorizer() {
+            @Override
+            public void fit(RecordReader reader, RecordCallBack callBack) {
+                cache = expected;
+                while(reader.hasNext()) {
+                    cache.incrementNumDocs(1);
+                    doWithTokens(tokenizerFactory.create(toString(reader.next())));
+                }
+            }
+        };
+        Configuration conf = new Configuration();
+        conf.setInt(TfidfVectorizer.MIN_WORD_FREQUENCY,minWordFrequency);
+        vectorizer.initialize(conf);
+        vectorizer.fit(new CollectionRecordReader(Writables.writables(documents)));
+        return expected;
+    }
+
+    public static class ThreadRecordingTokenizerFactory extends DefaultTokenizerFactory {
+        private static final Set<Thread> THREADS = Collections.synchronizedSet(new HashSet<Thread>());
+
+        @Override
+        public Tokenizer create(String toTokenize) {
+            THREADS.add(Thread.currentThread());
+            return super.create(toTokenize);
+        }
+    }
+
 }
@@ -0,0 +1,140 @@
+package org.canova.spark.csv;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import org.canova.api.formats.output.OutputFormat;
+import org.canova.api.writable.Writable;
+import org.canova.cli.csv.schema.CSVInputSchema;
+import org.canova.cli.csv.statistics.DatasetSummaryStatistics;
+import org.canova.cli.subcommands.Vectorize;
+import org.canova.spark.functions.WriteRecordsPartitionFunction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Collection;
+import java.util.List;
+
+/**CSVSparkVectorizer: the CLI's CSV schema vectorization ({@link org.canova.cli.vectorization.CSVVectorizationEngine}),
+ * as a Spark job over data too large for one machine.<br>
+ * - The column statistics are collected per partition ({@link CSVStatisticsFunction}) and merged as a tree
+ *   ({@link org.apache.spark.api.java.JavaRDD#treeReduce(org.apache.spark.api.java.function.Function2)}), so the driver
+ *   only ever sees one summary per partition. Label IDs come out the same as with the CLI's serial pass.<br>
+ * - The finished schema is broadcast, and each partition is vectorized lazily ({@link CSVVectorizeFunction}).<br>
+ * - The vectors can be written out per partition, in any Canova OutputFormat
+ *   ({@link WriteRecordsPartitionFunction}).<br>
+ * The input is read twice (once per pass): persist it first if it is expensive to compute.
+ * If there is a header, only the first line of the first partition is skipped: use a single input file.
+ * <br><br>
+ * <b>Example usage</b>:
+ * <pre>
+ * <code>JavaSparkContext sc = ...;
+ * CSVSparkVectorizer vectorizer = new CSVSparkVectorizer(CSVSparkVectorizer.readSchema(sc, "hdfs:///schemas/logs.txt"), false);
+ * vectorizer.vectorize(sc.textFile("hdfs:///logs/"), "hdfs:///vectors/", SVMLightOutputFormat.class);
+ * </code>
+ * </pre>
+ */
+public class CSVSparkVectorizer {
+    private final String schemaText;
+    private final boolean skipHeader;
+
+    /**
+     * @param schemaText the schema, as in a CLI schema file
+     * @param skipHeader whether the first line of the input is a header
+     */
+    public CSVSparkVectorizer(String schemaText, boolean skipHeader){
+        this.schemaText = schemaText;
+        this.skipHeader = skipHeader;
+    }
+
+    /**Read a schema file from any file system Hadoop knows about (local, HDFS, ...)
+     * @param sc Spark context
+     * @param schemaPath the schema file
+     * @return the schema text
+     */
+    public static String readSchema(JavaSparkContext sc, String schemaPath) throws IOException {
+        Path path = new Path(schemaPath);
+        FileSystem fs = path.getFileSystem(sc.hadoopConfiguration());
+        try(InputStream in = fs.open(path)){
+            return IOUtils.toString(in, "UTF-8");
+        }
+    }
+
+    /**First pass: collect the column statistics of all the lines into the schema
+     * @param lines the CSV lines, in input order
+     * @return the schema, with its statistics
+     */
+    public CSVInputSchema collectStatistics(JavaRDD<String> lines) throws Exception {
+        // checks the schema on the driver, before any task is started
+        CSVInputSchema schema = new CSVInputSchema();
+        schema.parseSchema(new StringReader(schemaText));
+
+        DatasetSummaryStatistics stats = lines
+                .mapPartitionsWithIndex(new CSVStatisticsFunction(new SerializableCSVSchema(schemaText, null), skipHeader), false)
+                .treeReduce(new MergeStatisticsFunction());
+
+        schema.mergeStatistics(stats);
+        schema.computeDatasetStatistics();
+        return schema;
+    }
+
+    /**Second pass: vectorize the lines with a schema whose statistics have already been collected
+     * (by {@link #collectStatistics(JavaRDD)}, or read back from a CLI statistics sidecar)
+     * @param lines the CSV lines
+     * @param schema the schema, with its statistics
+     * @return the vectors, one per non blank line
+     */
+    public JavaRDD<Collection<Writable>> vectorize(JavaRDD<String> lines, CSVInputSchema schema) throws IOException {
+        JavaSparkContext sc = JavaSparkContext.fromSparkContext(lines.context());
+        Broadcast<SerializableCSVSchema> broadcast = sc.broadcast(SerializableCSVSchema.of(schemaText, schema));
+        return lines.mapPartitionsWithIndex(new CSVVectorizeFunction(broadcast, skipHeader), true);
+    }
+
+    /**Both passes: collect the statistics, then vectorize the lines
+     * @param lines the CSV lines, in input order
+     * @return the vectors, one per non blank line
+     */
+    public JavaRDD<Collection<Writable>> vectorize(JavaRDD<String> lines) throws Exception {
+        return vectorize(lines, collectStatistics(lines));
+    }
+
+    /**Both passes, writing the vectors of each partition to {@code outputDir/part-NNNNN}
+     * @param lines the CSV lines, in input order
+     * @param outputDir the output directory, as a Hadoop path
+     * @param outputFormat the output format, such as {@link org.canova.api.formats.output.impl.SVMLightOutputFormat}
+     * @return the files written
+     */
+    public List<String> vectorize(JavaRDD<String> lines, String outputDir, Class<? extends OutputFormat> outputFormat) throws Exception {
+        return vectorize(lines)
+                .mapPartitionsWithIndex(new WriteRecordsPartitionFunction(outputDir, outputFormat), false)
+                .collect();
+    }
+
+    /**
+     * Usage: CSVSparkVectorizer schemaFile input outputDir [outputFormatClass] [skipHeader]<br>
+     * The output format defaults to {@link Vectorize#DEFAULT_OUTPUT_FORMAT_CLASSNAME}
+     */
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) throws Exception {
+        if(args.length < 3){
+            System.err.println("Usage: CSVSparkVectorizer schemaFile input outputDir [outputFormatClass] [skipHeader]");
+            System.exit(1);
+        }
+        String outputFormat = args.length > 3 ? args[3] : Vectorize.DEFAULT_OUTPUT_FORMAT_CLASSNAME;
+        boolean skipHeader = args.length > 4 && Boolean.parseBoolean(args[4]);
+
+        JavaSparkContext sc = new JavaSparkContext(new SparkConf().setAppName("CSVSparkVectorizer"));
+        try {
+            CSVSparkVectorizer vectorizer = new CSVSparkVectorizer(readSchema(sc, args[0]), skipHeader);
+            List<String> files = vectorizer.vectorize(sc.textFile(args[1]), args[2], (Class<? extends OutputFormat>) Class.forName(outputFormat));
+            System.out.println("Wrote " + files.size() + " files to " + args[2]);
+        } finally {
+            sc.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.canova.spark.csv;
+
+import org.apache.spark.api.java.function.Function2;
+import org.canova.cli.csv.schema.CSVInputSchema;
+import org.canova.cli.csv.statistics.DatasetSummaryStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+/**First pass of the CSV schema vectorization: collects the column statistics of one partition of CSV lines
+ * (via {@link org.apache.spark.api.java.JavaRDD#mapPartitionsWithIndex(Function2, boolean)}) into a single
+ * {@link DatasetSummaryStatistics}.<br>
+ * The statistics of partition i are positioned at i * 2^40, so the partition statistics can be merged in any order
+ * (see {@link MergeStatisticsFunction}) and still give the label IDs of a serial pass over the data.<br>
+ * Bad records are logged and skipped, as in the CLI.
+ */
+public class CSVStatisticsFunction implements Function2<Integer,Iterator<String>,Iterator<DatasetSummaryStatistics>> {
+    private static final Logger log = LoggerFactory.getLogger(CSVStatisticsFunction.class);
+    /** Positions of partition i start at i << PARTITION_SHIFT: room for 2^40 lines per partition */
+    public static final int PARTITION_SHIFT = 40;
+
+    private final SerializableCSVSchema schema;
+    private final boolean skipHeader;
+
+    /**
+     * @param schema the schema to collect statistics for; any statistics it already has are ignored
+     * @param skipHeader whether the first line of the first partition is a header
+     */
+    public CSVStatisticsFunction(SerializableCSVSchema schema, boolean skipHeader){
+        this.schema = schema;
+        this.skipHeader = skipHeader;
+    }
+
+    @Override
+    public Iterator<DatasetSummaryStatistics> call(Integer partition, Iterator<String> lines) throws Exception {
+        CSVInputSchema inputSchema = schema.getSchema();
+        DatasetSummaryStatistics stats = inputSchema.createStatistics((long) partition << PARTITION_SHIFT);
+
+        if(skipHeader && partition == 0 && lines.hasNext()) lines.next();
+
+        while(lines.hasNext()){
+            String line = lines.next();
+            try {
+                inputSchema.evaluateInputRecord(line, stats);
+            } catch (Exception e){
+                log.warn("Skipping record while collecting statistics: " + e.getMessage());
+            }
+        }
+        return Collections.singletonList(stats).iterator();
+    }
+}
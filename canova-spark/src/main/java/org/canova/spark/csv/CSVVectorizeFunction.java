@@ -0,0 +1,64 @@
+package org.canova.spark.csv;
+
+import org.apache.spark.api.java.function.Function2;
+import org.apache.spark.broadcast.Broadcast;
+import org.canova.api.writable.Writable;
+import org.canova.cli.csv.schema.CSVInputSchema;
+import org.canova.cli.vectorization.CSVVectorizationEngine;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**Second pass of the CSV schema vectorization: vectorizes one partition of CSV lines
+ * (via {@link org.apache.spark.api.java.JavaRDD#mapPartitionsWithIndex(Function2, boolean)}) with
+ * {@link CSVVectorizationEngine#vectorizeToWritable(String, String, CSVInputSchema)}, using the broadcast schema.<br>
+ * Lines are vectorized lazily, as Spark asks for them; blank lines are dropped.
+ */
+public class CSVVectorizeFunction implements Function2<Integer,Iterator<String>,Iterator<Collection<Writable>>> {
+    private final Broadcast<SerializableCSVSchema> schema;
+    private final boolean skipHeader;
+
+    /**
+     * @param schema the schema, with the statistics collected by the first pass
+     * @param skipHeader whether the first line of the first partition is a header
+     */
+    public CSVVectorizeFunction(Broadcast<SerializableCSVSchema> schema, boolean skipHeader){
+        this.schema = schema;
+        this.skipHeader = skipHeader;
+    }
+
+    @Override
+    public Iterator<Collection<Writable>> call(Integer partition, final Iterator<String> lines) throws Exception {
+        final CSVInputSchema inputSchema = schema.value().getSchema();
+        final CSVVectorizationEngine engine = new CSVVectorizationEngine();
+
+        if(skipHeader && partition == 0 && lines.hasNext()) lines.next();
+
+        return new Iterator<Collection<Writable>>() {
+            private Collection<Writable> next;
+
+            @Override
+            public boolean hasNext() {
+                while(next == null && lines.hasNext()){
+                    String line = lines.next();
+                    if(!line.isEmpty()) next = engine.vectorizeToWritable("", line, inputSchema);
+                }
+                return next != null;
+            }
+
+            @Override
+            public Collection<Writable> next() {
+                if(!hasNext()) throw new NoSuchElementException();
+                Collection<Writable> ret = next;
+                next = null;
+                return ret;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -0,0 +1,15 @@
+package org.canova.spark.csv;
+
+import org.apache.spark.api.java.function.Function2;
+import org.canova.cli.csv.statistics.DatasetSummaryStatistics;
+
+/**Merges two positioned {@link DatasetSummaryStatistics} (as created by {@link CSVStatisticsFunction}), for use in
+ * {@link org.apache.spark.api.java.JavaRDD#treeReduce(Function2)}. The order of the merges does not matter.
+ */
+public class MergeStatisticsFunction implements Function2<DatasetSummaryStatistics,DatasetSummaryStatistics,DatasetSummaryStatistics> {
+    @Override
+    public DatasetSummaryStatistics call(DatasetSummaryStatistics first, DatasetSummaryStatistics second) throws Exception {
+        first.merge(second);
+        return first;
+    }
+}
@@ -0,0 +1,63 @@
+package org.canova.spark.csv;
+
+import org.canova.cli.csv.schema.CSVInputSchema;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringReader;
+
+/**A {@link CSVInputSchema}, with its collected statistics, in a form that can be broadcast to the executors.<br>
+ * Holds the schema text plus the statistics written by {@link CSVInputSchema#writeStatistics(java.io.DataOutput)};
+ * each executor rebuilds the schema from these once, the first time it is asked for it.
+ */
+public class SerializableCSVSchema implements Serializable {
+    private final String schemaText;
+    private final byte[] statistics;
+    private transient CSVInputSchema schema;
+
+    /**
+     * @param schemaText the schema, as in a schema file
+     * @param statistics the statistics, written by {@link CSVInputSchema#writeStatistics(java.io.DataOutput)}; null if not yet collected
+     */
+    public SerializableCSVSchema(String schemaText, byte[] statistics){
+        this.schemaText = schemaText;
+        this.statistics = statistics;
+    }
+
+    /**Capture a schema along with the statistics collected into it
+     * @param schemaText the schema text the schema was parsed from
+     * @param schema the schema, with its statistics already collected
+     */
+    public static SerializableCSVSchema of(String schemaText, CSVInputSchema schema) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(DataOutputStream out = new DataOutputStream(bytes)){
+            schema.writeStatistics(out);
+        }
+        return new SerializableCSVSchema(schemaText, bytes.toByteArray());
+    }
+
+    public String getSchemaText(){
+        return schemaText;
+    }
+
+    /** The schema, with its statistics if it has any. Built once per JVM (per deserialized copy) and then shared:
+     * don't collect further statistics into it */
+    public synchronized CSVInputSchema getSchema() throws Exception {
+        if(schema == null){
+            CSVInputSchema parsed = new CSVInputSchema();
+            parsed.parseSchema(new StringReader(schemaText));
+            if(statistics != null){
+                try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(statistics))){
+                    parsed.readStatistics(in);
+                }
+                parsed.computeDatasetStatistics();
+            }
+            schema = parsed;
+        }
+        return schema;
+    }
+}
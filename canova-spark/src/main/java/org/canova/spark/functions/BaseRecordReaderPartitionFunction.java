@@ -0,0 +1,106 @@
+package org.canova.spark.functions;
+
+import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.input.PortableDataStream;
+import org.canova.api.records.reader.RecordReader;
+import org.canova.api.split.InputStreamInputSplit;
+import scala.Tuple2;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**Base for functions that run a RecordReader over all the files of a partition (via
+ * {@link org.apache.spark.api.java.JavaPairRDD#mapPartitions(FlatMapFunction)}).<br>
+ * Each file is streamed through the RecordReader (as an {@link InputStreamInputSplit}) one at a time, and output is
+ * produced lazily as Spark asks for it: files are never copied into a byte[], and only the reader's own buffers
+ * are held in memory. Readers used this way must support {@link InputStreamInputSplit}.
+ * @param <T> the type of output
+ */
+public abstract class BaseRecordReaderPartitionFunction<T> implements FlatMapFunction<Iterator<Tuple2<String,PortableDataStream>>,T> {
+    protected final RecordReader recordReader;
+
+    protected BaseRecordReaderPartitionFunction(RecordReader recordReader){
+        this.recordReader = recordReader;
+    }
+
+    @Override
+    public Iterable<T> call(final Iterator<Tuple2<String, PortableDataStream>> files) throws Exception {
+        final Records records = new Records(files);
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return records;
+            }
+        };
+    }
+
+    /** Read the next output from the partition. Only called when {@link Records#hasNextRecord()} is true */
+    protected abstract T read(Records records) throws IOException;
+
+    /** The records of all files in a partition, read through the RecordReader */
+    protected class Records implements Iterator<T> {
+        private final Iterator<Tuple2<String,PortableDataStream>> files;
+        private DataInputStream current;
+
+        private Records(Iterator<Tuple2<String,PortableDataStream>> files){
+            this.files = files;
+        }
+
+        /** The RecordReader, positioned in the current file */
+        public RecordReader reader(){
+            return recordReader;
+        }
+
+        /** Whether the RecordReader has another record, moving on to the next file (if any) when the current one runs out.
+         * The RecordReader may be re-initialized by this call */
+        public boolean hasNextRecord(){
+            try {
+                while(current == null || !recordReader.hasNext()){
+                    closeCurrent();
+                    if(!files.hasNext()) return false;
+                    Tuple2<String,PortableDataStream> file = files.next();
+                    current = file._2().open();
+                    recordReader.initialize(new InputStreamInputSplit(current, new URI(file._1())));
+                }
+            } catch(IOException | URISyntaxException e){
+                throw new IllegalStateException("Unable to read partition file", e);
+            } catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reading partition file", e);
+            }
+            return true;
+        }
+
+        private void closeCurrent() throws IOException {
+            if(current != null){
+                recordReader.close();
+                current.close();
+                current = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNextRecord();
+        }
+
+        @Override
+        public T next() {
+            if(!hasNextRecord()) throw new NoSuchElementException("No more records in partition");
+            try {
+                return read(this);
+            } catch(IOException e){
+                throw new IllegalStateException("Unable to read partition file", e);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.canova.spark.functions;
+
+import org.canova.api.records.RecordBatch;
+import org.canova.api.records.reader.BatchRecordReader;
+import org.canova.api.records.reader.RecordReader;
+
+/**BatchRecordReaderPartitionFunction: Given a RecordReader, stream all files of a partition through it, producing
+ * {@link RecordBatch}es of up to batchSize records, stored column-wise in primitive arrays.<br>
+ * A {@link BatchRecordReader} fills batches directly, without creating a Writable per value; its batches don't span files,
+ * so the last batch of each file may be smaller. Other RecordReaders are batched record by record, across files.<br>
+ * Usage: {@code JavaRDD<RecordBatch> batches = sc.binaryFiles(path).mapPartitions(new BatchRecordReaderPartitionFunction(reader, 1024));}
+ */
+public class BatchRecordReaderPartitionFunction extends BaseRecordReaderPartitionFunction<RecordBatch> {
+    private final int batchSize;
+
+    public BatchRecordReaderPartitionFunction(RecordReader recordReader, int batchSize){
+        super(recordReader);
+        if(batchSize < 1) throw new IllegalArgumentException("Batch size must be positive");
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    protected RecordBatch read(Records records) {
+        //A new batch each time: Spark may hold on to earlier ones
+        if(recordReader instanceof BatchRecordReader){
+            return ((BatchRecordReader) recordReader).nextBatch(batchSize);
+        }
+
+        RecordBatch batch = new RecordBatch(batchSize);
+        while(!batch.isFull() && records.hasNextRecord()){
+            batch.addRecord(records.reader().next());
+        }
+        return batch;
+    }
+}
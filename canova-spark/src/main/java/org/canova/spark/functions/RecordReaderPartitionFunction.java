@@ -0,0 +1,23 @@
+package org.canova.spark.functions;
+
+import org.canova.api.records.reader.RecordReader;
+import org.canova.api.writable.Writable;
+
+import java.util.Collection;
+
+/**RecordReaderPartitionFunction: Given a RecordReader, stream all files of a partition through it, producing one
+ * Collection<Writable> per record (i.e., potentially many per file), unlike {@link RecordReaderFunction} which produces
+ * one per file.<br>
+ * Usage: {@code JavaRDD<Collection<Writable>> records = sc.binaryFiles(path).mapPartitions(new RecordReaderPartitionFunction(reader));}
+ */
+public class RecordReaderPartitionFunction extends BaseRecordReaderPartitionFunction<Collection<Writable>> {
+
+    public RecordReaderPartitionFunction(RecordReader recordReader){
+        super(recordReader);
+    }
+
+    @Override
+    protected Collection<Writable> read(Records records) {
+        return records.reader().next();
+    }
+}
@@ -0,0 +1,57 @@
+package org.canova.spark.functions;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.api.java.function.Function2;
+import org.canova.api.conf.Configuration;
+import org.canova.api.formats.output.OutputFormat;
+import org.canova.api.records.writer.RecordWriter;
+import org.canova.api.writable.Writable;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**Writes each partition of records to its own file (via
+ * {@link org.apache.spark.api.java.JavaRDD#mapPartitionsWithIndex(Function2, boolean)}), in any Canova
+ * {@link OutputFormat}: SVMLight, CSV, binary etc.<br>
+ * Canova's RecordWriters write to local files, so each partition is first written to a local temp file, which is then
+ * moved to {@code outputDir/part-NNNNN} on whatever file system the output path is on (HDFS, for example).<br>
+ * Returns the path of the file written, one per partition.
+ */
+public class WriteRecordsPartitionFunction implements Function2<Integer,Iterator<Collection<Writable>>,Iterator<String>> {
+    private final String outputDir;
+    private final Class<? extends OutputFormat> outputFormat;
+
+    /**
+     * @param outputDir the output directory, as a Hadoop path
+     * @param outputFormat the output format; needs a public no-arg constructor
+     */
+    public WriteRecordsPartitionFunction(String outputDir, Class<? extends OutputFormat> outputFormat){
+        this.outputDir = outputDir;
+        this.outputFormat = outputFormat;
+    }
+
+    @Override
+    public Iterator<String> call(Integer partition, Iterator<Collection<Writable>> records) throws Exception {
+        File local = File.createTempFile("canova-part-" + partition, ".tmp");
+        try {
+            Configuration conf = new Configuration();
+            conf.set(OutputFormat.OUTPUT_PATH, local.getAbsolutePath());
+            RecordWriter writer = outputFormat.newInstance().createWriter(conf);
+            try {
+                while(records.hasNext()) writer.write(records.next());
+            } finally {
+                writer.close();
+            }
+
+            Path dest = new Path(outputDir, String.format("part-%05d", partition));
+            FileSystem fs = dest.getFileSystem(new org.apache.hadoop.conf.Configuration());
+            fs.copyFromLocalFile(true, true, new Path(local.getAbsolutePath()), dest);
+            return Collections.singletonList(dest.toString()).iterator();
+        } finally {
+            local.delete();
+        }
+    }
+}
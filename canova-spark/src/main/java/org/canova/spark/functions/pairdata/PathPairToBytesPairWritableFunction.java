@@ -0,0 +1,43 @@
+package org.canova.spark.functions.pairdata;
+
+import com.google.common.base.Optional;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.api.java.function.PairFunction;
+import scala.Tuple2;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/** A function to read a pair of files, given as (key, (first path, second path)) from a join on the key, and combine
+ * their contents into a BytesPairWritable. The files are read here, through the Hadoop FileSystem of each path: used
+ * just before writing, the file contents never go through a shuffle. A missing path gives a null in the BytesPairWritable
+ * @see org.canova.spark.util.CanovaSparkUtil#combineFilesForSequenceFileJoin(JavaSparkContext, String, String, PathToKeyConverter, PathToKeyConverter)
+ */
+public class PathPairToBytesPairWritableFunction implements PairFunction<Tuple2<String, Tuple2<Optional<String>, Optional<String>>>, Text, BytesPairWritable> {
+
+    private transient Configuration conf;
+
+    @Override
+    public Tuple2<Text, BytesPairWritable> call(Tuple2<String, Tuple2<Optional<String>, Optional<String>>> in) throws Exception {
+        String firstOrigPath = in._2()._1().orNull();
+        String secondOrigPath = in._2()._2().orNull();
+        byte[] first = read(firstOrigPath);
+        byte[] second = read(secondOrigPath);
+        return new Tuple2<>(new Text(in._1()), new BytesPairWritable(first, second, firstOrigPath, secondOrigPath));
+    }
+
+    private byte[] read(String path) throws IOException {
+        if(path == null) return null;
+        if(conf == null) conf = new Configuration();
+        Path p = new Path(path);
+        FileSystem fs = p.getFileSystem(conf);
+        try(InputStream in = fs.open(p)){
+            return IOUtils.toByteArray(in);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.canova.spark.functions.pairdata;
+
+import org.apache.spark.api.java.function.PairFunction;
+import scala.Tuple2;
+
+/** Given a path, map it to a Tuple2<String,String> of (key, path), where the key is from a {@link PathToKeyConverter}.
+ * Unlike {@link PathToKeyFunction}, only the path is kept: nothing about the file contents is carried along
+ */
+public class PathToKeyPathFunction implements PairFunction<String, String, String> {
+
+    private PathToKeyConverter converter;
+
+    public PathToKeyPathFunction(PathToKeyConverter converter){
+        this.converter = converter;
+    }
+
+    @Override
+    public Tuple2<String, String> call(String path) throws Exception {
+        return new Tuple2<>(converter.getKey(path), path);
+    }
+}
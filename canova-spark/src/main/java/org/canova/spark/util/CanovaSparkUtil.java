@@ -1,12 +1,24 @@
 package org.canova.spark.util;
 
+import com.google.common.base.Optional;
 import org.apache.hadoop.io.Text;
+import org.apache.spark.HashPartitioner;
+import org.apache.spark.Partitioner;
 import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.input.PortableDataStream;
+import org.canova.api.records.RecordBatch;
+import org.canova.api.records.reader.RecordReader;
+import org.canova.api.writable.Writable;
+import org.canova.spark.functions.BatchRecordReaderPartitionFunction;
+import org.canova.spark.functions.RecordReaderPartitionFunction;
 import org.canova.spark.functions.pairdata.*;
+import scala.Tuple2;
 import scala.Tuple3;
 
+import java.util.Collection;
+
 /** Utilities for using Canova with Spark
  * @author Alex Black
  */
@@ -44,6 +56,9 @@ public class CanovaSparkUtil {
      * </code>
      * </pre>
      * Result: the file contexts aggregated (pairwise), written to a hadoop sequence file at /my/output/path
+     * <br>
+     * This shuffles a PortableDataStream per file: for many or large files, see
+     * {@link #combineFilesForSequenceFileJoin(JavaSparkContext, String, String, PathToKeyConverter, PathToKeyConverter)}
      *
      *
      * @param sc Spark context
@@ -68,4 +83,66 @@ public class CanovaSparkUtil {
         return toWrite;
     }
 
+    /**Same as {@link #combineFilesForSequenceFileJoin(JavaSparkContext, String, String, PathToKeyConverter, PathToKeyConverter)}
+     * but with the PathToKeyConverter used for both file sources
+     */
+    public static JavaPairRDD<Text,BytesPairWritable> combineFilesForSequenceFileJoin(JavaSparkContext sc, String path1, String path2, PathToKeyConverter converter){
+        return combineFilesForSequenceFileJoin(sc,path1,path2,converter,converter);
+    }
+
+    /**As per {@link #combineFilesForSequenceFile(JavaSparkContext, String, String, PathToKeyConverter, PathToKeyConverter)},
+     * with the same output, but pairing the files with a join on their keys instead of a groupByKey.<br>
+     * Only the (key, path) pairs go through the shuffle: each file is then read once, directly from its path
+     * (see {@link PathPairToBytesPairWritableFunction}), by the task that writes the pair.
+     * This is usually much cheaper than the groupByKey, which shuffles a {@link PortableDataStream} per file.<br>
+     * As with {@link #combineFilesForSequenceFile(JavaSparkContext, String, String, PathToKeyConverter, PathToKeyConverter)},
+     * keys with a file on only one side give a BytesPairWritable with a null for the other side.
+     *
+     * @param sc Spark context
+     * @param path1 First directory (passed to JavaSparkContext.binaryFiles(path1))
+     * @param path2 Second directory (passed to JavaSparkContext.binaryFiles(path1))
+     * @param converter1 Converter, to convert file paths in first directory to a key (to allow files to be matched/paired by key)
+     * @param converter2 As above, for second directory
+     * @return
+     */
+    public static JavaPairRDD<Text,BytesPairWritable> combineFilesForSequenceFileJoin(JavaSparkContext sc, String path1, String path2, PathToKeyConverter converter1,
+                                                                               PathToKeyConverter converter2){
+        //Only the paths are used: the PortableDataStreams are never opened
+        JavaPairRDD<String,String> first = sc.binaryFiles(path1).keys().mapToPair(new PathToKeyPathFunction(converter1));
+        JavaPairRDD<String,String> second = sc.binaryFiles(path2).keys().mapToPair(new PathToKeyPathFunction(converter2));
+
+        //Both sides are shuffled once, into the same partitions, and joined there
+        Partitioner partitioner = new HashPartitioner(Math.max(first.partitions().size(), second.partitions().size()));
+        JavaPairRDD<String,Tuple2<Optional<String>,Optional<String>>> joined = first.fullOuterJoin(second, partitioner);
+
+        return joined.mapToPair(new PathPairToBytesPairWritableFunction());
+    }
+
+    /**Read all files under a path through a RecordReader, one Collection<Writable> per record.<br>
+     * Files are streamed through the reader within each partition (see {@link RecordReaderPartitionFunction}),
+     * so files producing many records (large CSVs, for example) are never materialized as a byte[].
+     * Note that each file is still read by a single task: files are not split.
+     *
+     * @param sc Spark context
+     * @param path the files (passed to JavaSparkContext.binaryFiles(path))
+     * @param recordReader the RecordReader; must support {@link org.canova.api.split.InputStreamInputSplit}
+     * @return the records
+     */
+    public static JavaRDD<Collection<Writable>> readRecords(JavaSparkContext sc, String path, RecordReader recordReader){
+        return sc.binaryFiles(path).mapPartitions(new RecordReaderPartitionFunction(recordReader));
+    }
+
+    /**As per {@link #readRecords(JavaSparkContext, String, RecordReader)}, but producing batches of records stored
+     * column-wise in primitive arrays (see {@link BatchRecordReaderPartitionFunction})
+     *
+     * @param sc Spark context
+     * @param path the files (passed to JavaSparkContext.binaryFiles(path))
+     * @param recordReader the RecordReader; must support {@link org.canova.api.split.InputStreamInputSplit}
+     * @param batchSize the maximum number of records in a batch
+     * @return the batches
+     */
+    public static JavaRDD<RecordBatch> readBatches(JavaSparkContext sc, String path, RecordReader recordReader, int batchSize){
+        return sc.binaryFiles(path).mapPartitions(new BatchRecordReaderPartitionFunction(recordReader, batchSize));
+    }
+
 }
@@ -0,0 +1,106 @@
+package org.canova.spark.csv;
+
+import org.apache.commons.io.FileUtils;
+import org.canova.api.formats.output.impl.CSVOutputFormat;
+import org.canova.api.writable.Writable;
+import org.canova.cli.csv.schema.CSVInputSchema;
+import org.canova.cli.csv.schema.CSVSchemaColumn;
+import org.canova.cli.vectorization.CSVVectorizationEngine;
+import org.canova.spark.BaseSparkTest;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestCSVSparkVectorizer extends BaseSparkTest {
+
+    private static final String SCHEMA = "@RELATION SparkUnitTest\n"
+            + "@DELIMITER ,\n"
+            + "@ATTRIBUTE sepallength  NUMERIC   !COPY\n"
+            + "@ATTRIBUTE sepalwidth   NUMERIC   !SKIP\n"
+            + "@ATTRIBUTE petallength  NUMERIC   !NORMALIZE\n"
+            + "@ATTRIBUTE petalwidth   NUMERIC   !BINARIZE\n"
+            + "@ATTRIBUTE class        NOMINAL   !LABEL\n";
+
+    private static final List<String> LINES = Arrays.asList(
+            "sepallength,sepalwidth,petallength,petalwidth,class",
+            "5.1,3.5,1.4,0.2,Iris-setosa",
+            "7.0,3.2,4.7,1.4,Iris-versicolor",
+            "6.3,3.3,6.0,2.5,Iris-virginica",
+            "4.9,3.0,1.4,0.2,Iris-setosa",
+            "6.4,3.2,4.5,1.5,Iris-versicolor",
+            "5.8,2.7,5.1,1.9,Iris-virginica",
+            "5.0,3.6,1.4,0.2,Iris-setosa");
+
+    @Test
+    public void testStatisticsMatchSerialPass() throws Exception {
+        CSVInputSchema serial = serialSchema();
+
+        CSVSparkVectorizer vectorizer = new CSVSparkVectorizer(SCHEMA, true);
+        CSVInputSchema distributed = vectorizer.collectStatistics(sc.parallelize(LINES, 4));
+
+        for (String column : serial.getColumnSchemas().keySet()) {
+            CSVSchemaColumn expected = serial.getColumnSchemaByName(column);
+            CSVSchemaColumn actual = distributed.getColumnSchemaByName(column);
+
+            assertEquals(expected.minValue, actual.minValue, 0.0);
+            assertEquals(expected.maxValue, actual.maxValue, 0.0);
+            assertEquals(expected.recordLabels, actual.recordLabels);
+        }
+        assertEquals(2, (int) distributed.getColumnSchemaByName("class").getLabelID("Iris-virginica"));
+    }
+
+    @Test
+    public void testVectorize() throws Exception {
+        CSVInputSchema serial = serialSchema();
+        CSVVectorizationEngine engine = new CSVVectorizationEngine();
+        List<Collection<Writable>> expected = new ArrayList<>();
+        for (String line : LINES.subList(1, LINES.size())) {
+            expected.add(engine.vectorizeToWritable("", line, serial));
+        }
+
+        CSVSparkVectorizer vectorizer = new CSVSparkVectorizer(SCHEMA, true);
+        List<Collection<Writable>> actual = vectorizer.vectorize(sc.parallelize(LINES, 3)).collect();
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+        }
+    }
+
+    @Test
+    public void testVectorizeToFiles() throws Exception {
+        File dir = Files.createTempDirectory("canova-spark-csv").toFile();
+        try {
+            CSVSparkVectorizer vectorizer = new CSVSparkVectorizer(SCHEMA, true);
+            List<String> files = vectorizer.vectorize(sc.parallelize(LINES, 3), dir.toURI().toString(), CSVOutputFormat.class);
+
+            assertEquals(3, files.size());
+            int count = 0;
+            for (int i = 0; i < files.size(); i++) {
+                File part = new File(dir, String.format("part-%05d", i));
+                count += FileUtils.readLines(part).size();
+            }
+            assertEquals(LINES.size() - 1, count);
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private static CSVInputSchema serialSchema() throws Exception {
+        CSVInputSchema schema = new CSVInputSchema();
+        schema.parseSchema(new StringReader(SCHEMA));
+        for (String line : LINES.subList(1, LINES.size())) {
+            schema.evaluateInputRecord(line);
+        }
+        schema.computeDatasetStatistics();
+        return schema;
+    }
+}
@@ -19,13 +19,18 @@ import org.junit.Test;
 import scala.Tuple2;
 
 import java.io.*;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
 public class TestPairSequenceRecordReaderBytesFunction extends BaseSparkTest {
@@ -96,6 +101,35 @@ public class TestPairSequenceRecordReaderBytesFunction extends BaseSparkTest {
 
     }
 
+    @Test
+    public void testJoin() throws Exception {
+        //The join based pairing should give the same pairs as the groupByKey based one
+        JavaSparkContext sc = getContext();
+
+        ClassPathResource cpr = new ClassPathResource("/video/shapes_0.mp4");
+        String path = cpr.getFile().getAbsolutePath();
+        String folder = path.substring(0, path.length() - 12);
+        path = folder + "*";
+
+        PathToKeyConverter pathConverter = new PathToKeyConverterFilename();
+        List<BytesPairWritable> grouped = CanovaSparkUtil.combineFilesForSequenceFile(sc, path, path, pathConverter).values().collect();
+        List<BytesPairWritable> joined = CanovaSparkUtil.combineFilesForSequenceFileJoin(sc, path, path, pathConverter).values().collect();
+
+        assertEquals(4, grouped.size());
+        assertEquals(4, joined.size());
+
+        Map<String,BytesPairWritable> byPath = new HashMap<>();
+        for(BytesPairWritable pair : grouped) byPath.put(new File(new URI(pair.getUriFirst())).getName(), pair);
+
+        for(BytesPairWritable pair : joined){
+            BytesPairWritable expected = byPath.get(new File(new URI(pair.getUriFirst())).getName());
+            assertNotNull(expected);
+            assertEquals(expected.getUriSecond(), pair.getUriSecond());
+            assertArrayEquals(expected.getFirst(), pair.getFirst());
+            assertArrayEquals(expected.getSecond(), pair.getSecond());
+        }
+    }
+
     private static SequenceRecordReader getReader(){
         SequenceRecordReader seqRR = new CodecRecordReader();
         Configuration conf = new Configuration();
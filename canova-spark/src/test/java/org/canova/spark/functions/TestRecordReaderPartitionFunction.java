@@ -0,0 +1,51 @@
+package org.canova.spark.functions;
+
+import org.apache.spark.api.java.JavaSparkContext;
+import org.canova.api.records.RecordBatch;
+import org.canova.api.records.reader.impl.CSVRecordReader;
+import org.canova.api.util.ClassPathResource;
+import org.canova.api.writable.Writable;
+import org.canova.spark.BaseSparkTest;
+import org.canova.spark.util.CanovaSparkUtil;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestRecordReaderPartitionFunction extends BaseSparkTest {
+
+    @Test
+    public void testRecordsAndBatches() throws Exception {
+        JavaSparkContext sc = getContext();
+
+        ClassPathResource cpr = new ClassPathResource("/csvsequence/csvsequence_0.txt");
+        String path = cpr.getFile().getAbsolutePath();
+        String folder = path.substring(0, path.length() - 17);
+        path = folder + "*";
+
+        //3 files, each with a header line and 4 records
+        List<Collection<Writable>> records = CanovaSparkUtil.readRecords(sc, path, new CSVRecordReader(1, ",")).collect();
+        assertEquals(12, records.size());
+        Set<String> values = new HashSet<>();
+        for(Collection<Writable> c : records){
+            assertEquals(3, c.size());
+            values.add(c.iterator().next().toString());
+        }
+        assertEquals(12, values.size());
+
+        List<RecordBatch> batches = CanovaSparkUtil.readBatches(sc, path, new CSVRecordReader(1, ","), 2).collect();
+        int count = 0;
+        for(RecordBatch batch : batches){
+            assertTrue(batch.numRows() > 0 && batch.numRows() <= 2);
+            assertEquals(3, batch.numColumns());
+            for( int i=0; i<batch.numRows(); i++ ){
+                assertTrue(values.contains(batch.getString(i, 0)));
+                count++;
+            }
+        }
+        assertEquals(12, count);
+    }
+
+}